@@ -0,0 +1,35 @@
+package com.ing.hubs.config;
+
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Infrastructure for the {@code reactive} profile. The JPA services still need their JDBC pool,
+ * which Spring Boot stops creating once an R2DBC connection factory exists, and WebFlux has to run
+ * on Netty although Tomcat is on the classpath for the servlet stack.
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+@Profile("reactive")
+public class ReactiveConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+
+    return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+
+    return new NettyReactiveWebServerFactory();
+  }
+}
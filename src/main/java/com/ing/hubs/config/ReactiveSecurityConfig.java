@@ -0,0 +1,70 @@
+package com.ing.hubs.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.HttpStatusServerEntryPoint;
+
+import com.ing.hubs.security.JwtServerSecurityContextRepository;
+import com.ing.hubs.security.ReactiveCustomUserDetailsService;
+
+/** WebFlux counterpart of {@link SecurityConfig}, active with the {@code reactive} profile. */
+@Configuration
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+@Profile("reactive")
+public class ReactiveSecurityConfig {
+
+  @Bean
+  public SecurityWebFilterChain securityWebFilterChain(
+      ServerHttpSecurity http,
+      JwtServerSecurityContextRepository jwtServerSecurityContextRepository) {
+
+    return http.csrf(ServerHttpSecurity.CsrfSpec::disable)
+        .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+        .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+        .securityContextRepository(jwtServerSecurityContextRepository)
+        .authorizeExchange(
+            exchanges ->
+                exchanges
+                    .pathMatchers("/api/auth/**")
+                    .permitAll()
+                    .pathMatchers("/actuator/**")
+                    .hasRole("ADMIN")
+                    .pathMatchers("/api/admin/**")
+                    .hasRole("ADMIN")
+                    .anyExchange()
+                    .authenticated())
+        .exceptionHandling(
+            exception ->
+                exception.authenticationEntryPoint(
+                    new HttpStatusServerEntryPoint(HttpStatus.UNAUTHORIZED)))
+        .build();
+  }
+
+  @Bean
+  public PasswordEncoder passwordEncoder() {
+    return new BCryptPasswordEncoder();
+  }
+
+  /** Checks login passwords; BCrypt runs on a bounded worker rather than the event loop. */
+  @Bean
+  public ReactiveAuthenticationManager reactiveAuthenticationManager(
+      ReactiveCustomUserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+
+    UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+        new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+    authenticationManager.setPasswordEncoder(passwordEncoder);
+
+    return authenticationManager;
+  }
+}
@@ -0,0 +1,77 @@
+package com.ing.hubs.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Infrastructure for the {@code read-replicas} profile: the primary pool from {@code
+ * spring.datasource.*}, one pool per {@code wallet.replicas.urls} entry, and the data source JPA
+ * and JDBC use, which routes read-only transactions to the replicas. Replicas have to be kept in
+ * sync with the primary by the database; this profile only reads from them.
+ */
+@Configuration
+@EnableConfigurationProperties(DataSourceProperties.class)
+@Profile("read-replicas")
+public class ReadReplicaConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+
+    return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public ReplicaRoutingDataSource replicaRoutingDataSource(
+      HikariDataSource primaryDataSource,
+      DataSourceProperties dataSourceProperties,
+      MeterRegistry meterRegistry,
+      @Value("${wallet.replicas.urls:}") List<String> urls,
+      @Value("${wallet.replicas.pool-size:10}") int poolSize,
+      @Value("${wallet.replicas.max-lag-ms:5000}") long maxLagMillis) {
+
+    if (poolSize <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.replicas.* settings");
+    }
+
+    List<DataSource> replicas = new ArrayList<>();
+
+    for (String url : urls) {
+      HikariDataSource replica = new HikariDataSource();
+      replica.setPoolName("replica-" + replicas.size());
+      replica.setJdbcUrl(url);
+      replica.setUsername(dataSourceProperties.determineUsername());
+      replica.setPassword(dataSourceProperties.determinePassword());
+      replica.setMaximumPoolSize(poolSize);
+      replica.setReadOnly(true);
+      // a replica that is down must not keep the application from starting
+      replica.setInitializationFailTimeout(-1);
+      replicas.add(replica);
+    }
+
+    return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLagMillis, meterRegistry);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+
+    return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+  }
+}
@@ -0,0 +1,220 @@
+package com.ing.hubs.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Hands out primary connections to everything but read-only transactions, which go round-robin to
+ * the replicas that trail the primary by at most {@code maxLag}. Lag is measured by stamping the
+ * {@code replica_heartbeat} row on the primary and reading it back from each replica; a replica
+ * that cannot be read, or refuses a connection, is skipped until the next check finds it caught up.
+ * With no replica usable, reads fall back to the primary.
+ *
+ * <p>The transaction's read-only flag is only known once it has begun, so this data source has to
+ * sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+  static final String HEARTBEAT_ID = "primary";
+
+  private final DataSource primary;
+  private final JdbcTemplate primaryJdbcTemplate;
+  private final List<Replica> replicas = new ArrayList<>();
+  private final long maxLagMillis;
+  private final AtomicInteger next = new AtomicInteger();
+  private final Counter replicaReads;
+  private final Counter primaryReads;
+  private final Counter laggingFallbacks;
+  private final Counter unavailableFallbacks;
+
+  /** Opens a connection to the chosen data source, with or without explicit credentials. */
+  @FunctionalInterface
+  private interface ConnectionSource {
+
+    Connection connect(DataSource dataSource) throws SQLException;
+  }
+
+  private static final class Replica {
+
+    private final String name;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    // Long.MAX_VALUE until a check finds the replica readable
+    private volatile long lagMillis = Long.MAX_VALUE;
+
+    private Replica(String name, DataSource dataSource) {
+
+      this.name = name;
+      this.dataSource = dataSource;
+      this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+  }
+
+  public ReplicaRoutingDataSource(
+      DataSource primary,
+      List<DataSource> replicaDataSources,
+      long maxLagMillis,
+      MeterRegistry meterRegistry) {
+
+    if (replicaDataSources.isEmpty() || maxLagMillis <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.replicas.* settings");
+    }
+
+    this.primary = primary;
+    this.primaryJdbcTemplate = new JdbcTemplate(primary);
+    this.maxLagMillis = maxLagMillis;
+
+    for (int i = 0; i < replicaDataSources.size(); i++) {
+      Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+      replicas.add(replica);
+      Gauge.builder(
+              "wallet.replicas.lag",
+              replica,
+              r -> r.lagMillis == Long.MAX_VALUE ? Double.NaN : r.lagMillis)
+          .description("How far the replica trailed the primary at the last check")
+          .baseUnit("milliseconds")
+          .tag("replica", replica.name)
+          .register(meterRegistry);
+    }
+
+    this.replicaReads = readCounter(meterRegistry, "replica");
+    this.primaryReads = readCounter(meterRegistry, "primary");
+    this.laggingFallbacks = fallbackCounter(meterRegistry, "lagging");
+    this.unavailableFallbacks = fallbackCounter(meterRegistry, "unavailable");
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+
+    return route(DataSource::getConnection);
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+
+    return route(dataSource -> dataSource.getConnection(username, password));
+  }
+
+  private Connection route(ConnectionSource connectionSource) throws SQLException {
+
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+
+      return connectionSource.connect(primary);
+    }
+
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+    boolean lagging = false;
+
+    for (int i = 0; i < replicas.size(); i++) {
+      Replica replica = replicas.get((start + i) % replicas.size());
+
+      if (replica.lagMillis > maxLagMillis) {
+        lagging = true;
+        continue;
+      }
+
+      try {
+        Connection connection = connectionSource.connect(replica.dataSource);
+        replicaReads.increment();
+        return connection;
+      } catch (SQLException e) {
+        log.warn("Replica {} refused a connection, reading elsewhere", replica.name, e);
+        replica.lagMillis = Long.MAX_VALUE;
+        unavailableFallbacks.increment();
+      }
+    }
+
+    if (lagging) {
+      laggingFallbacks.increment();
+    }
+
+    primaryReads.increment();
+
+    return connectionSource.connect(primary);
+  }
+
+  /** Stamps the heartbeat on the primary and measures how far each replica trails it. */
+  @Scheduled(fixedDelayString = "${wallet.replicas.lag-check-interval-ms:1000}")
+  public void checkLag() {
+
+    LocalDateTime beatAt = LocalDateTime.now();
+
+    try {
+      if (primaryJdbcTemplate.update(
+              "UPDATE replica_heartbeat SET beat_at = ? WHERE id = ?", beatAt, HEARTBEAT_ID)
+          == 0) {
+        primaryJdbcTemplate.update(
+            "INSERT INTO replica_heartbeat (id, beat_at) VALUES (?, ?)", HEARTBEAT_ID, beatAt);
+      }
+    } catch (DuplicateKeyException e) {
+      // another instance stamped it first
+    } catch (DataAccessException e) {
+      log.warn("Could not stamp the replica heartbeat on the primary", e);
+      return;
+    }
+
+    for (Replica replica : replicas) {
+      try {
+        LocalDateTime replicated =
+            replica.jdbcTemplate.queryForObject(
+                "SELECT beat_at FROM replica_heartbeat WHERE id = ?",
+                LocalDateTime.class,
+                HEARTBEAT_ID);
+        replica.lagMillis = Math.max(0, Duration.between(replicated, beatAt).toMillis());
+      } catch (DataAccessException e) {
+        if (replica.lagMillis != Long.MAX_VALUE) {
+          log.warn("Replica {} could not be checked, reading elsewhere", replica.name, e);
+        }
+
+        replica.lagMillis = Long.MAX_VALUE;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+
+    for (Replica replica : replicas) {
+      if (replica.dataSource instanceof AutoCloseable closeable) {
+        closeable.close();
+      }
+    }
+  }
+
+  private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+
+    return Counter.builder("wallet.replicas.reads")
+        .description("Connections handed to read-only transactions")
+        .tag("target", target)
+        .register(meterRegistry);
+  }
+
+  private static Counter fallbackCounter(MeterRegistry meterRegistry, String reason) {
+
+    return Counter.builder("wallet.replicas.fallbacks")
+        .description("Read-only transactions that could not use a replica")
+        .tag("reason", reason)
+        .register(meterRegistry);
+  }
+}
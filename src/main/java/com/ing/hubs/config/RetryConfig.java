@@ -0,0 +1,19 @@
+package com.ing.hubs.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
+
+import com.ing.hubs.service.WalletContentionTracker;
+
+@Configuration
+public class RetryConfig {
+
+  /** Referenced by name from the {@code @Retryable} wallet write methods. */
+  @Bean
+  public RetryOperationsInterceptor walletRetryInterceptor(
+      WalletContentionTracker walletContentionTracker) {
+
+    return walletContentionTracker.retryInterceptor();
+  }
+}
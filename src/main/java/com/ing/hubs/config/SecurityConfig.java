@@ -1,7 +1,10 @@
 package com.ing.hubs.config;
 
+import jakarta.servlet.DispatcherType;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -25,6 +28,7 @@ import lombok.RequiredArgsConstructor;
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
+@Profile("!reactive")
 public class SecurityConfig {
 
   private final JwtAuthFilter jwtAuthFilter;
@@ -37,10 +41,15 @@ public class SecurityConfig {
         .authorizeHttpRequests(
             authz ->
                 authz
+                    // streamed responses finish on an async dispatch of an authorized request
+                    .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                    .permitAll()
                     .requestMatchers("/api/auth/**")
                     .permitAll()
                     .requestMatchers("/h2-console/**")
                     .permitAll()
+                    .requestMatchers("/actuator/**")
+                    .hasRole("ADMIN")
                     .requestMatchers("/api/admin/**")
                     .hasRole("ADMIN")
                     .requestMatchers("/api/wallets/**")
@@ -0,0 +1,133 @@
+package com.ing.hubs.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier, which on Java 21 happens when
+ * they park inside a {@code synchronized} block (JDBC drivers and pools are the usual suspects).
+ * Listens to the JFR {@code jdk.VirtualThreadPinned} event, counts each occurrence under {@code
+ * wallet.virtual_threads.pinned} tagged with the frame that held the monitor, and logs the stack
+ * the first time a frame shows up. Only runs when {@code spring.threads.virtual.enabled} is set.
+ */
+@Slf4j
+@Component
+public class VirtualThreadPinningMonitor {
+
+  // the first frame from these packages is what the event is reported against
+  private static final List<String> PERSISTENCE_PACKAGES =
+      List.of(
+          "org.h2.",
+          "com.zaxxer.hikari.",
+          "org.hibernate.",
+          "org.springframework.jdbc.",
+          "org.springframework.orm.",
+          "org.springframework.transaction.",
+          "com.ing.hubs.");
+  private static final int LOGGED_FRAMES = 12;
+
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final Duration threshold;
+  private final Timer duration;
+  private final Set<String> reportedFrames = ConcurrentHashMap.newKeySet();
+
+  private jdk.jfr.consumer.RecordingStream recordingStream;
+
+  public VirtualThreadPinningMonitor(
+      MeterRegistry meterRegistry,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+      @Value("${wallet.virtual-threads.pinning.enabled:true}") boolean enabled,
+      @Value("${wallet.virtual-threads.pinning.threshold-ms:20}") long thresholdMillis) {
+
+    if (thresholdMillis < 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.virtual-threads.pinning.threshold-ms");
+    }
+
+    this.meterRegistry = meterRegistry;
+    this.enabled = virtualThreads && enabled;
+    this.threshold = Duration.ofMillis(thresholdMillis);
+    this.duration =
+        Timer.builder("wallet.virtual_threads.pinned.duration")
+            .description("Time virtual threads spent blocked while pinned to their carrier")
+            .register(meterRegistry);
+  }
+
+  @PostConstruct
+  public void start() {
+
+    if (!enabled) {
+      return;
+    }
+
+    recordingStream = new jdk.jfr.consumer.RecordingStream();
+    recordingStream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+    recordingStream.onEvent("jdk.VirtualThreadPinned", this::record);
+    recordingStream.startAsync();
+    log.info("Reporting virtual thread pinning longer than {} ms", threshold.toMillis());
+  }
+
+  @PreDestroy
+  public void stop() {
+
+    if (recordingStream != null) {
+      recordingStream.close();
+    }
+  }
+
+  void record(jdk.jfr.consumer.RecordedEvent event) {
+
+    List<jdk.jfr.consumer.RecordedFrame> frames =
+        event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+    String frame = culprit(frames);
+
+    Counter.builder("wallet.virtual_threads.pinned")
+        .description("Virtual threads that blocked while pinned to their carrier")
+        .tag("frame", frame)
+        .register(meterRegistry)
+        .increment();
+    duration.record(event.getDuration());
+
+    if (reportedFrames.add(frame)) {
+      StringBuilder stack = new StringBuilder();
+      frames.stream()
+          .limit(LOGGED_FRAMES)
+          .forEach(recordedFrame -> stack.append("\n\tat ").append(describe(recordedFrame)));
+      log.warn(
+          "Virtual thread pinned for {} ms in {}, further occurrences are only counted:{}",
+          event.getDuration().toMillis(),
+          frame,
+          stack);
+    }
+  }
+
+  static String culprit(List<jdk.jfr.consumer.RecordedFrame> frames) {
+
+    return frames.stream()
+        .filter(jdk.jfr.consumer.RecordedFrame::isJavaFrame)
+        .map(VirtualThreadPinningMonitor::describe)
+        .filter(frame -> PERSISTENCE_PACKAGES.stream().anyMatch(frame::startsWith))
+        .findFirst()
+        .orElse("unknown");
+  }
+
+  private static String describe(jdk.jfr.consumer.RecordedFrame frame) {
+
+    return frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+  }
+}
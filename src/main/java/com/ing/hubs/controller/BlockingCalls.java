@@ -0,0 +1,35 @@
+package com.ing.hubs.controller;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs JPA-backed service calls for the reactive controllers off the event loop, on the
+ * bounded-elastic scheduler, with the caller's security context where the services look for it.
+ */
+final class BlockingCalls {
+
+  private BlockingCalls() {}
+
+  static <T> Mono<T> call(Callable<T> action) {
+
+    return ReactiveSecurityContextHolder.getContext()
+        .flatMap(
+            context ->
+                Mono.fromCallable(
+                        () -> {
+                          SecurityContextHolder.setContext(context);
+                          try {
+                            return action.call();
+                          } finally {
+                            SecurityContextHolder.clearContext();
+                          }
+                        })
+                    .subscribeOn(Schedulers.boundedElastic()));
+  }
+}
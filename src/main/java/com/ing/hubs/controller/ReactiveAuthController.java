@@ -0,0 +1,68 @@
+package com.ing.hubs.controller;
+
+import jakarta.validation.Valid;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ing.hubs.dto.AuthRequestDto;
+import com.ing.hubs.dto.AuthResponseDto;
+import com.ing.hubs.dto.CreateAdminUserDto;
+import com.ing.hubs.entity.AdminUser;
+import com.ing.hubs.security.JwtTokenProvider;
+import com.ing.hubs.service.WalletService;
+
+import lombok.RequiredArgsConstructor;
+
+import reactor.core.publisher.Mono;
+
+/** {@link AuthController} for the {@code reactive} profile. */
+@RestController
+@RequestMapping("/api/auth")
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveAuthController {
+
+  private final ReactiveAuthenticationManager reactiveAuthenticationManager;
+  private final JwtTokenProvider jwtTokenProvider;
+  private final WalletService walletService;
+
+  @PostMapping("/login")
+  public Mono<ResponseEntity<AuthResponseDto>> login(
+      @RequestBody @Valid AuthRequestDto authRequestDto) {
+
+    return reactiveAuthenticationManager
+        .authenticate(
+            new UsernamePasswordAuthenticationToken(
+                authRequestDto.username(), authRequestDto.password()))
+        .map(
+            authentication -> {
+              String role =
+                  authentication.getAuthorities().stream()
+                      .findFirst()
+                      .map(GrantedAuthority::getAuthority)
+                      .orElse("");
+              String jwt = jwtTokenProvider.generateToken(authRequestDto.username(), role);
+
+              return ResponseEntity.ok(new AuthResponseDto(jwt, role));
+            });
+  }
+
+  @PostMapping("/create/admin")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public Mono<ResponseEntity<AdminUser>> createAdminUser(
+      @RequestBody @Valid CreateAdminUserDto createAdminUserDto) {
+
+    return BlockingCalls.call(() -> walletService.createAdminUser(createAdminUserDto))
+        .map(adminUser -> ResponseEntity.status(HttpStatus.CREATED).body(adminUser));
+  }
+}
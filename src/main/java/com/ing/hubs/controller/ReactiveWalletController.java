@@ -0,0 +1,237 @@
+package com.ing.hubs.controller;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import com.ing.hubs.dto.*;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.ExportFormat;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.service.IdempotencyStore;
+import com.ing.hubs.service.ReactiveWalletQueryService;
+import com.ing.hubs.service.TransactionApprovalService;
+import com.ing.hubs.service.TransactionExporter;
+import com.ing.hubs.service.TransactionSearchService;
+import com.ing.hubs.service.WalletCommandDispatcher;
+import com.ing.hubs.service.WalletService;
+
+import lombok.RequiredArgsConstructor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link WalletController} for the {@code reactive} profile. Listings are read through R2DBC
+ * without blocking; writes and the transaction search keep their single implementation in the
+ * JPA/JDBC services and go through {@link BlockingCalls}.
+ */
+@RestController
+@RequestMapping("api/wallet")
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveWalletController {
+
+  private final WalletService walletService;
+  private final WalletCommandDispatcher walletCommandDispatcher;
+  private final IdempotencyStore idempotencyStore;
+  private final TransactionApprovalService transactionApprovalService;
+  private final ReactiveWalletQueryService reactiveWalletQueryService;
+  private final TransactionSearchService transactionSearchService;
+
+  @PostMapping("create")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<Wallet>> createWallet(
+      @RequestBody @Valid CreateWalletDto createWalletDto) {
+
+    return BlockingCalls.call(() -> walletService.createWallet(createWalletDto))
+        .map(wallet -> ResponseEntity.status(HttpStatus.CREATED).body(wallet));
+  }
+
+  @GetMapping("{customerId}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<ListWalletDto>> getWallets(
+      @PathVariable @NotBlank(message = "Customer ID cannot be blank") String customerId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+    return reactiveWalletQueryService
+        .listWallets(customerId, ifNoneMatch)
+        .map(WalletController::conditional);
+  }
+
+  @GetMapping("portfolio/{customerId}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<CustomerPortfolioDto>> getPortfolio(
+      @PathVariable @NotBlank(message = "Customer ID cannot be blank") String customerId) {
+
+    return BlockingCalls.call(() -> walletService.getPortfolio(customerId)).map(ResponseEntity::ok);
+  }
+
+  @PostMapping("deposit")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<TransactionResponseDto>> makeDeposit(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @RequestBody @Valid DepositDto depositDto) {
+
+    return BlockingCalls.call(
+            () ->
+                idempotencyStore.execute(
+                    idempotencyKey,
+                    "deposit",
+                    depositDto,
+                    () -> walletCommandDispatcher.makeDeposit(depositDto, ifMatch)))
+        .map(ResponseEntity::ok);
+  }
+
+  @GetMapping("transactions/{walletId}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<ListTransactionDto>> getTransactions(
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "50") int limit,
+      @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+    return reactiveWalletQueryService
+        .listTransactions(walletId, after, limit, direction, ifNoneMatch)
+        .map(WalletController::conditional);
+  }
+
+  @GetMapping("transactions/search")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<ListTransactionDto>> searchTransactions(
+      TransactionSearchDto search,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "50") int limit) {
+
+    return BlockingCalls.call(() -> transactionSearchService.search(search, after, limit))
+        .map(ResponseEntity::ok);
+  }
+
+  @GetMapping("transactions/{walletId}/export")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<Flux<String>>> exportTransactions(
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+      @RequestParam(required = false) TransactionStatus status,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to) {
+
+    // the access check runs when the body is subscribed, before anything is written
+    return Mono.just(
+        ResponseEntity.ok()
+            .contentType(TransactionExporter.mediaType(format))
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION, WalletController.exportFileName(walletId, format))
+            .body(
+                reactiveWalletQueryService.exportTransactions(walletId, status, from, to, format)));
+  }
+
+  @PostMapping("withdraw")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<TransactionResponseDto>> makeWithdraw(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @RequestBody @Valid WithdrawDto withdrawDto) {
+
+    return BlockingCalls.call(
+            () ->
+                idempotencyStore.execute(
+                    idempotencyKey,
+                    "withdraw",
+                    withdrawDto,
+                    () -> walletCommandDispatcher.makeWithdraw(withdrawDto, ifMatch)))
+        .map(ResponseEntity::ok);
+  }
+
+  @PostMapping("transfer")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<TransactionResponseDto>> makeTransfer(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestBody @Valid TransferDto transferDto) {
+
+    return BlockingCalls.call(
+            () ->
+                idempotencyStore.execute(
+                    idempotencyKey,
+                    "transfer",
+                    transferDto,
+                    () -> walletCommandDispatcher.makeTransfer(transferDto)))
+        .map(ResponseEntity::ok);
+  }
+
+  @PostMapping("batch")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public Mono<ResponseEntity<WalletBatchResponseDto>> applyBatch(
+      @RequestBody @Valid WalletBatchDto walletBatchDto) {
+
+    return BlockingCalls.call(() -> walletCommandDispatcher.applyBatch(walletBatchDto))
+        .map(ResponseEntity::ok);
+  }
+
+  @PutMapping("transaction/{transactionId}")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public Mono<ResponseEntity<TransactionResponseDto>> approve(
+      @PathVariable @NotBlank(message = "Transaction ID cannot be blank") String transactionId,
+      @RequestParam TransactionStatus status,
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+
+    return BlockingCalls.call(
+            () ->
+                idempotencyStore.execute(
+                    idempotencyKey,
+                    "approve",
+                    List.of(transactionId, status),
+                    () -> walletCommandDispatcher.approve(transactionId, status)))
+        .map(ResponseEntity::ok);
+  }
+
+  @PutMapping("transaction/batch")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public Mono<ResponseEntity<TransactionBatchResponseDto>> approveBatch(
+      @RequestBody @Valid TransactionBatchDto transactionBatchDto) {
+
+    return BlockingCalls.call(
+            () ->
+                TransactionBatchResponseDto.builder()
+                    .transactions(
+                        transactionApprovalService.processAll(
+                            transactionBatchDto.transactionIds(), transactionBatchDto.status()))
+                    .build())
+        .map(ResponseEntity::ok);
+  }
+
+  @PutMapping("{walletId}/sub-balances")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public Mono<ResponseEntity<Wallet>> setSubBalances(
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam int count) {
+
+    return BlockingCalls.call(() -> walletService.setSubBalances(walletId, count))
+        .map(ResponseEntity::ok);
+  }
+
+  @PostMapping("/create/customer")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public Mono<ResponseEntity<Customer>> createCustomer(
+      @RequestBody @Valid CreateCustomerDto createCustomerDto) {
+
+    return BlockingCalls.call(() -> walletService.createCustomer(createCustomerDto))
+        .map(customer -> ResponseEntity.status(HttpStatus.CREATED).body(customer));
+  }
+}
@@ -1,17 +1,35 @@
 package com.ing.hubs.controller;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
 import com.ing.hubs.dto.*;
 import com.ing.hubs.entity.Customer;
 import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.ExportFormat;
 import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.service.ConditionalRead;
+import com.ing.hubs.service.IdempotencyStore;
+import com.ing.hubs.service.TransactionApprovalService;
+import com.ing.hubs.service.TransactionExporter;
+import com.ing.hubs.service.TransactionSearchService;
+import com.ing.hubs.service.WalletCommandDispatcher;
 import com.ing.hubs.service.WalletService;
 
 import lombok.RequiredArgsConstructor;
@@ -19,9 +37,15 @@ import lombok.RequiredArgsConstructor;
 @RestController
 @RequestMapping("api/wallet")
 @RequiredArgsConstructor
+@Profile("!reactive")
 public class WalletController {
 
   private final WalletService walletService;
+  private final WalletCommandDispatcher walletCommandDispatcher;
+  private final IdempotencyStore idempotencyStore;
+  private final TransactionApprovalService transactionApprovalService;
+  private final TransactionExporter transactionExporter;
+  private final TransactionSearchService transactionSearchService;
 
   @PostMapping("create")
   @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
@@ -34,42 +58,164 @@ public class WalletController {
   @GetMapping("{customerId}")
   @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
   public ResponseEntity<ListWalletDto> getWallets(
+      @PathVariable @NotBlank(message = "Customer ID cannot be blank") String customerId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+    return conditional(walletService.listWallets(customerId, ifNoneMatch));
+  }
+
+  @GetMapping("portfolio/{customerId}")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public ResponseEntity<CustomerPortfolioDto> getPortfolio(
       @PathVariable @NotBlank(message = "Customer ID cannot be blank") String customerId) {
 
-    return ResponseEntity.ok().body(walletService.listWallets(customerId));
+    return ResponseEntity.ok().body(walletService.getPortfolio(customerId));
   }
 
   @PostMapping("deposit")
   @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
   public ResponseEntity<TransactionResponseDto> makeDeposit(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
       @RequestBody @Valid DepositDto depositDto) {
 
-    return ResponseEntity.ok().body(walletService.makeDeposit(depositDto));
+    return ResponseEntity.ok()
+        .body(
+            idempotencyStore.execute(
+                idempotencyKey,
+                "deposit",
+                depositDto,
+                () -> walletCommandDispatcher.makeDeposit(depositDto, ifMatch)));
   }
 
   @GetMapping("transactions/{walletId}")
   @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
   public ResponseEntity<ListTransactionDto> getTransactions(
-      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId) {
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "50") int limit,
+      @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+    return conditional(
+        walletService.listTransactions(walletId, after, limit, direction, ifNoneMatch));
+  }
+
+  @GetMapping("transactions/search")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public ResponseEntity<ListTransactionDto> searchTransactions(
+      TransactionSearchDto search,
+      @RequestParam(required = false) String after,
+      @RequestParam(defaultValue = "50") int limit) {
 
-    return ResponseEntity.ok().body(walletService.listTransactions(walletId));
+    return ResponseEntity.ok().body(transactionSearchService.search(search, after, limit));
+  }
+
+  /**
+   * Streams the export on an async request with its own {@code wallet.export.timeout-ms}, since a
+   * whole history can take longer to write than the server's default async timeout allows.
+   */
+  @GetMapping("transactions/{walletId}/export")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public WebAsyncTask<Void> exportTransactions(
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+      @RequestParam(required = false) TransactionStatus status,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+          LocalDateTime to,
+      HttpServletResponse response) {
+
+    transactionExporter.checkAccess(walletId);
+    response.setContentType(TransactionExporter.mediaType(format).toString());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION, exportFileName(walletId, format));
+
+    return new WebAsyncTask<>(
+        transactionExporter.getTimeoutMillis(),
+        () -> {
+          transactionExporter.export(
+              walletId, status, from, to, format, response.getOutputStream());
+          return null;
+        });
   }
 
   @PostMapping("withdraw")
   @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
   public ResponseEntity<TransactionResponseDto> makeWithdraw(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
       @RequestBody @Valid WithdrawDto withdrawDto) {
 
-    return ResponseEntity.ok().body(walletService.makeWithdraw(withdrawDto));
+    return ResponseEntity.ok()
+        .body(
+            idempotencyStore.execute(
+                idempotencyKey,
+                "withdraw",
+                withdrawDto,
+                () -> walletCommandDispatcher.makeWithdraw(withdrawDto, ifMatch)));
+  }
+
+  @PostMapping("transfer")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public ResponseEntity<TransactionResponseDto> makeTransfer(
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+      @RequestBody @Valid TransferDto transferDto) {
+
+    return ResponseEntity.ok()
+        .body(
+            idempotencyStore.execute(
+                idempotencyKey,
+                "transfer",
+                transferDto,
+                () -> walletCommandDispatcher.makeTransfer(transferDto)));
+  }
+
+  @PostMapping("batch")
+  @PreAuthorize("hasAnyRole('ADMIN', 'CUSTOMER')")
+  public ResponseEntity<WalletBatchResponseDto> applyBatch(
+      @RequestBody @Valid WalletBatchDto walletBatchDto) {
+
+    return ResponseEntity.ok().body(walletCommandDispatcher.applyBatch(walletBatchDto));
   }
 
   @PutMapping("transaction/{transactionId}")
   @PreAuthorize("hasAnyRole('ADMIN')")
   public ResponseEntity<TransactionResponseDto> approve(
       @PathVariable @NotBlank(message = "Transaction ID cannot be blank") String transactionId,
-      @RequestParam TransactionStatus status) {
+      @RequestParam TransactionStatus status,
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+
+    return ResponseEntity.ok()
+        .body(
+            idempotencyStore.execute(
+                idempotencyKey,
+                "approve",
+                List.of(transactionId, status),
+                () -> walletCommandDispatcher.approve(transactionId, status)));
+  }
+
+  @PutMapping("transaction/batch")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public ResponseEntity<TransactionBatchResponseDto> approveBatch(
+      @RequestBody @Valid TransactionBatchDto transactionBatchDto) {
+
+    return ResponseEntity.ok()
+        .body(
+            TransactionBatchResponseDto.builder()
+                .transactions(
+                    transactionApprovalService.processAll(
+                        transactionBatchDto.transactionIds(), transactionBatchDto.status()))
+                .build());
+  }
+
+  @PutMapping("{walletId}/sub-balances")
+  @PreAuthorize("hasAnyRole('ADMIN')")
+  public ResponseEntity<Wallet> setSubBalances(
+      @PathVariable @NotBlank(message = "Wallet ID cannot be blank") String walletId,
+      @RequestParam int count) {
 
-    return ResponseEntity.ok().body(walletService.approve(transactionId, status));
+    return ResponseEntity.ok().body(walletService.setSubBalances(walletId, count));
   }
 
   @PostMapping("/create/customer")
@@ -80,4 +226,23 @@ public class WalletController {
     return ResponseEntity.status(HttpStatus.CREATED)
         .body(walletService.createCustomer(createCustomerDto));
   }
+
+  /** A 304 without a body when the caller's copy is current, otherwise the body; both tagged. */
+  static <T> ResponseEntity<T> conditional(ConditionalRead<T> read) {
+
+    if (!read.isModified()) {
+
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(read.eTag()).build();
+    }
+
+    return ResponseEntity.ok().eTag(read.eTag()).body(read.body());
+  }
+
+  static String exportFileName(String walletId, ExportFormat format) {
+
+    return ContentDisposition.attachment()
+        .filename(walletId + "." + format.name().toLowerCase(Locale.ROOT))
+        .build()
+        .toString();
+  }
 }
@@ -0,0 +1,26 @@
+package com.ing.hubs.dto;
+
+import java.math.BigDecimal;
+
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+
+/** A customer's wallets in one currency, summed. */
+public record CurrencyTotalDto(
+    Currency currency,
+    long walletCount,
+    Money balance,
+    Money usableBalance,
+    long pendingTransactionCount) {
+
+  public CurrencyTotalDto(
+      Currency currency,
+      Long walletCount,
+      BigDecimal balance,
+      BigDecimal usableBalance,
+      Long pendingTransactionCount) {
+
+    this(
+        currency, walletCount, Money.of(balance), Money.of(usableBalance), pendingTransactionCount);
+  }
+}
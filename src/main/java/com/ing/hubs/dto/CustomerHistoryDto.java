@@ -0,0 +1,3 @@
+package com.ing.hubs.dto;
+
+public record CustomerHistoryDto(String customerId, long transactionCount) {}
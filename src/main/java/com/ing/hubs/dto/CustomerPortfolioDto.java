@@ -0,0 +1,23 @@
+package com.ing.hubs.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+
+/** A customer's wallets summed per currency, and their wallet and pending transaction counts. */
+@Builder
+public record CustomerPortfolioDto(
+    String customerId,
+    long walletCount,
+    long pendingTransactionCount,
+    List<CurrencyTotalDto> currencies) {
+
+  public static CustomerPortfolioDto of(String customerId, List<CurrencyTotalDto> currencies) {
+
+    return new CustomerPortfolioDto(
+        customerId,
+        currencies.stream().mapToLong(CurrencyTotalDto::walletCount).sum(),
+        currencies.stream().mapToLong(CurrencyTotalDto::pendingTransactionCount).sum(),
+        currencies);
+  }
+}
@@ -1,13 +1,12 @@
 package com.ing.hubs.dto;
 
-import java.math.BigDecimal;
-
 import jakarta.validation.constraints.NotNull;
 
+import com.ing.hubs.model.Money;
 import com.ing.hubs.model.OppositePartyType;
 
 public record DepositDto(
-    @NotNull BigDecimal amount,
+    @NotNull Money amount,
     @NotNull String walletId,
     @NotNull OppositePartyType source,
     @NotNull String oppositeParty) {}
@@ -2,9 +2,27 @@ package com.ing.hubs.dto;
 
 import java.util.List;
 
-import com.ing.hubs.entity.Transaction;
-
 import lombok.Builder;
 
+/**
+ * One page of a wallet's transactions. {@code nextCursor} is passed back as {@code after} to get
+ * the next page and is {@code null} on the last one.
+ */
 @Builder
-public record ListTransactionDto(String walletId, List<Transaction> transactions) {}
+public record ListTransactionDto(
+    String walletId, List<TransactionDto> transactions, String nextCursor) {
+
+  /** Builds the page from up to {@code limit + 1} rows; the extra row only signals a next page. */
+  public static ListTransactionDto page(String walletId, List<TransactionDto> rows, int limit) {
+
+    if (rows.size() <= limit) {
+
+      return new ListTransactionDto(walletId, rows, null);
+    }
+
+    List<TransactionDto> transactions = rows.subList(0, limit);
+
+    return new ListTransactionDto(
+        walletId, transactions, TransactionCursor.of(transactions.getLast()).toString());
+  }
+}
@@ -0,0 +1,16 @@
+package com.ing.hubs.dto;
+
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionType;
+
+public record PendingTransactionDto(
+    String transactionId,
+    String walletId,
+    String customerId,
+    Currency currency,
+    TransactionType type,
+    Money amount,
+    OppositePartyType oppositePartyType,
+    String oppositeParty) {}
@@ -0,0 +1,16 @@
+package com.ing.hubs.dto;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import com.ing.hubs.model.TransactionStatus;
+
+public record TransactionBatchDto(
+    @NotEmpty(message = "Transaction IDs cannot be empty")
+        @Size(max = 1000, message = "At most 1000 transactions per batch")
+        List<@NotBlank String> transactionIds,
+    @NotNull TransactionStatus status) {}
@@ -0,0 +1,8 @@
+package com.ing.hubs.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+
+@Builder
+public record TransactionBatchResponseDto(List<TransactionResponseDto> transactions) {}
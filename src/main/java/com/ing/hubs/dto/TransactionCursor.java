@@ -0,0 +1,51 @@
+package com.ing.hubs.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+import com.ing.hubs.exception.CustomBadRequestException;
+
+/**
+ * Position of a transaction in {@code (createdAt, id)} order, written as {@code createdAt_id}.
+ * Transactions created before {@code createdAt} was recorded have an empty time part and sort
+ * before all others.
+ */
+public record TransactionCursor(LocalDateTime createdAt, String id) {
+
+  private static final char SEPARATOR = '_';
+
+  public static TransactionCursor of(TransactionDto transaction) {
+
+    return new TransactionCursor(transaction.createdAt(), transaction.id());
+  }
+
+  /** The cursor {@link #toString()} wrote, or {@code null} for {@code null}. */
+  public static TransactionCursor parse(String cursor) {
+
+    if (cursor == null) {
+      return null;
+    }
+
+    int separator = cursor.indexOf(SEPARATOR);
+
+    if (separator < 0) {
+
+      throw new CustomBadRequestException("Invalid cursor!");
+    }
+
+    try {
+      return new TransactionCursor(
+          separator == 0 ? null : LocalDateTime.parse(cursor.substring(0, separator)),
+          cursor.substring(separator + 1));
+    } catch (DateTimeParseException e) {
+
+      throw new CustomBadRequestException("Invalid cursor!");
+    }
+  }
+
+  @Override
+  public String toString() {
+
+    return (createdAt == null ? "" : createdAt.toString()) + SEPARATOR + id;
+  }
+}
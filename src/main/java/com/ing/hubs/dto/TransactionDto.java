@@ -0,0 +1,21 @@
+package com.ing.hubs.dto;
+
+import java.time.LocalDateTime;
+
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+/** The columns of a {@link com.ing.hubs.entity.Transaction} the API returns. */
+public record TransactionDto(
+    String id,
+    String walletId,
+    Money amount,
+    TransactionType type,
+    OppositePartyType oppositePartyType,
+    String oppositeParty,
+    String linkedTransactionId,
+    TransactionStatus status,
+    LocalDateTime createdAt,
+    LocalDateTime processedAt) {}
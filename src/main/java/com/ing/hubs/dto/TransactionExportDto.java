@@ -0,0 +1,19 @@
+package com.ing.hubs.dto;
+
+import java.time.LocalDateTime;
+
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+public record TransactionExportDto(
+    String transactionId,
+    String walletId,
+    TransactionType type,
+    Money amount,
+    TransactionStatus status,
+    OppositePartyType oppositePartyType,
+    String oppositeParty,
+    String linkedTransactionId,
+    LocalDateTime createdAt) {}
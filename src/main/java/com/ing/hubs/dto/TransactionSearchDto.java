@@ -0,0 +1,24 @@
+package com.ing.hubs.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+/**
+ * Filters of a transaction search, each optional. Amounts are inclusive and the creation time is in
+ * {@code [from, to)}.
+ */
+public record TransactionSearchDto(
+    String walletId,
+    TransactionStatus status,
+    TransactionType type,
+    BigDecimal minAmount,
+    BigDecimal maxAmount,
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+    OppositePartyType oppositePartyType) {}
@@ -0,0 +1,13 @@
+package com.ing.hubs.dto;
+
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+public record TransactionSummaryDto(
+    String transactionId,
+    String walletId,
+    TransactionType type,
+    Money amount,
+    TransactionStatus status,
+    String linkedTransactionId) {}
@@ -0,0 +1,8 @@
+package com.ing.hubs.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import com.ing.hubs.model.Money;
+
+public record TransferDto(
+    @NotNull Money amount, @NotNull String sourceWalletId, @NotNull String targetWalletId) {}
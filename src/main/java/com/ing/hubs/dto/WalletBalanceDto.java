@@ -0,0 +1,13 @@
+package com.ing.hubs.dto;
+
+import java.math.BigDecimal;
+
+import com.ing.hubs.model.Money;
+
+public record WalletBalanceDto(String walletId, Money balance, Money usableBalance) {
+
+  public WalletBalanceDto(String walletId, BigDecimal balance, BigDecimal usableBalance) {
+
+    this(walletId, Money.of(balance), Money.of(usableBalance));
+  }
+}
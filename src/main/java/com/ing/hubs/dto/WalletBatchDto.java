@@ -0,0 +1,18 @@
+package com.ing.hubs.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+
+public record WalletBatchDto(
+    @Size(max = 1000, message = "At most 1000 deposits per batch") List<@Valid DepositDto> deposits,
+    @Size(max = 1000, message = "At most 1000 withdraws per batch")
+        List<@Valid WithdrawDto> withdraws) {
+
+  public WalletBatchDto {
+
+    deposits = deposits == null ? List.of() : deposits;
+    withdraws = withdraws == null ? List.of() : withdraws;
+  }
+}
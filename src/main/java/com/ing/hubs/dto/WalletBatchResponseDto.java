@@ -0,0 +1,9 @@
+package com.ing.hubs.dto;
+
+import java.util.List;
+
+import lombok.Builder;
+
+@Builder
+public record WalletBatchResponseDto(
+    List<TransactionResponseDto> deposits, List<TransactionResponseDto> withdraws) {}
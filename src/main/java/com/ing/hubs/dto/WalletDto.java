@@ -0,0 +1,39 @@
+package com.ing.hubs.dto;
+
+import java.math.BigDecimal;
+
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+
+/** The columns of a {@link com.ing.hubs.entity.Wallet} the API returns. */
+public record WalletDto(
+    String id,
+    Long version,
+    String walletName,
+    Currency currency,
+    boolean activeForShopping,
+    boolean activeForWithdraw,
+    Money balance,
+    Money usableBalance) {
+
+  public WalletDto(
+      String id,
+      Long version,
+      String walletName,
+      Currency currency,
+      boolean activeForShopping,
+      boolean activeForWithdraw,
+      BigDecimal balance,
+      BigDecimal usableBalance) {
+
+    this(
+        id,
+        version,
+        walletName,
+        currency,
+        activeForShopping,
+        activeForWithdraw,
+        Money.of(balance),
+        Money.of(usableBalance));
+  }
+}
@@ -0,0 +1,5 @@
+package com.ing.hubs.dto;
+
+import com.ing.hubs.model.Currency;
+
+public record WalletOwnerDto(String walletId, String customerId, Currency currency) {}
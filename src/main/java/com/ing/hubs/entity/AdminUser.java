@@ -3,12 +3,21 @@ package com.ing.hubs.entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Entity
 @Data
@@ -16,7 +25,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Table(name = "admin_user")
-public class AdminUser {
+public class AdminUser implements Persistable<String> {
 
   @Id private String id;
 
@@ -25,4 +34,21 @@ public class AdminUser {
 
   @Column(nullable = false)
   private String password;
+
+  @Transient @JsonIgnore @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
 }
@@ -4,6 +4,8 @@ import java.util.List;
 
 import jakarta.persistence.*;
 
+import org.springframework.data.domain.Persistable;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import lombok.*;
@@ -13,9 +15,8 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@ToString(exclude = "wallets")
 @Table(name = "customer")
-public class Customer {
+public class Customer implements Persistable<String> {
 
   @Id private String id;
 
@@ -33,5 +34,24 @@ public class Customer {
 
   @OneToMany(mappedBy = "customer", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   @JsonIgnore
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
   private List<Wallet> wallets;
+
+  @Transient @JsonIgnore @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
 }
@@ -0,0 +1,79 @@
+package com.ing.hubs.entity;
+
+import jakarta.persistence.*;
+
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
+
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+
+import lombok.*;
+
+/**
+ * One slot of the running totals of a customer's wallets in one currency, kept in step with the
+ * wallets by {@link com.ing.hubs.service.CustomerPortfolios} so the portfolio summary never reads
+ * the wallets. The totals are the sums over the slots.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+    name = "customer_portfolio",
+    indexes = @Index(name = "idx_customer_portfolio_customer_id", columnList = "customer_id"))
+public class CustomerPortfolio implements Persistable<String> {
+
+  /** {@link #idOf}, so the row to update is known without a lookup. */
+  @Id private String id;
+
+  @Column(name = "customer_id", nullable = false, updatable = false)
+  private String customerId;
+
+  @Column(nullable = false, updatable = false)
+  private Currency currency;
+
+  @Column(nullable = false, updatable = false)
+  @ColumnDefault("0")
+  private int slot;
+
+  @Column(nullable = false)
+  private long walletCount;
+
+  @Column(nullable = false)
+  private Money balance;
+
+  @Column(nullable = false)
+  private Money usableBalance;
+
+  @Column(nullable = false)
+  private long pendingTransactionCount;
+
+  /** Bumped by every change to the row, so the customer's wallets can be told apart cheaply. */
+  @Column(nullable = false)
+  @ColumnDefault("0")
+  @EqualsAndHashCode.Exclude
+  private long version;
+
+  @Transient @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  public static String idOf(String customerId, Currency currency, int slot) {
+
+    return customerId + ":" + currency.name() + ":" + slot;
+  }
+
+  @Override
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
+}
@@ -0,0 +1,73 @@
+package com.ing.hubs.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import org.springframework.data.domain.Persistable;
+
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.model.TransactionStatus;
+
+import lombok.*;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+    name = "idempotency_record",
+    indexes = @Index(name = "idx_idempotency_record_created_at", columnList = "created_at"))
+public class IdempotencyRecord implements Persistable<String> {
+
+  @Id private String id;
+
+  @Column(nullable = false, updatable = false, length = 64)
+  private String requestDigest;
+
+  @Column(nullable = false)
+  private boolean completed;
+
+  private String transactionId;
+
+  private TransactionStatus status;
+
+  private String message;
+
+  @Column(name = "created_at", nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+
+  @Transient @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  public void complete(TransactionResponseDto response) {
+
+    this.completed = true;
+    this.transactionId = response.transactionId();
+    this.status = response.status();
+    this.message = response.message();
+  }
+
+  public TransactionResponseDto toResponse() {
+
+    return TransactionResponseDto.builder()
+        .transactionId(transactionId)
+        .status(status)
+        .message(message)
+        .build();
+  }
+
+  @Override
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
+}
@@ -0,0 +1,28 @@
+package com.ing.hubs.entity;
+
+import java.math.BigDecimal;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import com.ing.hubs.model.Money;
+
+/**
+ * Stores {@link Money} in the existing {@code DECIMAL} columns, so the schema and the data already
+ * written in major units stay valid.
+ */
+@Converter(autoApply = true)
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+  @Override
+  public BigDecimal convertToDatabaseColumn(Money money) {
+
+    return money == null ? null : money.toBigDecimal();
+  }
+
+  @Override
+  public Money convertToEntityAttribute(BigDecimal amount) {
+
+    return amount == null ? null : Money.of(amount);
+  }
+}
@@ -0,0 +1,25 @@
+package com.ing.hubs.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+/**
+ * The last time the primary database was stamped by the {@code read-replicas} profile. Replicas
+ * receive the row like any other, so how far their copy trails the primary's is how far they lag.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat {
+
+  @Id private String id;
+
+  @Column(nullable = false)
+  private LocalDateTime beatAt;
+}
@@ -1,31 +1,46 @@
 package com.ing.hubs.entity;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import jakarta.persistence.*;
 
+import org.springframework.data.domain.Persistable;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.ing.hubs.model.Money;
 import com.ing.hubs.model.OppositePartyType;
 import com.ing.hubs.model.TransactionStatus;
 import com.ing.hubs.model.TransactionType;
 
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
 
 @Entity
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "transaction")
-public class Transaction {
+@Table(
+    name = "transaction",
+    indexes = {
+      @Index(name = "idx_transaction_status_id", columnList = "status, id"),
+      @Index(name = "idx_transaction_wallet_id_id", columnList = "wallet_id, id"),
+      @Index(
+          name = "idx_transaction_wallet_id_created_at",
+          columnList = "wallet_id, created_at, id"),
+      @Index(
+          name = "idx_transaction_status_type_created_at",
+          columnList = "status, type, created_at, id")
+    })
+@NamedEntityGraph(name = Transaction.WITH_WALLET, attributeNodes = @NamedAttributeNode("wallet"))
+public class Transaction implements Persistable<String> {
+
+  /** Fetch plan for approvals, which adjust the wallet's balances but never read its customer. */
+  public static final String WITH_WALLET = "Transaction.withWallet";
 
   @Id private String id;
 
   @Column(nullable = false)
-  private BigDecimal amount;
+  private Money amount;
 
   @Column(nullable = false)
   private TransactionType type;
@@ -35,11 +50,56 @@ public class Transaction {
 
   private String oppositeParty;
 
+  /** The other leg of a wallet-to-wallet transfer, {@code null} for deposits and withdraws. */
+  private String linkedTransactionId;
+
   @Column(nullable = false)
   private TransactionStatus status;
 
-  @ManyToOne
+  /** Set when the row is inserted; {@code null} for transactions created before it was added. */
+  @Column(name = "created_at", updatable = false)
+  private LocalDateTime createdAt;
+
+  /**
+   * When the transaction left PENDING, or {@link #createdAt} if it was approved right away; {@code
+   * null} while it is pending and for transactions processed before it was added.
+   */
+  @Column(name = "processed_at")
+  private LocalDateTime processedAt;
+
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "wallet_id", nullable = false)
   @JsonIgnore
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
   private Wallet wallet;
+
+  @Transient @JsonIgnore @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  @JsonIgnore
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PrePersist
+  void stampTimes() {
+
+    if (createdAt == null) {
+      createdAt = LocalDateTime.now();
+    }
+
+    if (processedAt == null && status != TransactionStatus.PENDING) {
+      processedAt = createdAt;
+    }
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
 }
@@ -1,14 +1,16 @@
 package com.ing.hubs.entity;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 
 import jakarta.persistence.*;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.ing.hubs.exception.CustomConflictException;
 import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
 
 import lombok.*;
 
@@ -17,16 +19,21 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@ToString(exclude = "transactions")
 @Table(name = "wallet")
+@NamedEntityGraph(name = Wallet.WITH_CUSTOMER, attributeNodes = @NamedAttributeNode("customer"))
 public class Wallet {
 
+  /** Fetch plan for ownership checks, which compare the customer's tckn. */
+  public static final String WITH_CUSTOMER = "Wallet.withCustomer";
+
   @Id private String id;
   @Version private Long version = 0L;
 
-  @ManyToOne
+  @ManyToOne(fetch = FetchType.LAZY)
   @JoinColumn(name = "customer_id", nullable = false)
   @JsonIgnore
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
   private Customer customer;
 
   @Column(nullable = false)
@@ -42,46 +49,70 @@ public class Wallet {
   private boolean activeForWithdraw;
 
   @Column(nullable = false)
-  private BigDecimal balance;
+  private Money balance;
+
+  @Column(nullable = false)
+  private Money usableBalance;
 
+  /** Number of sub-balances deposits are spread over; 1 keeps the balances on this row. */
   @Column(nullable = false)
-  private BigDecimal usableBalance;
+  @ColumnDefault("1")
+  @Builder.Default
+  @JsonIgnore
+  private int subBalances = 1;
 
   @OneToMany(mappedBy = "wallet", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
   @JsonIgnore
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
   private List<Transaction> transactions = new ArrayList<>();
 
-  public void increaseBalance(BigDecimal amount) {
+  public void adjustBalances(Money balanceDelta, Money usableBalanceDelta) {
+
+    if (usableBalanceDelta.signum() < 0) {
+      decreaseUsableBalance(usableBalanceDelta.negate());
+    } else if (usableBalanceDelta.signum() > 0) {
+      increaseUsableBalance(usableBalanceDelta);
+    }
+
+    if (balanceDelta.signum() < 0) {
+      decreaseBalance(balanceDelta.negate());
+    } else if (balanceDelta.signum() > 0) {
+      increaseBalance(balanceDelta);
+    }
+  }
+
+  public void increaseBalance(Money amount) {
 
-    this.balance = this.balance.add(amount);
+    this.balance = this.balance.plus(amount);
     this.version++;
   }
 
-  public void decreaseBalance(BigDecimal amount) {
+  public void decreaseBalance(Money amount) {
 
-    if (this.balance.compareTo(amount) < 0) {
+    if (this.balance.isLessThan(amount)) {
 
       throw new CustomConflictException("Balance is not sufficient!");
     }
 
-    this.balance = this.balance.subtract(amount);
+    this.balance = this.balance.minus(amount);
     this.version++;
   }
 
-  public void increaseUsableBalance(BigDecimal amount) {
+  public void increaseUsableBalance(Money amount) {
 
-    this.usableBalance = this.usableBalance.add(amount);
+    this.usableBalance = this.usableBalance.plus(amount);
     this.version++;
   }
 
-  public void decreaseUsableBalance(BigDecimal amount) {
+  public void decreaseUsableBalance(Money amount) {
 
-    if (this.usableBalance.compareTo(amount) < 0) {
+    if (this.usableBalance.isLessThan(amount)) {
 
       throw new CustomConflictException("Usable balance is not sufficient!");
     }
 
-    this.usableBalance = this.usableBalance.subtract(amount);
+    this.usableBalance = this.usableBalance.minus(amount);
     this.version++;
   }
 }
@@ -0,0 +1,26 @@
+package com.ing.hubs.entity;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+
+/**
+ * How far the deposit journal has been applied to the database. Written in the same transaction as
+ * the rows it covers, so each journal entry is applied exactly once.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "wallet_journal_checkpoint")
+public class WalletJournalCheckpoint {
+
+  @Id private String id;
+
+  @Column(nullable = false)
+  private long generation;
+
+  @Column(nullable = false)
+  private long appliedOffset;
+}
@@ -0,0 +1,66 @@
+package com.ing.hubs.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import org.springframework.data.domain.Persistable;
+
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+
+import lombok.*;
+
+/**
+ * A journaled deposit that could not be applied, kept for someone to look into. Written in the same
+ * transaction as the checkpoint that moves past it, so the journal keeps flowing.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "wallet_journal_dead_letter")
+public class WalletJournalDeadLetter implements Persistable<String> {
+
+  /** The id the deposit's transaction would have had. */
+  @Id private String id;
+
+  @Column(nullable = false, updatable = false)
+  private String walletId;
+
+  @Column(nullable = false, updatable = false)
+  private Money amount;
+
+  @Column(nullable = false, updatable = false)
+  private TransactionStatus status;
+
+  @Column(nullable = false, updatable = false)
+  private OppositePartyType oppositePartyType;
+
+  @Column(nullable = false, updatable = false)
+  private String oppositeParty;
+
+  @Column(nullable = false, updatable = false, length = 1000)
+  private String error;
+
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime failedAt;
+
+  @Transient @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
+}
@@ -0,0 +1,61 @@
+package com.ing.hubs.entity;
+
+import jakarta.persistence.*;
+
+import org.springframework.data.domain.Persistable;
+
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+import lombok.*;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+    name = "wallet_posting",
+    indexes = @Index(name = "idx_wallet_posting_wallet_folded", columnList = "wallet_id, folded"))
+public class WalletPosting implements Persistable<String> {
+
+  @Id private String id;
+
+  @Column(name = "wallet_id", nullable = false, updatable = false)
+  private String walletId;
+
+  @Column(nullable = false, updatable = false)
+  private String transactionId;
+
+  @Column(nullable = false, updatable = false)
+  private TransactionType type;
+
+  @Column(nullable = false, updatable = false)
+  private TransactionStatus status;
+
+  @Column(nullable = false, updatable = false)
+  private Money balanceDelta;
+
+  @Column(nullable = false, updatable = false)
+  private Money usableBalanceDelta;
+
+  @Column(nullable = false)
+  private boolean folded;
+
+  @Transient @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
+}
@@ -0,0 +1,64 @@
+package com.ing.hubs.entity;
+
+import jakarta.persistence.*;
+
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
+
+import com.ing.hubs.model.Money;
+
+import lombok.*;
+
+/**
+ * One slot of a wallet split into {@link Wallet#getSubBalances()} sub-balances. The wallet's
+ * balances are the sums over its slots; the {@code wallet} row only keeps a lazily refreshed copy.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(
+    name = "wallet_sub_balance",
+    uniqueConstraints =
+        @UniqueConstraint(
+            name = "uk_wallet_sub_balance_wallet_slot",
+            columnNames = {"wallet_id", "slot"}))
+public class WalletSubBalance implements Persistable<String> {
+
+  @Id private String id;
+
+  @Column(name = "wallet_id", nullable = false, updatable = false)
+  private String walletId;
+
+  @Column(nullable = false, updatable = false)
+  private int slot;
+
+  @Column(nullable = false)
+  private Money balance;
+
+  @Column(nullable = false)
+  private Money usableBalance;
+
+  /** Bumped by every change to the slot, so the wallet's ETag moves without touching its row. */
+  @Column(nullable = false)
+  @ColumnDefault("0")
+  @EqualsAndHashCode.Exclude
+  private long version;
+
+  @Transient @Builder.Default @EqualsAndHashCode.Exclude @ToString.Exclude
+  private boolean newEntity = true;
+
+  @Override
+  public boolean isNew() {
+
+    return newEntity;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+
+    this.newEntity = false;
+  }
+}
@@ -0,0 +1,11 @@
+package com.ing.hubs.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class CustomPreconditionFailedException extends ResponseStatusException {
+
+  public CustomPreconditionFailedException(String reason) {
+    super(HttpStatus.PRECONDITION_FAILED, reason);
+  }
+}
@@ -104,6 +104,22 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
   }
 
+  @ExceptionHandler(CustomPreconditionFailedException.class)
+  public ResponseEntity<ErrorResponse> handleCustomPreconditionFailedException(
+      CustomPreconditionFailedException ex) {
+
+    ErrorResponse error =
+        ErrorResponse.builder()
+            .message(ex.getReason())
+            .errorCode("PRECONDITION_FAILED")
+            .timestamp(LocalDateTime.now())
+            .build();
+
+    log.warn("Precondition failed: {}", ex.getMessage(), ex);
+
+    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(error);
+  }
+
   @ExceptionHandler(CustomBadRequestException.class)
   public ResponseEntity<ErrorResponse> handleCustomBadRequestException(
       CustomBadRequestException ex) {
@@ -0,0 +1,70 @@
+package com.ing.hubs.exception;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebInputException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * WebFlux reports invalid bodies with its own exception types; this maps them to the same responses
+ * {@link GlobalExceptionHandler} gives on the servlet stack.
+ */
+@Slf4j
+@RestControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+
+  @ExceptionHandler(WebExchangeBindException.class)
+  public ResponseEntity<ErrorResponse> handleWebExchangeBindException(WebExchangeBindException ex) {
+
+    Map<String, String> errors =
+        ex.getBindingResult().getFieldErrors().stream()
+            .collect(
+                Collectors.toMap(
+                    FieldError::getField,
+                    fieldError ->
+                        fieldError.getDefaultMessage() != null
+                            ? fieldError.getDefaultMessage()
+                            : "Invalid value"));
+
+    ErrorResponse error =
+        ErrorResponse.builder()
+            .message("Validation failed")
+            .errorCode("VALIDATION_ERROR")
+            .details(errors)
+            .timestamp(LocalDateTime.now())
+            .build();
+
+    log.warn("Validation failed - errors: {}", errors, ex);
+
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+  }
+
+  @ExceptionHandler(ServerWebInputException.class)
+  public ResponseEntity<ErrorResponse> handleServerWebInputException(ServerWebInputException ex) {
+
+    ErrorResponse error =
+        ErrorResponse.builder()
+            .message("Invalid JSON format")
+            .errorCode("INVALID_JSON")
+            .timestamp(LocalDateTime.now())
+            .build();
+
+    log.warn("JSON parse error: {}", ex.getMessage(), ex);
+
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+  }
+}
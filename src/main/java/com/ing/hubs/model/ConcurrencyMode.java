@@ -0,0 +1,7 @@
+package com.ing.hubs.model;
+
+public enum ConcurrencyMode {
+  OPTIMISTIC,
+  STRIPED_LOCK,
+  SHARDED
+}
@@ -0,0 +1,6 @@
+package com.ing.hubs.model;
+
+public enum ExportFormat {
+  NDJSON,
+  CSV
+}
@@ -0,0 +1,110 @@
+package com.ing.hubs.model;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.ing.hubs.exception.CustomBadRequestException;
+
+/**
+ * Amount of money held as a {@code long} count of minor units (1/100 for every {@link Currency}),
+ * so that balance arithmetic does not allocate. Arithmetic fails instead of overflowing and {@link
+ * BigDecimal} is only used to read and write JSON and database values.
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+  public static final int SCALE = 2;
+  public static final Money ZERO = new Money(0);
+
+  private static final long MINOR_UNITS_PER_MAJOR = 100;
+
+  @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+  public static Money of(BigDecimal amount) {
+
+    try {
+      return new Money(amount.movePointRight(SCALE).longValueExact());
+    } catch (ArithmeticException e) {
+
+      throw new CustomBadRequestException(
+          "Amount must have at most " + SCALE + " decimal places and be within range!");
+    }
+  }
+
+  public static Money ofMajor(long amount) {
+
+    try {
+      return new Money(Math.multiplyExact(amount, MINOR_UNITS_PER_MAJOR));
+    } catch (ArithmeticException e) {
+
+      throw outOfRange();
+    }
+  }
+
+  public Money plus(Money other) {
+
+    try {
+      return new Money(Math.addExact(minorUnits, other.minorUnits));
+    } catch (ArithmeticException e) {
+
+      throw outOfRange();
+    }
+  }
+
+  public Money minus(Money other) {
+
+    try {
+      return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    } catch (ArithmeticException e) {
+
+      throw outOfRange();
+    }
+  }
+
+  public Money negate() {
+
+    try {
+      return new Money(Math.negateExact(minorUnits));
+    } catch (ArithmeticException e) {
+
+      throw outOfRange();
+    }
+  }
+
+  public int signum() {
+
+    return Long.signum(minorUnits);
+  }
+
+  public boolean isGreaterThan(Money other) {
+
+    return minorUnits > other.minorUnits;
+  }
+
+  public boolean isLessThan(Money other) {
+
+    return minorUnits < other.minorUnits;
+  }
+
+  @JsonValue
+  public BigDecimal toBigDecimal() {
+
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  @Override
+  public int compareTo(Money other) {
+
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  @Override
+  public String toString() {
+
+    return toBigDecimal().toPlainString();
+  }
+
+  private static CustomBadRequestException outOfRange() {
+
+    return new CustomBadRequestException("Amount is out of range!");
+  }
+}
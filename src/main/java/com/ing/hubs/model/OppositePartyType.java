@@ -2,5 +2,6 @@ package com.ing.hubs.model;
 
 public enum OppositePartyType {
   IBAN,
-  PAYMENT
+  PAYMENT,
+  WALLET
 }
@@ -0,0 +1,56 @@
+package com.ing.hubs.repository;
+
+import java.util.List;
+
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.dto.CurrencyTotalDto;
+import com.ing.hubs.entity.CustomerPortfolio;
+import com.ing.hubs.model.Money;
+
+@Repository
+public interface CustomerPortfolioRepository extends JpaRepository<CustomerPortfolio, String> {
+
+  /**
+   * The customer's totals per currency, summed over the slots. A non-null {@code ownerTckn} returns
+   * nothing unless the customer has that tckn.
+   */
+  @Query(
+      """
+      SELECT new com.ing.hubs.dto.CurrencyTotalDto(
+          p.currency, SUM(p.walletCount), SUM(p.balance), SUM(p.usableBalance),
+          SUM(p.pendingTransactionCount))
+      FROM CustomerPortfolio p
+      WHERE p.customerId = :customerId
+        AND (:ownerTckn IS NULL
+          OR EXISTS (SELECT c FROM Customer c WHERE c.id = p.customerId AND c.tckn = :ownerTckn))
+      GROUP BY p.currency
+      ORDER BY p.currency
+      """)
+  List<CurrencyTotalDto> findTotalsByCustomerId(String customerId, String ownerTckn);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT p FROM CustomerPortfolio p WHERE p.customerId = :customerId ORDER BY p.id")
+  List<CustomerPortfolio> lockAllByCustomerId(String customerId);
+
+  @Modifying
+  @Query(
+      "UPDATE CustomerPortfolio p SET p.walletCount = p.walletCount + :walletCountDelta,"
+          + " p.balance = p.balance + :balanceDelta,"
+          + " p.usableBalance = p.usableBalance + :usableBalanceDelta,"
+          + " p.pendingTransactionCount = p.pendingTransactionCount + :pendingDelta"
+          + ", p.version = p.version + 1"
+          + " WHERE p.id = :id")
+  int adjust(
+      String id,
+      long walletCountDelta,
+      Money balanceDelta,
+      Money usableBalanceDelta,
+      long pendingDelta);
+}
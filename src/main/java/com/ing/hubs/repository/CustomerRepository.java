@@ -1,8 +1,13 @@
 package com.ing.hubs.repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 
 import com.ing.hubs.entity.Customer;
@@ -13,4 +18,31 @@ public interface CustomerRepository extends JpaRepository<Customer, String> {
 
   @Query("SELECT c.id FROM Customer c WHERE c.tckn = :tckn")
   Optional<String> findCustomerIdByTckn(String tckn);
+
+  @Query("SELECT c.tckn FROM Customer c WHERE c.id = :id")
+  Optional<String> findTcknById(String id);
+
+  /**
+   * The version of the customer's wallet listing: the summed versions of their wallets and of their
+   * portfolio rows, which every write bumps. A non-null {@code ownerTckn} returns nothing unless
+   * the customer has that tckn.
+   */
+  @Query(
+      """
+      SELECT CONCAT(
+          CAST(COALESCE((SELECT SUM(w.version) FROM Wallet w WHERE w.customer.id = c.id), 0)
+            AS String),
+          '.',
+          CAST(COALESCE((SELECT SUM(p.version) FROM CustomerPortfolio p WHERE p.customerId = c.id), 0)
+            AS String))
+      FROM Customer c
+      WHERE c.id = :id AND (:ownerTckn IS NULL OR c.tckn = :ownerTckn)
+      """)
+  Optional<String> findWalletsVersionById(String id, String ownerTckn);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<Customer> findForUpdateById(String id);
+
+  @Query("SELECT c.id FROM Customer c WHERE c.id > :afterId ORDER BY c.id")
+  List<String> findIdsAfter(String afterId, Limit limit);
 }
@@ -0,0 +1,43 @@
+package com.ing.hubs.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ing.hubs.entity.IdempotencyRecord;
+import com.ing.hubs.model.TransactionStatus;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+  @Modifying
+  @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :cutoff")
+  int deleteCreatedBefore(LocalDateTime cutoff);
+
+  /** Stores the response of a claimed key; joins the operation's transaction when there is one. */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE IdempotencyRecord r SET r.completed = true, r.transactionId = :transactionId,"
+          + " r.status = :status, r.message = :message WHERE r.id = :id")
+  int complete(String id, String transactionId, TransactionStatus status, String message);
+
+  /**
+   * Claims a key again whose previous claim never completed and is older than {@code staleBefore}.
+   */
+  @Transactional
+  @Modifying
+  @Query(
+      "UPDATE IdempotencyRecord r SET r.requestDigest = :requestDigest, r.createdAt = :claimedAt"
+          + " WHERE r.id = :id AND r.completed = false AND r.createdAt < :staleBefore")
+  int takeOver(String id, String requestDigest, LocalDateTime claimedAt, LocalDateTime staleBefore);
+
+  @Transactional
+  @Modifying
+  @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.completed = false")
+  int deleteIncomplete(String id);
+}
@@ -0,0 +1,293 @@
+package com.ing.hubs.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.dto.TransactionCursor;
+import com.ing.hubs.dto.TransactionDto;
+import com.ing.hubs.dto.TransactionExportDto;
+import com.ing.hubs.dto.WalletDto;
+import com.ing.hubs.entity.AdminUser;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+import lombok.RequiredArgsConstructor;
+
+import io.r2dbc.spi.Readable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC reads used by the {@code reactive} profile. They run against the tables the JPA entities
+ * map to and return the same DTOs as the JPA repositories, so responses serialize exactly like the
+ * servlet API. Wallet balances include unfolded ledger postings, as {@link
+ * WalletPostingRepository#findCurrentBalances} does.
+ */
+@Repository
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveWalletRepository {
+
+  private final DatabaseClient databaseClient;
+
+  public Mono<String> findCustomerTcknById(String customerId) {
+
+    return databaseClient
+        .sql("SELECT tckn FROM customer WHERE id = :id")
+        .bind("id", customerId)
+        .map(row -> row.get("tckn", String.class))
+        .one();
+  }
+
+  public Mono<String> findCustomerTcknByWalletId(String walletId) {
+
+    return databaseClient
+        .sql("SELECT c.tckn FROM wallet w JOIN customer c ON c.id = w.customer_id WHERE w.id = :id")
+        .bind("id", walletId)
+        .map(row -> row.get("tckn", String.class))
+        .one();
+  }
+
+  /** As {@link CustomerRepository#findWalletsVersionById}, for a customer known to exist. */
+  public Mono<String> findWalletsVersionById(String customerId) {
+
+    return databaseClient
+        .sql(
+            """
+            SELECT CONCAT(
+                CAST(COALESCE((SELECT SUM(version) FROM wallet WHERE customer_id = :id), 0)
+                  AS VARCHAR),
+                '.',
+                CAST(COALESCE((SELECT SUM(version) FROM customer_portfolio WHERE customer_id = :id),
+                              0) AS VARCHAR)) AS version
+            """)
+        .bind("id", customerId)
+        .map(row -> row.get("version", String.class))
+        .one();
+  }
+
+  /** As {@link WalletRepository#findTransactionsVersionById}, without the ownership filter. */
+  public Mono<String> findTransactionsVersionById(String walletId) {
+
+    return databaseClient
+        .sql(
+            """
+            SELECT CONCAT(
+                CAST(w.version AS VARCHAR),
+                '.',
+                CAST(COALESCE((SELECT SUM(s.version) FROM wallet_sub_balance s
+                               WHERE s.wallet_id = w.id), 0)
+                    + (SELECT COUNT(*) FROM wallet_posting p
+                       WHERE p.wallet_id = w.id AND p.folded = FALSE)
+                  AS VARCHAR)) AS version
+            FROM wallet w
+            WHERE w.id = :id
+            """)
+        .bind("id", walletId)
+        .map(row -> row.get("version", String.class))
+        .one();
+  }
+
+  public Flux<WalletDto> findAllByCustomerId(String customerId) {
+
+    return databaseClient
+        .sql(
+            """
+            SELECT w.id, w.version, w.wallet_name, w.currency, w.active_for_shopping,
+                   w.active_for_withdraw,
+                   CASE WHEN w.sub_balances > 1
+                     THEN (SELECT SUM(s.balance) FROM wallet_sub_balance s
+                           WHERE s.wallet_id = w.id)
+                     ELSE w.balance END
+                     + COALESCE(SUM(p.balance_delta), 0) AS balance,
+                   CASE WHEN w.sub_balances > 1
+                     THEN (SELECT SUM(s.usable_balance) FROM wallet_sub_balance s
+                           WHERE s.wallet_id = w.id)
+                     ELSE w.usable_balance END
+                     + COALESCE(SUM(p.usable_balance_delta), 0) AS usable_balance
+            FROM wallet w LEFT JOIN wallet_posting p ON p.wallet_id = w.id AND p.folded = FALSE
+            WHERE w.customer_id = :customerId
+            GROUP BY w.id, w.version, w.wallet_name, w.currency, w.active_for_shopping,
+                     w.active_for_withdraw, w.balance, w.usable_balance, w.sub_balances
+            """)
+        .bind("customerId", customerId)
+        .map(
+            row ->
+                new WalletDto(
+                    row.get("id", String.class),
+                    row.get("version", Long.class),
+                    row.get("wallet_name", String.class),
+                    Currency.values()[ordinal(row, "currency")],
+                    Boolean.TRUE.equals(row.get("active_for_shopping", Boolean.class)),
+                    Boolean.TRUE.equals(row.get("active_for_withdraw", Boolean.class)),
+                    money(row, "balance"),
+                    money(row, "usable_balance")))
+        .all();
+  }
+
+  /**
+   * A page of the wallet's transactions in {@code (created_at, id)} order, starting past {@code
+   * after} if given; rows without {@code created_at} are the oldest.
+   */
+  public Flux<TransactionDto> findPageByWalletId(
+      String walletId, TransactionCursor after, Sort.Direction direction, int limit) {
+
+    String keyset;
+
+    if (after == null) {
+      keyset = "";
+    } else if (direction.isAscending()) {
+      keyset =
+          after.createdAt() == null
+              ? "AND (created_at IS NOT NULL OR id > :afterId)"
+              : "AND (created_at > :afterCreatedAt"
+                  + " OR created_at = :afterCreatedAt AND id > :afterId)";
+    } else {
+      keyset =
+          after.createdAt() == null
+              ? "AND created_at IS NULL AND id < :afterId"
+              : "AND (created_at < :afterCreatedAt"
+                  + " OR created_at = :afterCreatedAt AND id < :afterId OR created_at IS NULL)";
+    }
+
+    DatabaseClient.GenericExecuteSpec spec =
+        databaseClient
+            .sql(
+                """
+                SELECT id, wallet_id, amount, type, opposite_party_type, opposite_party,
+                       linked_transaction_id, status, created_at, processed_at
+                FROM transaction
+                WHERE wallet_id = :walletId %s
+                ORDER BY created_at %s NULLS %s, id %s
+                LIMIT :limit
+                """
+                    .formatted(
+                        keyset,
+                        direction.name(),
+                        direction.isAscending() ? "FIRST" : "LAST",
+                        direction.name()))
+            .bind("walletId", walletId)
+            .bind("limit", limit);
+
+    if (after != null) {
+      spec = spec.bind("afterId", after.id());
+    }
+
+    if (after != null && after.createdAt() != null) {
+      spec = spec.bind("afterCreatedAt", after.createdAt());
+    }
+
+    return spec.map(
+            row ->
+                new TransactionDto(
+                    row.get("id", String.class),
+                    row.get("wallet_id", String.class),
+                    money(row, "amount"),
+                    TransactionType.values()[ordinal(row, "type")],
+                    OppositePartyType.values()[ordinal(row, "opposite_party_type")],
+                    row.get("opposite_party", String.class),
+                    row.get("linked_transaction_id", String.class),
+                    TransactionStatus.values()[ordinal(row, "status")],
+                    row.get("created_at", LocalDateTime.class),
+                    row.get("processed_at", LocalDateTime.class)))
+        .all();
+  }
+
+  /** The wallet's transactions in id order for an export, streamed as the subscriber requests. */
+  public Flux<TransactionExportDto> findForExport(
+      String walletId, TransactionStatus status, LocalDateTime from, LocalDateTime to) {
+
+    DatabaseClient.GenericExecuteSpec spec =
+        databaseClient
+            .sql(
+                """
+                SELECT id, wallet_id, type, amount, status, opposite_party_type, opposite_party,
+                       linked_transaction_id, created_at
+                FROM transaction
+                WHERE wallet_id = :walletId %s %s %s
+                ORDER BY id
+                """
+                    .formatted(
+                        status == null ? "" : "AND status = :status",
+                        from == null ? "" : "AND created_at >= :from",
+                        to == null ? "" : "AND created_at < :to"))
+            .bind("walletId", walletId);
+
+    if (status != null) {
+      spec = spec.bind("status", status.ordinal());
+    }
+
+    if (from != null) {
+      spec = spec.bind("from", from);
+    }
+
+    if (to != null) {
+      spec = spec.bind("to", to);
+    }
+
+    return spec.map(
+            row ->
+                new TransactionExportDto(
+                    row.get("id", String.class),
+                    row.get("wallet_id", String.class),
+                    TransactionType.values()[ordinal(row, "type")],
+                    money(row, "amount"),
+                    TransactionStatus.values()[ordinal(row, "status")],
+                    OppositePartyType.values()[ordinal(row, "opposite_party_type")],
+                    row.get("opposite_party", String.class),
+                    row.get("linked_transaction_id", String.class),
+                    row.get("created_at", LocalDateTime.class)))
+        .all();
+  }
+
+  public Mono<AdminUser> findAdminUserByUsername(String username) {
+
+    return databaseClient
+        .sql("SELECT id, username, password FROM admin_user WHERE username = :username")
+        .bind("username", username)
+        .map(
+            row ->
+                AdminUser.builder()
+                    .id(row.get("id", String.class))
+                    .username(row.get("username", String.class))
+                    .password(row.get("password", String.class))
+                    .build())
+        .one();
+  }
+
+  public Mono<Customer> findCustomerByTckn(String tckn) {
+
+    return databaseClient
+        .sql("SELECT id, tckn, password FROM customer WHERE tckn = :tckn")
+        .bind("tckn", tckn)
+        .map(
+            row ->
+                Customer.builder()
+                    .id(row.get("id", String.class))
+                    .tckn(row.get("tckn", String.class))
+                    .password(row.get("password", String.class))
+                    .build())
+        .one();
+  }
+
+  // enums are stored by ordinal, in whatever integer type the schema picked
+  private static int ordinal(Readable row, String column) {
+
+    return row.get(column, Number.class).intValue();
+  }
+
+  private static Money money(Readable row, String column) {
+
+    return Money.of(row.get(column, BigDecimal.class));
+  }
+}
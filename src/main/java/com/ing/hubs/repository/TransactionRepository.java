@@ -1,14 +1,132 @@
 package com.ing.hubs.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.ing.hubs.dto.CurrencyCountDto;
+import com.ing.hubs.dto.CustomerHistoryDto;
+import com.ing.hubs.dto.PendingTransactionDto;
+import com.ing.hubs.dto.TransactionDto;
+import com.ing.hubs.dto.TransactionSummaryDto;
 import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.model.TransactionStatus;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, String> {
 
   List<Transaction> findAllByWalletId(String walletId);
+
+  /** The transaction joined with its wallet, whose balances approving it adjusts. */
+  @EntityGraph(Transaction.WITH_WALLET)
+  Optional<Transaction> findWithWalletById(String id);
+
+  String SELECT_TRANSACTION_DTO =
+      "SELECT new com.ing.hubs.dto.TransactionDto(t.id, t.wallet.id, t.amount, t.type,"
+          + " t.oppositePartyType, t.oppositeParty, t.linkedTransactionId, t.status, t.createdAt,"
+          + " t.processedAt) FROM Transaction t"
+          + " WHERE t.wallet.id = :walletId"
+          + " AND (:ownerTckn IS NULL OR t.wallet.customer.tckn = :ownerTckn)";
+
+  /**
+   * First page of a wallet's transactions, in the {@code (createdAt, id)} order of {@code sort}. A
+   * non-null {@code ownerTckn} returns nothing unless the wallet belongs to that customer.
+   */
+  @Query(SELECT_TRANSACTION_DTO)
+  List<TransactionDto> findPageByWalletId(
+      String walletId, String ownerTckn, Sort sort, Limit limit);
+
+  /**
+   * The transactions after the cursor in {@code (createdAt, id)} order. Rows without {@code
+   * createdAt} come first, so a {@code null} {@code afterCreatedAt} is one of them.
+   */
+  @Query(
+      SELECT_TRANSACTION_DTO
+          + " AND (:afterCreatedAt IS NULL AND (t.createdAt IS NOT NULL OR t.id > :afterId)"
+          + " OR t.createdAt > :afterCreatedAt"
+          + " OR t.createdAt = :afterCreatedAt AND t.id > :afterId)"
+          + " ORDER BY t.createdAt ASC NULLS FIRST, t.id")
+  List<TransactionDto> findPageByWalletIdAfter(
+      String walletId, String ownerTckn, LocalDateTime afterCreatedAt, String afterId, Limit limit);
+
+  @Query(
+      SELECT_TRANSACTION_DTO
+          + " AND (:beforeCreatedAt IS NULL AND t.createdAt IS NULL AND t.id < :beforeId"
+          + " OR t.createdAt < :beforeCreatedAt"
+          + " OR t.createdAt = :beforeCreatedAt AND t.id < :beforeId"
+          + " OR :beforeCreatedAt IS NOT NULL AND t.createdAt IS NULL)"
+          + " ORDER BY t.createdAt DESC NULLS LAST, t.id DESC")
+  List<TransactionDto> findPageByWalletIdBefore(
+      String walletId,
+      String ownerTckn,
+      LocalDateTime beforeCreatedAt,
+      String beforeId,
+      Limit limit);
+
+  /** The wallet of the transaction and, for a transfer, the wallet of its linked leg. */
+  @Query(
+      "SELECT t.wallet.id FROM Transaction t WHERE t.id = :id OR t.id ="
+          + " (SELECT l.linkedTransactionId FROM Transaction l WHERE l.id = :id)")
+  List<String> findWalletIdsById(String id);
+
+  @Modifying
+  @Query(
+      "UPDATE Transaction t SET t.status = :to, t.processedAt = :processedAt"
+          + " WHERE t.id = :id AND t.status = :from")
+  int updateStatus(
+      String id, TransactionStatus from, TransactionStatus to, LocalDateTime processedAt);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.TransactionSummaryDto(t.id, t.wallet.id, t.type, t.amount,"
+          + " t.status, t.linkedTransactionId) FROM Transaction t WHERE t.id IN :ids")
+  List<TransactionSummaryDto> findSummariesByIdIn(Collection<String> ids);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT t.id FROM Transaction t WHERE t.id IN :ids AND t.status = :status ORDER BY t.id")
+  List<String> lockIdsByStatus(Collection<String> ids, TransactionStatus status);
+
+  @Modifying
+  @Query(
+      "UPDATE Transaction t SET t.status = :to, t.processedAt = :processedAt"
+          + " WHERE t.id IN :ids AND t.status = :from")
+  int updateStatuses(
+      Collection<String> ids,
+      TransactionStatus from,
+      TransactionStatus to,
+      LocalDateTime processedAt);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.PendingTransactionDto(t.id, w.id, w.customer.id, w.currency,"
+          + " t.type, t.amount, t.oppositePartyType, t.oppositeParty) FROM Transaction t"
+          + " JOIN t.wallet w WHERE t.status = :status AND t.id > :afterId ORDER BY t.id")
+  List<PendingTransactionDto> findByStatusAfter(
+      TransactionStatus status, String afterId, Limit limit);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.CustomerHistoryDto(t.wallet.customer.id, COUNT(t))"
+          + " FROM Transaction t WHERE t.wallet.customer.id IN :customerIds"
+          + " AND t.status = :status GROUP BY t.wallet.customer.id")
+  List<CustomerHistoryDto> countByCustomerIdInAndStatus(
+      Collection<String> customerIds, TransactionStatus status);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.CurrencyCountDto(w.currency, COUNT(t)) FROM Transaction t"
+          + " JOIN t.wallet w WHERE w.customer.id = :customerId AND t.status = :status"
+          + " GROUP BY w.currency")
+  List<CurrencyCountDto> countByCustomerIdAndStatusPerCurrency(
+      String customerId, TransactionStatus status);
+
+  long countByStatus(TransactionStatus status);
 }
@@ -0,0 +1,19 @@
+package com.ing.hubs.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.entity.WalletJournalCheckpoint;
+
+@Repository
+public interface WalletJournalCheckpointRepository
+    extends JpaRepository<WalletJournalCheckpoint, String> {
+
+  @Modifying
+  @Query(
+      "UPDATE WalletJournalCheckpoint c SET c.generation = :generation,"
+          + " c.appliedOffset = :appliedOffset WHERE c.id = :id")
+  int updateAppliedOffset(String id, long generation, long appliedOffset);
+}
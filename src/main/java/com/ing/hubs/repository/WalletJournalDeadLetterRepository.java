@@ -0,0 +1,10 @@
+package com.ing.hubs.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.entity.WalletJournalDeadLetter;
+
+@Repository
+public interface WalletJournalDeadLetterRepository
+    extends JpaRepository<WalletJournalDeadLetter, String> {}
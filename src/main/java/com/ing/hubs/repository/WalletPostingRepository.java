@@ -0,0 +1,38 @@
+package com.ing.hubs.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.WalletPosting;
+
+@Repository
+public interface WalletPostingRepository extends JpaRepository<WalletPosting, String> {
+
+  List<WalletPosting> findAllByWalletIdAndFoldedFalse(String walletId);
+
+  @Query(
+      """
+      SELECT p.walletId FROM WalletPosting p
+      WHERE p.folded = false
+      GROUP BY p.walletId
+      HAVING COUNT(p) >= :minPostings
+      """)
+  List<String> findWalletIdsToSnapshot(long minPostings);
+
+  @Query(
+      """
+      SELECT new com.ing.hubs.dto.WalletBalanceDto(
+          w.id,
+          w.balance + COALESCE(SUM(p.balanceDelta), 0),
+          w.usableBalance + COALESCE(SUM(p.usableBalanceDelta), 0))
+      FROM Wallet w LEFT JOIN WalletPosting p ON p.walletId = w.id AND p.folded = false
+      WHERE w.id IN :walletIds
+      GROUP BY w.id, w.balance, w.usableBalance
+      """)
+  List<WalletBalanceDto> findCurrentBalances(Collection<String> walletIds);
+}
@@ -1,15 +1,23 @@
 package com.ing.hubs.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import jakarta.persistence.LockModeType;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.dto.WalletDto;
+import com.ing.hubs.dto.WalletOwnerDto;
 import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Money;
 
 @Repository
 public interface WalletRepository extends JpaRepository<Wallet, String> {
@@ -17,5 +25,106 @@ public interface WalletRepository extends JpaRepository<Wallet, String> {
   @Lock(LockModeType.OPTIMISTIC)
   Optional<Wallet> findWithLockingById(String id);
 
+  /** The wallet joined with its customer, for writes that check who owns it. */
+  @EntityGraph(Wallet.WITH_CUSTOMER)
+  Optional<Wallet> findWithCustomerById(String id);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  Optional<Wallet> findForUpdateById(String id);
+
   List<Wallet> findAllByCustomerId(String customerId);
+
+  /**
+   * The customer's wallets with their current balances: the sum of their sub-balances while they
+   * are split, plus unfolded ledger postings. A non-null {@code ownerTckn} returns nothing unless
+   * the customer has that tckn.
+   */
+  @Query(
+      """
+      SELECT new com.ing.hubs.dto.WalletDto(
+          w.id, w.version, w.walletName, w.currency, w.activeForShopping, w.activeForWithdraw,
+          CASE WHEN w.subBalances > 1
+            THEN (SELECT SUM(s.balance) FROM WalletSubBalance s WHERE s.walletId = w.id)
+            ELSE w.balance END + COALESCE(SUM(p.balanceDelta), 0),
+          CASE WHEN w.subBalances > 1
+            THEN (SELECT SUM(s.usableBalance) FROM WalletSubBalance s WHERE s.walletId = w.id)
+            ELSE w.usableBalance END + COALESCE(SUM(p.usableBalanceDelta), 0))
+      FROM Wallet w LEFT JOIN WalletPosting p ON p.walletId = w.id AND p.folded = false
+      WHERE w.customer.id = :customerId
+        AND (:ownerTckn IS NULL OR w.customer.tckn = :ownerTckn)
+      GROUP BY w.id, w.version, w.walletName, w.currency, w.activeForShopping,
+               w.activeForWithdraw, w.balance, w.usableBalance, w.subBalances
+      """)
+  List<WalletDto> findDtosByCustomerId(String customerId, String ownerTckn);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.WalletOwnerDto(w.id, w.customer.id, w.currency)"
+          + " FROM Wallet w WHERE w.id IN :ids")
+  List<WalletOwnerDto> findOwnersByIdIn(Collection<String> ids);
+
+  @Query("SELECT w.customer.tckn FROM Wallet w WHERE w.id = :id")
+  Optional<String> findCustomerTcknById(String id);
+
+  /**
+   * The version of the wallet's transactions: its own version, plus the versions of its slots and
+   * the count of its unfolded postings, which move on sub-balance and ledger deposits that leave
+   * the wallet row alone. Resizes and snapshots bump the wallet version, so the pair never repeats.
+   * A non-null {@code ownerTckn} returns nothing unless the wallet's customer has that tckn.
+   */
+  @Query(
+      """
+      SELECT CONCAT(
+          CAST(w.version AS String),
+          '.',
+          CAST(COALESCE((SELECT SUM(s.version) FROM WalletSubBalance s WHERE s.walletId = w.id), 0)
+              + (SELECT COUNT(p) FROM WalletPosting p WHERE p.walletId = w.id AND p.folded = false)
+            AS String))
+      FROM Wallet w
+      WHERE w.id = :id AND (:ownerTckn IS NULL OR w.customer.tckn = :ownerTckn)
+      """)
+  Optional<String> findTransactionsVersionById(String id, String ownerTckn);
+
+  @Modifying
+  @Query(
+      "UPDATE Wallet w SET w.balance = w.balance + :balanceDelta,"
+          + " w.usableBalance = w.usableBalance + :usableBalanceDelta, w.version = w.version + 1"
+          + " WHERE w.id = :id AND w.subBalances <= 1 AND w.balance + :balanceDelta >= 0"
+          + " AND w.usableBalance + :usableBalanceDelta >= 0")
+  int adjustBalances(String id, Money balanceDelta, Money usableBalanceDelta);
+
+  @Query("SELECT w.subBalances FROM Wallet w WHERE w.id = :id")
+  Optional<Integer> findSubBalancesById(String id);
+
+  @Query(value = "SELECT sub_balances FROM wallet WHERE id = :id FOR UPDATE", nativeQuery = true)
+  Optional<Integer> lockSubBalancesById(String id);
+
+  @Query(
+      "SELECT new com.ing.hubs.dto.WalletBalanceDto(w.id, w.balance, w.usableBalance)"
+          + " FROM Wallet w WHERE w.id = :id")
+  Optional<WalletBalanceDto> findBalancesById(String id);
+
+  /**
+   * Sets the split and the balances kept on the wallet row, which are a copy while it is split, and
+   * bumps the version, since the slots may have been recreated.
+   */
+  @Modifying
+  @Query(
+      "UPDATE Wallet w SET w.subBalances = :subBalances, w.balance = :balance,"
+          + " w.usableBalance = :usableBalance, w.version = w.version + 1 WHERE w.id = :id")
+  int updateSubBalances(String id, int subBalances, Money balance, Money usableBalance);
+
+  @Modifying
+  @Query(
+      """
+      UPDATE Wallet w
+      SET w.balance = (SELECT SUM(s.balance) FROM WalletSubBalance s WHERE s.walletId = w.id),
+          w.usableBalance =
+              (SELECT SUM(s.usableBalance) FROM WalletSubBalance s WHERE s.walletId = w.id)
+      WHERE w.subBalances > 1
+      """)
+  int refreshSubBalanceTotals();
+
+  @Modifying
+  @Query("UPDATE Wallet w SET w.version = w.version + 1 WHERE w.id = :id AND w.version = :version")
+  int incrementVersion(String id, Long version);
 }
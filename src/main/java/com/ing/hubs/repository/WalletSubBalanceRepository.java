@@ -0,0 +1,51 @@
+package com.ing.hubs.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.WalletSubBalance;
+import com.ing.hubs.model.Money;
+
+@Repository
+public interface WalletSubBalanceRepository extends JpaRepository<WalletSubBalance, String> {
+
+  @Modifying
+  @Query(
+      "UPDATE WalletSubBalance s SET s.balance = s.balance + :balanceDelta,"
+          + " s.usableBalance = s.usableBalance + :usableBalanceDelta, s.version = s.version + 1"
+          + " WHERE s.walletId = :walletId AND s.slot = :slot"
+          + " AND s.balance + :balanceDelta >= 0 AND s.usableBalance + :usableBalanceDelta >= 0")
+  int adjustBalances(String walletId, int slot, Money balanceDelta, Money usableBalanceDelta);
+
+  @Query(
+      value =
+          "SELECT slot FROM wallet_sub_balance WHERE wallet_id = :walletId ORDER BY slot FOR UPDATE",
+      nativeQuery = true)
+  List<Integer> lockAllByWalletId(String walletId);
+
+  @Query(
+      """
+      SELECT new com.ing.hubs.dto.WalletBalanceDto(
+          s.walletId, COALESCE(SUM(s.balance), 0), COALESCE(SUM(s.usableBalance), 0))
+      FROM WalletSubBalance s
+      WHERE s.walletId IN :walletIds
+      GROUP BY s.walletId
+      """)
+  List<WalletBalanceDto> findTotals(Collection<String> walletIds);
+
+  @Modifying
+  @Query(
+      "UPDATE WalletSubBalance s SET s.balance = :balance, s.usableBalance = :usableBalance,"
+          + " s.version = s.version + 1 WHERE s.walletId = :walletId")
+  int setAll(String walletId, Money balance, Money usableBalance);
+
+  @Modifying
+  @Query("DELETE FROM WalletSubBalance s WHERE s.walletId = :walletId")
+  int deleteAllByWalletId(String walletId);
+}
@@ -0,0 +1,62 @@
+package com.ing.hubs.security;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.server.context.ServerSecurityContextRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import lombok.RequiredArgsConstructor;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link JwtAuthFilter}: a valid bearer token becomes the request's
+ * security context, anything else leaves the request unauthenticated.
+ */
+@Component
+@Profile("reactive")
+@RequiredArgsConstructor
+public class JwtServerSecurityContextRepository implements ServerSecurityContextRepository {
+
+  private final JwtTokenProvider jwtTokenProvider;
+
+  private final ReactiveCustomUserDetailsService userDetailsService;
+
+  @Override
+  public Mono<Void> save(ServerWebExchange exchange, SecurityContext context) {
+
+    // tokens are stateless, there is nothing to store
+    return Mono.empty();
+  }
+
+  @Override
+  public Mono<SecurityContext> load(ServerWebExchange exchange) {
+
+    String bearerToken = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+    if (!StringUtils.hasText(bearerToken) || !bearerToken.startsWith("Bearer ")) {
+
+      return Mono.empty();
+    }
+
+    String jwt = bearerToken.substring(7);
+
+    if (!jwtTokenProvider.validateToken(jwt)) {
+
+      return Mono.empty();
+    }
+
+    return userDetailsService
+        .findByUsername(jwtTokenProvider.getUsernameFromToken(jwt))
+        .map(
+            userDetails ->
+                new SecurityContextImpl(
+                    new UsernamePasswordAuthenticationToken(
+                        userDetails, null, userDetails.getAuthorities())));
+  }
+}
@@ -0,0 +1,46 @@
+package com.ing.hubs.security;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import com.ing.hubs.repository.ReactiveWalletRepository;
+
+import lombok.RequiredArgsConstructor;
+
+import reactor.core.publisher.Mono;
+
+/** Reactive counterpart of {@link CustomUserDetailsService}; completes empty for unknown users. */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveCustomUserDetailsService implements ReactiveUserDetailsService {
+
+  private final ReactiveWalletRepository reactiveWalletRepository;
+
+  @Override
+  public Mono<UserDetails> findByUsername(String username) {
+
+    return reactiveWalletRepository
+        .findAdminUserByUsername(username)
+        .map(
+            adminUser ->
+                createUserDetails(adminUser.getUsername(), adminUser.getPassword(), "ADMIN"))
+        .switchIfEmpty(
+            Mono.defer(
+                () ->
+                    reactiveWalletRepository
+                        .findCustomerByTckn(username)
+                        .map(
+                            customer ->
+                                createUserDetails(
+                                    customer.getTckn(), customer.getPassword(), "CUSTOMER"))));
+  }
+
+  private UserDetails createUserDetails(String username, String password, String role) {
+
+    return User.builder().username(username).password(password).roles(role).build();
+  }
+}
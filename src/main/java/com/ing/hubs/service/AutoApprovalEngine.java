@@ -0,0 +1,218 @@
+package com.ing.hubs.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.ing.hubs.dto.CustomerHistoryDto;
+import com.ing.hubs.dto.PendingTransactionDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.TransactionRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Background job that approves PENDING transactions matching the {@code wallet.auto-approval.*}
+ * rules. The rules are compiled once into a single predicate and every configured rule must match;
+ * with no rules configured nothing is approved. Each round walks the backlog in id order, {@code
+ * batch-size} rows at a time, and hands the matches to {@link TransactionApprovalService}, so they
+ * go through the same transitions as a manual approval.
+ */
+@Slf4j
+@Component
+public class AutoApprovalEngine {
+
+  private final TransactionRepository transactionRepository;
+  private final TransactionApprovalService transactionApprovalService;
+  private final boolean enabled;
+  private final int batchSize;
+  private final long minApprovedTransactions;
+  private final Predicate<Candidate> rules;
+  private final AtomicLong backlog = new AtomicLong();
+  private final Timer latency;
+  private final Counter approved;
+  private final Counter failed;
+  private final Counter skipped;
+
+  public AutoApprovalEngine(
+      TransactionRepository transactionRepository,
+      TransactionApprovalService transactionApprovalService,
+      MeterRegistry meterRegistry,
+      @Value("${wallet.auto-approval.enabled:false}") boolean enabled,
+      @Value("${wallet.auto-approval.batch-size:100}") int batchSize,
+      @Value("${wallet.auto-approval.currency-limits:}") String currencyLimits,
+      @Value("${wallet.auto-approval.min-approved-transactions:0}") long minApprovedTransactions,
+      @Value("${wallet.auto-approval.allowed-counterparties:}") Set<String> allowedCounterparties) {
+
+    if (batchSize <= 0 || minApprovedTransactions < 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.auto-approval.* settings");
+    }
+
+    this.transactionRepository = transactionRepository;
+    this.transactionApprovalService = transactionApprovalService;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.minApprovedTransactions = minApprovedTransactions;
+    this.rules =
+        compile(
+            parseCurrencyLimits(currencyLimits), minApprovedTransactions, allowedCounterparties);
+
+    Gauge.builder("wallet.auto_approval.backlog", backlog, AtomicLong::get)
+        .description("PENDING transactions left after the last auto-approval round")
+        .register(meterRegistry);
+    this.latency =
+        Timer.builder("wallet.auto_approval.latency")
+            .description("Time taken to approve one batch of matching transactions")
+            .register(meterRegistry);
+    this.approved = outcomeCounter(meterRegistry, "approved");
+    this.failed = outcomeCounter(meterRegistry, "failed");
+    this.skipped = outcomeCounter(meterRegistry, "skipped");
+  }
+
+  @Scheduled(fixedDelayString = "${wallet.auto-approval.interval-ms:1000}")
+  public void run() {
+
+    if (!enabled) {
+      return;
+    }
+
+    String afterId = "";
+    List<PendingTransactionDto> batch;
+
+    do {
+      batch =
+          transactionRepository.findByStatusAfter(
+              TransactionStatus.PENDING, afterId, Limit.of(batchSize));
+
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      afterId = batch.getLast().transactionId();
+      approveMatching(batch);
+    } while (batch.size() == batchSize);
+
+    backlog.set(transactionRepository.countByStatus(TransactionStatus.PENDING));
+  }
+
+  private void approveMatching(List<PendingTransactionDto> batch) {
+
+    Map<String, Long> history =
+        minApprovedTransactions > 0
+            ? transactionRepository
+                .countByCustomerIdInAndStatus(
+                    batch.stream().map(PendingTransactionDto::customerId).distinct().toList(),
+                    TransactionStatus.APPROVED)
+                .stream()
+                .collect(
+                    Collectors.toMap(
+                        CustomerHistoryDto::customerId, CustomerHistoryDto::transactionCount))
+            : Map.of();
+    List<String> transactionIds = new ArrayList<>();
+
+    for (PendingTransactionDto transaction : batch) {
+      if (rules.test(
+          new Candidate(transaction, history.getOrDefault(transaction.customerId(), 0L)))) {
+        transactionIds.add(transaction.transactionId());
+      }
+    }
+
+    skipped.increment(batch.size() - transactionIds.size());
+
+    if (transactionIds.isEmpty()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(transactionIds, TransactionStatus.APPROVED);
+    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+    long approvedCount = responses.stream().filter(response -> response.status() != null).count();
+    approved.increment(approvedCount);
+    failed.increment(responses.size() - approvedCount);
+    log.debug("Auto-approved {} of {} pending transactions", approvedCount, batch.size());
+  }
+
+  static Predicate<Candidate> compile(
+      Map<Currency, Money> currencyLimits,
+      long minApprovedTransactions,
+      Set<String> allowedCounterparties) {
+
+    List<Predicate<Candidate>> predicates = new ArrayList<>();
+
+    if (!currencyLimits.isEmpty()) {
+      predicates.add(
+          candidate -> {
+            Money limit = currencyLimits.get(candidate.transaction().currency());
+
+            return limit != null && !candidate.transaction().amount().isGreaterThan(limit);
+          });
+    }
+
+    if (minApprovedTransactions > 0) {
+      predicates.add(candidate -> candidate.approvedTransactions() >= minApprovedTransactions);
+    }
+
+    if (!allowedCounterparties.isEmpty()) {
+      predicates.add(
+          candidate -> allowedCounterparties.contains(candidate.transaction().oppositeParty()));
+    }
+
+    return predicates.stream().reduce(Predicate::and).orElse(candidate -> false);
+  }
+
+  static Map<Currency, Money> parseCurrencyLimits(String currencyLimits) {
+
+    Map<Currency, Money> limits = new EnumMap<>(Currency.class);
+
+    for (String entry : currencyLimits.split(",")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+
+      String[] parts = entry.split(":");
+
+      try {
+        limits.put(
+            Currency.valueOf(parts[0].trim()), Money.ofMajor(Long.parseLong(parts[1].trim())));
+      } catch (RuntimeException e) {
+
+        throw new IllegalArgumentException(
+            "Invalid wallet.auto-approval.currency-limits entry: " + entry, e);
+      }
+    }
+
+    return limits;
+  }
+
+  private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+
+    return Counter.builder("wallet.auto_approval.transactions")
+        .description("PENDING transactions examined by the auto-approval engine")
+        .tag("outcome", outcome)
+        .register(meterRegistry);
+  }
+
+  record Candidate(PendingTransactionDto transaction, long approvedTransactions) {}
+}
@@ -0,0 +1,45 @@
+package com.ing.hubs.service;
+
+import java.util.List;
+
+import org.springframework.http.ETag;
+
+/**
+ * A read that honours {@code If-None-Match}: {@code body} is {@code null} when the caller already
+ * has the representation {@code eTag} names. {@code eTag} is {@code null} when there is nothing to
+ * tag, such as a read that failed its ownership check.
+ */
+public record ConditionalRead<T>(String eTag, T body) {
+
+  public static <T> ConditionalRead<T> notModified(String eTag) {
+
+    return new ConditionalRead<>(eTag, null);
+  }
+
+  public boolean isModified() {
+
+    return body != null;
+  }
+
+  /** The strong ETag of a version the repositories select. */
+  static String eTagOf(String version) {
+
+    return ETag.quoteETagIfNecessary(version);
+  }
+
+  /**
+   * Whether an {@code If-None-Match} or {@code If-Match} header lists {@code eTag}, or is {@code
+   * *}. {@code If-Match} compares strongly, {@code If-None-Match} weakly, as RFC 9110 asks.
+   */
+  static boolean matches(String header, String eTag, boolean strong) {
+
+    if (header == null) {
+      return false;
+    }
+
+    ETag current = ETag.create(eTag);
+    List<ETag> tags = ETag.parse(header);
+
+    return tags.stream().anyMatch(tag -> tag.isWildcard() || tag.compare(current, strong));
+  }
+}
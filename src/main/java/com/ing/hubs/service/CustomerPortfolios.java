@@ -0,0 +1,408 @@
+package com.ing.hubs.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.CurrencyCountDto;
+import com.ing.hubs.dto.WalletDto;
+import com.ing.hubs.dto.WalletOwnerDto;
+import com.ing.hubs.entity.CustomerPortfolio;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.CustomerPortfolioRepository;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps {@code customer_portfolio}, the per-customer, per-currency totals the portfolio summary is
+ * read from, in step with the wallets. Each total is spread over {@code wallet.portfolio.slots}
+ * rows that reads sum, so concurrent writers to the same customer and currency mostly update
+ * different rows. Writers record their balance and pending-count changes as they go; just before
+ * the transaction commits the changes are summed per row of one randomly picked slot and applied
+ * with one {@code UPDATE} each, in row id order, so concurrent writers lock the rows in the same
+ * order and only hold them while committing. Rows are only inserted by {@link #addWallet} and
+ * {@link #reconcile}, both under the customer's row lock, so inserts never race.
+ *
+ * <p>{@link #reconcile} locks a customer's rows and recomputes the totals from the wallets and
+ * their pending transactions. Writers change the rows last, so under those locks the wallets show
+ * exactly the changes the rows already hold, and any difference is drift, which is logged and
+ * repaired by moving the whole total to slot 0 and emptying the other slots. Every customer is
+ * reconciled every {@code wallet.portfolio.reconcile-interval-ms}, starting at startup, which also
+ * creates the rows of wallets written behind the services' back, such as existing data. A change
+ * that finds no row for its slot goes to slot 0, and one that finds no row at all rebuilds the
+ * customer's rows in its own transaction.
+ */
+@Slf4j
+@Component
+public class CustomerPortfolios {
+
+  private static final int RECONCILE_PAGE_SIZE = 100;
+
+  private final CustomerPortfolioRepository customerPortfolioRepository;
+  private final CustomerRepository customerRepository;
+  private final WalletRepository walletRepository;
+  private final TransactionRepository transactionRepository;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final int slots;
+  private final Counter matched;
+  private final Counter repaired;
+  private final Counter skipped;
+
+  /** A change to one row; the changes of a transaction are summed per row. */
+  private record Change(Money balanceDelta, Money usableBalanceDelta, long pendingDelta) {
+
+    private Change plus(Change other) {
+
+      return new Change(
+          balanceDelta.plus(other.balanceDelta),
+          usableBalanceDelta.plus(other.usableBalanceDelta),
+          pendingDelta + other.pendingDelta);
+    }
+  }
+
+  /** The customer and currency a change goes to, ordered like the ids of their rows. */
+  private record Portfolio(String customerId, Currency currency) implements Comparable<Portfolio> {
+
+    @Override
+    public int compareTo(Portfolio other) {
+
+      int byCustomer = customerId.compareTo(other.customerId);
+
+      return byCustomer != 0 ? byCustomer : currency.name().compareTo(other.currency.name());
+    }
+  }
+
+  /** The changes of the current transaction, applied before it commits. */
+  private final class Changes implements TransactionSynchronization {
+
+    private final int slot = ThreadLocalRandom.current().nextInt(slots);
+    private final Map<Portfolio, Change> byPortfolio = new HashMap<>();
+    // changes of callers that only know the wallet, whose rows are looked up together
+    private final Map<String, Change> byWallet = new HashMap<>();
+
+    @Override
+    public void beforeCommit(boolean readOnly) {
+
+      apply(this);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+
+      TransactionSynchronizationManager.unbindResourceIfPossible(CustomerPortfolios.this);
+    }
+  }
+
+  public CustomerPortfolios(
+      CustomerPortfolioRepository customerPortfolioRepository,
+      CustomerRepository customerRepository,
+      WalletRepository walletRepository,
+      TransactionRepository transactionRepository,
+      EntityManager entityManager,
+      TransactionTemplate transactionTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${wallet.portfolio.slots:8}") int slots) {
+
+    if (slots < 1) {
+
+      throw new IllegalArgumentException("Invalid wallet.portfolio.* settings");
+    }
+
+    this.customerPortfolioRepository = customerPortfolioRepository;
+    this.customerRepository = customerRepository;
+    this.walletRepository = walletRepository;
+    this.transactionRepository = transactionRepository;
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.slots = slots;
+    this.matched = reconciliationCounter(meterRegistry, "match");
+    this.repaired = reconciliationCounter(meterRegistry, "repaired");
+    this.skipped =
+        Counter.builder("wallet.portfolio.skipped_changes")
+            .description("Changes to wallets whose customer could not be locked to create rows")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Records a change to the totals of the wallet's customer, applied when the transaction commits.
+   */
+  public void adjust(
+      Wallet wallet, Money balanceDelta, Money usableBalanceDelta, long pendingDelta) {
+
+    changes()
+        .byPortfolio
+        .merge(
+            new Portfolio(wallet.getCustomer().getId(), wallet.getCurrency()),
+            new Change(balanceDelta, usableBalanceDelta, pendingDelta),
+            Change::plus);
+  }
+
+  /** Like {@link #adjust(Wallet, Money, Money, long)}, for callers that only know the wallet id. */
+  public void adjust(
+      String walletId, Money balanceDelta, Money usableBalanceDelta, long pendingDelta) {
+
+    changes()
+        .byWallet
+        .merge(walletId, new Change(balanceDelta, usableBalanceDelta, pendingDelta), Change::plus);
+  }
+
+  /**
+   * Counts a wallet created in the current transaction, which holds the customer's row lock, on
+   * slot 0. The first wallet in a currency creates the customer's rows from their wallets.
+   */
+  public void addWallet(Wallet wallet) {
+
+    String customerId = wallet.getCustomer().getId();
+
+    if (customerPortfolioRepository.adjust(
+            CustomerPortfolio.idOf(customerId, wallet.getCurrency(), 0),
+            1,
+            Money.ZERO,
+            Money.ZERO,
+            0)
+        == 0) {
+      rebuild(customerId);
+    }
+  }
+
+  /** Reconciles every customer, one transaction each. */
+  @Scheduled(fixedDelayString = "${wallet.portfolio.reconcile-interval-ms:3600000}")
+  public void reconcileAll() {
+
+    String after = "";
+    List<String> customerIds;
+
+    do {
+      customerIds = customerRepository.findIdsAfter(after, Limit.of(RECONCILE_PAGE_SIZE));
+
+      for (String customerId : customerIds) {
+        try {
+          reconcile(customerId);
+        } catch (RuntimeException e) {
+
+          log.warn("Could not reconcile the portfolio of customer {}", customerId, e);
+        }
+
+        after = customerId;
+      }
+    } while (customerIds.size() == RECONCILE_PAGE_SIZE);
+  }
+
+  /**
+   * Recomputes the customer's totals from their wallets and repairs any that differ. Returns the
+   * number of currencies that did.
+   */
+  public int reconcile(String customerId) {
+
+    int differences =
+        transactionTemplate.execute(
+            status ->
+                customerRepository.findForUpdateById(customerId).isPresent()
+                    ? rebuild(customerId)
+                    : 0);
+
+    if (differences == 0) {
+      matched.increment();
+    } else {
+      repaired.increment();
+      log.warn(
+          "Portfolio of customer {} did not match its wallets in {} currencies, rebuilt",
+          customerId,
+          differences);
+    }
+
+    return differences;
+  }
+
+  /**
+   * Sets the sums of the customer's rows to the totals of their wallets and creates missing slots.
+   * The caller holds the customer's row lock, and the rows hold no change of this transaction that
+   * the wallets do not show yet.
+   */
+  private int rebuild(String customerId) {
+
+    Map<Currency, List<CustomerPortfolio>> rows = new EnumMap<>(Currency.class);
+
+    for (CustomerPortfolio row : customerPortfolioRepository.lockAllByCustomerId(customerId)) {
+      rows.computeIfAbsent(row.getCurrency(), currency -> new ArrayList<>()).add(row);
+    }
+
+    Map<Currency, CustomerPortfolio> totals = new EnumMap<>(Currency.class);
+
+    for (WalletDto wallet : walletRepository.findDtosByCustomerId(customerId, null)) {
+      CustomerPortfolio total =
+          totals.computeIfAbsent(wallet.currency(), currency -> empty(customerId, currency, 0));
+      total.setWalletCount(total.getWalletCount() + 1);
+      total.setBalance(total.getBalance().plus(wallet.balance()));
+      total.setUsableBalance(total.getUsableBalance().plus(wallet.usableBalance()));
+    }
+
+    for (CurrencyCountDto pending :
+        transactionRepository.countByCustomerIdAndStatusPerCurrency(
+            customerId, TransactionStatus.PENDING)) {
+      totals
+          .computeIfAbsent(pending.currency(), currency -> empty(customerId, currency, 0))
+          .setPendingTransactionCount(pending.count());
+    }
+
+    int differences = 0;
+
+    for (Currency currency : Currency.values()) {
+      List<CustomerPortfolio> slotRows = rows.getOrDefault(currency, new ArrayList<>());
+      CustomerPortfolio total = totals.getOrDefault(currency, empty(customerId, currency, 0));
+
+      if (slotRows.isEmpty() && !totals.containsKey(currency)) {
+        continue;
+      }
+
+      CustomerPortfolio sum = empty(customerId, currency, 0);
+
+      for (CustomerPortfolio row : slotRows) {
+        sum.setWalletCount(sum.getWalletCount() + row.getWalletCount());
+        sum.setBalance(sum.getBalance().plus(row.getBalance()));
+        sum.setUsableBalance(sum.getUsableBalance().plus(row.getUsableBalance()));
+        sum.setPendingTransactionCount(
+            sum.getPendingTransactionCount() + row.getPendingTransactionCount());
+      }
+
+      for (int slot = 0; slot < slots; slot++) {
+        String id = CustomerPortfolio.idOf(customerId, currency, slot);
+
+        if (slotRows.stream().noneMatch(row -> row.getId().equals(id))) {
+          CustomerPortfolio row = empty(customerId, currency, slot);
+          row.setVersion(1);
+          slotRows.add(customerPortfolioRepository.save(row));
+        }
+      }
+
+      if (!sum.equals(total)) {
+        for (CustomerPortfolio row : slotRows) {
+          CustomerPortfolio target =
+              row.getId().equals(total.getId()) ? total : empty(customerId, currency, 0);
+          row.setWalletCount(target.getWalletCount());
+          row.setBalance(target.getBalance());
+          row.setUsableBalance(target.getUsableBalance());
+          row.setPendingTransactionCount(target.getPendingTransactionCount());
+          row.setVersion(row.getVersion() + 1);
+        }
+
+        differences++;
+      }
+    }
+
+    return differences;
+  }
+
+  private void apply(Changes changes) {
+
+    Map<Portfolio, Change> byPortfolio = new TreeMap<>(changes.byPortfolio);
+
+    if (!changes.byWallet.isEmpty()) {
+      for (WalletOwnerDto owner : walletRepository.findOwnersByIdIn(changes.byWallet.keySet())) {
+        byPortfolio.merge(
+            new Portfolio(owner.customerId(), owner.currency()),
+            changes.byWallet.get(owner.walletId()),
+            Change::plus);
+      }
+    }
+
+    // the transaction's own writes go first, so the rows are the last thing it locks
+    entityManager.flush();
+
+    Set<String> rebuilt = new HashSet<>();
+
+    byPortfolio.forEach(
+        (portfolio, change) -> {
+          if (rebuilt.contains(portfolio.customerId())
+              || adjust(portfolio, changes.slot, change)
+              || adjust(portfolio, 0, change)) {
+            return;
+          }
+
+          // no rows yet, such as for wallets that predate them: the wallets already show every
+          // change of this transaction, so rebuilding from them covers the customer's other ones
+          if (customerRepository.findForUpdateById(portfolio.customerId()).isPresent()) {
+            rebuild(portfolio.customerId());
+            rebuilt.add(portfolio.customerId());
+          } else {
+            skipped.increment();
+          }
+        });
+  }
+
+  /** Applies a change to one slot row; {@code false} if the row does not exist. */
+  private boolean adjust(Portfolio portfolio, int slot, Change change) {
+
+    return customerPortfolioRepository.adjust(
+            CustomerPortfolio.idOf(portfolio.customerId(), portfolio.currency(), slot),
+            0,
+            change.balanceDelta(),
+            change.usableBalanceDelta(),
+            change.pendingDelta())
+        == 1;
+  }
+
+  private Changes changes() {
+
+    Changes changes = (Changes) TransactionSynchronizationManager.getResource(this);
+
+    if (changes == null) {
+      if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+
+        throw new IllegalStateException("Portfolio changes have to be made in a transaction");
+      }
+
+      changes = new Changes();
+      TransactionSynchronizationManager.bindResource(this, changes);
+      TransactionSynchronizationManager.registerSynchronization(changes);
+    }
+
+    return changes;
+  }
+
+  private static CustomerPortfolio empty(String customerId, Currency currency, int slot) {
+
+    return CustomerPortfolio.builder()
+        .id(CustomerPortfolio.idOf(customerId, currency, slot))
+        .customerId(customerId)
+        .currency(currency)
+        .slot(slot)
+        .balance(Money.ZERO)
+        .usableBalance(Money.ZERO)
+        .build();
+  }
+
+  private static Counter reconciliationCounter(MeterRegistry meterRegistry, String result) {
+
+    return Counter.builder("wallet.portfolio.reconciliations")
+        .description("Customers whose portfolio rows were checked against their wallets")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,272 @@
+package com.ing.hubs.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.entity.IdempotencyRecord;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.repository.IdempotencyRecordRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Remembers the response of money-moving requests sent with an {@code Idempotency-Key} header so
+ * that a client retry gets the original {@link TransactionResponseDto} back instead of creating a
+ * second transaction. A key is claimed by inserting its {@code idempotency_record} row before the
+ * operation runs, so concurrent retries of the same key cannot both execute; completed responses
+ * are also kept in a bounded in-memory cache so that most retries never reach the database.
+ *
+ * <p>A request is identified by the SHA-256 digest of its canonical JSON, which is the same on
+ * every instance and across restarts. Operations that run in a transaction on the calling thread
+ * store their response in that transaction through {@link #completeInTransaction}, so a claim that
+ * is still open after {@code wallet.idempotency.claim-timeout-ms} belongs to a request that never
+ * committed and is taken over by the next retry instead of blocking the key until it is purged.
+ * Sharded and journaled deposits store the response right after the operation returns.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+  public static final String HEADER = "Idempotency-Key";
+  private static final int MAX_KEY_LENGTH = 64;
+  private static final ObjectMapper CANONICAL_JSON =
+      JsonMapper.builder()
+          .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+          .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+          .build();
+  private static final ThreadLocal<Claim> CURRENT_CLAIM = new ThreadLocal<>();
+
+  private final IdempotencyRecordRepository idempotencyRecordRepository;
+  private final Map<String, CachedResponse> cache;
+  private final long cacheTtlMillis;
+  private final Duration retention;
+  private final Duration claimTimeout;
+
+  public IdempotencyStore(
+      IdempotencyRecordRepository idempotencyRecordRepository,
+      @Value("${wallet.idempotency.cache-size:10000}") int cacheSize,
+      @Value("${wallet.idempotency.cache-ttl-ms:600000}") long cacheTtlMillis,
+      @Value("${wallet.idempotency.retention-ms:86400000}") long retentionMillis,
+      @Value("${wallet.idempotency.claim-timeout-ms:30000}") long claimTimeoutMillis) {
+
+    if (cacheSize <= 0 || cacheTtlMillis <= 0 || retentionMillis <= 0 || claimTimeoutMillis <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.idempotency.* settings");
+    }
+
+    this.idempotencyRecordRepository = idempotencyRecordRepository;
+    this.cacheTtlMillis = cacheTtlMillis;
+    this.retention = Duration.ofMillis(retentionMillis);
+    this.claimTimeout = Duration.ofMillis(claimTimeoutMillis);
+    this.cache =
+        Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+              @Override
+              protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > cacheSize;
+              }
+            });
+  }
+
+  public TransactionResponseDto execute(
+      String idempotencyKey,
+      String operation,
+      Object request,
+      Supplier<TransactionResponseDto> action) {
+
+    if (idempotencyKey == null) {
+
+      return action.get();
+    }
+
+    if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+
+      throw new CustomBadRequestException("Idempotency-Key must be 1 to 64 characters!");
+    }
+
+    String id =
+        SecurityContextHolder.getContext().getAuthentication().getName() + ":" + idempotencyKey;
+    String requestDigest = digest(operation, request);
+
+    TransactionResponseDto stored = lookup(id, requestDigest);
+
+    if (stored != null) {
+
+      return stored;
+    }
+
+    LocalDateTime now = LocalDateTime.now();
+
+    try {
+      idempotencyRecordRepository.saveAndFlush(
+          IdempotencyRecord.builder().id(id).requestDigest(requestDigest).createdAt(now).build());
+    } catch (DataIntegrityViolationException e) {
+
+      stored = lookup(id, requestDigest);
+
+      if (stored != null) {
+        return stored;
+      }
+
+      if (idempotencyRecordRepository.takeOver(id, requestDigest, now, now.minus(claimTimeout))
+          == 0) {
+
+        throw new CustomConflictException("A request with this Idempotency-Key is in progress!");
+      }
+
+      log.warn("Took over the stale claim of idempotency key {}", id);
+    }
+
+    Claim claim = new Claim(id);
+    TransactionResponseDto response;
+
+    CURRENT_CLAIM.set(claim);
+
+    try {
+      response = action.get();
+    } catch (RuntimeException e) {
+
+      idempotencyRecordRepository.deleteIncomplete(id);
+      throw e;
+    } finally {
+      CURRENT_CLAIM.remove();
+    }
+
+    if (!claim.committed) {
+      idempotencyRecordRepository.complete(
+          id, response.transactionId(), response.status(), response.message());
+    }
+
+    cache.put(id, new CachedResponse(requestDigest, response, now() + cacheTtlMillis));
+
+    return response;
+  }
+
+  /**
+   * Stores {@code response} as the outcome of the key claimed on this thread, inside the
+   * operation's own transaction, so that the response commits or rolls back together with the money
+   * movement. Does nothing without a claim or an active transaction.
+   */
+  public void completeInTransaction(TransactionResponseDto response) {
+
+    Claim claim = CURRENT_CLAIM.get();
+
+    if (claim == null || !TransactionSynchronizationManager.isActualTransactionActive()) {
+      return;
+    }
+
+    idempotencyRecordRepository.complete(
+        claim.id, response.transactionId(), response.status(), response.message());
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            claim.committed = true;
+          }
+        });
+  }
+
+  @Transactional
+  @Scheduled(fixedDelayString = "${wallet.idempotency.purge-interval-ms:3600000}")
+  public void purge() {
+
+    int purged =
+        idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+
+    if (purged > 0) {
+      log.info("Purged {} expired idempotency records", purged);
+    }
+  }
+
+  private TransactionResponseDto lookup(String id, String requestDigest) {
+
+    CachedResponse cached = cache.get(id);
+
+    if (cached != null && cached.expiresAt() < now()) {
+      cache.remove(id);
+      cached = null;
+    }
+
+    if (cached == null) {
+      cached =
+          idempotencyRecordRepository
+              .findById(id)
+              .filter(IdempotencyRecord::isCompleted)
+              .map(
+                  found ->
+                      new CachedResponse(
+                          found.getRequestDigest(), found.toResponse(), now() + cacheTtlMillis))
+              .orElse(null);
+
+      if (cached == null) {
+        return null;
+      }
+
+      cache.put(id, cached);
+    }
+
+    if (!cached.requestDigest().equals(requestDigest)) {
+
+      throw new CustomConflictException("Idempotency-Key was already used for another request!");
+    }
+
+    return cached.response();
+  }
+
+  /** SHA-256 of the canonical JSON of the operation and its request, as 64 hex characters. */
+  static String digest(String operation, Object request) {
+
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance("SHA-256")
+                  .digest(CANONICAL_JSON.writeValueAsBytes(List.of(operation, request))));
+    } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+
+      throw new IllegalStateException("Cannot digest the " + operation + " request", e);
+    }
+  }
+
+  private static long now() {
+
+    return System.currentTimeMillis();
+  }
+
+  private record CachedResponse(
+      String requestDigest, TransactionResponseDto response, long expiresAt) {}
+
+  private static final class Claim {
+
+    private final String id;
+    private volatile boolean committed;
+
+    private Claim(String id) {
+
+      this.id = id;
+    }
+  }
+}
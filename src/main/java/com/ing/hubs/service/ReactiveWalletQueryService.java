@@ -0,0 +1,160 @@
+package com.ing.hubs.service;
+
+import java.time.LocalDateTime;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Service;
+
+import com.ing.hubs.dto.ListTransactionDto;
+import com.ing.hubs.dto.ListWalletDto;
+import com.ing.hubs.dto.TransactionCursor;
+import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.exception.CustomUnauthorizedException;
+import com.ing.hubs.model.ExportFormat;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.ReactiveWalletRepository;
+
+import lombok.RequiredArgsConstructor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking versions of the {@link WalletService} listings for the {@code reactive} profile,
+ * with the same not-found and ownership checks.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveWalletQueryService {
+
+  private final ReactiveWalletRepository reactiveWalletRepository;
+  private final TransactionExporter transactionExporter;
+
+  public Mono<ListWalletDto> listWallets(String customerId) {
+
+    return reactiveWalletRepository
+        .findCustomerTcknById(customerId)
+        .switchIfEmpty(Mono.error(() -> new CustomNotFoundException("Customer not found!")))
+        .flatMap(tckn -> checkOwner(tckn, "You can only access your own wallets!"))
+        .then(reactiveWalletRepository.findAllByCustomerId(customerId).collectList())
+        .map(wallets -> ListWalletDto.builder().customerId(customerId).wallets(wallets).build());
+  }
+
+  public Mono<ListTransactionDto> listTransactions(
+      String walletId, String after, int limit, Sort.Direction direction) {
+
+    return Mono.fromRunnable(() -> WalletService.checkPageSize(limit))
+        .then(reactiveWalletRepository.findCustomerTcknByWalletId(walletId))
+        .switchIfEmpty(Mono.error(() -> new CustomNotFoundException("Wallet not found!")))
+        .flatMap(tckn -> checkOwner(tckn, "You can only list transactions of your own wallets!"))
+        .then(
+            Mono.defer(
+                () ->
+                    reactiveWalletRepository
+                        .findPageByWalletId(
+                            walletId, TransactionCursor.parse(after), direction, limit + 1)
+                        .collectList()))
+        .map(transactions -> ListTransactionDto.page(walletId, transactions, limit));
+  }
+
+  /**
+   * {@link #listWallets(String)}, unless {@code ifNoneMatch} names the listing's current ETag. The
+   * tag is read before the wallets, so it is never newer than the body it is sent with.
+   */
+  public Mono<ConditionalRead<ListWalletDto>> listWallets(String customerId, String ifNoneMatch) {
+
+    return reactiveWalletRepository
+        .findCustomerTcknById(customerId)
+        .switchIfEmpty(Mono.error(() -> new CustomNotFoundException("Customer not found!")))
+        .flatMap(tckn -> checkOwner(tckn, "You can only access your own wallets!"))
+        .then(reactiveWalletRepository.findWalletsVersionById(customerId))
+        .map(ConditionalRead::eTagOf)
+        .flatMap(
+            eTag ->
+                ConditionalRead.matches(ifNoneMatch, eTag, false)
+                    ? Mono.just(ConditionalRead.<ListWalletDto>notModified(eTag))
+                    : reactiveWalletRepository
+                        .findAllByCustomerId(customerId)
+                        .collectList()
+                        .map(
+                            wallets ->
+                                new ConditionalRead<>(
+                                    eTag,
+                                    ListWalletDto.builder()
+                                        .customerId(customerId)
+                                        .wallets(wallets)
+                                        .build())));
+  }
+
+  /**
+   * {@link #listTransactions(String, String, int, Sort.Direction)}, unless {@code ifNoneMatch}
+   * names the wallet's current ETag. The tag is read before the page, so it is never newer than the
+   * body it is sent with.
+   */
+  public Mono<ConditionalRead<ListTransactionDto>> listTransactions(
+      String walletId, String after, int limit, Sort.Direction direction, String ifNoneMatch) {
+
+    return Mono.fromRunnable(() -> WalletService.checkPageSize(limit))
+        .then(reactiveWalletRepository.findCustomerTcknByWalletId(walletId))
+        .switchIfEmpty(Mono.error(() -> new CustomNotFoundException("Wallet not found!")))
+        .flatMap(tckn -> checkOwner(tckn, "You can only list transactions of your own wallets!"))
+        .then(reactiveWalletRepository.findTransactionsVersionById(walletId))
+        .map(ConditionalRead::eTagOf)
+        .flatMap(
+            eTag ->
+                ConditionalRead.matches(ifNoneMatch, eTag, false)
+                    ? Mono.just(ConditionalRead.<ListTransactionDto>notModified(eTag))
+                    : reactiveWalletRepository
+                        .findPageByWalletId(
+                            walletId, TransactionCursor.parse(after), direction, limit + 1)
+                        .collectList()
+                        .map(
+                            transactions ->
+                                new ConditionalRead<>(
+                                    eTag, ListTransactionDto.page(walletId, transactions, limit))));
+  }
+
+  /** The export lines, with the CSV header first; rows are read as the response drains. */
+  public Flux<String> exportTransactions(
+      String walletId,
+      TransactionStatus status,
+      LocalDateTime from,
+      LocalDateTime to,
+      ExportFormat format) {
+
+    Flux<String> lines =
+        reactiveWalletRepository
+            .findForExport(walletId, status, from, to)
+            .map(row -> transactionExporter.line(row, format));
+
+    return reactiveWalletRepository
+        .findCustomerTcknByWalletId(walletId)
+        .switchIfEmpty(Mono.error(() -> new CustomNotFoundException("Wallet not found!")))
+        .flatMap(tckn -> checkOwner(tckn, "You can only export transactions of your own wallets!"))
+        .thenMany(
+            format == ExportFormat.CSV
+                ? Flux.concat(Mono.just(TransactionExporter.CSV_HEADER + '\n'), lines)
+                : lines);
+  }
+
+  private Mono<Void> checkOwner(String ownerTckn, String message) {
+
+    return ReactiveSecurityContextHolder.getContext()
+        .map(SecurityContext::getAuthentication)
+        .filter(
+            authentication ->
+                isCustomer(authentication) && !ownerTckn.equals(authentication.getName()))
+        .flatMap(authentication -> Mono.error(new CustomUnauthorizedException(message)));
+  }
+
+  private static boolean isCustomer(Authentication authentication) {
+
+    return authentication.getAuthorities().stream()
+        .anyMatch(grantedAuthority -> grantedAuthority.getAuthority().equals("ROLE_CUSTOMER"));
+  }
+}
@@ -0,0 +1,295 @@
+package com.ing.hubs.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.dto.TransactionSummaryDto;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Approves or denies many PENDING transactions in one call. The transactions are read with one
+ * query and grouped by wallet, then the wallets are committed in chunks of about {@code
+ * wallet.approval.chunk-size} transactions. Inside a chunk the still pending rows are locked, each
+ * wallet gets one conditional balance {@code UPDATE} for all of its transactions (split wallets go
+ * through {@link WalletSubBalances#adjust} when that misses) and the statuses are flipped with one
+ * {@code UPDATE}. Transfer legs, and every item in ledger mode (where each posting belongs to one
+ * transaction), go through {@link WalletService#approve} one by one.
+ */
+@Slf4j
+@Service
+public class TransactionApprovalService {
+
+  private static final String PROCESSED_ALREADY = "Transaction processed already!";
+
+  private final TransactionRepository transactionRepository;
+  private final WalletRepository walletRepository;
+  private final WalletService walletService;
+  private final WalletLockManager walletLockManager;
+  private final WalletLedger walletLedger;
+  private final TransactionTemplate transactionTemplate;
+  private final WalletReadCache walletReadCache;
+  private final CustomerPortfolios customerPortfolios;
+  private final WalletSubBalances walletSubBalances;
+  private final int chunkSize;
+
+  public TransactionApprovalService(
+      TransactionRepository transactionRepository,
+      WalletRepository walletRepository,
+      WalletService walletService,
+      WalletLockManager walletLockManager,
+      WalletLedger walletLedger,
+      TransactionTemplate transactionTemplate,
+      WalletReadCache walletReadCache,
+      CustomerPortfolios customerPortfolios,
+      WalletSubBalances walletSubBalances,
+      @Value("${wallet.approval.chunk-size:100}") int chunkSize) {
+
+    if (chunkSize <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.approval.chunk-size");
+    }
+
+    this.transactionRepository = transactionRepository;
+    this.walletRepository = walletRepository;
+    this.walletService = walletService;
+    this.walletLockManager = walletLockManager;
+    this.walletLedger = walletLedger;
+    this.transactionTemplate = transactionTemplate;
+    this.walletReadCache = walletReadCache;
+    this.customerPortfolios = customerPortfolios;
+    this.walletSubBalances = walletSubBalances;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Moves the given transactions out of PENDING. Results come back in request order; items that are
+   * missing, processed already (including repeats of an id within the request) or failed carry only
+   * their id and the reason.
+   */
+  public List<TransactionResponseDto> processAll(
+      List<String> transactionIds, TransactionStatus status) {
+
+    TransactionStatus newStatus =
+        status.equals(TransactionStatus.APPROVED)
+            ? TransactionStatus.APPROVED
+            : TransactionStatus.DENIED;
+    Set<String> distinctIds = new LinkedHashSet<>(transactionIds);
+    Map<String, TransactionResponseDto> outcomes =
+        walletLedger.isEnabled()
+            ? processOneByOne(distinctIds, newStatus)
+            : processGrouped(distinctIds, newStatus);
+
+    List<TransactionResponseDto> responses = new ArrayList<>(transactionIds.size());
+    Set<String> seen = new HashSet<>();
+
+    for (String transactionId : transactionIds) {
+      TransactionResponseDto outcome = outcomes.get(transactionId);
+
+      if (!seen.add(transactionId) && outcome.status() != null) {
+        outcome = failure(transactionId, PROCESSED_ALREADY);
+      }
+
+      responses.add(outcome);
+    }
+
+    return responses;
+  }
+
+  private Map<String, TransactionResponseDto> processOneByOne(
+      Collection<String> transactionIds, TransactionStatus newStatus) {
+
+    Map<String, TransactionResponseDto> outcomes = new HashMap<>();
+
+    for (String transactionId : transactionIds) {
+      try {
+        outcomes.put(transactionId, walletService.approve(transactionId, newStatus));
+      } catch (ResponseStatusException e) {
+
+        outcomes.put(transactionId, failure(transactionId, e.getReason()));
+      } catch (RuntimeException e) {
+
+        log.warn("Approval of transaction {} failed", transactionId, e);
+        outcomes.put(transactionId, failure(transactionId, "Operation failed, please try again!"));
+      }
+    }
+
+    return outcomes;
+  }
+
+  private Map<String, TransactionResponseDto> processGrouped(
+      Set<String> transactionIds, TransactionStatus newStatus) {
+
+    Map<String, TransactionSummaryDto> summaries =
+        transactionRepository.findSummariesByIdIn(transactionIds).stream()
+            .collect(Collectors.toMap(TransactionSummaryDto::transactionId, Function.identity()));
+    Map<String, TransactionResponseDto> outcomes = new HashMap<>();
+    // sorted by wallet id so that chunks take their wallet locks in a stable order
+    Map<String, List<TransactionSummaryDto>> byWallet = new TreeMap<>();
+    // both legs of a transfer have to move together, which the single approval already does
+    List<String> transfers = new ArrayList<>();
+
+    for (String transactionId : transactionIds) {
+      TransactionSummaryDto summary = summaries.get(transactionId);
+
+      if (summary == null) {
+        outcomes.put(transactionId, failure(transactionId, "Transaction not found!"));
+      } else if (!summary.status().equals(TransactionStatus.PENDING)) {
+        outcomes.put(transactionId, failure(transactionId, PROCESSED_ALREADY));
+      } else if (summary.linkedTransactionId() != null) {
+        transfers.add(transactionId);
+      } else {
+        byWallet.computeIfAbsent(summary.walletId(), walletId -> new ArrayList<>()).add(summary);
+      }
+    }
+
+    List<List<TransactionSummaryDto>> chunk = new ArrayList<>();
+    int chunkTransactions = 0;
+
+    for (List<TransactionSummaryDto> walletTransactions : byWallet.values()) {
+      chunk.add(walletTransactions);
+      chunkTransactions += walletTransactions.size();
+
+      if (chunkTransactions >= chunkSize) {
+        outcomes.putAll(commitChunk(chunk, newStatus));
+        chunk = new ArrayList<>();
+        chunkTransactions = 0;
+      }
+    }
+
+    if (!chunk.isEmpty()) {
+      outcomes.putAll(commitChunk(chunk, newStatus));
+    }
+
+    outcomes.putAll(processOneByOne(transfers, newStatus));
+
+    return outcomes;
+  }
+
+  private Map<String, TransactionResponseDto> commitChunk(
+      List<List<TransactionSummaryDto>> chunk, TransactionStatus newStatus) {
+
+    try {
+      return transactionTemplate.execute(status -> applyChunk(chunk, newStatus));
+    } catch (RuntimeException e) {
+
+      log.warn("Batch approval of {} wallets failed", chunk.size(), e);
+      Map<String, TransactionResponseDto> outcomes = new HashMap<>();
+      chunk.stream()
+          .flatMap(List::stream)
+          .forEach(
+              summary ->
+                  outcomes.put(
+                      summary.transactionId(),
+                      failure(summary.transactionId(), "Operation failed, please try again!")));
+
+      return outcomes;
+    }
+  }
+
+  private Map<String, TransactionResponseDto> applyChunk(
+      List<List<TransactionSummaryDto>> chunk, TransactionStatus newStatus) {
+
+    List<String> walletIds =
+        chunk.stream().map(walletTransactions -> walletTransactions.get(0).walletId()).toList();
+    walletLockManager.lockAll(walletIds);
+    walletReadCache.evictAfterCommit(walletIds);
+
+    Set<String> pendingIds =
+        new HashSet<>(
+            transactionRepository.lockIdsByStatus(
+                chunk.stream()
+                    .flatMap(List::stream)
+                    .map(TransactionSummaryDto::transactionId)
+                    .toList(),
+                TransactionStatus.PENDING));
+    Map<String, TransactionResponseDto> outcomes = new HashMap<>();
+    List<String> processedIds = new ArrayList<>();
+
+    for (List<TransactionSummaryDto> walletTransactions : chunk) {
+      List<TransactionSummaryDto> claimed = new ArrayList<>();
+      Money balanceDelta = Money.ZERO;
+      Money usableBalanceDelta = Money.ZERO;
+
+      for (TransactionSummaryDto summary : walletTransactions) {
+        if (!pendingIds.contains(summary.transactionId())) {
+          outcomes.put(
+              summary.transactionId(), failure(summary.transactionId(), PROCESSED_ALREADY));
+        } else if (WalletService.releasesHeldAmount(summary.type(), newStatus)) {
+          claimed.add(summary);
+          usableBalanceDelta = usableBalanceDelta.plus(summary.amount());
+        } else {
+          claimed.add(summary);
+          balanceDelta = balanceDelta.minus(summary.amount());
+        }
+      }
+
+      if (claimed.isEmpty()) {
+        continue;
+      }
+
+      String walletId = claimed.get(0).walletId();
+      boolean adjusted =
+          walletRepository.adjustBalances(walletId, balanceDelta, usableBalanceDelta) > 0
+              || walletRepository.findSubBalancesById(walletId).orElse(1) > 1
+                  && walletSubBalances.adjust(
+                      walletId, claimed.get(0).transactionId(), balanceDelta, usableBalanceDelta);
+
+      if (adjusted) {
+        customerPortfolios.adjust(walletId, balanceDelta, usableBalanceDelta, -claimed.size());
+      }
+
+      for (TransactionSummaryDto summary : claimed) {
+        if (adjusted) {
+          processedIds.add(summary.transactionId());
+          outcomes.put(
+              summary.transactionId(),
+              TransactionResponseDto.builder()
+                  .transactionId(summary.transactionId())
+                  .status(newStatus)
+                  .message("Transaction processed successfully!")
+                  .build());
+        } else {
+          outcomes.put(
+              summary.transactionId(),
+              failure(summary.transactionId(), "Balance is not sufficient!"));
+        }
+      }
+    }
+
+    if (!processedIds.isEmpty()
+        && transactionRepository.updateStatuses(
+                processedIds, TransactionStatus.PENDING, newStatus, LocalDateTime.now())
+            != processedIds.size()) {
+
+      throw new IllegalStateException("Locked transactions changed status concurrently");
+    }
+
+    return outcomes;
+  }
+
+  private static TransactionResponseDto failure(String transactionId, String message) {
+
+    return TransactionResponseDto.builder().transactionId(transactionId).message(message).build();
+  }
+}
@@ -0,0 +1,250 @@
+package com.ing.hubs.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.hubs.dto.TransactionExportDto;
+import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.exception.CustomUnauthorizedException;
+import com.ing.hubs.model.ExportFormat;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.WalletRepository;
+
+/**
+ * Writes a wallet's transaction history as NDJSON or CSV straight from a forward-only JDBC cursor,
+ * {@code wallet.export.fetch-size} rows at a time, so memory use does not grow with the history.
+ * Rows are written as they are read and a slow client holds the cursor back instead of letting rows
+ * pile up. The export runs in one read-only database transaction, which also keeps drivers that
+ * only stream inside a transaction from reading the whole result up front.
+ */
+@Service
+public class TransactionExporter {
+
+  static final String CSV_HEADER =
+      "transactionId,walletId,type,amount,status,oppositePartyType,oppositeParty,"
+          + "linkedTransactionId,createdAt";
+  private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+  private final WalletRepository walletRepository;
+  private final ObjectMapper objectMapper;
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final long timeoutMillis;
+
+  public TransactionExporter(
+      WalletRepository walletRepository,
+      ObjectMapper objectMapper,
+      DataSource dataSource,
+      PlatformTransactionManager transactionManager,
+      @Value("${wallet.export.fetch-size:1000}") int fetchSize,
+      @Value("${wallet.export.timeout-ms:3600000}") long timeoutMillis) {
+
+    if (fetchSize <= 0 || timeoutMillis <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.export.* settings");
+    }
+
+    this.walletRepository = walletRepository;
+    this.objectMapper = objectMapper;
+    this.jdbcTemplate = new JdbcTemplate(dataSource);
+    this.jdbcTemplate.setFetchSize(fetchSize);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.transactionTemplate.setReadOnly(true);
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /** How long an export request may run before the server times it out. */
+  public long getTimeoutMillis() {
+
+    return timeoutMillis;
+  }
+
+  public static MediaType mediaType(ExportFormat format) {
+
+    return switch (format) {
+      case NDJSON -> MediaType.APPLICATION_NDJSON;
+      case CSV -> TEXT_CSV;
+    };
+  }
+
+  /** Checked before the response starts, while a failure can still become an error status. */
+  public void checkAccess(String walletId) {
+
+    String ownerTckn =
+        walletRepository
+            .findCustomerTcknById(walletId)
+            .orElseThrow(() -> new CustomNotFoundException("Wallet not found!"));
+
+    if (WalletService.isCurrentUserCustomer()
+        && !ownerTckn.equals(WalletService.getCurrentUserTckn())) {
+
+      throw new CustomUnauthorizedException(
+          "You can only export transactions of your own wallets!");
+    }
+  }
+
+  /**
+   * Writes the wallet's transactions in id order, optionally only those with {@code status} and
+   * created in {@code [from, to)}, and returns how many were written.
+   */
+  public long export(
+      String walletId,
+      TransactionStatus status,
+      LocalDateTime from,
+      LocalDateTime to,
+      ExportFormat format,
+      OutputStream outputStream)
+      throws IOException {
+
+    List<Object> args = new ArrayList<>(List.of(walletId));
+    StringBuilder sql =
+        new StringBuilder(
+            """
+            SELECT id, wallet_id, type, amount, status, opposite_party_type, opposite_party,
+                   linked_transaction_id, created_at
+            FROM transaction
+            WHERE wallet_id = ?""");
+
+    if (status != null) {
+      sql.append(" AND status = ?");
+      args.add(status.ordinal());
+    }
+
+    if (from != null) {
+      sql.append(" AND created_at >= ?");
+      args.add(from);
+    }
+
+    if (to != null) {
+      sql.append(" AND created_at < ?");
+      args.add(to);
+    }
+
+    sql.append(" ORDER BY id");
+
+    Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+    AtomicLong rows = new AtomicLong();
+
+    if (format == ExportFormat.CSV) {
+      writer.write(CSV_HEADER);
+      writer.write('\n');
+    }
+
+    try {
+      transactionTemplate.executeWithoutResult(
+          transactionStatus ->
+              jdbcTemplate.query(
+                  sql.toString(),
+                  resultSet -> {
+                    try {
+                      writer.write(line(row(resultSet), format));
+                    } catch (IOException e) {
+
+                      throw new UncheckedIOException(e);
+                    }
+                    rows.incrementAndGet();
+                  },
+                  args.toArray()));
+    } catch (UncheckedIOException e) {
+
+      throw e.getCause();
+    }
+
+    writer.flush();
+
+    return rows.get();
+  }
+
+  /** One NDJSON or CSV line, newline included. */
+  public String line(TransactionExportDto row, ExportFormat format) {
+
+    return switch (format) {
+      case NDJSON -> json(row) + '\n';
+      case CSV ->
+          Stream.of(
+                      row.transactionId(),
+                      row.walletId(),
+                      row.type(),
+                      row.amount().toBigDecimal().toPlainString(),
+                      row.status(),
+                      row.oppositePartyType(),
+                      row.oppositeParty(),
+                      row.linkedTransactionId(),
+                      row.createdAt())
+                  .map(TransactionExporter::csvField)
+                  .collect(Collectors.joining(","))
+              + '\n';
+    };
+  }
+
+  private String json(TransactionExportDto row) {
+
+    try {
+      return objectMapper.writeValueAsString(row);
+    } catch (JsonProcessingException e) {
+
+      throw new IllegalStateException("Could not serialize transaction " + row.transactionId(), e);
+    }
+  }
+
+  private static String csvField(Object value) {
+
+    if (value == null) {
+      return "";
+    }
+
+    String field = value.toString();
+
+    if (field.contains(",")
+        || field.contains("\"")
+        || field.contains("\n")
+        || field.contains("\r")) {
+      return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    return field;
+  }
+
+  private static TransactionExportDto row(ResultSet resultSet) throws SQLException {
+
+    return new TransactionExportDto(
+        resultSet.getString("id"),
+        resultSet.getString("wallet_id"),
+        TransactionType.values()[resultSet.getInt("type")],
+        Money.of(resultSet.getBigDecimal("amount")),
+        TransactionStatus.values()[resultSet.getInt("status")],
+        OppositePartyType.values()[resultSet.getInt("opposite_party_type")],
+        resultSet.getString("opposite_party"),
+        resultSet.getString("linked_transaction_id"),
+        resultSet.getObject("created_at", LocalDateTime.class));
+  }
+}
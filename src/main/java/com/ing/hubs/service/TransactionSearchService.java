@@ -0,0 +1,174 @@
+package com.ing.hubs.service;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ing.hubs.dto.ListTransactionDto;
+import com.ing.hubs.dto.TransactionCursor;
+import com.ing.hubs.dto.TransactionDto;
+import com.ing.hubs.dto.TransactionSearchDto;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Finds transactions across wallets by status, type, amount, creation time and opposite party type,
+ * newest first. The SQL only carries the filters that are set, so the database can seek {@code
+ * idx_transaction_wallet_id_created_at} for a wallet or {@code
+ * idx_transaction_status_type_created_at} for a status and type instead of reading the table.
+ * Customers only find transactions of their own wallets and reach them through their wallets;
+ * admins have to name a wallet or a status.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionSearchService {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  /** A query with its arguments, kept apart so tests can look at its plan. */
+  record Query(String sql, Object[] args) {}
+
+  /**
+   * One page of matches, newest first. {@code nextCursor} is passed back as {@code after} to get
+   * the next page. Transactions created before {@code createdAt} was recorded are not found.
+   */
+  @Transactional(readOnly = true)
+  public ListTransactionDto search(TransactionSearchDto search, String after, int limit) {
+
+    WalletService.checkPageSize(limit);
+
+    String ownerTckn = WalletService.currentOwnerTckn();
+
+    if (ownerTckn == null && search.walletId() == null && search.status() == null) {
+
+      throw new CustomBadRequestException("Search needs a walletId or a status!");
+    }
+
+    // one row past the page tells whether there is a next one
+    Query query = query(search, ownerTckn, after, limit + 1);
+    List<TransactionDto> rows =
+        jdbcTemplate.query(query.sql(), (resultSet, rowNum) -> row(resultSet), query.args());
+
+    if (rows.size() <= limit) {
+
+      return new ListTransactionDto(search.walletId(), rows, null);
+    }
+
+    List<TransactionDto> transactions = rows.subList(0, limit);
+
+    return new ListTransactionDto(
+        search.walletId(), transactions, TransactionCursor.of(transactions.getLast()).toString());
+  }
+
+  static Query query(TransactionSearchDto search, String ownerTckn, String after, int rows) {
+
+    List<Object> args = new ArrayList<>();
+    StringBuilder sql =
+        new StringBuilder(
+            """
+            SELECT t.id, t.wallet_id, t.amount, t.type, t.opposite_party_type, t.opposite_party,
+                   t.linked_transaction_id, t.status, t.created_at, t.processed_at
+            FROM transaction t""");
+
+    if (ownerTckn != null) {
+      sql.append(
+          " JOIN wallet w ON w.id = t.wallet_id JOIN customer c ON c.id = w.customer_id"
+              + " WHERE c.tckn = ? AND t.created_at IS NOT NULL");
+      args.add(ownerTckn);
+    } else {
+      sql.append(" WHERE t.created_at IS NOT NULL");
+    }
+
+    if (search.walletId() != null) {
+      sql.append(" AND t.wallet_id = ?");
+      args.add(search.walletId());
+    }
+
+    if (search.status() != null) {
+      sql.append(" AND t.status = ?");
+      args.add(search.status().ordinal());
+    }
+
+    if (search.type() != null) {
+      sql.append(" AND t.type = ?");
+      args.add(search.type().ordinal());
+    }
+
+    if (search.minAmount() != null) {
+      sql.append(" AND t.amount >= ?");
+      args.add(amount(search.minAmount()));
+    }
+
+    if (search.maxAmount() != null) {
+      sql.append(" AND t.amount <= ?");
+      args.add(amount(search.maxAmount()));
+    }
+
+    if (search.from() != null) {
+      sql.append(" AND t.created_at >= ?");
+      args.add(search.from());
+    }
+
+    if (search.to() != null) {
+      sql.append(" AND t.created_at < ?");
+      args.add(search.to());
+    }
+
+    if (search.oppositePartyType() != null) {
+      sql.append(" AND t.opposite_party_type = ?");
+      args.add(search.oppositePartyType().ordinal());
+    }
+
+    TransactionCursor cursor = TransactionCursor.parse(after);
+
+    if (cursor != null) {
+
+      if (cursor.createdAt() == null) {
+
+        throw new CustomBadRequestException("Invalid cursor!");
+      }
+
+      sql.append(" AND (t.created_at < ? OR (t.created_at = ? AND t.id < ?))");
+      args.add(cursor.createdAt());
+      args.add(cursor.createdAt());
+      args.add(cursor.id());
+    }
+
+    sql.append(" ORDER BY t.created_at DESC, t.id DESC FETCH FIRST ? ROWS ONLY");
+    args.add(rows);
+
+    return new Query(sql.toString(), args.toArray());
+  }
+
+  private static BigDecimal amount(BigDecimal amount) {
+
+    return Money.of(amount).toBigDecimal();
+  }
+
+  private static TransactionDto row(ResultSet resultSet) throws SQLException {
+
+    return new TransactionDto(
+        resultSet.getString("id"),
+        resultSet.getString("wallet_id"),
+        Money.of(resultSet.getBigDecimal("amount")),
+        TransactionType.values()[resultSet.getInt("type")],
+        OppositePartyType.values()[resultSet.getInt("opposite_party_type")],
+        resultSet.getString("opposite_party"),
+        resultSet.getString("linked_transaction_id"),
+        TransactionStatus.values()[resultSet.getInt("status")],
+        resultSet.getObject("created_at", LocalDateTime.class),
+        resultSet.getObject("processed_at", LocalDateTime.class));
+  }
+}
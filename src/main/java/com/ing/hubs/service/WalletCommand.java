@@ -0,0 +1,40 @@
+package com.ing.hubs.service;
+
+import org.springframework.security.core.context.SecurityContext;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.WithdrawDto;
+import com.ing.hubs.model.TransactionStatus;
+
+public sealed interface WalletCommand {
+
+  String walletId();
+
+  SecurityContext securityContext();
+
+  record Deposit(DepositDto depositDto, SecurityContext securityContext) implements WalletCommand {
+
+    @Override
+    public String walletId() {
+
+      return depositDto.walletId();
+    }
+  }
+
+  record Withdraw(WithdrawDto withdrawDto, SecurityContext securityContext)
+      implements WalletCommand {
+
+    @Override
+    public String walletId() {
+
+      return withdrawDto.walletId();
+    }
+  }
+
+  record Approve(
+      String walletId,
+      String transactionId,
+      TransactionStatus status,
+      SecurityContext securityContext)
+      implements WalletCommand {}
+}
@@ -0,0 +1,374 @@
+package com.ing.hubs.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ing.hubs.dto.*;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.ConcurrencyMode;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.TransactionRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entry point for wallet writes. In {@link ConcurrencyMode#SHARDED} mode wallet ids are hashed onto
+ * a fixed set of single-threaded shards; each shard drains its queue and applies the drained
+ * commands in one database transaction (waiting up to {@code wallet.sharding.max-wait-ms} for a
+ * group to fill), so writers of one wallet never race each other and concurrent requests share one
+ * JDBC batch and one commit. In every other mode the call goes straight to {@link WalletService}.
+ * With the deposit journal enabled, deposits are handed to {@link WalletJournal} instead.
+ */
+@Slf4j
+@Service
+public class WalletCommandDispatcher {
+
+  private final WalletService walletService;
+  private final TransactionRepository transactionRepository;
+  private final WalletJournal walletJournal;
+  private final Shard[] shards;
+
+  public WalletCommandDispatcher(
+      WalletService walletService,
+      TransactionRepository transactionRepository,
+      WalletJournal walletJournal,
+      @Value("${wallet.concurrency.mode:OPTIMISTIC}") ConcurrencyMode mode,
+      @Value("${wallet.sharding.shards:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}")
+          int shardCount,
+      @Value("${wallet.sharding.queue-capacity:1024}") int queueCapacity,
+      @Value("${wallet.sharding.max-batch-size:64}") int maxBatchSize,
+      @Value("${wallet.sharding.max-wait-ms:0}") long maxWaitMillis) {
+
+    this.walletService = walletService;
+    this.transactionRepository = transactionRepository;
+    this.walletJournal = walletJournal;
+
+    if (mode != ConcurrencyMode.SHARDED) {
+      this.shards = new Shard[0];
+      return;
+    }
+
+    if (shardCount <= 0 || queueCapacity <= 0 || maxBatchSize <= 0 || maxWaitMillis < 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.sharding.* settings");
+    }
+
+    this.shards = new Shard[shardCount];
+
+    for (int i = 0; i < shardCount; i++) {
+      shards[i] = new Shard(i, queueCapacity, maxBatchSize, maxWaitMillis);
+      shards[i].start();
+    }
+  }
+
+  public boolean isSharded() {
+
+    return shards.length > 0;
+  }
+
+  public TransactionResponseDto makeDeposit(DepositDto depositDto) {
+
+    if (walletJournal.isEnabled()) {
+
+      return walletJournal.append(depositDto);
+    }
+
+    if (!isSharded()) {
+
+      return walletService.makeDeposit(depositDto);
+    }
+
+    return submit(new WalletCommand.Deposit(depositDto, SecurityContextHolder.getContext()));
+  }
+
+  /**
+   * A deposit conditional on the wallet's ETag runs on the caller's thread: the journal applies
+   * deposits after answering and shards commit them in groups, so neither can refuse one on it.
+   */
+  public TransactionResponseDto makeDeposit(DepositDto depositDto, String ifMatch) {
+
+    if (ifMatch == null) {
+
+      return makeDeposit(depositDto);
+    }
+
+    return walletService.makeDeposit(depositDto, ifMatch);
+  }
+
+  public TransactionResponseDto makeWithdraw(WithdrawDto withdrawDto) {
+
+    if (!isSharded()) {
+
+      return walletService.makeWithdraw(withdrawDto);
+    }
+
+    return submit(new WalletCommand.Withdraw(withdrawDto, SecurityContextHolder.getContext()));
+  }
+
+  /** Like {@link #makeDeposit(DepositDto, String)}, on the caller's thread. */
+  public TransactionResponseDto makeWithdraw(WithdrawDto withdrawDto, String ifMatch) {
+
+    if (ifMatch == null) {
+
+      return makeWithdraw(withdrawDto);
+    }
+
+    return walletService.makeWithdraw(withdrawDto, ifMatch);
+  }
+
+  public TransactionResponseDto approve(String transactionId, TransactionStatus status) {
+
+    if (!isSharded()) {
+
+      return walletService.approve(transactionId, status);
+    }
+
+    List<String> walletIds = transactionRepository.findWalletIdsById(transactionId);
+
+    if (walletIds.size() > 1) {
+
+      // a transfer touches two wallets, so it cannot be owned by one shard
+      return walletService.approve(transactionId, status);
+    }
+
+    String walletId = walletIds.isEmpty() ? transactionId : walletIds.getFirst();
+
+    return submit(
+        new WalletCommand.Approve(
+            walletId, transactionId, status, SecurityContextHolder.getContext()));
+  }
+
+  /**
+   * Transfers touch two wallets and always run on the caller's thread. Every writer updates wallet
+   * rows in ascending id order (shards sort their groups too), so this cannot deadlock with them.
+   */
+  public TransactionResponseDto makeTransfer(TransferDto transferDto) {
+
+    return walletService.makeTransfer(transferDto);
+  }
+
+  /**
+   * Applies many deposits and withdraws for one request. Items are grouped by wallet so that each
+   * wallet is loaded once; in {@link ConcurrencyMode#SHARDED} mode every item joins its shard's
+   * group commit, otherwise the whole batch runs in one transaction. Results come back in request
+   * order, failed items carry only the failure reason.
+   */
+  public WalletBatchResponseDto applyBatch(WalletBatchDto walletBatchDto) {
+
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+    List<WalletCommand> commands = new ArrayList<>();
+
+    walletBatchDto
+        .deposits()
+        .forEach(
+            depositDto -> commands.add(new WalletCommand.Deposit(depositDto, securityContext)));
+    walletBatchDto
+        .withdraws()
+        .forEach(
+            withdrawDto -> commands.add(new WalletCommand.Withdraw(withdrawDto, securityContext)));
+
+    List<TransactionResponseDto> responses =
+        execute(commands).stream().map(WalletCommandDispatcher::toResponse).toList();
+    int depositCount = walletBatchDto.deposits().size();
+
+    return WalletBatchResponseDto.builder()
+        .deposits(responses.subList(0, depositCount))
+        .withdraws(responses.subList(depositCount, responses.size()))
+        .build();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+
+    for (Shard shard : shards) {
+      shard.interrupt();
+    }
+  }
+
+  private List<WalletCommandResult> execute(List<WalletCommand> commands) {
+
+    if (commands.isEmpty()) {
+
+      return List.of();
+    }
+
+    if (isSharded()) {
+      List<CompletableFuture<TransactionResponseDto>> futures =
+          commands.stream().map(this::enqueue).toList();
+
+      return futures.stream().map(WalletCommandDispatcher::await).toList();
+    }
+
+    int[] order =
+        IntStream.range(0, commands.size())
+            .boxed()
+            .sorted(Comparator.comparing(i -> commands.get(i).walletId()))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    List<WalletCommandResult> grouped =
+        walletService.applyBatch(IntStream.of(order).mapToObj(commands::get).toList());
+    WalletCommandResult[] results = new WalletCommandResult[commands.size()];
+
+    for (int i = 0; i < order.length; i++) {
+      results[order[i]] = grouped.get(i);
+    }
+
+    return List.of(results);
+  }
+
+  private static WalletCommandResult await(CompletableFuture<TransactionResponseDto> future) {
+
+    try {
+      return WalletCommandResult.success(future.join());
+    } catch (CompletionException e) {
+
+      if (e.getCause() instanceof ResponseStatusException cause) {
+        return WalletCommandResult.failure(cause);
+      }
+
+      log.warn("Batched wallet command failed", e.getCause());
+      return WalletCommandResult.failure(
+          new CustomConflictException("Operation failed, please try again!"));
+    }
+  }
+
+  private static TransactionResponseDto toResponse(WalletCommandResult result) {
+
+    if (result.isSuccess()) {
+
+      return result.response();
+    }
+
+    return TransactionResponseDto.builder().message(result.error().getReason()).build();
+  }
+
+  private CompletableFuture<TransactionResponseDto> enqueue(WalletCommand command) {
+
+    Shard shard = shards[Math.floorMod(command.walletId().hashCode(), shards.length)];
+    PendingCommand pending = new PendingCommand(command, new CompletableFuture<>());
+
+    try {
+      shard.queue.put(pending);
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+      throw new CustomConflictException("Wallet is busy, please try again!");
+    }
+
+    return pending.result();
+  }
+
+  private TransactionResponseDto submit(WalletCommand command) {
+
+    try {
+      return enqueue(command).join();
+    } catch (CompletionException e) {
+
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+
+      throw e;
+    }
+  }
+
+  private record PendingCommand(
+      WalletCommand command, CompletableFuture<TransactionResponseDto> result) {}
+
+  private class Shard extends Thread {
+
+    private final BlockingQueue<PendingCommand> queue;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+
+    Shard(int index, int queueCapacity, int maxBatchSize, long maxWaitMillis) {
+
+      super("wallet-shard-" + index);
+      setDaemon(true);
+      this.queue = new ArrayBlockingQueue<>(queueCapacity);
+      this.maxBatchSize = maxBatchSize;
+      this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    @Override
+    public void run() {
+
+      List<PendingCommand> batch = new ArrayList<>(maxBatchSize);
+
+      while (!isInterrupted()) {
+        try {
+          batch.add(queue.take());
+          fill(batch);
+        } catch (InterruptedException e) {
+
+          interrupt();
+        }
+
+        if (!batch.isEmpty()) {
+          applyBatch(batch);
+          batch.clear();
+        }
+      }
+    }
+
+    private void fill(List<PendingCommand> batch) throws InterruptedException {
+
+      long deadline = System.nanoTime() + maxWaitNanos;
+
+      while (batch.size() < maxBatchSize) {
+        if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+          continue;
+        }
+
+        long remaining = deadline - System.nanoTime();
+        PendingCommand next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+
+        if (next == null) {
+          return;
+        }
+
+        batch.add(next);
+      }
+    }
+
+    private void applyBatch(List<PendingCommand> batch) {
+
+      batch.sort(Comparator.comparing(pending -> pending.command().walletId()));
+
+      try {
+        List<WalletCommandResult> results =
+            walletService.applyBatch(batch.stream().map(PendingCommand::command).toList());
+
+        for (int i = 0; i < batch.size(); i++) {
+          WalletCommandResult result = results.get(i);
+
+          if (result.isSuccess()) {
+            batch.get(i).result().complete(result.response());
+          } else {
+            batch.get(i).result().completeExceptionally(result.error());
+          }
+        }
+      } catch (RuntimeException e) {
+
+        log.warn("Wallet shard {} failed to apply {} commands", getName(), batch.size(), e);
+        batch.forEach(pending -> pending.result().completeExceptionally(e));
+      }
+    }
+  }
+}
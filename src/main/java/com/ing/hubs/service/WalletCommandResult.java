@@ -0,0 +1,23 @@
+package com.ing.hubs.service;
+
+import org.springframework.web.server.ResponseStatusException;
+
+import com.ing.hubs.dto.TransactionResponseDto;
+
+public record WalletCommandResult(TransactionResponseDto response, ResponseStatusException error) {
+
+  public static WalletCommandResult success(TransactionResponseDto response) {
+
+    return new WalletCommandResult(response, null);
+  }
+
+  public static WalletCommandResult failure(ResponseStatusException error) {
+
+    return new WalletCommandResult(null, error);
+  }
+
+  public boolean isSuccess() {
+
+    return error == null;
+  }
+}
@@ -0,0 +1,260 @@
+package com.ing.hubs.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.interceptor.RetryInterceptorBuilder;
+import org.springframework.retry.interceptor.RetryOperationsInterceptor;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.ing.hubs.entity.Wallet;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps a conflict score per wallet: every optimistic locking failure on a wallet adds one and the
+ * score halves every {@code wallet.contention.half-life-ms}. Wallets whose score reaches {@code
+ * wallet.contention.escalation-threshold} are hot, and their writers take a {@code SELECT ... FOR
+ * UPDATE} on the wallet row before reading it, so they queue on the database instead of retrying.
+ * Scores are published as {@code wallet.contention.conflict_score} tagged with the wallet id and
+ * dropped once they decay to nothing.
+ */
+@Slf4j
+@Component
+public class WalletContentionTracker implements RetryListener {
+
+  private static final double FORGOTTEN_SCORE = 0.01;
+
+  private final MeterRegistry meterRegistry;
+  private final LongSupplier clock;
+  private final double halfLifeNanos;
+  private final double escalationThreshold;
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Map<String, Score> scores = new ConcurrentHashMap<>();
+  private final Counter conflicts;
+  private final Counter escalations;
+  private final Counter exhausted;
+
+  @Autowired
+  public WalletContentionTracker(
+      MeterRegistry meterRegistry,
+      @Value("${wallet.contention.half-life-ms:10000}") long halfLifeMillis,
+      @Value("${wallet.contention.escalation-threshold:5}") double escalationThreshold,
+      @Value("${wallet.contention.max-attempts:5}") int maxAttempts,
+      @Value("${wallet.contention.initial-backoff-ms:10}") long initialBackoffMillis,
+      @Value("${wallet.contention.max-backoff-ms:500}") long maxBackoffMillis) {
+
+    this(
+        meterRegistry,
+        halfLifeMillis,
+        escalationThreshold,
+        maxAttempts,
+        initialBackoffMillis,
+        maxBackoffMillis,
+        System::nanoTime);
+  }
+
+  WalletContentionTracker(
+      MeterRegistry meterRegistry,
+      long halfLifeMillis,
+      double escalationThreshold,
+      int maxAttempts,
+      long initialBackoffMillis,
+      long maxBackoffMillis,
+      LongSupplier clock) {
+
+    if (halfLifeMillis <= 0
+        || escalationThreshold <= 0
+        || maxAttempts <= 0
+        || initialBackoffMillis <= 0
+        || maxBackoffMillis < initialBackoffMillis) {
+
+      throw new IllegalArgumentException("Invalid wallet.contention.* settings");
+    }
+
+    this.meterRegistry = meterRegistry;
+    this.clock = clock;
+    this.halfLifeNanos = TimeUnit.MILLISECONDS.toNanos(halfLifeMillis);
+    this.escalationThreshold = escalationThreshold;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffMillis = initialBackoffMillis;
+    this.maxBackoffMillis = maxBackoffMillis;
+    this.conflicts =
+        Counter.builder("wallet.contention.conflicts")
+            .description("Optimistic locking failures on wallets")
+            .register(meterRegistry);
+    this.escalations =
+        Counter.builder("wallet.contention.escalations")
+            .description("Wallet writes that took a pessimistic row lock because the wallet is hot")
+            .register(meterRegistry);
+    this.exhausted =
+        Counter.builder("wallet.contention.retries_exhausted")
+            .description("Wallet writes that still conflicted after the last attempt")
+            .register(meterRegistry);
+  }
+
+  /**
+   * Retries wallet writes on optimistic locking failures with exponential backoff and random
+   * jitter, feeding every failure into the conflict scores.
+   */
+  public RetryOperationsInterceptor retryInterceptor() {
+
+    RetryTemplate retryTemplate =
+        RetryTemplate.builder()
+            .maxAttempts(maxAttempts)
+            .retryOn(ObjectOptimisticLockingFailureException.class)
+            .exponentialBackoff(initialBackoffMillis, 2, maxBackoffMillis, true)
+            .withListener(this)
+            .build();
+
+    return RetryInterceptorBuilder.stateless().retryOperations(retryTemplate).build();
+  }
+
+  @Override
+  public <T, E extends Throwable> void onError(
+      RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+
+    if (throwable instanceof ObjectOptimisticLockingFailureException e
+        && Wallet.class.getName().equals(e.getPersistentClassName())
+        && e.getIdentifier() instanceof String walletId) {
+      recordConflict(walletId);
+    }
+  }
+
+  @Override
+  public <T, E extends Throwable> void close(
+      RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+
+    if (throwable instanceof ObjectOptimisticLockingFailureException) {
+      exhausted.increment();
+    }
+  }
+
+  public void recordConflict(String walletId) {
+
+    long now = clock.getAsLong();
+    double[] before = new double[1];
+    Score updated =
+        scores.compute(
+            walletId,
+            (id, score) -> {
+              Score current = score != null ? score : newScore(id);
+              before[0] = current.valueAt(now);
+              current.add(now);
+
+              return current;
+            });
+    conflicts.increment();
+
+    if (before[0] < escalationThreshold && updated.valueAt(now) >= escalationThreshold) {
+      log.info("Wallet {} is hot, writers will lock its row until it cools down", walletId);
+    }
+  }
+
+  public boolean isHot(String walletId) {
+
+    Score score = scores.get(walletId);
+
+    return score != null && score.valueAt(clock.getAsLong()) >= escalationThreshold;
+  }
+
+  public boolean hasHotWallets() {
+
+    long now = clock.getAsLong();
+
+    return scores.values().stream().anyMatch(score -> score.valueAt(now) >= escalationThreshold);
+  }
+
+  /** Hot wallets among the given ones, in ascending id order so their row locks cannot deadlock. */
+  public List<String> hotWallets(Collection<String> walletIds) {
+
+    if (scores.isEmpty()) {
+
+      return List.of();
+    }
+
+    List<String> hot = walletIds.stream().distinct().filter(this::isHot).sorted().toList();
+    escalations.increment(hot.size());
+
+    return hot;
+  }
+
+  double conflictScore(String walletId) {
+
+    Score score = scores.get(walletId);
+
+    return score == null ? 0 : score.valueAt(clock.getAsLong());
+  }
+
+  @Scheduled(fixedDelayString = "${wallet.contention.sweep-interval-ms:60000}")
+  public void sweep() {
+
+    long now = clock.getAsLong();
+
+    for (String walletId : scores.keySet()) {
+      scores.computeIfPresent(
+          walletId,
+          (id, score) -> {
+            if (score.valueAt(now) >= FORGOTTEN_SCORE) {
+
+              return score;
+            }
+
+            meterRegistry.remove(score.gauge);
+
+            return null;
+          });
+    }
+  }
+
+  private Score newScore(String walletId) {
+
+    Score score = new Score();
+    score.gauge =
+        Gauge.builder(
+                "wallet.contention.conflict_score",
+                score,
+                registered -> registered.valueAt(clock.getAsLong()))
+            .description("Recent optimistic locking failures of the wallet, decayed by half-life")
+            .tag("wallet", walletId)
+            .register(meterRegistry);
+
+    return score;
+  }
+
+  private final class Score {
+
+    private double value;
+    private long updatedAt;
+    private Gauge gauge;
+
+    synchronized void add(long now) {
+
+      value = valueAt(now) + 1;
+      updatedAt = now;
+    }
+
+    synchronized double valueAt(long now) {
+
+      return value * Math.pow(0.5, (now - updatedAt) / halfLifeNanos);
+    }
+  }
+}
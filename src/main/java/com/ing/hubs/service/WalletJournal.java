@@ -0,0 +1,622 @@
+package com.ing.hubs.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.WalletJournalCheckpoint;
+import com.ing.hubs.entity.WalletJournalDeadLetter;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.exception.CustomUnauthorizedException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletJournalCheckpointRepository;
+import com.ing.hubs.repository.WalletJournalDeadLetterRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Write-ahead journal for deposits, used when {@code wallet.journal.enabled} is set. A deposit is
+ * acknowledged once its entry is appended to a memory-mapped file and forced to disk; concurrent
+ * appenders share one {@code force} (group sync). A scheduled flusher applies durable entries to
+ * the {@code transaction} and {@code wallet} tables in bulk and moves the checkpoint row in the
+ * same database transaction, so every entry is applied exactly once; on startup whatever lies past
+ * the checkpoint is replayed. Once everything is applied and the file is full it is reused under a
+ * new generation.
+ *
+ * <p>A batch that fails is applied again one entry at a time. An entry that still fails, other than
+ * on a transient database error, is moved to {@code wallet_journal_dead_letter} together with the
+ * checkpoint, so one bad entry cannot hold back the ones after it.
+ *
+ * <p>Entries are framed as {@code [length][crc32c][payload]} and the payload starts with the
+ * generation, so a torn tail or a leftover of an older generation ends the scan.
+ */
+@Slf4j
+@Component
+public class WalletJournal {
+
+  static final String CHECKPOINT_ID = "deposits";
+  private static final int HEADER_SIZE = Long.BYTES;
+  private static final int FRAME_HEADER_SIZE = 2 * Integer.BYTES;
+
+  private final TransactionRepository transactionRepository;
+  private final WalletRepository walletRepository;
+  private final WalletJournalCheckpointRepository checkpointRepository;
+  private final WalletJournalDeadLetterRepository deadLetterRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final WalletSubBalances walletSubBalances;
+  private final WalletReadCache walletReadCache;
+  private final CustomerPortfolios customerPortfolios;
+  private final boolean enabled;
+  private final Path path;
+  private final int capacity;
+  private final int applyBatchSize;
+  private final Counter deadLetters;
+  private final Map<String, String> walletOwners = new ConcurrentHashMap<>();
+
+  private final ReentrantLock appendLock = new ReentrantLock();
+  private final ReentrantLock syncLock = new ReentrantLock();
+  private final Condition synced = syncLock.newCondition();
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  // positions are file offsets within the current generation
+  private long generation;
+  private volatile int writePosition;
+  private int durablePosition;
+  private boolean syncing;
+  private int appliedPosition;
+  // bumped on every reuse of the file so that waiting appenders of an older generation are done
+  private long durableGeneration;
+
+  public WalletJournal(
+      TransactionRepository transactionRepository,
+      WalletRepository walletRepository,
+      WalletJournalCheckpointRepository checkpointRepository,
+      WalletJournalDeadLetterRepository deadLetterRepository,
+      TransactionTemplate transactionTemplate,
+      WalletLedger walletLedger,
+      WalletSubBalances walletSubBalances,
+      WalletReadCache walletReadCache,
+      CustomerPortfolios customerPortfolios,
+      MeterRegistry meterRegistry,
+      @Value("${wallet.journal.enabled:false}") boolean enabled,
+      @Value("${wallet.journal.path:./data/wallet.journal}") Path path,
+      @Value("${wallet.journal.size-bytes:67108864}") int capacity,
+      @Value("${wallet.journal.apply-batch-size:1000}") int applyBatchSize) {
+
+    if (enabled && walletLedger.isEnabled()) {
+
+      throw new IllegalArgumentException("wallet.journal and wallet.ledger cannot both be enabled");
+    }
+
+    if (capacity <= HEADER_SIZE + FRAME_HEADER_SIZE || applyBatchSize <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.journal.* settings");
+    }
+
+    this.transactionRepository = transactionRepository;
+    this.walletRepository = walletRepository;
+    this.checkpointRepository = checkpointRepository;
+    this.deadLetterRepository = deadLetterRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.walletSubBalances = walletSubBalances;
+    this.walletReadCache = walletReadCache;
+    this.customerPortfolios = customerPortfolios;
+    this.enabled = enabled;
+    this.path = path;
+    this.capacity = capacity;
+    this.applyBatchSize = applyBatchSize;
+    this.deadLetters =
+        Counter.builder("wallet.journal.dead_letters")
+            .description("Journaled deposits that could not be applied and were set aside")
+            .register(meterRegistry);
+  }
+
+  public boolean isEnabled() {
+
+    return enabled;
+  }
+
+  @PostConstruct
+  public void open() throws IOException {
+
+    if (!enabled) {
+      return;
+    }
+
+    Files.createDirectories(path.toAbsolutePath().getParent());
+    channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+    WalletJournalCheckpoint checkpoint =
+        transactionTemplate.execute(
+            status ->
+                checkpointRepository
+                    .findById(CHECKPOINT_ID)
+                    .orElseGet(
+                        () ->
+                            checkpointRepository.save(
+                                // anything already in the file belongs to another database
+                                new WalletJournalCheckpoint(
+                                    CHECKPOINT_ID, buffer.getLong(0) + 1, HEADER_SIZE))));
+    long fileGeneration = buffer.getLong(0);
+
+    if (fileGeneration > checkpoint.getGeneration()) {
+
+      throw new IllegalStateException("Journal " + path + " is ahead of its checkpoint");
+    }
+
+    generation = checkpoint.getGeneration();
+
+    if (fileGeneration < checkpoint.getGeneration()) {
+      // the file was fully applied and its reuse committed, but the new header never made it
+      resetFile();
+      appliedPosition = HEADER_SIZE;
+    } else {
+      appliedPosition = (int) checkpoint.getAppliedOffset();
+    }
+
+    int end = appliedPosition;
+
+    for (Frame frame = readFrame(end); frame != null; frame = readFrame(end)) {
+      end = frame.next();
+    }
+
+    writePosition = end;
+    durablePosition = end;
+    log.info(
+        "Opened deposit journal {} (generation {}), replaying {} bytes",
+        path,
+        generation,
+        end - appliedPosition);
+    flush();
+  }
+
+  /**
+   * Validates the deposit like {@link WalletService#makeDeposit} and journals it. Returns once the
+   * entry is on disk; the balance changes when the flusher applies it.
+   */
+  public TransactionResponseDto append(DepositDto depositDto) {
+
+    if (depositDto.amount().signum() <= 0) {
+
+      throw new CustomBadRequestException("Deposit amount must be greater than zero!");
+    }
+
+    String ownerTckn =
+        walletOwners.computeIfAbsent(
+            depositDto.walletId(),
+            walletId -> walletRepository.findCustomerTcknById(walletId).orElse(null));
+
+    if (ownerTckn == null) {
+
+      throw new CustomNotFoundException("Wallet not found!");
+    }
+
+    if (WalletService.isCurrentUserCustomer()
+        && !ownerTckn.equals(WalletService.getCurrentUserTckn())) {
+
+      throw new CustomUnauthorizedException("You can only deposit to your own wallets!");
+    }
+
+    Entry entry =
+        new Entry(
+            UUID.randomUUID().toString(),
+            depositDto.walletId(),
+            depositDto.amount(),
+            depositDto.amount().isGreaterThan(WalletService.LARGE_TRANSACTION_LIMIT)
+                ? TransactionStatus.PENDING
+                : TransactionStatus.APPROVED,
+            depositDto.source(),
+            depositDto.oppositeParty());
+
+    write(entry);
+
+    return TransactionResponseDto.builder()
+        .transactionId(entry.transactionId())
+        .status(entry.status())
+        .message("Deposit transaction created successfully!")
+        .build();
+  }
+
+  /** Applies every durable entry past the checkpoint, {@code apply-batch-size} per transaction. */
+  @Scheduled(fixedDelayString = "${wallet.journal.flush-interval-ms:5}")
+  public void flush() {
+
+    if (!enabled) {
+      return;
+    }
+
+    flushLock.lock();
+    try {
+      while (true) {
+        int durable = durable();
+        List<Frame> frames = new ArrayList<>();
+        int next = appliedPosition;
+
+        while (next < durable && frames.size() < applyBatchSize) {
+          Frame frame = readFrame(next);
+
+          if (frame == null) {
+            break;
+          }
+
+          frames.add(frame);
+          next = frame.next();
+        }
+
+        if (frames.isEmpty()) {
+          return;
+        }
+
+        int appliedOffset = next;
+        List<Entry> entries = frames.stream().map(Frame::entry).toList();
+
+        try {
+          transactionTemplate.executeWithoutResult(status -> apply(entries, appliedOffset));
+        } catch (TransientDataAccessException e) {
+
+          throw e;
+        } catch (RuntimeException e) {
+
+          log.warn("Journal batch up to offset {} failed, applying it entry by entry", next, e);
+          applyOneByOne(frames);
+        }
+
+        appliedPosition = appliedOffset;
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+
+    if (channel == null) {
+      return;
+    }
+
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void write(Entry entry) {
+
+    int end;
+    long entryGeneration;
+
+    appendLock.lock();
+    try {
+      byte[] payload = encode(generation, entry);
+      int frameSize = FRAME_HEADER_SIZE + payload.length;
+
+      if (writePosition + frameSize > capacity) {
+        reuseFile();
+        payload = encode(generation, entry);
+      }
+
+      if (writePosition + frameSize > capacity) {
+
+        throw new CustomConflictException("Journal is full, please try again!");
+      }
+
+      CRC32C crc = new CRC32C();
+      crc.update(payload);
+      buffer.putInt(writePosition + Integer.BYTES, (int) crc.getValue());
+      buffer.put(writePosition + FRAME_HEADER_SIZE, payload);
+      buffer.putInt(writePosition, payload.length);
+      writePosition += frameSize;
+      end = writePosition;
+      entryGeneration = generation;
+    } finally {
+      appendLock.unlock();
+    }
+
+    awaitDurable(entryGeneration, end);
+  }
+
+  /**
+   * Waits until the file is forced up to {@code end}. The first waiter forces everything written so
+   * far, the others wait for it and usually find their entry covered.
+   */
+  private void awaitDurable(long entryGeneration, int end) {
+
+    syncLock.lock();
+    try {
+      while (durableGeneration <= entryGeneration && durablePosition < end) {
+        if (syncing) {
+          synced.awaitUninterruptibly();
+          continue;
+        }
+
+        syncing = true;
+        int from = durablePosition;
+        int to = writePosition;
+        syncLock.unlock();
+
+        try {
+          buffer.force(from, to - from);
+        } finally {
+          syncLock.lock();
+          syncing = false;
+          synced.signalAll();
+        }
+
+        durablePosition = Math.max(durablePosition, to);
+      }
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  private int durable() {
+
+    syncLock.lock();
+    try {
+      return durablePosition;
+    } finally {
+      syncLock.unlock();
+    }
+  }
+
+  /** Starts a new generation at the top of the file once everything in it has been applied. */
+  private void reuseFile() {
+
+    syncLock.lock();
+    try {
+      while (syncing) {
+        synced.awaitUninterruptibly();
+      }
+
+      buffer.force(durablePosition, writePosition - durablePosition);
+      durablePosition = writePosition;
+    } finally {
+      syncLock.unlock();
+    }
+
+    flush();
+    flushLock.lock();
+    syncLock.lock();
+    try {
+      if (appliedPosition < writePosition || syncing) {
+        return;
+      }
+
+      long nextGeneration = generation + 1;
+      transactionTemplate.executeWithoutResult(
+          status ->
+              checkpointRepository.updateAppliedOffset(CHECKPOINT_ID, nextGeneration, HEADER_SIZE));
+      generation = nextGeneration;
+      resetFile();
+      durableGeneration = generation;
+      appliedPosition = HEADER_SIZE;
+      durablePosition = HEADER_SIZE;
+      writePosition = HEADER_SIZE;
+    } finally {
+      syncLock.unlock();
+      flushLock.unlock();
+    }
+  }
+
+  private void resetFile() {
+
+    buffer.putInt(HEADER_SIZE, 0);
+    buffer.putLong(0, generation);
+    buffer.force(0, HEADER_SIZE + Integer.BYTES);
+  }
+
+  private void applyOneByOne(List<Frame> frames) {
+
+    for (Frame frame : frames) {
+      try {
+        transactionTemplate.executeWithoutResult(
+            status -> apply(List.of(frame.entry()), frame.next()));
+      } catch (TransientDataAccessException e) {
+
+        throw e;
+      } catch (RuntimeException e) {
+
+        log.error(
+            "Journaled deposit {} to wallet {} cannot be applied, moved to the dead letters",
+            frame.entry().transactionId(),
+            frame.entry().walletId(),
+            e);
+        transactionTemplate.executeWithoutResult(status -> deadLetter(frame, e));
+        deadLetters.increment();
+      }
+
+      appliedPosition = frame.next();
+    }
+  }
+
+  private void deadLetter(Frame frame, RuntimeException error) {
+
+    Entry entry = frame.entry();
+    String message = String.valueOf(error.getMessage());
+
+    deadLetterRepository.save(
+        WalletJournalDeadLetter.builder()
+            .id(entry.transactionId())
+            .walletId(entry.walletId())
+            .amount(entry.amount())
+            .status(entry.status())
+            .oppositePartyType(entry.oppositePartyType())
+            .oppositeParty(entry.oppositeParty())
+            .error(message.length() > 1000 ? message.substring(0, 1000) : message)
+            .failedAt(LocalDateTime.now())
+            .build());
+    checkpointRepository.updateAppliedOffset(CHECKPOINT_ID, generation, frame.next());
+  }
+
+  private void apply(List<Entry> entries, int appliedOffset) {
+
+    Map<String, Money[]> deltas = new LinkedHashMap<>();
+    Map<String, Long> pendingCounts = new HashMap<>();
+    List<Transaction> transactions = new ArrayList<>(entries.size());
+
+    for (Entry entry : entries) {
+      Money[] delta =
+          deltas.computeIfAbsent(
+              entry.walletId(), walletId -> new Money[] {Money.ZERO, Money.ZERO});
+      delta[0] = delta[0].plus(entry.amount());
+
+      if (entry.status().equals(TransactionStatus.APPROVED)) {
+        delta[1] = delta[1].plus(entry.amount());
+      } else {
+        pendingCounts.merge(entry.walletId(), 1L, Long::sum);
+      }
+
+      transactions.add(
+          Transaction.builder()
+              .id(entry.transactionId())
+              .amount(entry.amount())
+              .type(TransactionType.DEPOSIT)
+              .oppositePartyType(entry.oppositePartyType())
+              .oppositeParty(entry.oppositeParty())
+              .status(entry.status())
+              .wallet(walletRepository.getReferenceById(entry.walletId()))
+              .build());
+    }
+
+    deltas.keySet().stream()
+        .sorted()
+        .forEach(
+            walletId -> {
+              Money[] delta = deltas.get(walletId);
+
+              // split wallets are not updated on their row, the offset picks a slot for the batch
+              if (walletRepository.adjustBalances(walletId, delta[0], delta[1]) == 0
+                  && !walletSubBalances.adjust(
+                      walletId, String.valueOf(appliedOffset), delta[0], delta[1])) {
+
+                throw new IllegalStateException("Journaled deposit to missing wallet " + walletId);
+              }
+
+              customerPortfolios.adjust(
+                  walletId, delta[0], delta[1], pendingCounts.getOrDefault(walletId, 0L));
+            });
+    transactionRepository.saveAll(transactions);
+    checkpointRepository.updateAppliedOffset(CHECKPOINT_ID, generation, appliedOffset);
+    walletReadCache.evictAfterCommit(deltas.keySet());
+  }
+
+  private Frame readFrame(int position) {
+
+    if (position + FRAME_HEADER_SIZE > capacity) {
+      return null;
+    }
+
+    int length = buffer.getInt(position);
+    int next = position + FRAME_HEADER_SIZE + length;
+
+    if (length <= Long.BYTES || next > capacity) {
+      return null;
+    }
+
+    byte[] payload = new byte[length];
+    buffer.get(position + FRAME_HEADER_SIZE, payload);
+    CRC32C crc = new CRC32C();
+    crc.update(payload);
+
+    if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+      if (in.readLong() != generation) {
+        return null;
+      }
+
+      return new Frame(
+          new Entry(
+              in.readUTF(),
+              in.readUTF(),
+              new Money(in.readLong()),
+              TransactionStatus.values()[in.readByte()],
+              OppositePartyType.values()[in.readByte()],
+              in.readUTF()),
+          next);
+    } catch (IOException e) {
+
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] encode(long generation, Entry entry) {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(160);
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeLong(generation);
+      out.writeUTF(entry.transactionId());
+      out.writeUTF(entry.walletId());
+      out.writeLong(entry.amount().minorUnits());
+      out.writeByte(entry.status().ordinal());
+      out.writeByte(entry.oppositePartyType().ordinal());
+      out.writeUTF(entry.oppositeParty());
+    } catch (IOException e) {
+
+      throw new UncheckedIOException(e);
+    }
+
+    return bytes.toByteArray();
+  }
+
+  record Entry(
+      String transactionId,
+      String walletId,
+      Money amount,
+      TransactionStatus status,
+      OppositePartyType oppositePartyType,
+      String oppositeParty) {}
+
+  private record Frame(Entry entry, int next) {}
+}
@@ -0,0 +1,184 @@
+package com.ing.hubs.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletPosting;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.WalletPostingRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only balance store used when {@code wallet.ledger.enabled} is set. The {@code wallet} row
+ * holds the latest snapshot and every balance change is inserted as a {@link WalletPosting}; the
+ * current balance is the snapshot plus the postings not folded into it yet. New deposits only
+ * insert, everything else also bumps {@code wallet.version} so that sufficiency checks and status
+ * transitions stay serialized per wallet.
+ */
+@Slf4j
+@Component
+public class WalletLedger {
+
+  private final WalletPostingRepository walletPostingRepository;
+  private final WalletRepository walletRepository;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final boolean enabled;
+  private final long snapshotThreshold;
+
+  public WalletLedger(
+      WalletPostingRepository walletPostingRepository,
+      WalletRepository walletRepository,
+      EntityManager entityManager,
+      TransactionTemplate transactionTemplate,
+      @Value("${wallet.ledger.enabled:false}") boolean enabled,
+      @Value("${wallet.ledger.snapshot-threshold:100}") long snapshotThreshold) {
+
+    this.walletPostingRepository = walletPostingRepository;
+    this.walletRepository = walletRepository;
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.enabled = enabled;
+    this.snapshotThreshold = snapshotThreshold;
+  }
+
+  public boolean isEnabled() {
+
+    return enabled;
+  }
+
+  public Checkpoint open(Wallet wallet) {
+
+    if (!enabled) {
+
+      return null;
+    }
+
+    Long version = wallet.getVersion();
+    materialize(List.of(wallet));
+
+    return new Checkpoint(version, wallet.getBalance(), wallet.getUsableBalance());
+  }
+
+  public Checkpoint openForDeposit(Wallet wallet) {
+
+    if (!enabled) {
+
+      return null;
+    }
+
+    entityManager.detach(wallet);
+
+    return new Checkpoint(wallet.getVersion(), wallet.getBalance(), wallet.getUsableBalance());
+  }
+
+  public void materialize(List<Wallet> wallets) {
+
+    if (!enabled || wallets.isEmpty()) {
+      return;
+    }
+
+    Map<String, WalletBalanceDto> balances =
+        walletPostingRepository
+            .findCurrentBalances(wallets.stream().map(Wallet::getId).toList())
+            .stream()
+            .collect(Collectors.toMap(WalletBalanceDto::walletId, Function.identity()));
+
+    for (Wallet wallet : wallets) {
+      entityManager.detach(wallet);
+      WalletBalanceDto balance = balances.get(wallet.getId());
+
+      if (balance != null) {
+        wallet.setBalance(balance.balance());
+        wallet.setUsableBalance(balance.usableBalance());
+      }
+    }
+  }
+
+  public void append(Wallet wallet, Checkpoint checkpoint, Transaction transaction) {
+
+    Money balanceDelta = wallet.getBalance().minus(checkpoint.balance());
+    Money usableBalanceDelta = wallet.getUsableBalance().minus(checkpoint.usableBalance());
+    boolean newDeposit =
+        transaction.isNew() && transaction.getType().equals(TransactionType.DEPOSIT);
+
+    if (!newDeposit
+        && walletRepository.incrementVersion(wallet.getId(), checkpoint.version()) == 0) {
+
+      throw new ObjectOptimisticLockingFailureException(Wallet.class, wallet.getId());
+    }
+
+    // the detached wallet counted every balance change; a later checkpoint on it, such as the next
+    // command of a batch, has to start from the version the row now has
+    wallet.setVersion(newDeposit ? checkpoint.version() : checkpoint.version() + 1);
+
+    walletPostingRepository.save(
+        WalletPosting.builder()
+            .id(UUID.randomUUID().toString())
+            .walletId(wallet.getId())
+            .transactionId(transaction.getId())
+            .type(transaction.getType())
+            .status(transaction.getStatus())
+            .balanceDelta(balanceDelta)
+            .usableBalanceDelta(usableBalanceDelta)
+            .build());
+  }
+
+  @Scheduled(fixedDelayString = "${wallet.ledger.snapshot-interval-ms:5000}")
+  public void snapshot() {
+
+    if (!enabled) {
+      return;
+    }
+
+    for (String walletId : walletPostingRepository.findWalletIdsToSnapshot(snapshotThreshold)) {
+      try {
+        transactionTemplate.executeWithoutResult(status -> fold(walletId));
+      } catch (ObjectOptimisticLockingFailureException e) {
+
+        log.debug("Snapshot of wallet {} lost a race, retrying next round", walletId);
+      }
+    }
+  }
+
+  private void fold(String walletId) {
+
+    Wallet wallet = walletRepository.findById(walletId).orElseThrow();
+    // folding lowers the unfolded count the wallet's ETag adds to its version
+    entityManager.lock(wallet, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    List<WalletPosting> postings =
+        walletPostingRepository.findAllByWalletIdAndFoldedFalse(walletId);
+
+    Money balance = wallet.getBalance();
+    Money usableBalance = wallet.getUsableBalance();
+
+    for (WalletPosting posting : postings) {
+      balance = balance.plus(posting.getBalanceDelta());
+      usableBalance = usableBalance.plus(posting.getUsableBalanceDelta());
+      posting.setFolded(true);
+    }
+
+    wallet.setBalance(balance);
+    wallet.setUsableBalance(usableBalance);
+  }
+
+  public record Checkpoint(Long version, Money balance, Money usableBalance) {}
+}
@@ -0,0 +1,109 @@
+package com.ing.hubs.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.ConcurrencyMode;
+
+/**
+ * Serializes writers of the same wallet inside this JVM when {@code wallet.concurrency.mode} is
+ * {@link ConcurrencyMode#STRIPED_LOCK}. The stripe lock is taken before the wallet row is read and
+ * released only after the surrounding transaction completes, so the next writer always reads the
+ * committed version and commits on its first attempt.
+ */
+@Component
+public class WalletLockManager {
+
+  private final ConcurrencyMode mode;
+  private final long lockTimeoutMillis;
+  private final ReentrantLock[] stripes;
+
+  public WalletLockManager(
+      @Value("${wallet.concurrency.mode:OPTIMISTIC}") ConcurrencyMode mode,
+      @Value("${wallet.concurrency.lock-stripes:256}") int stripeCount,
+      @Value("${wallet.concurrency.lock-timeout-ms:5000}") long lockTimeoutMillis) {
+
+    if (stripeCount <= 0) {
+
+      throw new IllegalArgumentException("wallet.concurrency.lock-stripes must be positive");
+    }
+
+    this.mode = mode;
+    this.lockTimeoutMillis = lockTimeoutMillis;
+    this.stripes = new ReentrantLock[stripeCount];
+
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new ReentrantLock(true);
+    }
+  }
+
+  public boolean isEnabled() {
+
+    return mode == ConcurrencyMode.STRIPED_LOCK;
+  }
+
+  public void lock(String walletId) {
+
+    lockAll(List.of(walletId));
+  }
+
+  /**
+   * Locks the stripes of all given wallets in ascending stripe order, so two multi-wallet writers
+   * can never wait on each other in opposite order.
+   */
+  public void lockAll(Collection<String> walletIds) {
+
+    if (!isEnabled()) {
+      return;
+    }
+
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+
+      throw new IllegalStateException("Wallet locks can only be taken inside a transaction");
+    }
+
+    walletIds.stream().mapToInt(this::stripeIndex).distinct().sorted().forEach(this::lockStripe);
+  }
+
+  ReentrantLock stripeFor(String walletId) {
+
+    return stripes[stripeIndex(walletId)];
+  }
+
+  private int stripeIndex(String walletId) {
+
+    return Math.floorMod(walletId.hashCode(), stripes.length);
+  }
+
+  private void lockStripe(int index) {
+
+    ReentrantLock lock = stripes[index];
+
+    try {
+      if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+
+        throw new CustomConflictException("Wallet is busy, please try again!");
+      }
+    } catch (InterruptedException e) {
+
+      Thread.currentThread().interrupt();
+      throw new CustomConflictException("Wallet is busy, please try again!");
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            lock.unlock();
+          }
+        });
+  }
+}
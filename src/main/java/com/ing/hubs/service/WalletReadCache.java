@@ -0,0 +1,253 @@
+package com.ing.hubs.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ing.hubs.dto.WalletDto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Size-bounded, in-process cache of the wallet read models {@link WalletService#listWallets}
+ * returns, keyed by wallet id, plus which wallets each customer has. Writers drop a wallet after
+ * their transaction commits; readers fill the cache from what they read.
+ *
+ * <p>A customer's entry remembers the version of their wallet listing ({@link
+ * com.ing.hubs.repository.CustomerRepository#findWalletsVersionById}) read before its rows, and is
+ * only served while the caller still reads that version, so writes made through other instances
+ * turn the next lookup into a miss. A reader may have read a wallet just before a writer committed
+ * and try to store it just after the writer dropped it. Every drop therefore stamps its stripe with
+ * a sequence number, and a reader only stores rows whose stripe was not stamped after it began
+ * reading. On top of that an entry is never replaced by one with a lower {@code version}. Manual
+ * SQL that leaves the versions alone is not seen.
+ */
+@Component
+public class WalletReadCache {
+
+  private static final int STRIPES = 1024;
+
+  private final boolean enabled;
+  private final Map<String, WalletDto> wallets;
+  private final Map<String, CustomerWallets> customers;
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  /**
+   * The wallets of a customer as of {@code version}; {@code ownerTckn} is {@code null} until a
+   * customer read them.
+   */
+  private record CustomerWallets(String ownerTckn, String version, List<String> walletIds) {}
+
+  public WalletReadCache(
+      MeterRegistry meterRegistry,
+      @Value("${wallet.read-cache.enabled:true}") boolean enabled,
+      @Value("${wallet.read-cache.max-size:10000}") int maxSize) {
+
+    if (maxSize <= 0) {
+
+      throw new IllegalArgumentException("Invalid wallet.read-cache.* settings");
+    }
+
+    this.enabled = enabled;
+    this.wallets = Collections.synchronizedMap(lruMap(maxSize));
+    this.customers = Collections.synchronizedMap(lruMap(maxSize));
+    this.hits = requestCounter(meterRegistry, "hit");
+    this.misses = requestCounter(meterRegistry, "miss");
+    this.evictions =
+        Counter.builder("wallet.read_cache.evictions")
+            .description("Wallets dropped from the read cache to stay within its size")
+            .register(meterRegistry);
+    Gauge.builder("wallet.read_cache.size", wallets, Map::size)
+        .description("Wallets in the read cache")
+        .register(meterRegistry);
+  }
+
+  /** Taken before reading the database, then passed to {@link #put}. */
+  public long begin() {
+
+    return sequence.get();
+  }
+
+  /**
+   * The customer's cached wallets, or empty if the customer or any of their wallets is not cached,
+   * or they were cached at another listing {@code version}. A {@code null} {@code ownerTckn}
+   * matches any owner.
+   */
+  public Optional<List<WalletDto>> get(String customerId, String ownerTckn, String version) {
+
+    if (!enabled) {
+      misses.increment();
+      return Optional.empty();
+    }
+
+    // rows and entry are read under the same locks put writes them under, so they match
+    synchronized (wallets) {
+      CustomerWallets customer = customers.get(customerId);
+
+      if (customer == null
+          || !customer.version().equals(version)
+          || (ownerTckn != null && !ownerTckn.equals(customer.ownerTckn()))) {
+        misses.increment();
+        return Optional.empty();
+      }
+
+      List<WalletDto> cached = new ArrayList<>(customer.walletIds().size());
+
+      for (String walletId : customer.walletIds()) {
+        WalletDto wallet = wallets.get(walletId);
+
+        if (wallet == null) {
+          misses.increment();
+          return Optional.empty();
+        }
+
+        cached.add(wallet);
+      }
+
+      hits.increment();
+
+      return Optional.of(cached);
+    }
+  }
+
+  /**
+   * Stores the customer's wallets as read since {@code begin}, at the listing {@code version} read
+   * before them, unless the customer or one of the wallets was dropped in the meantime.
+   */
+  public void put(
+      String customerId,
+      String ownerTckn,
+      String version,
+      List<WalletDto> customerWallets,
+      long begin) {
+
+    if (!enabled || version == null || customerWallets.isEmpty()) {
+      return;
+    }
+
+    // checked and stored under the maps' locks, so an eviction or another put cannot slip in
+    synchronized (wallets) {
+      if (stampedSince(customerId, begin)
+          || customerWallets.stream().anyMatch(wallet -> stampedSince(wallet.id(), begin))) {
+        return;
+      }
+
+      for (WalletDto wallet : customerWallets) {
+        wallets.merge(
+            wallet.id(),
+            wallet,
+            (cached, read) -> read.version() < cached.version() ? cached : read);
+      }
+
+      customers.put(
+          customerId,
+          new CustomerWallets(
+              ownerTckn, version, customerWallets.stream().map(WalletDto::id).toList()));
+    }
+  }
+
+  /** Drops the wallets once the current transaction commits, or right away outside of one. */
+  public void evictAfterCommit(Collection<String> walletIds) {
+
+    afterCommit(
+        () -> {
+          synchronized (wallets) {
+            for (String walletId : walletIds) {
+              stamp(walletId);
+              wallets.remove(walletId);
+            }
+          }
+        });
+  }
+
+  /** Forgets which wallets the customer has once the current transaction commits. */
+  public void evictCustomerAfterCommit(String customerId) {
+
+    afterCommit(
+        () -> {
+          synchronized (wallets) {
+            stamp(customerId);
+            customers.remove(customerId);
+          }
+        });
+  }
+
+  private void afterCommit(Runnable eviction) {
+
+    if (!enabled) {
+      return;
+    }
+
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      eviction.run();
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            eviction.run();
+          }
+        });
+  }
+
+  private void stamp(String key) {
+
+    stamps.accumulateAndGet(stripe(key), sequence.incrementAndGet(), Math::max);
+  }
+
+  private boolean stampedSince(String key, long begin) {
+
+    return stamps.get(stripe(key)) > begin;
+  }
+
+  private static int stripe(String key) {
+
+    return Math.floorMod(key.hashCode(), STRIPES);
+  }
+
+  private <V> LinkedHashMap<String, V> lruMap(int maxSize) {
+
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+
+        if (size() <= maxSize) {
+          return false;
+        }
+
+        if (eldest.getValue() instanceof WalletDto) {
+          evictions.increment();
+        }
+
+        return true;
+      }
+    };
+  }
+
+  private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+
+    return Counter.builder("wallet.read_cache.requests")
+        .description("Wallet listings looked up in the read cache")
+        .tag("result", result)
+        .register(meterRegistry);
+  }
+}
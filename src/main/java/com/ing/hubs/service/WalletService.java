@@ -1,17 +1,26 @@
 package com.ing.hubs.service;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-import org.springframework.orm.ObjectOptimisticLockingFailureException;
-import org.springframework.retry.annotation.Backoff;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import com.ing.hubs.dto.*;
 import com.ing.hubs.entity.AdminUser;
@@ -19,9 +28,12 @@ import com.ing.hubs.entity.Customer;
 import com.ing.hubs.entity.Transaction;
 import com.ing.hubs.entity.Wallet;
 import com.ing.hubs.exception.*;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
 import com.ing.hubs.model.TransactionStatus;
 import com.ing.hubs.model.TransactionType;
 import com.ing.hubs.repository.AdminUserRepository;
+import com.ing.hubs.repository.CustomerPortfolioRepository;
 import com.ing.hubs.repository.CustomerRepository;
 import com.ing.hubs.repository.TransactionRepository;
 import com.ing.hubs.repository.WalletRepository;
@@ -33,21 +45,31 @@ import lombok.RequiredArgsConstructor;
 public class WalletService {
 
   private static final String WALLET_NOT_FOUND = "Wallet not found!";
-  private static final BigDecimal LARGE_TRANSACTION_LIMIT = new BigDecimal("1000");
-  private static final int MAX_RETRY_ATTEMPTS = 3;
+  static final Money LARGE_TRANSACTION_LIMIT = Money.ofMajor(1000);
+  private static final String RETRY_INTERCEPTOR = "walletRetryInterceptor";
+  static final int MAX_TRANSACTION_PAGE_SIZE = 500;
 
   private final WalletRepository walletRepository;
   private final TransactionRepository transactionRepository;
   private final CustomerRepository customerRepository;
   private final AdminUserRepository adminUserRepository;
   private final PasswordEncoder passwordEncoder;
-
+  private final WalletLockManager walletLockManager;
+  private final WalletLedger walletLedger;
+  private final WalletContentionTracker walletContentionTracker;
+  private final WalletSubBalances walletSubBalances;
+  private final WalletReadCache walletReadCache;
+  private final CustomerPortfolioRepository customerPortfolioRepository;
+  private final CustomerPortfolios customerPortfolios;
+  private final IdempotencyStore idempotencyStore;
+
+  /** Locks the customer, so their portfolio rows are created by one wallet at a time. */
   @Transactional
   public Wallet createWallet(CreateWalletDto createWalletDto) {
 
     Customer customer =
         customerRepository
-            .findById(createWalletDto.customerId())
+            .findForUpdateById(createWalletDto.customerId())
             .orElseThrow(() -> new CustomNotFoundException("Customer not found!"));
 
     if (isCurrentUserCustomer() && !customer.getTckn().equals(getCurrentUserTckn())) {
@@ -63,44 +85,197 @@ public class WalletService {
             .currency(createWalletDto.currency())
             .activeForShopping(createWalletDto.activeForShopping())
             .activeForWithdraw(createWalletDto.activeForWithdraw())
-            .balance(BigDecimal.ZERO)
-            .usableBalance(BigDecimal.ZERO)
+            .balance(Money.ZERO)
+            .usableBalance(Money.ZERO)
             .build();
+    walletReadCache.evictCustomerAfterCommit(customer.getId());
+    Wallet saved = walletRepository.save(wallet);
+    customerPortfolios.addWallet(saved);
 
-    return walletRepository.save(wallet);
+    return saved;
   }
 
+  /**
+   * Served from {@link WalletReadCache} when it has all of the customer's wallets at the listing's
+   * current version, otherwise one query without locks; an empty result is looked into to tell why.
+   */
   @Transactional(readOnly = true)
   public ListWalletDto listWallets(String customerId) {
 
-    Customer customer =
-        customerRepository
-            .findById(customerId)
-            .orElseThrow(() -> new CustomNotFoundException("Customer not found!"));
+    String ownerTckn = currentOwnerTckn();
 
-    if (isCurrentUserCustomer() && !customer.getTckn().equals(getCurrentUserTckn())) {
+    return listWallets(customerId, ownerTckn, walletsVersion(customerId, ownerTckn));
+  }
+
+  /**
+   * {@link #listWallets(String)}, unless {@code ifNoneMatch} names the listing's current ETag,
+   * which one single-column query answers without reading the wallets. The tag is read in the same
+   * transaction as the listing, so on a replica both come from the same snapshot.
+   */
+  @Transactional(readOnly = true)
+  public ConditionalRead<ListWalletDto> listWallets(String customerId, String ifNoneMatch) {
+
+    String ownerTckn = currentOwnerTckn();
+    String version = walletsVersion(customerId, ownerTckn);
+    String eTag = version == null ? null : ConditionalRead.eTagOf(version);
+
+    if (eTag != null && ConditionalRead.matches(ifNoneMatch, eTag, false)) {
+
+      return ConditionalRead.notModified(eTag);
+    }
+
+    return new ConditionalRead<>(eTag, listWallets(customerId, ownerTckn, version));
+  }
 
-      throw new CustomUnauthorizedException("You can only access your own wallets!");
+  /**
+   * The listing's version, which also tells whether cached wallets are still current. {@code null}
+   * if the customer does not exist or is not the caller.
+   */
+  private String walletsVersion(String customerId, String ownerTckn) {
+
+    return customerRepository.findWalletsVersionById(customerId, ownerTckn).orElse(null);
+  }
+
+  private ListWalletDto listWallets(String customerId, String ownerTckn, String version) {
+
+    Optional<List<WalletDto>> cached = walletReadCache.get(customerId, ownerTckn, version);
+
+    if (cached.isPresent()) {
+
+      return ListWalletDto.builder().customerId(customerId).wallets(cached.get()).build();
     }
 
-    List<Wallet> walletList = walletRepository.findAllByCustomerId(customerId);
+    long begin = walletReadCache.begin();
+    // rows a lagging replica hands back are cached under its older version, which the caught-up
+    // reads that follow do not match
+    List<WalletDto> walletList = walletRepository.findDtosByCustomerId(customerId, ownerTckn);
+    walletReadCache.put(customerId, ownerTckn, version, walletList, begin);
+
+    if (walletList.isEmpty()) {
+
+      checkOwner(
+          customerRepository
+              .findTcknById(customerId)
+              .orElseThrow(() -> new CustomNotFoundException("Customer not found!")),
+          "You can only access your own wallets!");
+    }
 
     return ListWalletDto.builder().customerId(customerId).wallets(walletList).build();
   }
 
+  /**
+   * The customer's wallets summed per currency, read from the totals {@link CustomerPortfolios}
+   * keeps, so the cost does not grow with the number of wallets. An empty result is looked into to
+   * tell why.
+   */
+  @Transactional(readOnly = true)
+  public CustomerPortfolioDto getPortfolio(String customerId) {
+
+    List<CurrencyTotalDto> totals =
+        customerPortfolioRepository.findTotalsByCustomerId(customerId, currentOwnerTckn());
+
+    if (totals.isEmpty()) {
+
+      checkOwner(
+          customerRepository
+              .findTcknById(customerId)
+              .orElseThrow(() -> new CustomNotFoundException("Customer not found!")),
+          "You can only access your own portfolio!");
+    }
+
+    return CustomerPortfolioDto.of(customerId, totals);
+  }
+
+  /**
+   * Spreads the wallet's balances over {@code subBalances} rows so concurrent deposits stop
+   * queueing on the wallet row; 1 moves them back. Not available with the ledger, whose deposits
+   * already only insert.
+   */
+  @Transactional
+  public Wallet setSubBalances(String walletId, int subBalances) {
+
+    if (walletLedger.isEnabled()) {
+
+      throw new CustomConflictException("Sub-balances are not available in ledger mode!");
+    }
+
+    walletSubBalances.resize(walletId, subBalances);
+    walletReadCache.evictAfterCommit(List.of(walletId));
+
+    Wallet wallet = findWallet(walletId);
+    walletSubBalances.materialize(List.of(wallet));
+
+    return wallet;
+  }
+
   @Transactional(rollbackFor = Exception.class)
-  @Retryable(
-      retryFor = ObjectOptimisticLockingFailureException.class,
-      maxAttempts = MAX_RETRY_ATTEMPTS,
-      backoff = @Backoff(delay = 100))
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
   public TransactionResponseDto makeDeposit(DepositDto depositDto) {
 
-    Wallet wallet =
-        walletRepository
-            .findWithLockingById(depositDto.walletId())
-            .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND));
+    return makeDeposit(depositDto, null);
+  }
+
+  /** Deposits only if {@code ifMatch} is {@code null} or names the wallet's current ETag. */
+  @Transactional(rollbackFor = Exception.class)
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
+  public TransactionResponseDto makeDeposit(DepositDto depositDto, String ifMatch) {
+
+    lockWallets(List.of(depositDto.walletId()));
+    checkIfMatch(depositDto.walletId(), ifMatch);
+
+    return completed(deposit(findOwnedWallet(depositDto.walletId()), depositDto));
+  }
+
+  @Transactional(rollbackFor = Exception.class)
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
+  public List<WalletCommandResult> applyBatch(List<WalletCommand> commands) {
+
+    lockWallets(commands.stream().map(WalletCommand::walletId).toList());
+
+    List<WalletCommandResult> results = new ArrayList<>(commands.size());
+    // loaded once per batch: the lookup is a query, which does not check the persistence context
+    Map<String, Wallet> wallets = new HashMap<>();
+    SecurityContext callerContext = SecurityContextHolder.getContext();
+
+    try {
+      for (WalletCommand command : commands) {
+        SecurityContextHolder.setContext(command.securityContext());
+        results.add(apply(command, wallets));
+      }
+    } finally {
+      SecurityContextHolder.setContext(callerContext);
+    }
 
-    if (depositDto.amount().compareTo(BigDecimal.ZERO) <= 0) {
+    return results;
+  }
+
+  private WalletCommandResult apply(WalletCommand command, Map<String, Wallet> wallets) {
+
+    try {
+      TransactionResponseDto response =
+          switch (command) {
+            case WalletCommand.Deposit deposit ->
+                deposit(
+                    wallets.computeIfAbsent(command.walletId(), this::findOwnedWallet),
+                    deposit.depositDto());
+            case WalletCommand.Withdraw withdraw ->
+                withdraw(
+                    wallets.computeIfAbsent(command.walletId(), this::findOwnedWallet),
+                    withdraw.withdrawDto());
+            case WalletCommand.Approve approve ->
+                process(findTransaction(approve.transactionId()), approve.status());
+          };
+
+      return WalletCommandResult.success(response);
+    } catch (ResponseStatusException e) {
+
+      return WalletCommandResult.failure(e);
+    }
+  }
+
+  private TransactionResponseDto deposit(Wallet wallet, DepositDto depositDto) {
+
+    if (depositDto.amount().signum() <= 0) {
 
       throw new CustomBadRequestException("Deposit amount must be greater than zero!");
     }
@@ -110,26 +285,27 @@ public class WalletService {
       throw new CustomUnauthorizedException("You can only deposit to your own wallets!");
     }
 
-    Transaction.TransactionBuilder transactionBuilder =
+    TransactionStatus status =
+        depositDto.amount().isGreaterThan(LARGE_TRANSACTION_LIMIT)
+            ? TransactionStatus.PENDING
+            : TransactionStatus.APPROVED;
+
+    Transaction transaction =
         Transaction.builder()
             .id(UUID.randomUUID().toString())
             .amount(depositDto.amount())
             .type(TransactionType.DEPOSIT)
             .oppositePartyType(depositDto.source())
-            .oppositeParty(depositDto.oppositeParty());
-
-    wallet.increaseBalance(depositDto.amount());
-
-    if (depositDto.amount().compareTo(LARGE_TRANSACTION_LIMIT) > 0) {
-      transactionBuilder.status(TransactionStatus.PENDING);
-    } else {
-      transactionBuilder.status(TransactionStatus.APPROVED);
-      wallet.increaseUsableBalance(depositDto.amount());
-    }
-
-    Transaction transaction = transactionBuilder.wallet(wallet).build();
+            .oppositeParty(depositDto.oppositeParty())
+            .status(status)
+            .wallet(wallet)
+            .build();
 
-    walletRepository.save(wallet);
+    adjustBalances(
+        wallet,
+        transaction,
+        depositDto.amount(),
+        status.equals(TransactionStatus.APPROVED) ? depositDto.amount() : Money.ZERO);
     transactionRepository.save(transaction);
 
     return TransactionResponseDto.builder()
@@ -140,36 +316,109 @@ public class WalletService {
   }
 
   @Transactional(readOnly = true)
-  public ListTransactionDto listTransactions(String walletId) {
+  public ListTransactionDto listTransactions(
+      String walletId, String after, int limit, Sort.Direction direction) {
 
-    Wallet wallet =
+    checkPageSize(limit);
+
+    String ownerTckn = currentOwnerTckn();
+    // one row past the page tells whether there is a next one
+    Limit rows = Limit.of(limit + 1);
+    List<TransactionDto> transactionList;
+
+    TransactionCursor cursor = TransactionCursor.parse(after);
+
+    if (cursor == null) {
+      transactionList =
+          transactionRepository.findPageByWalletId(walletId, ownerTckn, pageOrder(direction), rows);
+    } else if (direction.isAscending()) {
+      transactionList =
+          transactionRepository.findPageByWalletIdAfter(
+              walletId, ownerTckn, cursor.createdAt(), cursor.id(), rows);
+    } else {
+      transactionList =
+          transactionRepository.findPageByWalletIdBefore(
+              walletId, ownerTckn, cursor.createdAt(), cursor.id(), rows);
+    }
+
+    if (transactionList.isEmpty()) {
+
+      checkOwner(
+          walletRepository
+              .findCustomerTcknById(walletId)
+              .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND)),
+          "You can only list transactions of your own wallets!");
+    }
+
+    return ListTransactionDto.page(walletId, transactionList, limit);
+  }
+
+  /**
+   * {@link #listTransactions(String, String, int, Sort.Direction)}, unless {@code ifNoneMatch}
+   * names the wallet's current ETag, which one single-column query answers without reading the
+   * transactions. The tag is read first and in the same transaction as the page, so it is never
+   * newer than the body it is sent with.
+   */
+  @Transactional(readOnly = true)
+  public ConditionalRead<ListTransactionDto> listTransactions(
+      String walletId, String after, int limit, Sort.Direction direction, String ifNoneMatch) {
+
+    checkPageSize(limit);
+
+    String eTag =
         walletRepository
-            .findWithLockingById(walletId)
-            .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND));
+            .findTransactionsVersionById(walletId, currentOwnerTckn())
+            .map(ConditionalRead::eTagOf)
+            .orElse(null);
 
-    if (isCurrentUserCustomer() && !wallet.getCustomer().getTckn().equals(getCurrentUserTckn())) {
+    if (eTag != null && ConditionalRead.matches(ifNoneMatch, eTag, false)) {
 
-      throw new CustomUnauthorizedException("You can only list transactions of your own wallets!");
+      return ConditionalRead.notModified(eTag);
     }
 
-    List<Transaction> transactionList = transactionRepository.findAllByWalletId(walletId);
+    return new ConditionalRead<>(eTag, listTransactions(walletId, after, limit, direction));
+  }
+
+  /** {@code (createdAt, id)} in {@code direction}, with rows that have no creation time oldest. */
+  static Sort pageOrder(Sort.Direction direction) {
+
+    Sort.Order createdAt = new Sort.Order(direction, "createdAt");
+
+    return Sort.by(
+        direction.isAscending() ? createdAt.nullsFirst() : createdAt.nullsLast(),
+        new Sort.Order(direction, "id"));
+  }
+
+  static void checkPageSize(int limit) {
+
+    if (limit < 1 || limit > MAX_TRANSACTION_PAGE_SIZE) {
 
-    return ListTransactionDto.builder().walletId(walletId).transactions(transactionList).build();
+      throw new CustomBadRequestException(
+          "Limit must be between 1 and " + MAX_TRANSACTION_PAGE_SIZE + "!");
+    }
   }
 
   @Transactional(rollbackFor = Exception.class)
-  @Retryable(
-      retryFor = ObjectOptimisticLockingFailureException.class,
-      maxAttempts = MAX_RETRY_ATTEMPTS,
-      backoff = @Backoff(delay = 100))
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
   public TransactionResponseDto makeWithdraw(WithdrawDto withdrawDto) {
 
-    Wallet wallet =
-        walletRepository
-            .findWithLockingById(withdrawDto.walletId())
-            .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND));
+    return makeWithdraw(withdrawDto, null);
+  }
 
-    if (withdrawDto.amount().compareTo(BigDecimal.ZERO) <= 0) {
+  /** Withdraws only if {@code ifMatch} is {@code null} or names the wallet's current ETag. */
+  @Transactional(rollbackFor = Exception.class)
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
+  public TransactionResponseDto makeWithdraw(WithdrawDto withdrawDto, String ifMatch) {
+
+    lockWallets(List.of(withdrawDto.walletId()));
+    checkIfMatch(withdrawDto.walletId(), ifMatch);
+
+    return completed(withdraw(findOwnedWallet(withdrawDto.walletId()), withdrawDto));
+  }
+
+  private TransactionResponseDto withdraw(Wallet wallet, WithdrawDto withdrawDto) {
+
+    if (withdrawDto.amount().signum() <= 0) {
 
       throw new CustomBadRequestException("Withdraw amount must be greater than zero!");
     }
@@ -184,26 +433,27 @@ public class WalletService {
       throw new CustomConflictException("Wallet is not active!");
     }
 
-    Transaction.TransactionBuilder transactionBuilder =
+    TransactionStatus status =
+        withdrawDto.amount().isGreaterThan(LARGE_TRANSACTION_LIMIT)
+            ? TransactionStatus.PENDING
+            : TransactionStatus.APPROVED;
+
+    Transaction transaction =
         Transaction.builder()
             .id(UUID.randomUUID().toString())
             .amount(withdrawDto.amount())
             .type(TransactionType.WITHDRAW)
             .oppositePartyType(withdrawDto.destination())
-            .oppositeParty(withdrawDto.oppositeParty());
-
-    wallet.decreaseUsableBalance(withdrawDto.amount());
-
-    if (withdrawDto.amount().compareTo(LARGE_TRANSACTION_LIMIT) > 0) {
-      transactionBuilder.status(TransactionStatus.PENDING);
-    } else {
-      transactionBuilder.status(TransactionStatus.APPROVED);
-      wallet.decreaseBalance(withdrawDto.amount());
-    }
-
-    Transaction transaction = transactionBuilder.wallet(wallet).build();
+            .oppositeParty(withdrawDto.oppositeParty())
+            .status(status)
+            .wallet(wallet)
+            .build();
 
-    walletRepository.save(wallet);
+    adjustBalances(
+        wallet,
+        transaction,
+        status.equals(TransactionStatus.APPROVED) ? withdrawDto.amount().negate() : Money.ZERO,
+        withdrawDto.amount().negate());
     transactionRepository.save(transaction);
 
     return TransactionResponseDto.builder()
@@ -214,16 +464,45 @@ public class WalletService {
   }
 
   @Transactional(rollbackFor = Exception.class)
-  @Retryable(
-      retryFor = ObjectOptimisticLockingFailureException.class,
-      maxAttempts = MAX_RETRY_ATTEMPTS,
-      backoff = @Backoff(delay = 100))
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
   public TransactionResponseDto approve(String transactionId, TransactionStatus status) {
 
-    Transaction transaction =
-        transactionRepository
-            .findById(transactionId)
-            .orElseThrow(() -> new CustomNotFoundException("Transaction not found!"));
+    if (walletLockManager.isEnabled() || walletContentionTracker.hasHotWallets()) {
+      lockWallets(transactionRepository.findWalletIdsById(transactionId));
+    }
+
+    return completed(process(findTransaction(transactionId), status));
+  }
+
+  /**
+   * Moves a transaction out of PENDING. Both legs of a transfer always move together, in wallet id
+   * order like {@link #transfer}.
+   */
+  private TransactionResponseDto process(Transaction transaction, TransactionStatus status) {
+
+    TransactionStatus newStatus =
+        status.equals(TransactionStatus.APPROVED)
+            ? TransactionStatus.APPROVED
+            : TransactionStatus.DENIED;
+    List<Transaction> legs =
+        transaction.getLinkedTransactionId() == null
+            ? List.of(transaction)
+            : Stream.of(transaction, findTransaction(transaction.getLinkedTransactionId()))
+                .sorted(Comparator.comparing(leg -> leg.getWallet().getId()))
+                .toList();
+
+    for (Transaction leg : legs) {
+      transition(leg, newStatus);
+    }
+
+    return TransactionResponseDto.builder()
+        .transactionId(transaction.getId())
+        .status(transaction.getStatus())
+        .message("Transaction processed successfully!")
+        .build();
+  }
+
+  private void transition(Transaction transaction, TransactionStatus newStatus) {
 
     Wallet wallet = transaction.getWallet();
 
@@ -231,36 +510,142 @@ public class WalletService {
 
       throw new CustomConflictException("Transaction processed already!");
     }
+    LocalDateTime processedAt = LocalDateTime.now();
 
-    if (status.equals(TransactionStatus.APPROVED)) {
-      if (transaction.getType().equals(TransactionType.DEPOSIT)) {
-        wallet.increaseUsableBalance(transaction.getAmount());
-        transaction.setStatus(TransactionStatus.APPROVED);
-      } else {
-        wallet.decreaseBalance(transaction.getAmount());
-        transaction.setStatus(TransactionStatus.APPROVED);
-      }
-    } else {
-      if (transaction.getType().equals(TransactionType.WITHDRAW)) {
-        wallet.increaseUsableBalance(transaction.getAmount());
-        transaction.setStatus(TransactionStatus.DENIED);
-      } else {
-        wallet.decreaseBalance(transaction.getAmount());
-        transaction.setStatus(TransactionStatus.DENIED);
-      }
+    if (!walletLedger.isEnabled()
+        && transactionRepository.updateStatus(
+                transaction.getId(), TransactionStatus.PENDING, newStatus, processedAt)
+            == 0) {
+
+      throw new CustomConflictException("Transaction processed already!");
     }
 
-    transaction.setWallet(wallet);
+    transaction.setStatus(newStatus);
+    transaction.setProcessedAt(processedAt);
+
+    if (releasesHeldAmount(transaction.getType(), newStatus)) {
+      adjustBalances(wallet, transaction, Money.ZERO, transaction.getAmount());
+    } else {
+      adjustBalances(wallet, transaction, transaction.getAmount().negate(), Money.ZERO);
+    }
 
     transactionRepository.save(transaction);
+  }
+
+  /**
+   * Approving a deposit or denying a withdraw frees the held amount for use, the other two outcomes
+   * take it off the balance.
+   */
+  static boolean releasesHeldAmount(TransactionType type, TransactionStatus newStatus) {
+
+    return newStatus.equals(TransactionStatus.APPROVED) == type.equals(TransactionType.DEPOSIT);
+  }
+
+  @Transactional(rollbackFor = Exception.class)
+  @Retryable(interceptor = RETRY_INTERCEPTOR)
+  public TransactionResponseDto makeTransfer(TransferDto transferDto) {
+
+    if (transferDto.sourceWalletId().equals(transferDto.targetWalletId())) {
+
+      throw new CustomBadRequestException("Source and target wallets must be different!");
+    }
+
+    lockWallets(List.of(transferDto.sourceWalletId(), transferDto.targetWalletId()));
+
+    return completed(
+        transfer(
+            findOwnedWallet(transferDto.sourceWalletId()),
+            findOwnedWallet(transferDto.targetWalletId()),
+            transferDto));
+  }
+
+  /**
+   * Moves money between two wallets as a linked WITHDRAW and DEPOSIT committed together. The two
+   * balance {@code UPDATE}s run in wallet id order, so crossing transfers lock the rows in the same
+   * order and cannot deadlock.
+   */
+  private TransactionResponseDto transfer(Wallet source, Wallet target, TransferDto transferDto) {
+
+    Money amount = transferDto.amount();
+
+    if (amount.signum() <= 0) {
+
+      throw new CustomBadRequestException("Transfer amount must be greater than zero!");
+    }
+
+    if (isCurrentUserCustomer()
+        && (!source.getCustomer().getTckn().equals(getCurrentUserTckn())
+            || !target.getCustomer().getTckn().equals(getCurrentUserTckn()))) {
+
+      throw new CustomUnauthorizedException("You can only transfer between your own wallets!");
+    }
+
+    if (!source.isActiveForWithdraw() || !source.isActiveForShopping()) {
+
+      throw new CustomConflictException("Wallet is not active!");
+    }
+
+    if (!source.getCurrency().equals(target.getCurrency())) {
+
+      throw new CustomBadRequestException("Wallets must have the same currency!");
+    }
+
+    TransactionStatus status =
+        amount.isGreaterThan(LARGE_TRANSACTION_LIMIT)
+            ? TransactionStatus.PENDING
+            : TransactionStatus.APPROVED;
+    boolean approved = status.equals(TransactionStatus.APPROVED);
+    String withdrawalId = UUID.randomUUID().toString();
+    String depositId = UUID.randomUUID().toString();
+
+    Transaction withdrawal =
+        Transaction.builder()
+            .id(withdrawalId)
+            .amount(amount)
+            .type(TransactionType.WITHDRAW)
+            .oppositePartyType(OppositePartyType.WALLET)
+            .oppositeParty(target.getId())
+            .linkedTransactionId(depositId)
+            .status(status)
+            .wallet(source)
+            .build();
+    Transaction deposit =
+        Transaction.builder()
+            .id(depositId)
+            .amount(amount)
+            .type(TransactionType.DEPOSIT)
+            .oppositePartyType(OppositePartyType.WALLET)
+            .oppositeParty(source.getId())
+            .linkedTransactionId(withdrawalId)
+            .status(status)
+            .wallet(target)
+            .build();
+
+    if (source.getId().compareTo(target.getId()) < 0) {
+      adjustBalances(source, withdrawal, approved ? amount.negate() : Money.ZERO, amount.negate());
+      adjustBalances(target, deposit, amount, approved ? amount : Money.ZERO);
+    } else {
+      adjustBalances(target, deposit, amount, approved ? amount : Money.ZERO);
+      adjustBalances(source, withdrawal, approved ? amount.negate() : Money.ZERO, amount.negate());
+    }
+
+    transactionRepository.saveAll(List.of(withdrawal, deposit));
 
     return TransactionResponseDto.builder()
-        .transactionId(transaction.getId())
-        .status(transaction.getStatus())
-        .message("Transaction processed successfully!")
+        .transactionId(withdrawal.getId())
+        .status(withdrawal.getStatus())
+        .message("Transfer transaction created successfully!")
         .build();
   }
 
+  /** Stores the response for a pending Idempotency-Key in the operation's own transaction. */
+  private TransactionResponseDto completed(TransactionResponseDto response) {
+
+    idempotencyStore.completeInTransaction(response);
+
+    return response;
+  }
+
   @Transactional
   public Customer createCustomer(CreateCustomerDto createCustomerDto) {
 
@@ -299,14 +684,142 @@ public class WalletService {
     return adminUserRepository.save(adminUser);
   }
 
-  private String getCurrentUserTckn() {
+  /**
+   * Applies a balance change. Outside ledger mode this is a single conditional {@code UPDATE}, so
+   * the database checks sufficiency atomically and concurrent writers queue on the row lock instead
+   * of failing a version check. Wallets split into sub-balances update one of their slots instead.
+   */
+  private void adjustBalances(
+      Wallet wallet, Transaction transaction, Money balanceDelta, Money usableBalanceDelta) {
+
+    walletReadCache.evictAfterCommit(List.of(wallet.getId()));
+
+    if (walletLedger.isEnabled()) {
+      WalletLedger.Checkpoint checkpoint =
+          transaction.isNew() && transaction.getType().equals(TransactionType.DEPOSIT)
+              ? walletLedger.openForDeposit(wallet)
+              : walletLedger.open(wallet);
+
+      wallet.adjustBalances(balanceDelta, usableBalanceDelta);
+      walletLedger.append(wallet, checkpoint, transaction);
+      adjustPortfolio(wallet, transaction, balanceDelta, usableBalanceDelta);
+      return;
+    }
+
+    boolean applied =
+        wallet.getSubBalances() <= 1
+            ? walletRepository.adjustBalances(wallet.getId(), balanceDelta, usableBalanceDelta) == 1
+            : walletSubBalances.adjust(
+                wallet.getId(), transaction.getId(), balanceDelta, usableBalanceDelta);
+
+    if (!applied) {
+
+      throw new CustomConflictException(
+          usableBalanceDelta.signum() < 0
+              ? "Usable balance is not sufficient!"
+              : "Balance is not sufficient!");
+    }
+
+    adjustPortfolio(wallet, transaction, balanceDelta, usableBalanceDelta);
+  }
+
+  /**
+   * Records an applied balance change in the customer's portfolio. A transaction being created may
+   * start out pending; one that has a {@code processedAt} already is on its way out of PENDING.
+   */
+  private void adjustPortfolio(
+      Wallet wallet, Transaction transaction, Money balanceDelta, Money usableBalanceDelta) {
+
+    long pendingDelta;
+
+    if (transaction.getProcessedAt() != null) {
+      pendingDelta = -1;
+    } else {
+      pendingDelta = transaction.getStatus().equals(TransactionStatus.PENDING) ? 1 : 0;
+    }
+
+    customerPortfolios.adjust(wallet, balanceDelta, usableBalanceDelta, pendingDelta);
+  }
+
+  /**
+   * Takes the striped locks of {@link WalletLockManager} and, for wallets that keep failing their
+   * optimistic checks, a row lock, so their writers wait for each other instead of retrying.
+   */
+  private void lockWallets(Collection<String> walletIds) {
+
+    walletLockManager.lockAll(walletIds);
+
+    for (String walletId : walletContentionTracker.hotWallets(walletIds)) {
+      walletRepository.findForUpdateById(walletId);
+    }
+  }
+
+  /**
+   * Fails unless {@code ifMatch} names the ETag {@link #listTransactions(String, String, int,
+   * Sort.Direction, String)} gives the wallet. The wallet row is locked first, so writes that
+   * update it wait until this one commits; ledger and sub-balance deposits, which leave the row
+   * alone, do not. Wallets the caller does not own are left to the ownership check.
+   */
+  private void checkIfMatch(String walletId, String ifMatch) {
+
+    if (ifMatch == null) {
+      return;
+    }
+
+    walletRepository.findForUpdateById(walletId);
+    walletRepository
+        .findTransactionsVersionById(walletId, currentOwnerTckn())
+        .filter(version -> !ConditionalRead.matches(ifMatch, ConditionalRead.eTagOf(version), true))
+        .ifPresent(
+            version -> {
+              throw new CustomPreconditionFailedException("Wallet has changed since it was read!");
+            });
+  }
+
+  private Wallet findWallet(String walletId) {
+
+    return walletRepository
+        .findById(walletId)
+        .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND));
+  }
+
+  /** Loads the wallet together with its customer, whose tckn the ownership check compares. */
+  private Wallet findOwnedWallet(String walletId) {
+
+    return walletRepository
+        .findWithCustomerById(walletId)
+        .orElseThrow(() -> new CustomNotFoundException(WALLET_NOT_FOUND));
+  }
+
+  private Transaction findTransaction(String transactionId) {
+
+    return transactionRepository
+        .findWithWalletById(transactionId)
+        .orElseThrow(() -> new CustomNotFoundException("Transaction not found!"));
+  }
+
+  /** The current customer's tckn, or {@code null} for admins, who may read every wallet. */
+  static String currentOwnerTckn() {
+
+    return isCurrentUserCustomer() ? getCurrentUserTckn() : null;
+  }
+
+  private static void checkOwner(String ownerTckn, String message) {
+
+    if (isCurrentUserCustomer() && !ownerTckn.equals(getCurrentUserTckn())) {
+
+      throw new CustomUnauthorizedException(message);
+    }
+  }
+
+  static String getCurrentUserTckn() {
 
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
     return authentication.getName();
   }
 
-  private boolean isCurrentUserCustomer() {
+  static boolean isCurrentUserCustomer() {
 
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
 
@@ -0,0 +1,216 @@
+package com.ing.hubs.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import jakarta.persistence.EntityManager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletSubBalance;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.repository.WalletSubBalanceRepository;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Splits hot wallets into {@code wallet_sub_balance} slots so that concurrent deposits update
+ * different rows. A change goes to the slot picked by hashing its transaction id; when that slot
+ * cannot cover a debit, the wallet row is locked, the slots are summed and the result is spread
+ * evenly over them again before the debit is applied. The balances on the {@code wallet} row of a
+ * split wallet are only a copy, refreshed every {@code wallet.sub-balances.refresh-interval-ms};
+ * reads use the slot sums instead.
+ */
+@Slf4j
+@Component
+public class WalletSubBalances {
+
+  private final WalletSubBalanceRepository walletSubBalanceRepository;
+  private final WalletRepository walletRepository;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+  private final int maxSubBalances;
+
+  public WalletSubBalances(
+      WalletSubBalanceRepository walletSubBalanceRepository,
+      WalletRepository walletRepository,
+      EntityManager entityManager,
+      TransactionTemplate transactionTemplate,
+      @Value("${wallet.sub-balances.max-count:64}") int maxSubBalances) {
+
+    if (maxSubBalances < 1) {
+
+      throw new IllegalArgumentException("Invalid wallet.sub-balances.* settings");
+    }
+
+    this.walletSubBalanceRepository = walletSubBalanceRepository;
+    this.walletRepository = walletRepository;
+    this.entityManager = entityManager;
+    this.transactionTemplate = transactionTemplate;
+    this.maxSubBalances = maxSubBalances;
+  }
+
+  /**
+   * Applies a balance change that the wallet row did not take, either because the wallet is split
+   * or because it was split while the caller was working. Returns {@code false} when the wallet
+   * cannot cover the change.
+   */
+  public boolean adjust(
+      String walletId, String transactionId, Money balanceDelta, Money usableBalanceDelta) {
+
+    int subBalances = walletRepository.findSubBalancesById(walletId).orElse(1);
+
+    if (subBalances > 1
+        && walletSubBalanceRepository.adjustBalances(
+                walletId, slot(transactionId, subBalances), balanceDelta, usableBalanceDelta)
+            == 1) {
+
+      return true;
+    }
+
+    return rebalance(walletId, balanceDelta, usableBalanceDelta);
+  }
+
+  /** Replaces the balances of split wallets with the sums of their slots. */
+  public void materialize(List<Wallet> wallets) {
+
+    List<String> splitWalletIds =
+        wallets.stream().filter(wallet -> wallet.getSubBalances() > 1).map(Wallet::getId).toList();
+
+    if (splitWalletIds.isEmpty()) {
+      return;
+    }
+
+    Map<String, WalletBalanceDto> totals =
+        walletSubBalanceRepository.findTotals(splitWalletIds).stream()
+            .collect(Collectors.toMap(WalletBalanceDto::walletId, Function.identity()));
+
+    for (Wallet wallet : wallets) {
+      WalletBalanceDto total = totals.get(wallet.getId());
+
+      if (total != null) {
+        entityManager.detach(wallet);
+        wallet.setBalance(total.balance());
+        wallet.setUsableBalance(total.usableBalance());
+      }
+    }
+  }
+
+  /**
+   * Re-splits a wallet into the given number of slots, 1 moving the balances back onto the wallet
+   * row. Must run inside a transaction.
+   */
+  public void resize(String walletId, int subBalances) {
+
+    if (subBalances < 1 || subBalances > maxSubBalances) {
+
+      throw new CustomBadRequestException(
+          "Sub-balance count must be between 1 and " + maxSubBalances + "!");
+    }
+
+    int current =
+        walletRepository
+            .lockSubBalancesById(walletId)
+            .orElseThrow(() -> new CustomNotFoundException("Wallet not found!"));
+    WalletBalanceDto total =
+        current > 1 ? lockedTotal(walletId) : walletRepository.findBalancesById(walletId).get();
+
+    walletSubBalanceRepository.deleteAllByWalletId(walletId);
+
+    if (subBalances > 1) {
+      walletSubBalanceRepository.saveAll(
+          IntStream.range(0, subBalances)
+              .mapToObj(
+                  slot ->
+                      WalletSubBalance.builder()
+                          .id(UUID.randomUUID().toString())
+                          .walletId(walletId)
+                          .slot(slot)
+                          .balance(Money.ZERO)
+                          .usableBalance(Money.ZERO)
+                          .build())
+              .toList());
+      walletSubBalanceRepository.flush();
+      spread(walletId, subBalances, total.balance(), total.usableBalance());
+    }
+
+    walletRepository.updateSubBalances(
+        walletId, subBalances, total.balance(), total.usableBalance());
+    log.info("Wallet {} now has {} sub-balances", walletId, subBalances);
+  }
+
+  @Scheduled(fixedDelayString = "${wallet.sub-balances.refresh-interval-ms:5000}")
+  public void refreshTotals() {
+
+    transactionTemplate.executeWithoutResult(status -> walletRepository.refreshSubBalanceTotals());
+  }
+
+  static int slot(String transactionId, int subBalances) {
+
+    return Math.floorMod(transactionId.hashCode(), subBalances);
+  }
+
+  private boolean rebalance(String walletId, Money balanceDelta, Money usableBalanceDelta) {
+
+    // the wallet row lock orders rebalances and resizes of one wallet
+    int subBalances = walletRepository.lockSubBalancesById(walletId).orElse(0);
+
+    if (subBalances == 0) {
+
+      return false;
+    }
+
+    if (subBalances == 1) {
+
+      return walletRepository.adjustBalances(walletId, balanceDelta, usableBalanceDelta) == 1;
+    }
+
+    WalletBalanceDto total = lockedTotal(walletId);
+    Money balance = total.balance().plus(balanceDelta);
+    Money usableBalance = total.usableBalance().plus(usableBalanceDelta);
+
+    if (balance.signum() < 0 || usableBalance.signum() < 0) {
+
+      return false;
+    }
+
+    spread(walletId, subBalances, balance, usableBalance);
+    walletRepository.updateSubBalances(walletId, subBalances, balance, usableBalance);
+
+    return true;
+  }
+
+  private WalletBalanceDto lockedTotal(String walletId) {
+
+    walletSubBalanceRepository.lockAllByWalletId(walletId);
+
+    return walletSubBalanceRepository.findTotals(List.of(walletId)).stream()
+        .findFirst()
+        .orElse(new WalletBalanceDto(walletId, Money.ZERO, Money.ZERO));
+  }
+
+  private void spread(String walletId, int subBalances, Money balance, Money usableBalance) {
+
+    long share = balance.minorUnits() / subBalances;
+    long usableShare = usableBalance.minorUnits() / subBalances;
+
+    walletSubBalanceRepository.setAll(walletId, new Money(share), new Money(usableShare));
+    walletSubBalanceRepository.adjustBalances(
+        walletId,
+        0,
+        balance.minus(new Money(share * subBalances)),
+        usableBalance.minus(new Money(usableShare * subBalances)));
+  }
+}
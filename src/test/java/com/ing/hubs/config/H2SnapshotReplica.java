@@ -0,0 +1,22 @@
+package com.ing.hubs.config;
+
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * A local stand-in for a replica: an H2 database that is brought up to date with the primary only
+ * when {@link #sync} copies the primary over it, so tests decide exactly how far it lags.
+ */
+final class H2SnapshotReplica {
+
+  private H2SnapshotReplica() {}
+
+  /** Replaces everything in the replica with a snapshot of the primary. */
+  static void sync(JdbcTemplate primary, JdbcTemplate replica) {
+
+    List<String> script = primary.queryForList("SCRIPT", String.class);
+    replica.execute("DROP ALL OBJECTS");
+    script.forEach(replica::execute);
+  }
+}
@@ -0,0 +1,143 @@
+package com.ing.hubs.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.service.WalletService;
+import com.zaxxer.hikari.HikariDataSource;
+
+@SpringBootTest(
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:replica-config-primary;DB_CLOSE_DELAY=-1",
+      "spring.jpa.show-sql=false",
+      "wallet.replicas.urls=jdbc:h2:mem:replica-config-replica;DB_CLOSE_DELAY=-1",
+      "wallet.replicas.lag-check-interval-ms=3600000"
+    })
+@ActiveProfiles("read-replicas")
+class ReadReplicaConfigTest {
+
+  @Autowired private WalletService walletService;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private WalletRepository walletRepository;
+  @Autowired private HikariDataSource primaryDataSource;
+  @Autowired private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+  private final JdbcTemplate replicaJdbcTemplate =
+      new JdbcTemplate(
+          new DriverManagerDataSource(
+              "jdbc:h2:mem:replica-config-replica;DB_CLOSE_DELAY=-1", "sa", "sa123"));
+
+  private Wallet wallet;
+
+  @BeforeEach
+  void setUp() {
+
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .id(UUID.randomUUID().toString())
+                .name("John")
+                .surname("Doe")
+                .tckn(UUID.randomUUID().toString().substring(0, 11))
+                .password("customerPass123")
+                .build());
+    wallet =
+        walletRepository.save(
+            Wallet.builder()
+                .id(UUID.randomUUID().toString())
+                .customer(customer)
+                .walletName("Main Wallet")
+                .currency(Currency.TRY)
+                .activeForShopping(true)
+                .activeForWithdraw(true)
+                .balance(Money.ZERO)
+                .usableBalance(Money.ZERO)
+                .build());
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+
+    deposit();
+    replicaRoutingDataSource.checkLag();
+    H2SnapshotReplica.sync(new JdbcTemplate(primaryDataSource), replicaJdbcTemplate);
+    replicaRoutingDataSource.checkLag();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void listTransactions_ShouldReadTheReplicaWhileWritesGoToThePrimary() {
+
+    deposit();
+
+    assertEquals(
+        1,
+        walletService
+            .listTransactions(wallet.getId(), null, 50, Sort.Direction.ASC)
+            .transactions()
+            .size());
+  }
+
+  @Test
+  void listWallets_ShouldReadTheReplicaAndRefillOnceItCatchesUp() {
+
+    String customerId = wallet.getCustomer().getId();
+    walletService.listWallets(customerId);
+    deposit();
+
+    assertEquals(
+        Money.ofMajor(100), walletService.listWallets(customerId).wallets().getFirst().balance());
+
+    H2SnapshotReplica.sync(new JdbcTemplate(primaryDataSource), replicaJdbcTemplate);
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(
+        Money.ofMajor(200), walletService.listWallets(customerId).wallets().getFirst().balance());
+  }
+
+  @Test
+  void listTransactions_WithReplicaLagging_ShouldReadThePrimary() {
+
+    deposit();
+    replicaJdbcTemplate.update(
+        "UPDATE replica_heartbeat SET beat_at = DATEADD('MINUTE', -1, beat_at)");
+    replicaRoutingDataSource.checkLag();
+
+    assertEquals(
+        2,
+        walletService
+            .listTransactions(wallet.getId(), null, 50, Sort.Direction.ASC)
+            .transactions()
+            .size());
+  }
+
+  private void deposit() {
+
+    walletService.makeDeposit(
+        new DepositDto(Money.ofMajor(100), wallet.getId(), OppositePartyType.IBAN, "TR1"));
+  }
+}
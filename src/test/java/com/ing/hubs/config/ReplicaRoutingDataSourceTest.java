@@ -0,0 +1,182 @@
+package com.ing.hubs.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.UserCredentialsDataSourceAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReplicaRoutingDataSourceTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private HikariDataSource primary;
+  private HikariDataSource replica;
+  private JdbcTemplate primaryJdbcTemplate;
+  private JdbcTemplate replicaJdbcTemplate;
+  private ReplicaRoutingDataSource routingDataSource;
+  private JdbcTemplate jdbcTemplate;
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setUp() {
+
+    primary = h2("routing-primary");
+    replica = h2("routing-replica");
+    primaryJdbcTemplate = new JdbcTemplate(primary);
+    replicaJdbcTemplate = new JdbcTemplate(replica);
+    primaryJdbcTemplate.execute(
+        "CREATE TABLE replica_heartbeat (id VARCHAR(255) PRIMARY KEY, beat_at TIMESTAMP NOT NULL)");
+    primaryJdbcTemplate.execute("CREATE TABLE deposit (id INT PRIMARY KEY)");
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (1)");
+
+    routingDataSource =
+        new ReplicaRoutingDataSource(primary, List.of(replica), 1000, meterRegistry);
+    DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    // in-memory databases without DB_CLOSE_DELAY go away with their last connection
+    primary.close();
+    replica.close();
+  }
+
+  @Test
+  void readOnlyTransaction_WithReplicaCaughtUp_ShouldReadTheReplica() {
+
+    routingDataSource.checkLag();
+    H2SnapshotReplica.sync(primaryJdbcTemplate, replicaJdbcTemplate);
+    routingDataSource.checkLag();
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (2)");
+
+    assertEquals(1, deposits(true));
+    assertEquals(2, deposits(false));
+    assertEquals(1, reads("replica"));
+  }
+
+  @Test
+  void readOnlyTransaction_WithReplicaLagging_ShouldFallBackToPrimary() {
+
+    routingDataSource.checkLag();
+    H2SnapshotReplica.sync(primaryJdbcTemplate, replicaJdbcTemplate);
+    replicaJdbcTemplate.update(
+        "UPDATE replica_heartbeat SET beat_at = DATEADD('MINUTE', -1, beat_at)");
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (2)");
+
+    routingDataSource.checkLag();
+
+    assertEquals(2, deposits(true));
+    assertEquals(1, reads("primary"));
+    assertEquals(
+        1,
+        meterRegistry.get("wallet.replicas.fallbacks").tag("reason", "lagging").counter().count());
+    assertTrue(meterRegistry.get("wallet.replicas.lag").gauge().value() >= 60_000);
+  }
+
+  @Test
+  void readOnlyTransaction_BeforeAnyCheck_ShouldFallBackToPrimary() {
+
+    H2SnapshotReplica.sync(primaryJdbcTemplate, replicaJdbcTemplate);
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (2)");
+
+    assertEquals(2, deposits(true));
+    assertTrue(Double.isNaN(meterRegistry.get("wallet.replicas.lag").gauge().value()));
+  }
+
+  @Test
+  void readOnlyTransaction_WithReplicaDown_ShouldFallBackToPrimary() {
+
+    routingDataSource.checkLag();
+    H2SnapshotReplica.sync(primaryJdbcTemplate, replicaJdbcTemplate);
+    routingDataSource.checkLag();
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (2)");
+    replica.close();
+
+    assertEquals(2, deposits(true));
+    assertEquals(
+        1,
+        meterRegistry
+            .get("wallet.replicas.fallbacks")
+            .tag("reason", "unavailable")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void readOnlyTransaction_WithExplicitCredentials_ShouldReadTheReplica() {
+
+    ReplicaRoutingDataSource credentialed =
+        new ReplicaRoutingDataSource(
+            unpooled("routing-primary"),
+            List.of(unpooled("routing-replica")),
+            1000,
+            new SimpleMeterRegistry());
+    UserCredentialsDataSourceAdapter adapter = new UserCredentialsDataSourceAdapter();
+    adapter.setTargetDataSource(credentialed);
+    adapter.setUsername("sa");
+    adapter.setPassword("sa");
+    DataSource dataSource = new LazyConnectionDataSourceProxy(adapter);
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    credentialed.checkLag();
+    H2SnapshotReplica.sync(primaryJdbcTemplate, replicaJdbcTemplate);
+    credentialed.checkLag();
+    primaryJdbcTemplate.update("INSERT INTO deposit VALUES (2)");
+
+    assertEquals(1, deposits(true));
+    assertEquals(2, deposits(false));
+  }
+
+  private int deposits(boolean readOnly) {
+
+    transactionTemplate.setReadOnly(readOnly);
+
+    return transactionTemplate.execute(
+        status -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM deposit", Integer.class));
+  }
+
+  private double reads(String target) {
+
+    return meterRegistry.get("wallet.replicas.reads").tag("target", target).counter().count();
+  }
+
+  private static HikariDataSource h2(String name) {
+
+    HikariDataSource dataSource = new HikariDataSource();
+    dataSource.setJdbcUrl("jdbc:h2:mem:" + name);
+    dataSource.setUsername("sa");
+    dataSource.setPassword("sa");
+
+    return dataSource;
+  }
+
+  // the Hikari pools keep the in-memory databases open; unlike them, H2's own data source accepts
+  // credentials per connection
+  private static JdbcDataSource unpooled(String name) {
+
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + name);
+    dataSource.setUser("sa");
+    dataSource.setPassword("sa");
+
+    return dataSource;
+  }
+}
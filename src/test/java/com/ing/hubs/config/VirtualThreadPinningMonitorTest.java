@@ -0,0 +1,74 @@
+package com.ing.hubs.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VirtualThreadPinningMonitorTest {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final Object monitor = new Object();
+  private VirtualThreadPinningMonitor pinningMonitor;
+
+  @AfterEach
+  void tearDown() {
+
+    if (pinningMonitor != null) {
+      pinningMonitor.stop();
+    }
+  }
+
+  @Test
+  void start_ShouldCountVirtualThreadsBlockingInsideSynchronized() throws Exception {
+
+    pinningMonitor = new VirtualThreadPinningMonitor(meterRegistry, true, true, 0);
+    pinningMonitor.start();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+
+    while (pinnedCount() == 0 && System.nanoTime() < deadline) {
+      Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+      Thread.sleep(200);
+    }
+
+    assertTrue(pinnedCount() > 0);
+    assertTrue(
+        meterRegistry.find("wallet.virtual_threads.pinned").counters().stream()
+            .anyMatch(counter -> counter.getId().getTag("frame").startsWith(getClass().getName())));
+  }
+
+  @Test
+  void start_WithoutVirtualThreads_ShouldNotRecord() throws Exception {
+
+    pinningMonitor = new VirtualThreadPinningMonitor(meterRegistry, false, true, 0);
+    pinningMonitor.start();
+
+    Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+    assertEquals(0, pinnedCount());
+  }
+
+  private void sleepWhileHoldingMonitor() {
+
+    synchronized (monitor) {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private double pinnedCount() {
+
+    return meterRegistry.find("wallet.virtual_threads.pinned").counters().stream()
+        .mapToDouble(Counter::count)
+        .sum();
+  }
+}
@@ -0,0 +1,452 @@
+package com.ing.hubs.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.ing.hubs.dto.AuthRequestDto;
+import com.ing.hubs.dto.AuthResponseDto;
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.ListTransactionDto;
+import com.ing.hubs.dto.ListWalletDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.security.JwtTokenProvider;
+
+@ActiveProfiles("reactive")
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:reactive-api;DB_CLOSE_DELAY=-1",
+      "spring.r2dbc.url=r2dbc:h2:mem:///reactive-api?options=DB_CLOSE_DELAY=-1",
+      "jwt.secret=reactive-secret-reactive-secret-reactive-secret-reactive-secret-0123"
+    })
+@AutoConfigureWebTestClient
+class ReactiveWalletControllerTest {
+
+  @Autowired private WebTestClient webTestClient;
+
+  @Autowired private CustomerRepository customerRepository;
+
+  @Autowired private WalletRepository walletRepository;
+
+  @Autowired private PasswordEncoder passwordEncoder;
+
+  @Autowired private JwtTokenProvider jwtTokenProvider;
+
+  private Customer customer;
+  private Wallet wallet;
+  private String token;
+
+  @BeforeEach
+  void setUp() {
+
+    customer = createCustomer();
+    wallet =
+        walletRepository.save(
+            Wallet.builder()
+                .id(UUID.randomUUID().toString())
+                .customer(customer)
+                .walletName("My Wallet")
+                .currency(Currency.USD)
+                .activeForShopping(true)
+                .activeForWithdraw(true)
+                .balance(Money.ofMajor(100))
+                .usableBalance(Money.ofMajor(100))
+                .build());
+    token = jwtTokenProvider.generateToken(customer.getTckn(), "ROLE_CUSTOMER");
+  }
+
+  @Test
+  void login_ShouldReturnToken() {
+
+    AuthResponseDto response =
+        webTestClient
+            .post()
+            .uri("/api/auth/login")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(new AuthRequestDto(customer.getTckn(), "password123"))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(AuthResponseDto.class)
+            .returnResult()
+            .getResponseBody();
+
+    assertThat(response.role()).isEqualTo("ROLE_CUSTOMER");
+    assertThat(jwtTokenProvider.getUsernameFromToken(response.token()))
+        .isEqualTo(customer.getTckn());
+  }
+
+  @Test
+  void getTransactions_WithoutToken_ShouldReturnUnauthorized() {
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+        .exchange()
+        .expectStatus()
+        .isUnauthorized();
+  }
+
+  @Test
+  void deposit_ThenListings_ShouldShowTheDeposit() {
+
+    TransactionResponseDto deposit =
+        webTestClient
+            .post()
+            .uri("/api/wallet/deposit")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(
+                new DepositDto(
+                    Money.ofMajor(50), wallet.getId(), OppositePartyType.IBAN, "Bank Account"))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(TransactionResponseDto.class)
+            .returnResult()
+            .getResponseBody();
+
+    ListTransactionDto transactions =
+        webTestClient
+            .get()
+            .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(ListTransactionDto.class)
+            .returnResult()
+            .getResponseBody();
+    ListWalletDto wallets =
+        webTestClient
+            .get()
+            .uri("/api/wallet/{customerId}", customer.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(ListWalletDto.class)
+            .returnResult()
+            .getResponseBody();
+
+    assertThat(transactions.transactions()).hasSize(1);
+    assertThat(transactions.transactions().getFirst().id()).isEqualTo(deposit.transactionId());
+    assertThat(transactions.transactions().getFirst().status())
+        .isEqualTo(TransactionStatus.APPROVED);
+    assertThat(wallets.wallets()).hasSize(1);
+    assertThat(wallets.wallets().getFirst().balance()).isEqualTo(Money.ofMajor(150));
+    assertThat(wallets.wallets().getFirst().currency()).isEqualTo(Currency.USD);
+  }
+
+  @Test
+  void getTransactions_WithETags_ShouldAnswerNotModifiedAndRefuseStaleDeposits() {
+
+    String eTag =
+        webTestClient
+            .get()
+            .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(ListTransactionDto.class)
+            .getResponseHeaders()
+            .getETag();
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .header(HttpHeaders.IF_NONE_MATCH, eTag)
+        .exchange()
+        .expectStatus()
+        .isNotModified()
+        .expectHeader()
+        .valueEquals(HttpHeaders.ETAG, eTag)
+        .expectBody()
+        .isEmpty();
+    deposit(10, "\"stale\"").expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    deposit(10, eTag).expectStatus().isOk();
+    deposit(10, eTag).expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+    String changedETag =
+        webTestClient
+            .get()
+            .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(ListTransactionDto.class)
+            .getResponseHeaders()
+            .getETag();
+
+    assertThat(changedETag).isNotEqualTo(eTag);
+  }
+
+  @Test
+  void getWallets_WithCurrentETag_ShouldReturnNotModified() {
+
+    String eTag =
+        webTestClient
+            .get()
+            .uri("/api/wallet/{customerId}", customer.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(ListWalletDto.class)
+            .getResponseHeaders()
+            .getETag();
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/{customerId}", customer.getId())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .header(HttpHeaders.IF_NONE_MATCH, eTag)
+        .exchange()
+        .expectStatus()
+        .isNotModified();
+  }
+
+  @Test
+  void getTransactions_WithLimit_ShouldPageWithCursor() {
+
+    for (int i = 0; i < 2; i++) {
+      webTestClient
+          .post()
+          .uri("/api/wallet/deposit")
+          .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+          .contentType(MediaType.APPLICATION_JSON)
+          .bodyValue(
+              new DepositDto(
+                  Money.ofMajor(10), wallet.getId(), OppositePartyType.IBAN, "Bank Account"))
+          .exchange()
+          .expectStatus()
+          .isOk();
+    }
+
+    ListTransactionDto firstPage = getTransactionPage("limit=1&direction=DESC");
+    ListTransactionDto secondPage =
+        getTransactionPage("limit=1&direction=DESC&after=" + firstPage.nextCursor());
+
+    assertThat(firstPage.transactions()).hasSize(1);
+    assertThat(secondPage.transactions()).hasSize(1);
+    assertThat(secondPage.transactions().getFirst().id())
+        .isNotEqualTo(firstPage.transactions().getFirst().id());
+    assertThat(secondPage.transactions().getFirst().createdAt())
+        .isBeforeOrEqualTo(firstPage.transactions().getFirst().createdAt());
+    assertThat(secondPage.nextCursor()).isNull();
+  }
+
+  @Test
+  void exportTransactions_AsCsv_ShouldStreamHeaderAndRows() {
+
+    TransactionResponseDto deposit =
+        webTestClient
+            .post()
+            .uri("/api/wallet/deposit")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(
+                new DepositDto(
+                    Money.ofMajor(10), wallet.getId(), OppositePartyType.IBAN, "Bank Account"))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(TransactionResponseDto.class)
+            .returnResult()
+            .getResponseBody();
+
+    String export =
+        webTestClient
+            .get()
+            .uri(
+                "/api/wallet/transactions/{walletId}/export?format=CSV&status=APPROVED",
+                wallet.getId())
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .contentTypeCompatibleWith("text/csv")
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+
+    String[] lines = export.split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[1])
+        .startsWith(deposit.transactionId() + "," + wallet.getId() + ",DEPOSIT,10.00,APPROVED,");
+  }
+
+  @Test
+  void getTransactions_OfOtherCustomersWallet_ShouldReturnUnauthorized() {
+
+    String otherToken = jwtTokenProvider.generateToken(createCustomer().getTckn(), "CUSTOMER");
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/transactions/{walletId}", wallet.getId())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + otherToken)
+        .exchange()
+        .expectStatus()
+        .isUnauthorized()
+        .expectBody()
+        .jsonPath("$.message")
+        .isEqualTo("You can only list transactions of your own wallets!");
+  }
+
+  @Test
+  void exportTransactions_OfOtherCustomersWallet_ShouldReturnUnauthorized() {
+
+    String otherToken = jwtTokenProvider.generateToken(createCustomer().getTckn(), "CUSTOMER");
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/transactions/{walletId}/export", wallet.getId())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + otherToken)
+        .exchange()
+        .expectStatus()
+        .isUnauthorized();
+  }
+
+  @Test
+  void deposit_ThenSearch_ShouldFindItAmongOwnWalletsOnly() {
+
+    webTestClient
+        .post()
+        .uri("/api/wallet/deposit")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(
+            new DepositDto(Money.ofMajor(75), wallet.getId(), OppositePartyType.PAYMENT, "Shop"))
+        .exchange()
+        .expectStatus()
+        .isOk();
+
+    ListTransactionDto found =
+        webTestClient
+            .get()
+            .uri(
+                "/api/wallet/transactions/search?type=DEPOSIT&minAmount=70&oppositePartyType=PAYMENT")
+            .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody(ListTransactionDto.class)
+            .returnResult()
+            .getResponseBody();
+
+    assertThat(found.transactions()).hasSize(1);
+    assertThat(found.transactions().getFirst().walletId()).isEqualTo(wallet.getId());
+    assertThat(found.transactions().getFirst().processedAt())
+        .isEqualTo(found.transactions().getFirst().createdAt());
+
+    String otherToken = jwtTokenProvider.generateToken(createCustomer().getTckn(), "ROLE_CUSTOMER");
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/transactions/search?walletId=" + wallet.getId())
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + otherToken)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody()
+        .jsonPath("$.transactions")
+        .isEmpty();
+  }
+
+  @Test
+  void getWallets_OfMissingCustomer_ShouldReturnNotFound() {
+
+    webTestClient
+        .get()
+        .uri("/api/wallet/{customerId}", "missing")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .exchange()
+        .expectStatus()
+        .isNotFound();
+  }
+
+  @Test
+  void deposit_WithMissingFields_ShouldReturnValidationError() {
+
+    webTestClient
+        .post()
+        .uri("/api/wallet/deposit")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue("{\"walletId\":\"" + wallet.getId() + "\"}")
+        .exchange()
+        .expectStatus()
+        .isBadRequest()
+        .expectBody()
+        .jsonPath("$.errorCode")
+        .isEqualTo("VALIDATION_ERROR");
+  }
+
+  private ListTransactionDto getTransactionPage(String query) {
+
+    return webTestClient
+        .get()
+        .uri("/api/wallet/transactions/" + wallet.getId() + "?" + query)
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .exchange()
+        .expectStatus()
+        .isOk()
+        .expectBody(ListTransactionDto.class)
+        .returnResult()
+        .getResponseBody();
+  }
+
+  private Customer createCustomer() {
+
+    String id = UUID.randomUUID().toString();
+
+    return customerRepository.save(
+        Customer.builder()
+            .id(id)
+            .name("John")
+            .surname("Doe")
+            .tckn(id.substring(0, 11))
+            .password(passwordEncoder.encode("password123"))
+            .build());
+  }
+
+  private WebTestClient.ResponseSpec deposit(long amount, String ifMatch) {
+
+    return webTestClient
+        .post()
+        .uri("/api/wallet/deposit")
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+        .header(HttpHeaders.IF_MATCH, ifMatch)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(
+            new DepositDto(
+                Money.ofMajor(amount), wallet.getId(), OppositePartyType.IBAN, "Bank Account"))
+        .exchange();
+  }
+}
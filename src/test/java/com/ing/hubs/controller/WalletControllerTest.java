@@ -1,14 +1,19 @@
 package com.ing.hubs.controller;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,10 +22,13 @@ import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -30,11 +38,19 @@ import com.ing.hubs.entity.Transaction;
 import com.ing.hubs.entity.Wallet;
 import com.ing.hubs.exception.CustomConflictException;
 import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.exception.CustomPreconditionFailedException;
 import com.ing.hubs.exception.CustomUnauthorizedException;
 import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.ExportFormat;
+import com.ing.hubs.model.Money;
 import com.ing.hubs.model.OppositePartyType;
 import com.ing.hubs.model.TransactionStatus;
 import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.service.ConditionalRead;
+import com.ing.hubs.service.TransactionApprovalService;
+import com.ing.hubs.service.TransactionExporter;
+import com.ing.hubs.service.TransactionSearchService;
+import com.ing.hubs.service.WalletCommandResult;
 import com.ing.hubs.service.WalletService;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -45,6 +61,12 @@ class WalletControllerTest {
 
   @MockitoBean private WalletService walletService;
 
+  @MockitoBean private TransactionApprovalService transactionApprovalService;
+
+  @MockitoBean private TransactionExporter transactionExporter;
+
+  @MockitoBean private TransactionSearchService transactionSearchService;
+
   private ObjectMapper objectMapper;
   private CreateWalletDto createWalletDto;
   private DepositDto depositDto;
@@ -53,6 +75,8 @@ class WalletControllerTest {
   private Wallet wallet;
   private Customer customer;
   private Transaction transaction;
+  private WalletDto walletDto;
+  private TransactionDto transactionDto;
   private TransactionResponseDto transactionResponseDto;
 
   @BeforeEach
@@ -64,11 +88,11 @@ class WalletControllerTest {
 
     depositDto =
         new DepositDto(
-            BigDecimal.valueOf(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+            Money.ofMajor(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
 
     withdrawDto =
         new WithdrawDto(
-            BigDecimal.valueOf(200), "wallet-123", OppositePartyType.PAYMENT, "Bank Account 456");
+            Money.ofMajor(200), "wallet-123", OppositePartyType.PAYMENT, "Bank Account 456");
 
     createCustomerDto = new CreateCustomerDto("John", "Doe", "12345678901", "password123");
 
@@ -89,14 +113,14 @@ class WalletControllerTest {
             .currency(Currency.USD)
             .activeForShopping(true)
             .activeForWithdraw(true)
-            .balance(BigDecimal.valueOf(1000))
-            .usableBalance(BigDecimal.valueOf(800))
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(800))
             .build();
 
     transaction =
         Transaction.builder()
             .id("transaction-123")
-            .amount(BigDecimal.valueOf(500))
+            .amount(Money.ofMajor(500))
             .type(TransactionType.DEPOSIT)
             .oppositePartyType(OppositePartyType.IBAN)
             .oppositeParty("Bank Account 123")
@@ -104,6 +128,30 @@ class WalletControllerTest {
             .wallet(wallet)
             .build();
 
+    walletDto =
+        new WalletDto(
+            "wallet-123",
+            0L,
+            "My Wallet",
+            Currency.USD,
+            true,
+            true,
+            Money.ofMajor(1000),
+            Money.ofMajor(800));
+
+    transactionDto =
+        new TransactionDto(
+            "transaction-123",
+            "wallet-123",
+            Money.ofMajor(500),
+            TransactionType.DEPOSIT,
+            OppositePartyType.IBAN,
+            "Bank Account 123",
+            null,
+            TransactionStatus.PENDING,
+            null,
+            null);
+
     transactionResponseDto =
         TransactionResponseDto.builder()
             .transactionId("00d4334d-1e42-429f-9f44-17f19bee8e8c")
@@ -189,13 +237,15 @@ class WalletControllerTest {
   void listWallets_WithAdminRole_ShouldReturnOk() throws Exception {
 
     ListWalletDto listWalletDto =
-        ListWalletDto.builder().customerId("customer-123").wallets(List.of(wallet)).build();
+        ListWalletDto.builder().customerId("customer-123").wallets(List.of(walletDto)).build();
 
-    given(walletService.listWallets(anyString())).willReturn(listWalletDto);
+    given(walletService.listWallets(anyString(), isNull()))
+        .willReturn(new ConditionalRead<>("\"3.7\"", listWalletDto));
 
     mockMvc
         .perform(get("/api/wallet/customer-123"))
         .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"3.7\""))
         .andExpect(jsonPath("$.customerId").value("customer-123"))
         .andExpect(jsonPath("$.wallets").isArray())
         .andExpect(jsonPath("$.wallets[0].id").value("wallet-123"));
@@ -205,12 +255,65 @@ class WalletControllerTest {
   @WithMockUser(roles = "ADMIN")
   void listWallets_WhenCustomerNotFound_ShouldHandleException() throws Exception {
 
-    given(walletService.listWallets(anyString()))
+    given(walletService.listWallets(anyString(), any()))
         .willThrow(new CustomNotFoundException("Customer not found!"));
 
     mockMvc.perform(get("/api/wallet/nonexistent-customer")).andExpect(status().isNotFound());
   }
 
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void listWallets_WithCurrentETag_ShouldReturnNotModifiedWithoutBody() throws Exception {
+
+    given(walletService.listWallets("customer-123", "\"3.7\""))
+        .willReturn(ConditionalRead.notModified("\"3.7\""));
+
+    mockMvc
+        .perform(get("/api/wallet/customer-123").header(HttpHeaders.IF_NONE_MATCH, "\"3.7\""))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"3.7\""))
+        .andExpect(content().string(""));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void getPortfolio_WithCustomerRole_ShouldReturnOk() throws Exception {
+
+    given(walletService.getPortfolio("customer-123"))
+        .willReturn(
+            CustomerPortfolioDto.of(
+                "customer-123",
+                List.of(
+                    new CurrencyTotalDto(
+                        Currency.TRY, 2, Money.ofMajor(300), Money.ofMajor(100), 1))));
+
+    mockMvc
+        .perform(get("/api/wallet/portfolio/customer-123"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.walletCount").value(2))
+        .andExpect(jsonPath("$.pendingTransactionCount").value(1))
+        .andExpect(jsonPath("$.currencies[0].currency").value("TRY"))
+        .andExpect(jsonPath("$.currencies[0].balance").value(300));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void makeDeposit_WithStaleIfMatch_ShouldReturnPreconditionFailed() throws Exception {
+
+    given(walletService.makeDeposit(any(DepositDto.class), eq("\"1.1\"")))
+        .willThrow(new CustomPreconditionFailedException("Wallet has changed since it was read!"));
+
+    mockMvc
+        .perform(
+            post("/api/wallet/deposit")
+                .with(csrf())
+                .header(HttpHeaders.IF_MATCH, "\"1.1\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(depositDto)))
+        .andExpect(status().isPreconditionFailed())
+        .andExpect(jsonPath("$.errorCode").value("PRECONDITION_FAILED"));
+  }
+
   @Test
   @WithMockUser(roles = "CUSTOMER")
   void makeDeposit_WithValidRequest_ShouldReturnOk() throws Exception {
@@ -229,6 +332,28 @@ class WalletControllerTest {
         .andExpect(jsonPath("$.message").value("Transaction done!"));
   }
 
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void makeDeposit_WhenRetriedWithIdempotencyKey_ShouldReturnStoredResponse() throws Exception {
+
+    String idempotencyKey = UUID.randomUUID().toString();
+    given(walletService.makeDeposit(any(DepositDto.class))).willReturn(transactionResponseDto);
+
+    for (int attempt = 0; attempt < 2; attempt++) {
+      mockMvc
+          .perform(
+              post("/api/wallet/deposit")
+                  .with(csrf())
+                  .header("Idempotency-Key", idempotencyKey)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(objectMapper.writeValueAsString(depositDto)))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.transactionId").value("00d4334d-1e42-429f-9f44-17f19bee8e8c"));
+    }
+
+    then(walletService).should(times(1)).makeDeposit(any(DepositDto.class));
+  }
+
   @Test
   @WithMockUser(roles = "CUSTOMER")
   void makeDeposit_WithInvalidDto_ShouldReturnBadRequest() throws Exception {
@@ -269,17 +394,130 @@ class WalletControllerTest {
     ListTransactionDto listTransactionDto =
         ListTransactionDto.builder()
             .walletId("wallet-123")
-            .transactions(List.of(transaction))
+            .transactions(List.of(transactionDto))
             .build();
 
-    given(walletService.listTransactions(anyString())).willReturn(listTransactionDto);
+    given(walletService.listTransactions("wallet-123", null, 50, Sort.Direction.ASC, null))
+        .willReturn(new ConditionalRead<>("\"5.2\"", listTransactionDto));
 
     mockMvc
         .perform(get("/api/wallet/transactions/wallet-123"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.walletId").value("wallet-123"))
         .andExpect(jsonPath("$.transactions").isArray())
-        .andExpect(jsonPath("$.transactions[0].id").value("transaction-123"));
+        .andExpect(header().string(HttpHeaders.ETAG, "\"5.2\""))
+        .andExpect(jsonPath("$.transactions[0].id").value("transaction-123"))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void listTransactions_WithCursor_ShouldPassPageParametersAndReturnNextCursor() throws Exception {
+
+    given(
+            walletService.listTransactions(
+                "wallet-123", "transaction-200", 1, Sort.Direction.DESC, null))
+        .willReturn(
+            new ConditionalRead<>(
+                "\"5.2\"",
+                new ListTransactionDto("wallet-123", List.of(transactionDto), "transaction-123")));
+
+    mockMvc
+        .perform(
+            get("/api/wallet/transactions/wallet-123")
+                .param("after", "transaction-200")
+                .param("limit", "1")
+                .param("direction", "DESC"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transactions[0].id").value("transaction-123"))
+        .andExpect(jsonPath("$.nextCursor").value("transaction-123"));
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void searchTransactions_ShouldBindFiltersAndReturnPage() throws Exception {
+
+    TransactionSearchDto search =
+        new TransactionSearchDto(
+            null,
+            TransactionStatus.PENDING,
+            TransactionType.WITHDRAW,
+            new BigDecimal("5000"),
+            null,
+            LocalDateTime.of(2024, 3, 1, 12, 0),
+            null,
+            null);
+    given(transactionSearchService.search(search, null, 20))
+        .willReturn(new ListTransactionDto(null, List.of(transactionDto), "cursor-1"));
+
+    mockMvc
+        .perform(
+            get("/api/wallet/transactions/search")
+                .param("status", "PENDING")
+                .param("type", "WITHDRAW")
+                .param("minAmount", "5000")
+                .param("from", "2024-03-01T12:00:00")
+                .param("limit", "20"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transactions[0].id").value("transaction-123"))
+        .andExpect(jsonPath("$.nextCursor").value("cursor-1"));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void exportTransactions_ShouldStreamTheExportAsAnAttachment() throws Exception {
+
+    willAnswer(
+            invocation -> {
+              invocation.<OutputStream>getArgument(5).write("{\"id\":1}\n".getBytes());
+              return 1L;
+            })
+        .given(transactionExporter)
+        .export(
+            eq("wallet-123"),
+            eq(TransactionStatus.APPROVED),
+            eq(LocalDateTime.of(2024, 3, 1, 0, 0)),
+            isNull(),
+            eq(ExportFormat.NDJSON),
+            any());
+    given(transactionExporter.getTimeoutMillis()).willReturn(60000L);
+
+    MvcResult mvcResult =
+        mockMvc
+            .perform(
+                get("/api/wallet/transactions/wallet-123/export")
+                    .param("status", "APPROVED")
+                    .param("from", "2024-03-01T00:00:00"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(mvcResult))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+        .andExpect(
+            header()
+                .string(
+                    HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"wallet-123.ndjson\""))
+        .andExpect(content().string("{\"id\":1}\n"));
+    then(transactionExporter).should().checkAccess("wallet-123");
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void exportTransactions_OfOtherCustomersWallet_ShouldReturnUnauthorizedWithoutStreaming()
+      throws Exception {
+
+    willThrow(
+            new CustomUnauthorizedException(
+                "You can only export transactions of your own wallets!"))
+        .given(transactionExporter)
+        .checkAccess("wallet-123");
+
+    mockMvc
+        .perform(get("/api/wallet/transactions/wallet-123/export").param("format", "CSV"))
+        .andExpect(status().isUnauthorized());
+    then(transactionExporter).should(never()).export(any(), any(), any(), any(), any(), any());
   }
 
   @Test
@@ -317,6 +555,51 @@ class WalletControllerTest {
         .andExpect(status().isNotFound());
   }
 
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void applyBatch_WithMixedResults_ShouldReturnPerItemResponses() throws Exception {
+
+    given(walletService.applyBatch(anyList()))
+        .willReturn(
+            List.of(
+                WalletCommandResult.success(transactionResponseDto),
+                WalletCommandResult.failure(
+                    new CustomConflictException("Usable balance is not sufficient!"))));
+
+    mockMvc
+        .perform(
+            post("/api/wallet/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    objectMapper.writeValueAsString(
+                        new WalletBatchDto(List.of(depositDto), List.of(withdrawDto)))))
+        .andExpect(status().isOk())
+        .andExpect(
+            jsonPath("$.deposits[0].transactionId").value("00d4334d-1e42-429f-9f44-17f19bee8e8c"))
+        .andExpect(jsonPath("$.withdraws[0].transactionId").doesNotExist())
+        .andExpect(jsonPath("$.withdraws[0].message").value("Usable balance is not sufficient!"));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void applyBatch_WithInvalidItem_ShouldReturnBadRequest() throws Exception {
+
+    WithdrawDto invalidWithdrawDto = new WithdrawDto(null, "wallet-123", null, null);
+
+    mockMvc
+        .perform(
+            post("/api/wallet/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    objectMapper.writeValueAsString(
+                        new WalletBatchDto(List.of(), List.of(invalidWithdrawDto)))))
+        .andExpect(status().isBadRequest());
+
+    then(walletService).should(never()).applyBatch(anyList());
+  }
+
   @Test
   @WithMockUser(roles = "ADMIN")
   void approveTransaction_WithAdminRole_ShouldReturnOk() throws Exception {
@@ -359,6 +642,115 @@ class WalletControllerTest {
         .andExpect(status().isNotFound());
   }
 
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void makeTransfer_WithValidData_ShouldReturnOk() throws Exception {
+
+    TransferDto transferDto = new TransferDto(Money.ofMajor(100), "wallet-123", "wallet-456");
+    given(walletService.makeTransfer(transferDto)).willReturn(transactionResponseDto);
+
+    mockMvc
+        .perform(
+            post("/api/wallet/transfer")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transferDto)))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.transactionId").value("00d4334d-1e42-429f-9f44-17f19bee8e8c"));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void makeTransfer_WithoutTargetWallet_ShouldReturnBadRequest() throws Exception {
+
+    mockMvc
+        .perform(
+            post("/api/wallet/transfer")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    objectMapper.writeValueAsString(
+                        new TransferDto(Money.ofMajor(100), "wallet-123", null))))
+        .andExpect(status().isBadRequest());
+
+    then(walletService).should(never()).makeTransfer(any());
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void approveBatch_WithAdminRole_ShouldReturnPerItemResponses() throws Exception {
+
+    given(
+            transactionApprovalService.processAll(
+                List.of("transaction-1", "transaction-2"), TransactionStatus.APPROVED))
+        .willReturn(
+            List.of(
+                transactionResponseDto,
+                TransactionResponseDto.builder()
+                    .transactionId("transaction-2")
+                    .message("Transaction processed already!")
+                    .build()));
+
+    mockMvc
+        .perform(
+            put("/api/wallet/transaction/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    objectMapper.writeValueAsString(
+                        new TransactionBatchDto(
+                            List.of("transaction-1", "transaction-2"),
+                            TransactionStatus.APPROVED))))
+        .andExpect(status().isOk())
+        .andExpect(
+            jsonPath("$.transactions[0].transactionId")
+                .value("00d4334d-1e42-429f-9f44-17f19bee8e8c"))
+        .andExpect(jsonPath("$.transactions[1].transactionId").value("transaction-2"))
+        .andExpect(jsonPath("$.transactions[1].message").value("Transaction processed already!"));
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void approveBatch_WithCustomerRole_ShouldReturnForbidden() throws Exception {
+
+    mockMvc
+        .perform(
+            put("/api/wallet/transaction/batch")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(
+                    objectMapper.writeValueAsString(
+                        new TransactionBatchDto(
+                            List.of("transaction-1"), TransactionStatus.APPROVED))))
+        .andExpect(status().isForbidden());
+
+    then(transactionApprovalService).should(never()).processAll(anyList(), any());
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void setSubBalances_WithAdminRole_ShouldReturnWalletWithoutSplit() throws Exception {
+
+    given(walletService.setSubBalances("wallet-123", 8)).willReturn(wallet);
+
+    mockMvc
+        .perform(put("/api/wallet/wallet-123/sub-balances").param("count", "8").with(csrf()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.id").value("wallet-123"))
+        .andExpect(jsonPath("$.subBalances").doesNotExist());
+  }
+
+  @Test
+  @WithMockUser(roles = "CUSTOMER")
+  void setSubBalances_WithCustomerRole_ShouldReturnForbidden() throws Exception {
+
+    mockMvc
+        .perform(put("/api/wallet/wallet-123/sub-balances").param("count", "8").with(csrf()))
+        .andExpect(status().isForbidden());
+
+    then(walletService).should(never()).setSubBalances(anyString(), anyInt());
+  }
+
   @Test
   @WithMockUser(roles = "ADMIN")
   void createCustomer_WithAdminRole_ShouldReturnCreated() throws Exception {
@@ -409,7 +801,7 @@ class WalletControllerTest {
   @WithMockUser(roles = "CUSTOMER")
   void whenCustomerTriesToAccessOtherCustomerData_ShouldHandleException() throws Exception {
 
-    given(walletService.listWallets(anyString()))
+    given(walletService.listWallets(anyString(), any()))
         .willThrow(new CustomUnauthorizedException("You can only access your own wallets!"));
 
     mockMvc.perform(get("/api/wallet/other-customer-456")).andExpect(status().isUnauthorized());
@@ -0,0 +1,440 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.dto.TransferDto;
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.dto.WalletBatchDto;
+import com.ing.hubs.dto.WalletBatchResponseDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletPostingRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.service.WalletCommandDispatcher;
+import com.ing.hubs.service.WalletJournal;
+import com.ing.hubs.service.WalletService;
+import com.ing.hubs.service.WalletSubBalances;
+
+class ContendedWalletBenchmark {
+
+  private static final int THREADS = 16;
+  private static final int DEPOSITS_PER_THREAD = 50;
+  private static final Money AMOUNT = Money.ofMajor(10);
+  private static final int TRANSFER_WALLETS = 4;
+  private static final Money OPENING_BALANCE = Money.ofMajor(1_000_000);
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:optimistic;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=OPTIMISTIC"
+      })
+  class Optimistic extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("OPTIMISTIC");
+
+      assertThat(result.committed() + result.failed()).isEqualTo(THREADS * DEPOSITS_PER_THREAD);
+    }
+
+    @Test
+    void crossingTransfers() throws Exception {
+
+      Result result = runTransfers("TRANSFER_OPTIMISTIC");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:striped;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=STRIPED_LOCK"
+      })
+  class StripedLock extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("STRIPED_LOCK");
+
+      assertThat(result.failed()).isZero();
+    }
+
+    @Test
+    void crossingTransfers() throws Exception {
+
+      Result result = runTransfers("TRANSFER_STRIPED_LOCK");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharded;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=SHARDED"
+      })
+  class Sharded extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("SHARDED");
+
+      assertThat(result.failed()).isZero();
+    }
+
+    @Test
+    void crossingTransfers() throws Exception {
+
+      Result result = runTransfers("TRANSFER_SHARDED");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:group-commit;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=SHARDED",
+        "wallet.sharding.max-wait-ms=2"
+      })
+  class ShardedGroupCommit extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("GROUP_COMMIT");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=OPTIMISTIC",
+        "wallet.ledger.enabled=true",
+        "wallet.ledger.snapshot-interval-ms=50"
+      })
+  class Ledger extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("LEDGER");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:journal;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=OPTIMISTIC",
+        "wallet.journal.enabled=true",
+        "wallet.journal.path=target/benchmark/${random.uuid}.journal",
+        "wallet.journal.size-bytes=16777216"
+      })
+  class Journal extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("JOURNAL");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:batch;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=STRIPED_LOCK",
+        // whole batches queue on the wallet's stripe, 16 of them can outlast the 5s default
+        "wallet.concurrency.lock-timeout-ms=60000"
+      })
+  class Batch extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("BATCH", true);
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @SpringBootTest(
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:sub-balances;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        "wallet.concurrency.mode=OPTIMISTIC"
+      })
+  class SubBalances extends Scenario {
+
+    @Test
+    void depositsToOneWallet() throws Exception {
+
+      Result result = run("SUB_BALANCES", false, THREADS);
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  abstract class Scenario {
+
+    @Autowired private WalletCommandDispatcher walletCommandDispatcher;
+    @Autowired private WalletRepository walletRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private WalletPostingRepository walletPostingRepository;
+    @Autowired private WalletJournal walletJournal;
+    @Autowired private WalletService walletService;
+    @Autowired private WalletSubBalances walletSubBalances;
+
+    Result run(String mode) throws Exception {
+
+      return run(mode, false);
+    }
+
+    Result run(String mode, boolean batched) throws Exception {
+
+      return run(mode, batched, 1);
+    }
+
+    Result run(String mode, boolean batched, int subBalances) throws Exception {
+
+      String walletId = createWallet(Money.ZERO);
+
+      if (subBalances > 1) {
+        walletService.setSubBalances(walletId, subBalances);
+      }
+
+      List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+      AtomicInteger failed = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+      for (int t = 0; t < THREADS; t++) {
+        executor.submit(
+            () -> {
+              SecurityContextHolder.getContext()
+                  .setAuthentication(
+                      new UsernamePasswordAuthenticationToken(
+                          "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+              start.await();
+
+              if (batched) {
+                List<DepositDto> deposits = new ArrayList<>();
+
+                for (int i = 0; i < DEPOSITS_PER_THREAD; i++) {
+                  deposits.add(
+                      new DepositDto(AMOUNT, walletId, OppositePartyType.PAYMENT, "merchant"));
+                }
+
+                long begin = System.nanoTime();
+                WalletBatchResponseDto response;
+                try {
+                  response =
+                      walletCommandDispatcher.applyBatch(new WalletBatchDto(deposits, List.of()));
+                } catch (RuntimeException e) {
+                  failed.addAndGet(deposits.size());
+                  return null;
+                }
+                long latency = System.nanoTime() - begin;
+
+                for (TransactionResponseDto item : response.deposits()) {
+                  if (item.transactionId() != null) {
+                    latencies.add(latency);
+                  } else {
+                    failed.incrementAndGet();
+                  }
+                }
+                return null;
+              }
+
+              for (int i = 0; i < DEPOSITS_PER_THREAD; i++) {
+                long begin = System.nanoTime();
+                try {
+                  walletCommandDispatcher.makeDeposit(
+                      new DepositDto(AMOUNT, walletId, OppositePartyType.PAYMENT, "merchant"));
+                  latencies.add(System.nanoTime() - begin);
+                } catch (RuntimeException e) {
+                  failed.incrementAndGet();
+                }
+              }
+              return null;
+            });
+      }
+
+      long begin = System.nanoTime();
+      start.countDown();
+      executor.shutdown();
+      assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+      long elapsed = System.nanoTime() - begin;
+
+      List<Long> sorted = new ArrayList<>(latencies);
+      Collections.sort(sorted);
+      long p50 = percentile(sorted, 0.50);
+      long p99 = percentile(sorted, 0.99);
+
+      System.out.printf(
+          "%-21s committed=%d failed=%d throughput=%.0f ops/s p50=%.2f ms p99=%.1f ms%n",
+          mode, sorted.size(), failed.get(), sorted.size() / (elapsed / 1e9), p50 / 1e6, p99 / 1e6);
+
+      // journaled deposits reach the wallet row asynchronously
+      walletJournal.flush();
+      // and split wallets' rows only hold a copy of their sub-balances
+      walletSubBalances.refreshTotals();
+      WalletBalanceDto balance =
+          walletPostingRepository.findCurrentBalances(List.of(walletId)).getFirst();
+      assertThat(balance.balance()).isEqualTo(Money.ofMajor(10L * sorted.size()));
+
+      return new Result(sorted.size(), failed.get());
+    }
+
+    /**
+     * Every thread moves money around a ring of wallets with its own stride, so transfers between
+     * the same two wallets run in both directions at once. A deadlock would surface as a lock
+     * timeout failure, and the total balance must be unchanged afterwards.
+     */
+    Result runTransfers(String mode) throws Exception {
+
+      List<String> walletIds = new ArrayList<>();
+
+      for (int w = 0; w < TRANSFER_WALLETS; w++) {
+        walletIds.add(createWallet(OPENING_BALANCE));
+      }
+
+      List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+      AtomicInteger failed = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        executor.submit(
+            () -> {
+              SecurityContextHolder.getContext()
+                  .setAuthentication(
+                      new UsernamePasswordAuthenticationToken(
+                          "admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+              start.await();
+
+              for (int i = 0; i < DEPOSITS_PER_THREAD; i++) {
+                int source = (thread + i) % TRANSFER_WALLETS;
+                int target = (source + 1 + thread % (TRANSFER_WALLETS - 1)) % TRANSFER_WALLETS;
+                long begin = System.nanoTime();
+                try {
+                  walletCommandDispatcher.makeTransfer(
+                      new TransferDto(AMOUNT, walletIds.get(source), walletIds.get(target)));
+                  latencies.add(System.nanoTime() - begin);
+                } catch (RuntimeException e) {
+                  failed.incrementAndGet();
+                }
+              }
+              return null;
+            });
+      }
+
+      long begin = System.nanoTime();
+      start.countDown();
+      executor.shutdown();
+      assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+      long elapsed = System.nanoTime() - begin;
+
+      List<Long> sorted = new ArrayList<>(latencies);
+      Collections.sort(sorted);
+      long p50 = percentile(sorted, 0.50);
+      long p99 = percentile(sorted, 0.99);
+
+      System.out.printf(
+          "%-21s committed=%d failed=%d throughput=%.0f ops/s p50=%.2f ms p99=%.1f ms%n",
+          mode, sorted.size(), failed.get(), sorted.size() / (elapsed / 1e9), p50 / 1e6, p99 / 1e6);
+
+      Money total =
+          walletPostingRepository.findCurrentBalances(walletIds).stream()
+              .map(WalletBalanceDto::balance)
+              .reduce(Money.ZERO, Money::plus);
+      assertThat(total).isEqualTo(Money.ofMajor(1_000_000L * TRANSFER_WALLETS));
+
+      return new Result(sorted.size(), failed.get());
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+
+      return sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * percentile) - 1);
+    }
+
+    private String createWallet(Money openingBalance) {
+
+      String suffix = UUID.randomUUID().toString();
+      Customer customer =
+          customerRepository.save(
+              Customer.builder()
+                  .id(suffix)
+                  .name("Merchant")
+                  .surname("Benchmark")
+                  .tckn(suffix.substring(0, 11))
+                  .password("password")
+                  .build());
+
+      return walletRepository
+          .save(
+              Wallet.builder()
+                  .id(UUID.randomUUID().toString())
+                  .customer(customer)
+                  .walletName("Merchant Wallet")
+                  .currency(Currency.TRY)
+                  .activeForShopping(true)
+                  .activeForWithdraw(true)
+                  .balance(openingBalance)
+                  .usableBalance(openingBalance)
+                  .build())
+          .getId();
+    }
+  }
+
+  record Result(int committed, int failed) {}
+}
@@ -0,0 +1,162 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.service.WalletService;
+
+/**
+ * Calls the wallet and transaction listings of one customer in a loop and reports, per call, the
+ * JDBC statements Hibernate prepared, the bytes the calling thread allocated and the call rate.
+ * After the warmup the wallet listing is served from {@link com.ing.hubs.service.WalletReadCache}.
+ */
+@SpringBootTest(
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:listing-queries;DB_CLOSE_DELAY=-1",
+      "spring.jpa.show-sql=false",
+      "spring.jpa.properties.hibernate.generate_statistics=true"
+    })
+class ListingQueryBenchmark {
+
+  private static final int WALLETS = 8;
+  private static final int TRANSACTIONS = 200;
+  private static final int PAGE_SIZE = 50;
+  private static final int WARMUP_CALLS = 2_000;
+  private static final int CALLS = 5_000;
+
+  @Autowired private WalletService walletService;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private WalletRepository walletRepository;
+  @Autowired private TransactionRepository transactionRepository;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  private String customerId;
+  private String walletId;
+
+  @BeforeEach
+  void setUp() {
+
+    String tckn = UUID.randomUUID().toString().substring(0, 11);
+    Customer customer =
+        customerRepository.save(
+            Customer.builder()
+                .id(UUID.randomUUID().toString())
+                .name("Merchant")
+                .surname("Benchmark")
+                .tckn(tckn)
+                .password("password")
+                .build());
+    List<Wallet> wallets = new ArrayList<>();
+
+    for (int w = 0; w < WALLETS; w++) {
+      wallets.add(
+          walletRepository.save(
+              Wallet.builder()
+                  .id(UUID.randomUUID().toString())
+                  .customer(customer)
+                  .walletName("Merchant Wallet")
+                  .currency(Currency.TRY)
+                  .activeForShopping(true)
+                  .activeForWithdraw(true)
+                  .balance(Money.ofMajor(TRANSACTIONS))
+                  .usableBalance(Money.ofMajor(TRANSACTIONS))
+                  .build()));
+    }
+
+    List<Transaction> transactions = new ArrayList<>();
+
+    for (int t = 0; t < TRANSACTIONS; t++) {
+      transactions.add(
+          Transaction.builder()
+              .id(UUID.randomUUID().toString())
+              .amount(Money.ofMajor(1))
+              .type(TransactionType.DEPOSIT)
+              .oppositePartyType(OppositePartyType.IBAN)
+              .oppositeParty("TR" + t)
+              .status(TransactionStatus.APPROVED)
+              .wallet(wallets.getFirst())
+              .build());
+    }
+
+    transactionRepository.saveAll(transactions);
+    customerId = customer.getId();
+    walletId = wallets.getFirst().getId();
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken(tckn, null, "ROLE_CUSTOMER"));
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void listings() {
+
+    measure("LIST_WALLETS", () -> walletService.listWallets(customerId));
+    measure(
+        "LIST_TRANSACTIONS",
+        () -> walletService.listTransactions(walletId, null, PAGE_SIZE, Sort.Direction.ASC));
+  }
+
+  private void measure(String listing, Supplier<?> call) {
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      assertThat(call.get()).isNotNull();
+    }
+
+    statistics.clear();
+    long allocated = threads.getCurrentThreadAllocatedBytes();
+    long begin = System.nanoTime();
+
+    for (int i = 0; i < CALLS; i++) {
+      call.get();
+    }
+
+    long elapsed = System.nanoTime() - begin;
+    allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+    System.out.printf(
+        "%-17s statements/call=%.2f entities/call=%.1f allocated/call=%.1f KB"
+            + " throughput=%.0f calls/s%n",
+        listing,
+        (double) statistics.getPrepareStatementCount() / CALLS,
+        (double) statistics.getEntityLoadCount() / CALLS,
+        allocated / 1024.0 / CALLS,
+        CALLS / (elapsed / 1e9));
+  }
+}
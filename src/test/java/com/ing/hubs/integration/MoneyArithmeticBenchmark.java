@@ -0,0 +1,112 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.ing.hubs.model.Money;
+
+/**
+ * Compares the balance arithmetic of one deposit and one withdraw (limit check, balance and usable
+ * balance update, sufficiency check) on {@link BigDecimal} against {@link Money}. Runs in-process
+ * so that it can be started from the failsafe plugin; the GC profiler reports bytes allocated per
+ * operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(0)
+public class MoneyArithmeticBenchmark {
+
+  private static final BigDecimal DECIMAL_LIMIT = new BigDecimal("1000");
+  private static final Money MONEY_LIMIT = Money.ofMajor(1000);
+
+  private BigDecimal decimalBalance;
+  private BigDecimal decimalUsableBalance;
+  private BigDecimal decimalAmount;
+  private Money moneyBalance;
+  private Money moneyUsableBalance;
+  private Money moneyAmount;
+
+  @Setup
+  public void setUp() {
+
+    decimalBalance = new BigDecimal("100000.00");
+    decimalUsableBalance = new BigDecimal("90000.00");
+    decimalAmount = new BigDecimal("125.50");
+    moneyBalance = Money.of(decimalBalance);
+    moneyUsableBalance = Money.of(decimalUsableBalance);
+    moneyAmount = Money.of(decimalAmount);
+  }
+
+  @Benchmark
+  public BigDecimal bigDecimal() {
+
+    if (decimalAmount.compareTo(DECIMAL_LIMIT) <= 0) {
+      decimalBalance = decimalBalance.add(decimalAmount);
+      decimalUsableBalance = decimalUsableBalance.add(decimalAmount);
+    }
+
+    if (decimalUsableBalance.compareTo(decimalAmount) >= 0
+        && decimalAmount.compareTo(DECIMAL_LIMIT) <= 0) {
+      decimalUsableBalance = decimalUsableBalance.subtract(decimalAmount);
+      decimalBalance = decimalBalance.subtract(decimalAmount);
+    }
+
+    return decimalBalance;
+  }
+
+  @Benchmark
+  public Money money() {
+
+    if (!moneyAmount.isGreaterThan(MONEY_LIMIT)) {
+      moneyBalance = moneyBalance.plus(moneyAmount);
+      moneyUsableBalance = moneyUsableBalance.plus(moneyAmount);
+    }
+
+    if (!moneyUsableBalance.isLessThan(moneyAmount) && !moneyAmount.isGreaterThan(MONEY_LIMIT)) {
+      moneyUsableBalance = moneyUsableBalance.minus(moneyAmount);
+      moneyBalance = moneyBalance.minus(moneyAmount);
+    }
+
+    return moneyBalance;
+  }
+
+  @Test
+  void moneyShouldAllocateLessThanBigDecimal() throws Exception {
+
+    Options options =
+        new OptionsBuilder()
+            .include(MoneyArithmeticBenchmark.class.getName())
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    double decimalBytes = 0;
+    double moneyBytes = 0;
+
+    for (RunResult result : new Runner(options).run()) {
+      double bytesPerOp = result.getSecondaryResults().get("gc.alloc.rate.norm").getScore();
+
+      if (result.getParams().getBenchmark().endsWith("bigDecimal")) {
+        decimalBytes = bytesPerOp;
+      } else {
+        moneyBytes = bytesPerOp;
+      }
+    }
+
+    System.out.printf(
+        "MONEY_ALLOC  bigDecimal=%.1f B/op money=%.1f B/op%n", decimalBytes, moneyBytes);
+    assertThat(moneyBytes).isLessThan(decimalBytes);
+  }
+}
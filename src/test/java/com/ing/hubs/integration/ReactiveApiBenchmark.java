@@ -0,0 +1,224 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.security.JwtTokenProvider;
+
+/**
+ * Polls transaction listings over HTTP from many concurrent clients, once on the servlet stack and
+ * once with the {@code reactive} profile, and reports throughput, latency and how many threads the
+ * server needed to keep up.
+ */
+class ReactiveApiBenchmark {
+
+  private static final int CLIENTS = 1000;
+  private static final int REQUESTS_PER_CLIENT = 5;
+  private static final int WALLETS = 64;
+  private static final int TRANSACTIONS_PER_WALLET = 20;
+  private static final String JWT_SECRET =
+      "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+  @Nested
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:servlet-api;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class Servlet extends Scenario {
+
+    @Test
+    void transactionPolling() throws Exception {
+
+      assertThat(run("SERVLET")).isZero();
+    }
+  }
+
+  @Nested
+  @ActiveProfiles("reactive")
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive-api;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-api?options=DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class Reactive extends Scenario {
+
+    @Test
+    void transactionPolling() throws Exception {
+
+      assertThat(run("REACTIVE")).isZero();
+    }
+  }
+
+  abstract class Scenario {
+
+    @LocalServerPort private int port;
+    @Autowired private JwtTokenProvider jwtTokenProvider;
+    @Autowired private WalletRepository walletRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private TransactionRepository transactionRepository;
+
+    /** Runs the scenario and returns the number of failed requests. */
+    int run(String mode) throws Exception {
+
+      String tckn = UUID.randomUUID().toString().substring(0, 11);
+      List<String> walletIds = createWallets(tckn);
+      String token = jwtTokenProvider.generateToken(tckn, "CUSTOMER");
+      List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+      AtomicInteger failed = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+      try (HttpClient client =
+              HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+          ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (int c = 0; c < CLIENTS; c++) {
+          HttpRequest request =
+              HttpRequest.newBuilder(
+                      URI.create(
+                          "http://localhost:"
+                              + port
+                              + "/api/wallet/transactions/"
+                              + walletIds.get(c % WALLETS)))
+                  .header("Authorization", "Bearer " + token)
+                  .GET()
+                  .build();
+          executor.submit(
+              () -> {
+                start.await();
+
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                  long begin = System.nanoTime();
+                  try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()
+                        == 200) {
+                      latencies.add(System.nanoTime() - begin);
+                    } else {
+                      failed.incrementAndGet();
+                    }
+                  } catch (Exception e) {
+                    failed.incrementAndGet();
+                  }
+                }
+                return null;
+              });
+        }
+
+        // client threads are virtual and not counted, so the peak is the server's (plus the JVM's)
+        threads.resetPeakThreadCount();
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - begin;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+
+        System.out.printf(
+            "%-9s requests=%d failed=%d throughput=%.0f ops/s p50=%.1f ms p99=%.1f ms"
+                + " peak-threads=%d%n",
+            mode,
+            sorted.size(),
+            failed.get(),
+            sorted.size() / (elapsed / 1e9),
+            percentile(sorted, 0.50) / 1e6,
+            percentile(sorted, 0.99) / 1e6,
+            threads.getPeakThreadCount());
+
+        return failed.get();
+      }
+    }
+
+    private List<String> createWallets(String tckn) {
+
+      Customer customer =
+          customerRepository.save(
+              Customer.builder()
+                  .id(UUID.randomUUID().toString())
+                  .name("Merchant")
+                  .surname("Benchmark")
+                  .tckn(tckn)
+                  .password("password")
+                  .build());
+      List<String> walletIds = new ArrayList<>();
+
+      for (int w = 0; w < WALLETS; w++) {
+        Wallet wallet =
+            walletRepository.save(
+                Wallet.builder()
+                    .id(UUID.randomUUID().toString())
+                    .customer(customer)
+                    .walletName("Merchant Wallet")
+                    .currency(Currency.TRY)
+                    .activeForShopping(true)
+                    .activeForWithdraw(true)
+                    .balance(Money.ofMajor(TRANSACTIONS_PER_WALLET))
+                    .usableBalance(Money.ofMajor(TRANSACTIONS_PER_WALLET))
+                    .build());
+        List<Transaction> transactions = new ArrayList<>();
+
+        for (int t = 0; t < TRANSACTIONS_PER_WALLET; t++) {
+          transactions.add(
+              Transaction.builder()
+                  .id(UUID.randomUUID().toString())
+                  .wallet(wallet)
+                  .amount(Money.ofMajor(1))
+                  .type(TransactionType.DEPOSIT)
+                  .oppositePartyType(OppositePartyType.IBAN)
+                  .oppositeParty("Bank Account")
+                  .status(TransactionStatus.APPROVED)
+                  .build());
+        }
+
+        transactionRepository.saveAll(transactions);
+        walletIds.add(wallet.getId());
+      }
+
+      return walletIds;
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+
+      return sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * percentile) - 1);
+    }
+  }
+}
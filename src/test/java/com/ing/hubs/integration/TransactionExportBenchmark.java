@@ -0,0 +1,225 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.security.JwtTokenProvider;
+
+/**
+ * Exports one wallet with a long history over HTTP, once on the servlet stack and once with the
+ * {@code reactive} profile, and reports throughput and how far the live heap (heap left after each
+ * collection) grew while the export ran.
+ */
+class TransactionExportBenchmark {
+
+  private static final int ROWS = 500_000;
+  private static final int INSERT_BATCH_SIZE = 10_000;
+  private static final String JWT_SECRET =
+      "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+  @Nested
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:servlet-export;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class Servlet extends Scenario {
+
+    @Test
+    void exportLongHistory() throws Exception {
+
+      assertThat(run("SERVLET")).isEqualTo(ROWS);
+    }
+  }
+
+  @Nested
+  @ActiveProfiles("reactive")
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive-export;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-export?options=DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class Reactive extends Scenario {
+
+    @Test
+    void exportLongHistory() throws Exception {
+
+      assertThat(run("REACTIVE")).isEqualTo(ROWS);
+    }
+  }
+
+  abstract class Scenario {
+
+    @LocalServerPort private int port;
+    @Autowired private JwtTokenProvider jwtTokenProvider;
+    @Autowired private WalletRepository walletRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    /** Runs the scenario and returns the number of exported lines. */
+    long run(String mode) throws Exception {
+
+      String tckn = UUID.randomUUID().toString().substring(0, 11);
+      String walletId = createWallet(tckn);
+      HttpRequest request =
+          HttpRequest.newBuilder(
+                  URI.create(
+                      "http://localhost:"
+                          + port
+                          + "/api/wallet/transactions/"
+                          + walletId
+                          + "/export?format=NDJSON"))
+              .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(tckn, "CUSTOMER"))
+              .GET()
+              .build();
+      List<MemoryPoolMXBean> heapPools =
+          ManagementFactory.getMemoryPoolMXBeans().stream()
+              .filter(
+                  pool ->
+                      pool.getType() == MemoryType.HEAP
+                          && pool.isCollectionUsageThresholdSupported())
+              .toList();
+      AtomicLong peakLiveHeap = new AtomicLong();
+
+      System.gc();
+      long baseline = liveHeap(heapPools);
+      long lines = 0;
+      long bytes = 0;
+      long begin = System.nanoTime();
+
+      try (HttpClient client = HttpClient.newHttpClient();
+          ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor()) {
+        sampler.scheduleAtFixedRate(
+            () -> peakLiveHeap.accumulateAndGet(liveHeap(heapPools), Math::max),
+            0,
+            10,
+            TimeUnit.MILLISECONDS);
+        HttpResponse<InputStream> response =
+            client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertThat(response.statusCode()).isEqualTo(200);
+
+        try (InputStream body = response.body()) {
+          byte[] buffer = new byte[64 * 1024];
+
+          for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+            bytes += read;
+
+            for (int i = 0; i < read; i++) {
+              if (buffer[i] == '\n') {
+                lines++;
+              }
+            }
+          }
+        }
+        sampler.shutdown();
+      }
+
+      long elapsed = System.nanoTime() - begin;
+
+      System.out.printf(
+          "%-9s rows=%d bytes=%d MB throughput=%.0f rows/s live-heap-growth=%d MB%n",
+          mode,
+          lines,
+          bytes >> 20,
+          lines / (elapsed / 1e9),
+          Math.max(0, peakLiveHeap.get() - baseline) >> 20);
+
+      return lines;
+    }
+
+    private String createWallet(String tckn) {
+
+      Customer customer =
+          customerRepository.save(
+              Customer.builder()
+                  .id(UUID.randomUUID().toString())
+                  .name("Merchant")
+                  .surname("Benchmark")
+                  .tckn(tckn)
+                  .password("password")
+                  .build());
+      Wallet wallet =
+          walletRepository.save(
+              Wallet.builder()
+                  .id(UUID.randomUUID().toString())
+                  .customer(customer)
+                  .walletName("Merchant Wallet")
+                  .currency(Currency.TRY)
+                  .activeForShopping(true)
+                  .activeForWithdraw(true)
+                  .balance(Money.ofMajor(ROWS))
+                  .usableBalance(Money.ofMajor(ROWS))
+                  .build());
+      LocalDateTime createdAt = LocalDateTime.now();
+
+      for (int from = 0; from < ROWS; from += INSERT_BATCH_SIZE) {
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+
+        for (int t = from; t < from + INSERT_BATCH_SIZE; t++) {
+          batch.add(
+              new Object[] {
+                UUID.randomUUID().toString(),
+                BigDecimal.ONE,
+                TransactionType.DEPOSIT.ordinal(),
+                OppositePartyType.IBAN.ordinal(),
+                "TR" + t,
+                TransactionStatus.APPROVED.ordinal(),
+                wallet.getId(),
+                createdAt
+              });
+        }
+
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO transaction (id, amount, type, opposite_party_type, opposite_party,"
+                + " status, wallet_id, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+            batch);
+      }
+
+      return wallet.getId();
+    }
+
+    private static long liveHeap(List<MemoryPoolMXBean> heapPools) {
+
+      return heapPools.stream().mapToLong(pool -> pool.getCollectionUsage().getUsed()).sum();
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package com.ing.hubs.integration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletPostingRepository;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.security.JwtTokenProvider;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Deposits over HTTP from many concurrent clients, once on Tomcat's platform-thread pool and once
+ * with the {@code virtual-threads} profile. Each request authenticates against the database and
+ * commits a deposit, so request threads spend most of their time blocked on JDBC.
+ */
+class VirtualThreadBenchmark {
+
+  private static final int CLIENTS = 400;
+  private static final int REQUESTS_PER_CLIENT = 10;
+  private static final int WALLETS = 64;
+  private static final String JWT_SECRET =
+      "jwt.secret=benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret";
+
+  @Nested
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:platform-threads;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class PlatformThreads extends Scenario {
+
+    @Test
+    void depositsOverHttp() throws Exception {
+
+      Result result = run("PLATFORM_THREADS");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  @Nested
+  @ActiveProfiles("virtual-threads")
+  @SpringBootTest(
+      webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+      properties = {
+        "spring.datasource.url=jdbc:h2:mem:virtual-threads;DB_CLOSE_DELAY=-1",
+        "spring.jpa.show-sql=false",
+        JWT_SECRET
+      })
+  class VirtualThreads extends Scenario {
+
+    @Test
+    void depositsOverHttp() throws Exception {
+
+      Result result = run("VIRTUAL_THREADS");
+
+      assertThat(result.failed()).isZero();
+    }
+  }
+
+  abstract class Scenario {
+
+    @LocalServerPort private int port;
+    @Autowired private JwtTokenProvider jwtTokenProvider;
+    @Autowired private WalletRepository walletRepository;
+    @Autowired private CustomerRepository customerRepository;
+    @Autowired private WalletPostingRepository walletPostingRepository;
+    @Autowired private MeterRegistry meterRegistry;
+
+    Result run(String mode) throws Exception {
+
+      String tckn = UUID.randomUUID().toString().substring(0, 11);
+      List<String> walletIds = createWallets(tckn);
+      String token = jwtTokenProvider.generateToken(tckn, "CUSTOMER");
+      URI uri = URI.create("http://localhost:" + port + "/api/wallet/deposit");
+      List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+      AtomicInteger failed = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+
+      try (HttpClient client =
+              HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+          ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (int c = 0; c < CLIENTS; c++) {
+          String walletId = walletIds.get(c % WALLETS);
+          HttpRequest request =
+              HttpRequest.newBuilder(uri)
+                  .header("Authorization", "Bearer " + token)
+                  .header("Content-Type", "application/json")
+                  .POST(
+                      HttpRequest.BodyPublishers.ofString(
+                          "{\"amount\":10,\"walletId\":\""
+                              + walletId
+                              + "\",\"source\":\"PAYMENT\",\"oppositeParty\":\"merchant\"}"))
+                  .build();
+          executor.submit(
+              () -> {
+                start.await();
+
+                for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                  long begin = System.nanoTime();
+                  try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode()
+                        == 200) {
+                      latencies.add(System.nanoTime() - begin);
+                    } else {
+                      failed.incrementAndGet();
+                    }
+                  } catch (Exception e) {
+                    failed.incrementAndGet();
+                  }
+                }
+                return null;
+              });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - begin;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+
+        System.out.printf(
+            "%-21s committed=%d failed=%d throughput=%.0f ops/s p50=%.1f ms p99=%.1f ms"
+                + " pinned=%.0f%n",
+            mode,
+            sorted.size(),
+            failed.get(),
+            sorted.size() / (elapsed / 1e9),
+            percentile(sorted, 0.50) / 1e6,
+            percentile(sorted, 0.99) / 1e6,
+            meterRegistry.find("wallet.virtual_threads.pinned").counters().stream()
+                .mapToDouble(Counter::count)
+                .sum());
+
+        Money total =
+            walletPostingRepository.findCurrentBalances(walletIds).stream()
+                .map(WalletBalanceDto::balance)
+                .reduce(Money.ZERO, Money::plus);
+        assertThat(total).isEqualTo(Money.ofMajor(10L * sorted.size()));
+
+        return new Result(sorted.size(), failed.get());
+      }
+    }
+
+    private List<String> createWallets(String tckn) {
+
+      Customer customer =
+          customerRepository.save(
+              Customer.builder()
+                  .id(UUID.randomUUID().toString())
+                  .name("Merchant")
+                  .surname("Benchmark")
+                  .tckn(tckn)
+                  .password("password")
+                  .build());
+      List<String> walletIds = new ArrayList<>();
+
+      for (int w = 0; w < WALLETS; w++) {
+        walletIds.add(
+            walletRepository
+                .save(
+                    Wallet.builder()
+                        .id(UUID.randomUUID().toString())
+                        .customer(customer)
+                        .walletName("Merchant Wallet")
+                        .currency(Currency.TRY)
+                        .activeForShopping(true)
+                        .activeForWithdraw(true)
+                        .balance(Money.ZERO)
+                        .usableBalance(Money.ZERO)
+                        .build())
+                .getId());
+      }
+
+      return walletIds;
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+
+      return sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * percentile) - 1);
+    }
+  }
+
+  record Result(int committed, int failed) {}
+}
@@ -0,0 +1,58 @@
+package com.ing.hubs.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.ValueInstantiationException;
+import com.ing.hubs.exception.CustomBadRequestException;
+
+class MoneyTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void of_ShouldConvertMajorUnitsToMinorUnits() {
+
+    assertEquals(12345, Money.of(new BigDecimal("123.45")).minorUnits());
+    assertEquals(Money.ofMajor(5), Money.of(new BigDecimal("5.0")));
+  }
+
+  @Test
+  void of_WithMoreDecimalPlacesThanCurrency_ShouldThrowException() {
+
+    assertThrows(CustomBadRequestException.class, () -> Money.of(new BigDecimal("0.001")));
+  }
+
+  @Test
+  void plus_WhenOverflowing_ShouldThrowException() {
+
+    Money max = new Money(Long.MAX_VALUE);
+
+    assertThrows(CustomBadRequestException.class, () -> max.plus(new Money(1)));
+    assertThrows(CustomBadRequestException.class, () -> new Money(Long.MIN_VALUE).negate());
+  }
+
+  @Test
+  void arithmetic_ShouldWorkOnMinorUnits() {
+
+    Money balance = Money.ofMajor(1000).minus(Money.of(new BigDecimal("0.01")));
+
+    assertEquals(new BigDecimal("999.99"), balance.toBigDecimal());
+    assertTrue(balance.isLessThan(Money.ofMajor(1000)));
+    assertTrue(balance.isGreaterThan(Money.ZERO));
+    assertEquals(-1, balance.negate().signum());
+  }
+
+  @Test
+  void json_ShouldRoundTripAsDecimalNumber() throws Exception {
+
+    assertEquals("12.50", objectMapper.writeValueAsString(Money.of(new BigDecimal("12.5"))));
+    assertEquals(Money.of(new BigDecimal("12.5")), objectMapper.readValue("12.5", Money.class));
+    assertThrows(
+        ValueInstantiationException.class, () -> objectMapper.readValue("1.005", Money.class));
+  }
+}
@@ -2,29 +2,42 @@ package com.ing.hubs.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 
+import com.ing.hubs.dto.CustomerHistoryDto;
+import com.ing.hubs.dto.PendingTransactionDto;
+import com.ing.hubs.dto.TransactionDto;
+import com.ing.hubs.dto.TransactionSummaryDto;
 import com.ing.hubs.entity.Customer;
 import com.ing.hubs.entity.Transaction;
 import com.ing.hubs.entity.Wallet;
 import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
 import com.ing.hubs.model.OppositePartyType;
 import com.ing.hubs.model.TransactionStatus;
 import com.ing.hubs.model.TransactionType;
 
-@DataJpaTest
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class TransactionRepositoryTest {
 
+  private static final LocalDateTime PROCESSED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+
   @Autowired private TransactionRepository transactionRepository;
 
   @Autowired private WalletRepository walletRepository;
@@ -55,15 +68,15 @@ class TransactionRepositoryTest {
             .currency(Currency.USD)
             .activeForShopping(true)
             .activeForWithdraw(true)
-            .balance(BigDecimal.valueOf(1000))
-            .usableBalance(BigDecimal.valueOf(1000))
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(1000))
             .transactions(new ArrayList<>())
             .build();
 
     Transaction testTransaction =
         Transaction.builder()
             .id("trans-1")
-            .amount(BigDecimal.valueOf(100))
+            .amount(Money.ofMajor(100))
             .type(TransactionType.DEPOSIT)
             .oppositePartyType(OppositePartyType.IBAN)
             .oppositeParty("Bank of America")
@@ -83,7 +96,7 @@ class TransactionRepositoryTest {
     List<Transaction> transactions = transactionRepository.findAllByWalletId("wallet-1");
 
     assertThat(transactions).hasSize(1);
-    assertThat(transactions.getFirst().getAmount()).isEqualByComparingTo("100");
+    assertThat(transactions.getFirst().getAmount()).isEqualTo(Money.ofMajor(100));
     assertThat(transactions.getFirst().getType()).isEqualTo(TransactionType.DEPOSIT);
     assertThat(transactions.getFirst().getWallet().getId()).isEqualTo("wallet-1");
   }
@@ -99,8 +112,8 @@ class TransactionRepositoryTest {
             .currency(Currency.USD)
             .activeForShopping(true)
             .activeForWithdraw(true)
-            .balance(BigDecimal.ZERO)
-            .usableBalance(BigDecimal.ZERO)
+            .balance(Money.ZERO)
+            .usableBalance(Money.ZERO)
             .transactions(new ArrayList<>())
             .build();
 
@@ -128,7 +141,7 @@ class TransactionRepositoryTest {
     Transaction secondTransaction =
         Transaction.builder()
             .id("trans-2")
-            .amount(BigDecimal.valueOf(50))
+            .amount(Money.ofMajor(50))
             .type(TransactionType.WITHDRAW)
             .oppositePartyType(OppositePartyType.IBAN)
             .oppositeParty("Bank of America")
@@ -144,6 +157,239 @@ class TransactionRepositoryTest {
     assertThat(transactions).hasSize(2);
     assertThat(transactions)
         .extracting("amount")
-        .containsExactly(BigDecimal.valueOf(100), BigDecimal.valueOf(50));
+        .containsExactly(Money.ofMajor(100), Money.ofMajor(50));
+  }
+
+  @Test
+  void saveAll_WithAssignedIds_ShouldInsertInOneJdbcBatchWithoutSelects() {
+
+    Statistics statistics = statistics();
+
+    List<Transaction> newTransactions =
+        IntStream.range(0, 10)
+            .mapToObj(
+                i ->
+                    Transaction.builder()
+                        .id("batch-" + i)
+                        .amount(Money.ofMajor(10))
+                        .type(TransactionType.DEPOSIT)
+                        .oppositePartyType(OppositePartyType.PAYMENT)
+                        .oppositeParty("Merchant")
+                        .status(TransactionStatus.APPROVED)
+                        .wallet(testWallet)
+                        .build())
+            .toList();
+
+    statistics.clear();
+    transactionRepository.saveAll(newTransactions);
+    entityManager.flush();
+
+    assertThat(statistics.getEntityLoadCount()).isZero();
+    assertThat(statistics.getEntityInsertCount()).isEqualTo(10);
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    assertThat(newTransactions).noneMatch(Transaction::isNew);
+  }
+
+  @Test
+  void findSummariesByIdIn_ShouldReturnWalletAndAmountInOneQuery() {
+
+    List<TransactionSummaryDto> summaries =
+        transactionRepository.findSummariesByIdIn(List.of("trans-1", "missing"));
+
+    assertThat(summaries)
+        .containsExactly(
+            new TransactionSummaryDto(
+                "trans-1",
+                "wallet-1",
+                TransactionType.DEPOSIT,
+                Money.ofMajor(100),
+                TransactionStatus.APPROVED,
+                null));
+  }
+
+  @Test
+  void lockIdsByStatusAndUpdateStatuses_ShouldOnlyTouchPendingTransactions() {
+
+    Transaction pendingTransaction =
+        Transaction.builder()
+            .id("trans-2")
+            .amount(Money.ofMajor(50))
+            .type(TransactionType.WITHDRAW)
+            .oppositePartyType(OppositePartyType.IBAN)
+            .oppositeParty("Bank of America")
+            .status(TransactionStatus.PENDING)
+            .wallet(testWallet)
+            .build();
+
+    entityManager.persist(pendingTransaction);
+    entityManager.flush();
+
+    List<String> ids = List.of("trans-1", "trans-2");
+
+    assertThat(transactionRepository.lockIdsByStatus(ids, TransactionStatus.PENDING))
+        .containsExactly("trans-2");
+    assertThat(
+            transactionRepository.updateStatuses(
+                ids, TransactionStatus.PENDING, TransactionStatus.DENIED, PROCESSED_AT))
+        .isEqualTo(1);
+
+    entityManager.clear();
+
+    Transaction denied = transactionRepository.findById("trans-2").orElseThrow();
+    assertThat(denied.getStatus()).isEqualTo(TransactionStatus.DENIED);
+    assertThat(denied.getProcessedAt()).isEqualTo(PROCESSED_AT);
+    Transaction approved = transactionRepository.findById("trans-1").orElseThrow();
+    assertThat(approved.getStatus()).isEqualTo(TransactionStatus.APPROVED);
+    // approved on creation, so processed when it was created
+    assertThat(approved.getProcessedAt()).isEqualTo(approved.getCreatedAt()).isNotNull();
+  }
+
+  @Test
+  void findByStatusAfter_ShouldPageThroughPendingTransactionsInIdOrder() {
+
+    IntStream.range(0, 3)
+        .forEach(
+            i ->
+                entityManager.persist(
+                    Transaction.builder()
+                        .id("pending-" + i)
+                        .amount(Money.ofMajor(1500))
+                        .type(TransactionType.DEPOSIT)
+                        .oppositePartyType(OppositePartyType.IBAN)
+                        .oppositeParty("Bank of America")
+                        .status(TransactionStatus.PENDING)
+                        .wallet(testWallet)
+                        .build()));
+    entityManager.flush();
+
+    List<PendingTransactionDto> firstPage =
+        transactionRepository.findByStatusAfter(TransactionStatus.PENDING, "", Limit.of(2));
+    List<PendingTransactionDto> secondPage =
+        transactionRepository.findByStatusAfter(
+            TransactionStatus.PENDING, firstPage.getLast().transactionId(), Limit.of(2));
+
+    assertThat(firstPage)
+        .extracting(PendingTransactionDto::transactionId)
+        .containsExactly("pending-0", "pending-1");
+    assertThat(secondPage)
+        .extracting(PendingTransactionDto::transactionId)
+        .containsExactly("pending-2");
+    assertThat(firstPage.getFirst().customerId()).isEqualTo("cust-123");
+    assertThat(firstPage.getFirst().currency()).isEqualTo(Currency.USD);
+    assertThat(transactionRepository.countByStatus(TransactionStatus.PENDING)).isEqualTo(3);
+    assertThat(
+            transactionRepository.countByCustomerIdInAndStatus(
+                List.of("cust-123"), TransactionStatus.APPROVED))
+        .containsExactly(new CustomerHistoryDto("cust-123", 1));
+  }
+
+  @Test
+  void findPageByWalletId_ShouldPageThroughTransactionsInBothDirections() {
+
+    LocalDateTime base = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+    // ids ascending, creation times descending, so id order and page order differ
+    IntStream.range(2, 5)
+        .forEach(i -> entityManager.persist(transaction("trans-" + i, base.plusMinutes(5 - i))));
+    entityManager.flush();
+    // created before createdAt was recorded, so it is the oldest
+    entityManager
+        .getEntityManager()
+        .createNativeQuery("UPDATE transaction SET created_at = NULL WHERE id = 'trans-1'")
+        .executeUpdate();
+
+    entityManager.clear();
+    Statistics statistics = statistics();
+    statistics.clear();
+
+    assertThat(
+            transactionRepository.findPageByWalletId(
+                "wallet-1", null, pageOrder(Sort.Direction.ASC), Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-1", "trans-4");
+    assertThat(
+            transactionRepository.findPageByWalletIdAfter(
+                "wallet-1", "12345678901", base.plusMinutes(1), "trans-4", Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-3", "trans-2");
+    assertThat(
+            transactionRepository.findPageByWalletIdAfter(
+                "wallet-1", null, null, "trans-1", Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-4", "trans-3");
+    assertThat(
+            transactionRepository.findPageByWalletId(
+                "wallet-1", null, pageOrder(Sort.Direction.DESC), Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-2", "trans-3");
+    assertThat(
+            transactionRepository.findPageByWalletIdBefore(
+                "wallet-1", null, base.plusMinutes(2), "trans-3", Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-4", "trans-1");
+    assertThat(
+            transactionRepository.findPageByWalletIdAfter("wallet-2", null, null, "", Limit.of(2)))
+        .isEmpty();
+    assertThat(
+            transactionRepository.findPageByWalletIdAfter(
+                "wallet-1", "10987654321", null, "", Limit.of(2)))
+        .isEmpty();
+    // one statement per page and no entities, so no wallet or customer loads either
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(7);
+    assertThat(statistics.getEntityLoadCount()).isZero();
+  }
+
+  @Test
+  void findPageByWalletIdAfter_ShouldNotSkipTransactionsInsertedDuringTheWalk() {
+
+    LocalDateTime base = LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS);
+    entityManager.persist(transaction("trans-2", base));
+    entityManager.flush();
+
+    List<TransactionDto> firstPage =
+        transactionRepository.findPageByWalletId(
+            "wallet-1", null, pageOrder(Sort.Direction.ASC), Limit.of(2));
+    // a newer transaction whose id sorts before the cursor's
+    entityManager.persist(transaction("trans-0", base.plusMinutes(1)));
+    entityManager.flush();
+    TransactionDto last = firstPage.getLast();
+
+    assertThat(firstPage).extracting(TransactionDto::id).containsExactly("trans-1", "trans-2");
+    assertThat(
+            transactionRepository.findPageByWalletIdAfter(
+                "wallet-1", null, last.createdAt(), last.id(), Limit.of(2)))
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-0");
+  }
+
+  private Transaction transaction(String id, LocalDateTime createdAt) {
+
+    return Transaction.builder()
+        .id(id)
+        .amount(Money.ofMajor(10))
+        .type(TransactionType.DEPOSIT)
+        .oppositePartyType(OppositePartyType.IBAN)
+        .oppositeParty("Bank of America")
+        .status(TransactionStatus.APPROVED)
+        .wallet(testWallet)
+        .createdAt(createdAt)
+        .build();
+  }
+
+  private static Sort pageOrder(Sort.Direction direction) {
+
+    Sort.Order createdAt = new Sort.Order(direction, "createdAt");
+
+    return Sort.by(
+        direction.isAscending() ? createdAt.nullsFirst() : createdAt.nullsLast(),
+        new Sort.Order(direction, "id"));
+  }
+
+  private Statistics statistics() {
+
+    return entityManager
+        .getEntityManager()
+        .getEntityManagerFactory()
+        .unwrap(SessionFactory.class)
+        .getStatistics();
   }
 }
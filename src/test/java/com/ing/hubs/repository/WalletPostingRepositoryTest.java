@@ -0,0 +1,120 @@
+package com.ing.hubs.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletPosting;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class WalletPostingRepositoryTest {
+
+  @Autowired private WalletPostingRepository walletPostingRepository;
+
+  @Autowired private TestEntityManager entityManager;
+
+  @BeforeEach
+  void setUp() {
+
+    Customer testCustomer =
+        Customer.builder()
+            .id("cust-123")
+            .tckn("12345678901")
+            .name("John")
+            .surname("Doe")
+            .password("customerPass123")
+            .wallets(new ArrayList<>())
+            .build();
+
+    entityManager.persist(testCustomer);
+    entityManager.persist(wallet("wallet-1", testCustomer));
+    entityManager.persist(wallet("wallet-2", testCustomer));
+    entityManager.persist(posting("posting-1", "wallet-1", "200", "200", false));
+    entityManager.persist(posting("posting-2", "wallet-1", "-50", "-50", false));
+    entityManager.persist(posting("posting-3", "wallet-1", "999", "999", true));
+    entityManager.flush();
+  }
+
+  @Test
+  void findCurrentBalances_ShouldAddUnfoldedPostingsToSnapshot() {
+
+    List<WalletBalanceDto> balances =
+        walletPostingRepository.findCurrentBalances(List.of("wallet-1", "wallet-2"));
+
+    assertThat(balances).hasSize(2);
+    assertThat(balances)
+        .filteredOn(balance -> balance.walletId().equals("wallet-1"))
+        .singleElement()
+        .satisfies(
+            balance -> {
+              assertThat(balance.balance()).isEqualTo(Money.ofMajor(1150));
+              assertThat(balance.usableBalance()).isEqualTo(Money.ofMajor(650));
+            });
+    assertThat(balances)
+        .filteredOn(balance -> balance.walletId().equals("wallet-2"))
+        .singleElement()
+        .satisfies(balance -> assertThat(balance.balance()).isEqualTo(Money.ofMajor(1000)));
+  }
+
+  @Test
+  void findWalletIdsToSnapshot_ShouldOnlyReturnWalletsOverThreshold() {
+
+    assertThat(walletPostingRepository.findWalletIdsToSnapshot(2)).containsExactly("wallet-1");
+    assertThat(walletPostingRepository.findWalletIdsToSnapshot(3)).isEmpty();
+  }
+
+  @Test
+  void findAllByWalletIdAndFoldedFalse_ShouldSkipFoldedPostings() {
+
+    assertThat(walletPostingRepository.findAllByWalletIdAndFoldedFalse("wallet-1"))
+        .extracting(WalletPosting::getId)
+        .containsExactlyInAnyOrder("posting-1", "posting-2");
+  }
+
+  private Wallet wallet(String id, Customer customer) {
+
+    return Wallet.builder()
+        .id(id)
+        .customer(customer)
+        .walletName("Main Wallet")
+        .currency(Currency.USD)
+        .activeForShopping(true)
+        .activeForWithdraw(true)
+        .balance(Money.ofMajor(1000))
+        .usableBalance(Money.ofMajor(500))
+        .transactions(new ArrayList<>())
+        .build();
+  }
+
+  private WalletPosting posting(
+      String id, String walletId, String balanceDelta, String usableDelta, boolean folded) {
+
+    return WalletPosting.builder()
+        .id(id)
+        .walletId(walletId)
+        .transactionId("trans-" + id)
+        .type(TransactionType.DEPOSIT)
+        .status(TransactionStatus.APPROVED)
+        .balanceDelta(Money.of(new BigDecimal(balanceDelta)))
+        .usableBalanceDelta(Money.of(new BigDecimal(usableDelta)))
+        .folded(folded)
+        .build();
+  }
+}
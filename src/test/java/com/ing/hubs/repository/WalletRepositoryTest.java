@@ -2,7 +2,6 @@ package com.ing.hubs.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -15,9 +14,16 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.ing.hubs.dto.WalletDto;
 import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.CustomerPortfolio;
 import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletPosting;
+import com.ing.hubs.entity.WalletSubBalance;
 import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -50,8 +56,8 @@ class WalletRepositoryTest {
             .currency(Currency.USD)
             .activeForShopping(true)
             .activeForWithdraw(true)
-            .balance(BigDecimal.valueOf(1000))
-            .usableBalance(BigDecimal.valueOf(1000))
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(1000))
             .transactions(new ArrayList<>())
             .build();
 
@@ -101,6 +107,34 @@ class WalletRepositoryTest {
     assertThat(wallets).isEmpty();
   }
 
+  @Test
+  void findDtosByCustomerId_ShouldAddSubBalancesAndUnfoldedPostings() {
+
+    Wallet wallet = walletRepository.findById("wallet-1").orElseThrow();
+    wallet.setSubBalances(2);
+    entityManager.persist(subBalance(0, 300));
+    entityManager.persist(subBalance(1, 400));
+    entityManager.persist(posting("posting-1", 50, false));
+    entityManager.persist(posting("posting-2", 20, false));
+    entityManager.persist(posting("posting-3", 1000, true));
+    entityManager.flush();
+    entityManager.clear();
+
+    List<WalletDto> wallets = walletRepository.findDtosByCustomerId("cust-123", "12345678901");
+
+    assertThat(wallets).hasSize(1);
+    assertThat(wallets.getFirst().walletName()).isEqualTo("Main Wallet");
+    assertThat(wallets.getFirst().balance()).isEqualTo(Money.ofMajor(770));
+    assertThat(wallets.getFirst().usableBalance()).isEqualTo(Money.ofMajor(770));
+  }
+
+  @Test
+  void findDtosByCustomerId_WithOtherOwnerTckn_ShouldReturnEmptyList() {
+
+    assertThat(walletRepository.findDtosByCustomerId("cust-123", null)).hasSize(1);
+    assertThat(walletRepository.findDtosByCustomerId("cust-123", "98765432109")).isEmpty();
+  }
+
   @Test
   void findWithLockingById_WhenWalletExists_ShouldReturnWallet() {
 
@@ -129,7 +163,7 @@ class WalletRepositoryTest {
     Long originalVersion = lockedWallet.get().getVersion();
     assertThat(originalVersion).isNotNull();
 
-    lockedWallet.get().setBalance(BigDecimal.valueOf(1500));
+    lockedWallet.get().setBalance(Money.ofMajor(1500));
     walletRepository.save(lockedWallet.get());
     entityManager.flush();
     entityManager.clear();
@@ -159,4 +193,92 @@ class WalletRepositoryTest {
     assertThat(withoutLocking).isPresent();
     assertThat(withLocking.get().getId()).isEqualTo(withoutLocking.get().getId());
   }
+
+  @Test
+  void adjustBalances_WhenSufficient_ShouldUpdateBalancesAndVersion() {
+
+    Long version = walletRepository.findById("wallet-1").orElseThrow().getVersion();
+
+    int updated =
+        walletRepository.adjustBalances("wallet-1", Money.ofMajor(-200), Money.ofMajor(-300));
+    entityManager.clear();
+
+    Wallet wallet = walletRepository.findById("wallet-1").orElseThrow();
+    assertThat(updated).isEqualTo(1);
+    assertThat(wallet.getBalance()).isEqualTo(Money.ofMajor(800));
+    assertThat(wallet.getUsableBalance()).isEqualTo(Money.ofMajor(700));
+    assertThat(wallet.getVersion()).isEqualTo(version + 1);
+  }
+
+  @Test
+  void adjustBalances_WhenUsableBalanceNotSufficient_ShouldUpdateNothing() {
+
+    int updated = walletRepository.adjustBalances("wallet-1", Money.ZERO, Money.ofMajor(-1001));
+    entityManager.clear();
+
+    assertThat(updated).isZero();
+    assertThat(walletRepository.findById("wallet-1").orElseThrow().getUsableBalance())
+        .isEqualTo(Money.ofMajor(1000));
+  }
+
+  @Test
+  void findTransactionsVersionById_ShouldFollowTheWalletAndItsSlotsAndPostings() {
+
+    WalletSubBalance slot = subBalance(0, 100);
+    slot.setVersion(5);
+    entityManager.persist(slot);
+    entityManager.persist(posting("posting-1", 50, false));
+    entityManager.persist(posting("posting-2", 20, false));
+    entityManager.persist(posting("posting-3", 1000, true));
+    entityManager.persist(portfolioSlot(0, 1000, 4));
+    entityManager.persist(portfolioSlot(1, 0, 6));
+    entityManager.flush();
+    Long version = walletRepository.findById("wallet-1").orElseThrow().getVersion();
+
+    assertThat(walletRepository.findTransactionsVersionById("wallet-1", null))
+        .contains(version + ".7");
+    assertThat(customerRepository.findWalletsVersionById("cust-123", "12345678901"))
+        .contains(version + ".10");
+    assertThat(walletRepository.findTransactionsVersionById("wallet-1", "10987654321")).isEmpty();
+    assertThat(customerRepository.findWalletsVersionById("cust-123", "10987654321")).isEmpty();
+  }
+
+  private static CustomerPortfolio portfolioSlot(int slot, long balance, long version) {
+
+    return CustomerPortfolio.builder()
+        .id(CustomerPortfolio.idOf("cust-123", Currency.USD, slot))
+        .customerId("cust-123")
+        .currency(Currency.USD)
+        .slot(slot)
+        .walletCount(slot == 0 ? 1 : 0)
+        .balance(Money.ofMajor(balance))
+        .usableBalance(Money.ofMajor(balance))
+        .version(version)
+        .build();
+  }
+
+  private static WalletSubBalance subBalance(int slot, long amount) {
+
+    return WalletSubBalance.builder()
+        .id("sub-" + slot)
+        .walletId("wallet-1")
+        .slot(slot)
+        .balance(Money.ofMajor(amount))
+        .usableBalance(Money.ofMajor(amount))
+        .build();
+  }
+
+  private static WalletPosting posting(String id, long amount, boolean folded) {
+
+    return WalletPosting.builder()
+        .id(id)
+        .walletId("wallet-1")
+        .transactionId("trans-" + id)
+        .type(TransactionType.DEPOSIT)
+        .status(TransactionStatus.APPROVED)
+        .balanceDelta(Money.ofMajor(amount))
+        .usableBalanceDelta(Money.ofMajor(amount))
+        .folded(folded)
+        .build();
+  }
 }
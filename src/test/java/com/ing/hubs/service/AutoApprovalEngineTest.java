@@ -0,0 +1,170 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.*;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import com.ing.hubs.dto.CustomerHistoryDto;
+import com.ing.hubs.dto.PendingTransactionDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.TransactionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class AutoApprovalEngineTest {
+
+  @Mock private TransactionRepository transactionRepository;
+
+  @Mock private TransactionApprovalService transactionApprovalService;
+
+  private SimpleMeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+
+    meterRegistry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  void run_ShouldApproveTransactionsWithinCurrencyLimitAndRecordMetrics() {
+
+    AutoApprovalEngine engine = engine("TRY:5000,USD:2000", 0, Set.of());
+    given(transactionRepository.findByStatusAfter(TransactionStatus.PENDING, "", Limit.of(2)))
+        .willReturn(
+            List.of(
+                pending("t1", "customer-1", Currency.USD, 1500, "Bank"),
+                pending("t2", "customer-1", Currency.USD, 2500, "Bank")));
+    given(transactionRepository.findByStatusAfter(TransactionStatus.PENDING, "t2", Limit.of(2)))
+        .willReturn(List.of(pending("t3", "customer-2", Currency.EUR, 1500, "Bank")));
+    given(transactionApprovalService.processAll(List.of("t1"), TransactionStatus.APPROVED))
+        .willReturn(
+            List.of(
+                TransactionResponseDto.builder()
+                    .transactionId("t1")
+                    .status(TransactionStatus.APPROVED)
+                    .build()));
+    given(transactionRepository.countByStatus(TransactionStatus.PENDING)).willReturn(2L);
+
+    engine.run();
+
+    then(transactionApprovalService).should().processAll(anyList(), any());
+    assertThat(meterRegistry.get("wallet.auto_approval.backlog").gauge().value()).isEqualTo(2);
+    assertThat(meterRegistry.get("wallet.auto_approval.latency").timer().count()).isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("wallet.auto_approval.transactions")
+                .tag("outcome", "approved")
+                .counter()
+                .count())
+        .isEqualTo(1);
+    assertThat(
+            meterRegistry
+                .get("wallet.auto_approval.transactions")
+                .tag("outcome", "skipped")
+                .counter()
+                .count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  void run_ShouldRequireHistoryAndAllowedCounterpartyWhenConfigured() {
+
+    AutoApprovalEngine engine = engine("USD:2000", 3, Set.of("Payroll"));
+    given(transactionRepository.findByStatusAfter(TransactionStatus.PENDING, "", Limit.of(2)))
+        .willReturn(
+            List.of(
+                pending("t1", "customer-1", Currency.USD, 1500, "Payroll"),
+                pending("t2", "customer-2", Currency.USD, 1500, "Payroll")));
+    given(transactionRepository.countByCustomerIdInAndStatus(anyList(), any()))
+        .willReturn(
+            List.of(
+                new CustomerHistoryDto("customer-1", 3), new CustomerHistoryDto("customer-2", 1)));
+
+    engine.run();
+
+    then(transactionApprovalService).should().processAll(List.of("t1"), TransactionStatus.APPROVED);
+  }
+
+  @Test
+  void run_WhenDisabled_ShouldNotReadBacklog() {
+
+    new AutoApprovalEngine(
+            transactionRepository,
+            transactionApprovalService,
+            meterRegistry,
+            false,
+            100,
+            "USD:2000",
+            0,
+            Set.of())
+        .run();
+
+    then(transactionRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void compile_WithoutRules_ShouldMatchNothing() {
+
+    assertThat(
+            AutoApprovalEngine.compile(AutoApprovalEngine.parseCurrencyLimits(""), 0, Set.of())
+                .test(
+                    new AutoApprovalEngine.Candidate(
+                        pending("t1", "customer-1", Currency.USD, 1, "Bank"), 10)))
+        .isFalse();
+  }
+
+  @Test
+  void parseCurrencyLimits_WithInvalidEntry_ShouldFail() {
+
+    assertThatThrownBy(() -> AutoApprovalEngine.parseCurrencyLimits("GBP:100"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> AutoApprovalEngine.parseCurrencyLimits("USD"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private AutoApprovalEngine engine(
+      String currencyLimits, long minApprovedTransactions, Set<String> allowedCounterparties) {
+
+    return new AutoApprovalEngine(
+        transactionRepository,
+        transactionApprovalService,
+        meterRegistry,
+        true,
+        2,
+        currencyLimits,
+        minApprovedTransactions,
+        allowedCounterparties);
+  }
+
+  private static PendingTransactionDto pending(
+      String transactionId, String customerId, Currency currency, long amount, String party) {
+
+    return new PendingTransactionDto(
+        transactionId,
+        "wallet-" + customerId,
+        customerId,
+        currency,
+        TransactionType.DEPOSIT,
+        Money.ofMajor(amount),
+        OppositePartyType.IBAN,
+        party);
+  }
+}
@@ -0,0 +1,273 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.dto.CreateWalletDto;
+import com.ing.hubs.dto.CurrencyTotalDto;
+import com.ing.hubs.dto.CustomerPortfolioDto;
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.dto.TransferDto;
+import com.ing.hubs.dto.WithdrawDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+@SpringBootTest(
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:customer-portfolios;DB_CLOSE_DELAY=-1",
+      "spring.jpa.show-sql=false"
+    })
+class CustomerPortfoliosTest {
+
+  @Autowired private CustomerPortfolios customerPortfolios;
+  @Autowired private WalletService walletService;
+  @Autowired private TransactionApprovalService transactionApprovalService;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private WalletRepository walletRepository;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private Customer customer;
+
+  @BeforeEach
+  void setUp() {
+
+    customer =
+        customerRepository.save(
+            Customer.builder()
+                .id(UUID.randomUUID().toString())
+                .name("John")
+                .surname("Doe")
+                .tckn(UUID.randomUUID().toString().substring(0, 11))
+                .password("customerPass123")
+                .build());
+    asCustomer();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void walletWrites_ShouldKeepTheTotalsInStepWithTheWallets() {
+
+    String lira = createWallet(Currency.TRY);
+    String otherLira = createWallet(Currency.TRY);
+    String dollar = createWallet(Currency.USD);
+
+    deposit(lira, 500);
+    String pendingDeposit = deposit(lira, 2000);
+    String deniedDeposit = deposit(otherLira, 1500);
+    walletService.makeWithdraw(
+        new WithdrawDto(Money.ofMajor(100), lira, OppositePartyType.IBAN, "TR1"));
+    walletService.makeTransfer(new TransferDto(Money.ofMajor(200), lira, otherLira));
+    deposit(dollar, 50);
+    asAdmin();
+    walletService.approve(pendingDeposit, TransactionStatus.APPROVED);
+    transactionApprovalService.processAll(List.of(deniedDeposit), TransactionStatus.DENIED);
+    deposit(dollar, 3000);
+
+    CustomerPortfolioDto portfolio = walletService.getPortfolio(customer.getId());
+
+    assertEquals(3, portfolio.walletCount());
+    assertEquals(1, portfolio.pendingTransactionCount());
+    assertEquals(
+        List.of(
+            new CurrencyTotalDto(Currency.TRY, 2, Money.ofMajor(2400), Money.ofMajor(2400), 0),
+            new CurrencyTotalDto(Currency.USD, 1, Money.ofMajor(3050), Money.ofMajor(50), 1)),
+        portfolio.currencies());
+    assertEquals(0, customerPortfolios.reconcile(customer.getId()));
+  }
+
+  @Test
+  void processAll_OnSplitWallet_ShouldApproveTheBatchAndKeepTheTotals() {
+
+    String lira = createWallet(Currency.TRY);
+    deposit(lira, 500);
+    String firstDeposit = deposit(lira, 2000);
+    String secondDeposit = deposit(lira, 1500);
+    walletService.setSubBalances(lira, 4);
+    asAdmin();
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(
+            List.of(firstDeposit, secondDeposit), TransactionStatus.APPROVED);
+
+    assertEquals(
+        List.of(TransactionStatus.APPROVED, TransactionStatus.APPROVED),
+        responses.stream().map(TransactionResponseDto::status).toList());
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.TRY, 1, Money.ofMajor(4000), Money.ofMajor(4000), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+    assertEquals(0, customerPortfolios.reconcile(customer.getId()));
+  }
+
+  @Test
+  void walletWrites_ShouldSpreadTheTotalsOverTheSlots() {
+
+    String lira = createWallet(Currency.TRY);
+
+    for (int i = 0; i < 20; i++) {
+      deposit(lira, 10);
+    }
+
+    assertEquals(
+        8,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM customer_portfolio WHERE customer_id = ?",
+            Integer.class,
+            customer.getId()));
+    assertTrue(
+        jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM customer_portfolio WHERE customer_id = ? AND balance <> 0",
+                Integer.class,
+                customer.getId())
+            > 1);
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.TRY, 1, Money.ofMajor(200), Money.ofMajor(200), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+    assertEquals(0, customerPortfolios.reconcile(customer.getId()));
+  }
+
+  @Test
+  void siblingDeposit_ShouldLeaveTheWalletTagUnchanged() {
+
+    String lira = createWallet(Currency.TRY);
+    String otherLira = createWallet(Currency.TRY);
+    deposit(lira, 100);
+    String tag = walletRepository.findTransactionsVersionById(lira, null).orElseThrow();
+
+    deposit(otherLira, 100);
+
+    assertEquals(tag, walletRepository.findTransactionsVersionById(lira, null).orElseThrow());
+  }
+
+  @Test
+  void reconcile_WhenTotalsDrifted_ShouldRebuildThemFromTheWallets() {
+
+    String lira = createWallet(Currency.TRY);
+    deposit(lira, 500);
+    jdbcTemplate.update(
+        "UPDATE customer_portfolio SET balance = 1, pending_transaction_count = 7"
+            + " WHERE customer_id = ?",
+        customer.getId());
+
+    assertEquals(1, customerPortfolios.reconcile(customer.getId()));
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.TRY, 1, Money.ofMajor(500), Money.ofMajor(500), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+    assertEquals(0, customerPortfolios.reconcile(customer.getId()));
+  }
+
+  @Test
+  void reconcileAll_ShouldCreateTheTotalsOfWalletsWrittenBehindTheServices() {
+
+    walletRepository.save(
+        Wallet.builder()
+            .id(UUID.randomUUID().toString())
+            .customer(customer)
+            .walletName("Imported")
+            .currency(Currency.EUR)
+            .activeForShopping(true)
+            .activeForWithdraw(true)
+            .balance(Money.ofMajor(70))
+            .usableBalance(Money.ofMajor(60))
+            .build());
+
+    assertEquals(List.of(), walletService.getPortfolio(customer.getId()).currencies());
+
+    customerPortfolios.reconcileAll();
+
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.EUR, 1, Money.ofMajor(70), Money.ofMajor(60), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+  }
+
+  @Test
+  void deposit_ToWalletWithoutPortfolioRows_ShouldShowUpInThePortfolio() {
+
+    String imported =
+        walletRepository
+            .save(
+                Wallet.builder()
+                    .id(UUID.randomUUID().toString())
+                    .customer(customer)
+                    .walletName("Imported")
+                    .currency(Currency.EUR)
+                    .activeForShopping(true)
+                    .activeForWithdraw(true)
+                    .balance(Money.ofMajor(70))
+                    .usableBalance(Money.ofMajor(60))
+                    .build())
+            .getId();
+
+    deposit(imported, 30);
+
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.EUR, 1, Money.ofMajor(100), Money.ofMajor(90), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+    assertEquals(0, customerPortfolios.reconcile(customer.getId()));
+  }
+
+  @Test
+  void deposit_WhenItsSlotHasNoRow_ShouldFallBackToSlotZero() {
+
+    String lira = createWallet(Currency.TRY);
+    jdbcTemplate.update(
+        "DELETE FROM customer_portfolio WHERE customer_id = ? AND slot > 0", customer.getId());
+
+    for (int i = 0; i < 5; i++) {
+      deposit(lira, 10);
+    }
+
+    assertEquals(
+        List.of(new CurrencyTotalDto(Currency.TRY, 1, Money.ofMajor(50), Money.ofMajor(50), 0)),
+        walletService.getPortfolio(customer.getId()).currencies());
+  }
+
+  private String createWallet(Currency currency) {
+
+    return walletService
+        .createWallet(new CreateWalletDto(customer.getId(), "Wallet", currency, true, true))
+        .getId();
+  }
+
+  private String deposit(String walletId, long amount) {
+
+    return walletService
+        .makeDeposit(new DepositDto(Money.ofMajor(amount), walletId, OppositePartyType.IBAN, "TR1"))
+        .transactionId();
+  }
+
+  private void asCustomer() {
+
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new TestingAuthenticationToken(customer.getTckn(), null, "ROLE_CUSTOMER"));
+  }
+
+  private static void asAdmin() {
+
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+  }
+}
@@ -0,0 +1,215 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.entity.IdempotencyRecord;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.IdempotencyRecordRepository;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+  @Mock private IdempotencyRecordRepository idempotencyRecordRepository;
+
+  private IdempotencyStore idempotencyStore;
+  private DepositDto depositDto;
+  private TransactionResponseDto response;
+  private AtomicInteger executions;
+  private Supplier<TransactionResponseDto> action;
+
+  @BeforeEach
+  void setUp() {
+
+    idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, 100, 60000, 60000, 30000);
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("12345678901", null));
+
+    depositDto =
+        new DepositDto(
+            Money.ofMajor(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+
+    response =
+        TransactionResponseDto.builder()
+            .transactionId("transaction-123")
+            .status(TransactionStatus.APPROVED)
+            .message("Deposit transaction created successfully!")
+            .build();
+
+    executions = new AtomicInteger();
+    action =
+        () -> {
+          executions.incrementAndGet();
+          return response;
+        };
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void execute_WithoutKey_ShouldRunActionWithoutStoring() {
+
+    TransactionResponseDto result = idempotencyStore.execute(null, "deposit", depositDto, action);
+
+    assertEquals(response, result);
+    assertEquals(1, executions.get());
+    then(idempotencyRecordRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void execute_WhenRetriedWithSameKey_ShouldReturnCachedResponse() {
+
+    given(idempotencyRecordRepository.findById("12345678901:key-1")).willReturn(Optional.empty());
+
+    TransactionResponseDto first = idempotencyStore.execute("key-1", "deposit", depositDto, action);
+    TransactionResponseDto retry = idempotencyStore.execute("key-1", "deposit", depositDto, action);
+
+    assertEquals(response, first);
+    assertEquals(response, retry);
+    assertEquals(1, executions.get());
+    then(idempotencyRecordRepository).should(times(1)).findById("12345678901:key-1");
+    then(idempotencyRecordRepository)
+        .should()
+        .complete(
+            "12345678901:key-1",
+            "transaction-123",
+            TransactionStatus.APPROVED,
+            "Deposit transaction created successfully!");
+  }
+
+  @Test
+  void execute_WhenKeyReusedForOtherRequest_ShouldThrowConflict() {
+
+    given(idempotencyRecordRepository.findById("12345678901:key-1")).willReturn(Optional.empty());
+    idempotencyStore.execute("key-1", "deposit", depositDto, action);
+
+    assertThrows(
+        CustomConflictException.class,
+        () -> idempotencyStore.execute("key-1", "withdraw", depositDto, action));
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void execute_WhenOnlyDurableRecordExists_ShouldReturnStoredResponse() {
+
+    IdempotencyRecord stored =
+        IdempotencyRecord.builder()
+            .id("12345678901:key-1")
+            .requestDigest(IdempotencyStore.digest("deposit", depositDto))
+            .createdAt(LocalDateTime.now())
+            .build();
+    stored.complete(response);
+    given(idempotencyRecordRepository.findById("12345678901:key-1"))
+        .willReturn(Optional.of(stored));
+
+    TransactionResponseDto result =
+        idempotencyStore.execute("key-1", "deposit", depositDto, action);
+
+    assertEquals(response, result);
+    assertEquals(0, executions.get());
+  }
+
+  @Test
+  void execute_WhenKeyClaimedByRunningRequest_ShouldThrowConflict() {
+
+    given(idempotencyRecordRepository.findById("12345678901:key-1")).willReturn(Optional.empty());
+    given(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+        .willThrow(DataIntegrityViolationException.class);
+
+    CustomConflictException exception =
+        assertThrows(
+            CustomConflictException.class,
+            () -> idempotencyStore.execute("key-1", "deposit", depositDto, action));
+
+    assertEquals("A request with this Idempotency-Key is in progress!", exception.getReason());
+    assertEquals(0, executions.get());
+  }
+
+  @Test
+  void execute_WhenClaimIsStale_ShouldTakeItOverAndRun() {
+
+    given(idempotencyRecordRepository.findById("12345678901:key-1")).willReturn(Optional.empty());
+    given(idempotencyRecordRepository.saveAndFlush(any(IdempotencyRecord.class)))
+        .willThrow(DataIntegrityViolationException.class);
+    given(
+            idempotencyRecordRepository.takeOver(
+                eq("12345678901:key-1"),
+                eq(IdempotencyStore.digest("deposit", depositDto)),
+                any(),
+                any()))
+        .willReturn(1);
+
+    TransactionResponseDto result =
+        idempotencyStore.execute("key-1", "deposit", depositDto, action);
+
+    assertEquals(response, result);
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void digest_ShouldBeStableHexOfTheCanonicalRequest() {
+
+    String digest = IdempotencyStore.digest("approve", List.of("t1", TransactionStatus.APPROVED));
+
+    assertEquals(64, digest.length());
+    assertEquals(
+        digest, IdempotencyStore.digest("approve", List.of("t1", TransactionStatus.APPROVED)));
+    assertNotEquals(
+        digest, IdempotencyStore.digest("approve", List.of("t1", TransactionStatus.DENIED)));
+  }
+
+  @Test
+  void execute_WhenActionFails_ShouldReleaseKey() {
+
+    given(idempotencyRecordRepository.findById("12345678901:key-1")).willReturn(Optional.empty());
+
+    assertThrows(
+        CustomConflictException.class,
+        () ->
+            idempotencyStore.execute(
+                "key-1",
+                "deposit",
+                depositDto,
+                () -> {
+                  throw new CustomConflictException("Wallet is not active!");
+                }));
+
+    then(idempotencyRecordRepository).should().deleteIncomplete("12345678901:key-1");
+    then(idempotencyRecordRepository).should(never()).complete(any(), any(), any(), any());
+  }
+
+  @Test
+  void execute_WithTooLongKey_ShouldThrowBadRequest() {
+
+    assertThrows(
+        CustomBadRequestException.class,
+        () -> idempotencyStore.execute("k".repeat(65), "deposit", depositDto, action));
+  }
+}
@@ -0,0 +1,44 @@
+package com.ing.hubs.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Records the SQL Hibernate prepares on the calling thread, so a test can pin down how many
+ * statements a call costs without counting what scheduled jobs run meanwhile. Registered through
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector}.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+  private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+  @Override
+  public String inspect(String sql) {
+
+    List<String> statements = STATEMENTS.get();
+
+    if (statements != null) {
+      statements.add(sql);
+    }
+
+    return sql;
+  }
+
+  /** The statements {@code call} prepared on this thread, in order. */
+  static List<String> record(Supplier<?> call) {
+
+    List<String> statements = new ArrayList<>();
+    STATEMENTS.set(statements);
+
+    try {
+      call.get();
+    } finally {
+      STATEMENTS.remove();
+    }
+
+    return statements;
+  }
+}
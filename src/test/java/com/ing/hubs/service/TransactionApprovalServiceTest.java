@@ -0,0 +1,250 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.dto.TransactionSummaryDto;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionApprovalServiceTest {
+
+  @Mock private TransactionRepository transactionRepository;
+
+  @Mock private WalletRepository walletRepository;
+
+  @Mock private WalletService walletService;
+
+  @Mock private WalletLockManager walletLockManager;
+
+  @Mock private WalletLedger walletLedger;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private WalletReadCache walletReadCache;
+
+  @Mock private CustomerPortfolios customerPortfolios;
+
+  @Mock private WalletSubBalances walletSubBalances;
+
+  private TransactionApprovalService transactionApprovalService;
+
+  @BeforeEach
+  void setUp() {
+
+    transactionApprovalService =
+        new TransactionApprovalService(
+            transactionRepository,
+            walletRepository,
+            walletService,
+            walletLockManager,
+            walletLedger,
+            transactionTemplate,
+            walletReadCache,
+            customerPortfolios,
+            walletSubBalances,
+            2);
+  }
+
+  @Test
+  void processAll_ShouldAdjustEachWalletOnceAndCommitInChunks() {
+
+    givenTransactionsRunInline();
+    given(transactionRepository.findSummariesByIdIn(anyCollection()))
+        .willReturn(
+            List.of(
+                pending("t1", "wallet-1", TransactionType.DEPOSIT, 1500),
+                pending("t2", "wallet-1", TransactionType.WITHDRAW, 2000),
+                pending("t3", "wallet-2", TransactionType.WITHDRAW, 3000)));
+    given(transactionRepository.lockIdsByStatus(anyCollection(), any()))
+        .willAnswer(invocation -> List.copyOf(invocation.getArgument(0)));
+    given(walletRepository.adjustBalances(anyString(), any(), any())).willReturn(1);
+    given(transactionRepository.updateStatuses(anyCollection(), any(), any(), any()))
+        .willAnswer(invocation -> invocation.<List<String>>getArgument(0).size());
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(
+            List.of("t3", "t1", "t2"), TransactionStatus.APPROVED);
+
+    assertThat(responses)
+        .extracting(TransactionResponseDto::transactionId)
+        .containsExactly("t3", "t1", "t2");
+    assertThat(responses).allMatch(response -> response.status() == TransactionStatus.APPROVED);
+    then(transactionRepository).should().findSummariesByIdIn(anyCollection());
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-1", Money.ofMajor(-2000), Money.ofMajor(1500));
+    then(walletRepository).should().adjustBalances("wallet-2", Money.ofMajor(-3000), Money.ZERO);
+    then(customerPortfolios)
+        .should()
+        .adjust("wallet-1", Money.ofMajor(-2000), Money.ofMajor(1500), -2);
+    then(customerPortfolios).should().adjust("wallet-2", Money.ofMajor(-3000), Money.ZERO, -1);
+    then(transactionRepository)
+        .should()
+        .updateStatuses(
+            eq(List.of("t1", "t2")),
+            eq(TransactionStatus.PENDING),
+            eq(TransactionStatus.APPROVED),
+            any());
+    then(transactionRepository)
+        .should()
+        .updateStatuses(
+            eq(List.of("t3")),
+            eq(TransactionStatus.PENDING),
+            eq(TransactionStatus.APPROVED),
+            any());
+  }
+
+  @Test
+  void processAll_ShouldReportMissingProcessedAndRepeatedTransactions() {
+
+    givenTransactionsRunInline();
+    given(transactionRepository.findSummariesByIdIn(anyCollection()))
+        .willReturn(
+            List.of(
+                pending("t1", "wallet-1", TransactionType.DEPOSIT, 1500),
+                pending("t2", "wallet-1", TransactionType.DEPOSIT, 1500),
+                new TransactionSummaryDto(
+                    "t3",
+                    "wallet-1",
+                    TransactionType.DEPOSIT,
+                    Money.ofMajor(1500),
+                    TransactionStatus.APPROVED,
+                    null)));
+    // t2 was approved by someone else after it was read
+    given(transactionRepository.lockIdsByStatus(anyCollection(), any())).willReturn(List.of("t1"));
+    given(walletRepository.adjustBalances(anyString(), any(), any())).willReturn(1);
+    given(transactionRepository.updateStatuses(anyCollection(), any(), any(), any())).willReturn(1);
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(
+            List.of("t1", "t2", "t3", "missing", "t1"), TransactionStatus.DENIED);
+
+    assertThat(responses)
+        .extracting(TransactionResponseDto::message)
+        .containsExactly(
+            "Transaction processed successfully!",
+            "Transaction processed already!",
+            "Transaction processed already!",
+            "Transaction not found!",
+            "Transaction processed already!");
+    assertThat(responses.getFirst().status()).isEqualTo(TransactionStatus.DENIED);
+    then(walletRepository).should().adjustBalances("wallet-1", Money.ofMajor(-1500), Money.ZERO);
+  }
+
+  @Test
+  void processAll_WithTransferLeg_ShouldApproveItThroughWalletService() {
+
+    given(transactionRepository.findSummariesByIdIn(anyCollection()))
+        .willReturn(
+            List.of(
+                new TransactionSummaryDto(
+                    "t1",
+                    "wallet-1",
+                    TransactionType.WITHDRAW,
+                    Money.ofMajor(1500),
+                    TransactionStatus.PENDING,
+                    "t2")));
+    given(walletService.approve("t1", TransactionStatus.APPROVED))
+        .willReturn(
+            TransactionResponseDto.builder()
+                .transactionId("t1")
+                .status(TransactionStatus.APPROVED)
+                .build());
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(List.of("t1"), TransactionStatus.APPROVED);
+
+    assertThat(responses.getFirst().status()).isEqualTo(TransactionStatus.APPROVED);
+    then(transactionTemplate).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void processAll_WhenBalanceUpdateFails_ShouldLeaveWalletTransactionsPending() {
+
+    givenTransactionsRunInline();
+    given(transactionRepository.findSummariesByIdIn(anyCollection()))
+        .willReturn(List.of(pending("t1", "wallet-1", TransactionType.WITHDRAW, 2000)));
+    given(transactionRepository.lockIdsByStatus(anyCollection(), any())).willReturn(List.of("t1"));
+    given(walletRepository.adjustBalances(anyString(), any(), any())).willReturn(0);
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(List.of("t1"), TransactionStatus.APPROVED);
+
+    assertThat(responses.getFirst().message()).isEqualTo("Balance is not sufficient!");
+    assertThat(responses.getFirst().status()).isNull();
+    then(walletSubBalances).shouldHaveNoInteractions();
+    then(transactionRepository)
+        .should(never())
+        .updateStatuses(anyCollection(), any(), any(), any());
+  }
+
+  @Test
+  void processAll_WhenChunkFails_ShouldReportItsItemsAsFailed() {
+
+    given(transactionRepository.findSummariesByIdIn(anyCollection()))
+        .willReturn(List.of(pending("t1", "wallet-1", TransactionType.WITHDRAW, 2000)));
+    given(transactionTemplate.execute(any())).willThrow(new IllegalStateException("lock timeout"));
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(List.of("t1"), TransactionStatus.APPROVED);
+
+    assertThat(responses.getFirst().message()).isEqualTo("Operation failed, please try again!");
+  }
+
+  @Test
+  void processAll_WithLedgerEnabled_ShouldApproveOneByOne() {
+
+    given(walletLedger.isEnabled()).willReturn(true);
+    given(walletService.approve("t1", TransactionStatus.APPROVED))
+        .willReturn(
+            TransactionResponseDto.builder()
+                .transactionId("t1")
+                .status(TransactionStatus.APPROVED)
+                .message("Transaction processed successfully!")
+                .build());
+    given(walletService.approve("t2", TransactionStatus.APPROVED))
+        .willThrow(new CustomConflictException("Transaction processed already!"));
+
+    List<TransactionResponseDto> responses =
+        transactionApprovalService.processAll(List.of("t1", "t2"), TransactionStatus.APPROVED);
+
+    assertThat(responses)
+        .extracting(TransactionResponseDto::message)
+        .containsExactly("Transaction processed successfully!", "Transaction processed already!");
+    then(transactionRepository).shouldHaveNoInteractions();
+  }
+
+  private void givenTransactionsRunInline() {
+
+    given(transactionTemplate.execute(any()))
+        .willAnswer(
+            invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+  }
+
+  private static TransactionSummaryDto pending(
+      String transactionId, String walletId, TransactionType type, long amount) {
+
+    return new TransactionSummaryDto(
+        transactionId, walletId, type, Money.ofMajor(amount), TransactionStatus.PENDING, null);
+  }
+}
@@ -0,0 +1,157 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.exception.CustomNotFoundException;
+import com.ing.hubs.exception.CustomUnauthorizedException;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.ExportFormat;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({TransactionExporter.class, JacksonAutoConfiguration.class})
+class TransactionExporterTest {
+
+  private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+  @Autowired private TransactionExporter transactionExporter;
+
+  @Autowired private TestEntityManager entityManager;
+
+  private Wallet wallet;
+
+  @BeforeEach
+  void setUp() {
+
+    Customer customer =
+        Customer.builder()
+            .id("cust-123")
+            .tckn("12345678901")
+            .name("John")
+            .surname("Doe")
+            .password("customerPass123")
+            .wallets(new ArrayList<>())
+            .build();
+    wallet =
+        Wallet.builder()
+            .id("wallet-1")
+            .customer(customer)
+            .walletName("Main Wallet")
+            .currency(Currency.USD)
+            .activeForShopping(true)
+            .activeForWithdraw(true)
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(1000))
+            .transactions(new ArrayList<>())
+            .build();
+
+    entityManager.persist(customer);
+    entityManager.persist(wallet);
+    entityManager.persist(
+        transaction("trans-1", TransactionStatus.APPROVED, "Bank, Inc.", CREATED_AT));
+    entityManager.persist(
+        transaction("trans-2", TransactionStatus.PENDING, "Shop", CREATED_AT.plusDays(1)));
+    entityManager.persist(
+        transaction("trans-3", TransactionStatus.APPROVED, "Shop", CREATED_AT.plusDays(2)));
+    entityManager.flush();
+  }
+
+  @Test
+  void export_AsNdjson_ShouldWriteOneJsonObjectPerLineInIdOrder() throws Exception {
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    long rows =
+        transactionExporter.export("wallet-1", null, null, null, ExportFormat.NDJSON, outputStream);
+
+    String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+    assertThat(rows).isEqualTo(3);
+    assertThat(lines).hasSize(3);
+    assertThat(lines[0])
+        .startsWith("{\"transactionId\":\"trans-1\",\"walletId\":\"wallet-1\",\"type\":\"DEPOSIT\"")
+        .contains("\"amount\":100.00", "\"createdAt\":\"2024-03-01T12:00:00\"");
+    assertThat(lines[2]).contains("\"transactionId\":\"trans-3\"");
+  }
+
+  @Test
+  void export_AsCsvWithStatusAndDateFilter_ShouldOnlyWriteMatchingRows() throws Exception {
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    long rows =
+        transactionExporter.export(
+            "wallet-1",
+            TransactionStatus.APPROVED,
+            CREATED_AT,
+            CREATED_AT.plusDays(2),
+            ExportFormat.CSV,
+            outputStream);
+
+    assertThat(rows).isEqualTo(1);
+    assertThat(outputStream.toString(StandardCharsets.UTF_8))
+        .isEqualTo(
+            TransactionExporter.CSV_HEADER
+                + "\ntrans-1,wallet-1,DEPOSIT,100.00,APPROVED,IBAN,\"Bank, Inc.\",,"
+                + "2024-03-01T12:00\n");
+  }
+
+  @Test
+  @WithMockUser(username = "12345678901", roles = "CUSTOMER")
+  void checkAccess_ForOwnWallet_ShouldPass() {
+
+    transactionExporter.checkAccess("wallet-1");
+  }
+
+  @Test
+  @WithMockUser(username = "10987654321", roles = "CUSTOMER")
+  void checkAccess_ForOtherCustomersWallet_ShouldThrowUnauthorized() {
+
+    assertThrows(
+        CustomUnauthorizedException.class, () -> transactionExporter.checkAccess("wallet-1"));
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void checkAccess_ForMissingWallet_ShouldThrowNotFound() {
+
+    assertThrows(CustomNotFoundException.class, () -> transactionExporter.checkAccess("missing"));
+  }
+
+  private Transaction transaction(
+      String id, TransactionStatus status, String oppositeParty, LocalDateTime createdAt) {
+
+    return Transaction.builder()
+        .id(id)
+        .amount(Money.ofMajor(100))
+        .type(TransactionType.DEPOSIT)
+        .oppositePartyType(OppositePartyType.IBAN)
+        .oppositeParty(oppositeParty)
+        .status(status)
+        .createdAt(createdAt)
+        .wallet(wallet)
+        .build();
+  }
+}
@@ -0,0 +1,162 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.ing.hubs.dto.TransactionSearchDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+/**
+ * Looks at the plans H2 picks for {@link TransactionSearchService} queries over a committed and
+ * analyzed history, so the search keeps seeking its composite indexes as the table grows. Runs on
+ * its own in-memory database because {@code ANALYZE} commits.
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:transaction-search;DB_CLOSE_DELAY=-1")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TransactionSearchQueryPlanTest {
+
+  private static final int TRANSACTIONS = 3_000;
+  private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+  private static final String CURSOR = "2024-03-01T18:00_transaction-9";
+
+  @Autowired private CustomerRepository customerRepository;
+
+  @Autowired private WalletRepository walletRepository;
+
+  @Autowired private TransactionRepository transactionRepository;
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @BeforeAll
+  void createHistory() {
+
+    List<Wallet> wallets = new ArrayList<>();
+
+    for (int w = 0; w < 10; w++) {
+      Customer customer =
+          customerRepository.save(
+              Customer.builder()
+                  .id("customer-" + w)
+                  .tckn("1234567890" + w)
+                  .name("John")
+                  .surname("Doe")
+                  .password("customerPass123")
+                  .build());
+      wallets.add(
+          walletRepository.save(
+              Wallet.builder()
+                  .id("wallet-" + w)
+                  .customer(customer)
+                  .walletName("Main Wallet")
+                  .currency(Currency.TRY)
+                  .activeForShopping(true)
+                  .activeForWithdraw(true)
+                  .balance(Money.ZERO)
+                  .usableBalance(Money.ZERO)
+                  .build()));
+    }
+
+    List<Transaction> transactions = new ArrayList<>();
+
+    for (int t = 0; t < TRANSACTIONS; t++) {
+      transactions.add(
+          Transaction.builder()
+              .id("transaction-" + t)
+              .amount(Money.ofMajor(t))
+              .type(TransactionType.values()[t % TransactionType.values().length])
+              .oppositePartyType(OppositePartyType.IBAN)
+              .oppositeParty("TR" + t)
+              .status(TransactionStatus.values()[t % TransactionStatus.values().length])
+              .createdAt(CREATED_AT.minusMinutes(t))
+              .wallet(wallets.get(t % wallets.size()))
+              .build());
+    }
+
+    transactionRepository.saveAll(transactions);
+    jdbcTemplate.execute("ANALYZE");
+  }
+
+  @Test
+  void searchByWallet_ShouldSeekWalletAndCreationTimeIndex() {
+
+    String plan =
+        plan(
+            new TransactionSearchDto(
+                "wallet-1",
+                TransactionStatus.PENDING,
+                null,
+                new BigDecimal("5000"),
+                null,
+                CREATED_AT.minusHours(1),
+                CREATED_AT,
+                null),
+            null);
+
+    assertThat(plan).contains("IDX_TRANSACTION_WALLET_ID_CREATED_AT").doesNotContain("tableScan");
+  }
+
+  @Test
+  void searchByStatusAndType_ShouldSeekStatusTypeAndCreationTimeIndex() {
+
+    String plan =
+        plan(
+            new TransactionSearchDto(
+                null,
+                TransactionStatus.PENDING,
+                TransactionType.WITHDRAW,
+                new BigDecimal("5000"),
+                null,
+                CREATED_AT.minusHours(1),
+                null,
+                OppositePartyType.IBAN),
+            null);
+
+    assertThat(plan).contains("IDX_TRANSACTION_STATUS_TYPE_CREATED_AT").doesNotContain("tableScan");
+  }
+
+  @Test
+  void searchAsCustomer_ShouldReachTransactionsThroughOwnWallets() {
+
+    String plan =
+        plan(
+            new TransactionSearchDto(
+                null, null, null, null, null, CREATED_AT.minusHours(1), null, null),
+            "12345678901");
+
+    assertThat(plan).contains("IDX_TRANSACTION_WALLET_ID_CREATED_AT").doesNotContain("tableScan");
+  }
+
+  private String plan(TransactionSearchDto search, String ownerTckn) {
+
+    TransactionSearchService.Query query =
+        TransactionSearchService.query(search, ownerTckn, CURSOR, 51);
+
+    return jdbcTemplate.queryForObject("EXPLAIN " + query.sql(), String.class, query.args());
+  }
+}
@@ -0,0 +1,186 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithMockUser;
+
+import com.ing.hubs.dto.ListTransactionDto;
+import com.ing.hubs.dto.TransactionDto;
+import com.ing.hubs.dto.TransactionSearchDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TransactionSearchService.class)
+class TransactionSearchServiceTest {
+
+  private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+  @Autowired private TransactionSearchService transactionSearchService;
+
+  @Autowired private TestEntityManager entityManager;
+
+  @BeforeEach
+  void setUp() {
+
+    Wallet own = wallet("wallet-1", customer("cust-1", "12345678901"));
+    Wallet other = wallet("wallet-2", customer("cust-2", "10987654321"));
+
+    persist("trans-1", own, TransactionType.WITHDRAW, TransactionStatus.PENDING, 6000, 0);
+    persist("trans-2", own, TransactionType.WITHDRAW, TransactionStatus.PENDING, 7000, 1);
+    persist("trans-3", own, TransactionType.WITHDRAW, TransactionStatus.APPROVED, 8000, 2);
+    persist("trans-4", own, TransactionType.DEPOSIT, TransactionStatus.PENDING, 9000, 3);
+    persist("trans-5", own, TransactionType.WITHDRAW, TransactionStatus.PENDING, 100, 4);
+    persist("trans-6", other, TransactionType.WITHDRAW, TransactionStatus.PENDING, 6000, 5);
+    entityManager.flush();
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void search_ForPendingWithdrawsOverAmount_ShouldPageNewestFirstAcrossWallets() {
+
+    TransactionSearchDto search =
+        new TransactionSearchDto(
+            null,
+            TransactionStatus.PENDING,
+            TransactionType.WITHDRAW,
+            new BigDecimal("5000"),
+            null,
+            CREATED_AT,
+            CREATED_AT.plusHours(6),
+            OppositePartyType.IBAN);
+
+    ListTransactionDto first = transactionSearchService.search(search, null, 2);
+    ListTransactionDto second = transactionSearchService.search(search, first.nextCursor(), 2);
+
+    assertThat(first.transactions())
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-6", "trans-2");
+    assertThat(first.nextCursor()).isEqualTo("2024-03-01T13:00_trans-2");
+    assertThat(second.transactions()).extracting(TransactionDto::id).containsExactly("trans-1");
+    assertThat(second.nextCursor()).isNull();
+  }
+
+  @Test
+  @WithMockUser(username = "10987654321", roles = "CUSTOMER")
+  void search_AsCustomer_ShouldOnlyFindTransactionsOfOwnWallets() {
+
+    assertThat(
+            transactionSearchService
+                .search(
+                    new TransactionSearchDto(null, null, null, null, null, null, null, null),
+                    null,
+                    50)
+                .transactions())
+        .extracting(TransactionDto::id)
+        .containsExactly("trans-6");
+    assertThat(
+            transactionSearchService
+                .search(
+                    new TransactionSearchDto("wallet-1", null, null, null, null, null, null, null),
+                    null,
+                    50)
+                .transactions())
+        .isEmpty();
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void search_AsAdminWithoutWalletOrStatus_ShouldThrowBadRequest() {
+
+    TransactionSearchDto search =
+        new TransactionSearchDto(
+            null, null, TransactionType.WITHDRAW, null, null, null, null, null);
+
+    assertThrows(
+        CustomBadRequestException.class, () -> transactionSearchService.search(search, null, 50));
+  }
+
+  @Test
+  @WithMockUser(roles = "ADMIN")
+  void search_WithInvalidCursor_ShouldThrowBadRequest() {
+
+    TransactionSearchDto search =
+        new TransactionSearchDto("wallet-1", null, null, null, null, null, null, null);
+
+    assertThrows(
+        CustomBadRequestException.class,
+        () -> transactionSearchService.search(search, "trans-2", 50));
+  }
+
+  private Customer customer(String id, String tckn) {
+
+    Customer customer =
+        Customer.builder()
+            .id(id)
+            .tckn(tckn)
+            .name("John")
+            .surname("Doe")
+            .password("customerPass123")
+            .wallets(new ArrayList<>())
+            .build();
+    entityManager.persist(customer);
+
+    return customer;
+  }
+
+  private Wallet wallet(String id, Customer customer) {
+
+    Wallet wallet =
+        Wallet.builder()
+            .id(id)
+            .customer(customer)
+            .walletName("Main Wallet")
+            .currency(Currency.TRY)
+            .activeForShopping(true)
+            .activeForWithdraw(true)
+            .balance(Money.ofMajor(100000))
+            .usableBalance(Money.ofMajor(100000))
+            .transactions(new ArrayList<>())
+            .build();
+    entityManager.persist(wallet);
+
+    return wallet;
+  }
+
+  private void persist(
+      String id,
+      Wallet wallet,
+      TransactionType type,
+      TransactionStatus status,
+      long amount,
+      int hours) {
+
+    entityManager.persist(
+        Transaction.builder()
+            .id(id)
+            .amount(Money.ofMajor(amount))
+            .type(type)
+            .oppositePartyType(OppositePartyType.IBAN)
+            .oppositeParty("TR" + id)
+            .status(status)
+            .createdAt(CREATED_AT.plusHours(hours))
+            .wallet(wallet)
+            .build());
+  }
+}
@@ -0,0 +1,284 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.dto.WalletBatchDto;
+import com.ing.hubs.dto.WalletBatchResponseDto;
+import com.ing.hubs.dto.WithdrawDto;
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.ConcurrencyMode;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.TransactionRepository;
+
+@ExtendWith(MockitoExtension.class)
+class WalletCommandDispatcherTest {
+
+  @Mock private WalletService walletService;
+
+  @Mock private TransactionRepository transactionRepository;
+
+  @Mock private WalletJournal walletJournal;
+
+  private WalletCommandDispatcher dispatcher;
+  private DepositDto depositDto;
+  private TransactionResponseDto response;
+
+  @BeforeEach
+  void setUp() {
+
+    depositDto =
+        new DepositDto(
+            Money.ofMajor(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+
+    response =
+        TransactionResponseDto.builder()
+            .transactionId("transaction-123")
+            .status(TransactionStatus.APPROVED)
+            .message("Deposit transaction created successfully!")
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  void makeDeposit_WhenNotSharded_ShouldDelegateToWalletService() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.OPTIMISTIC,
+            2,
+            16,
+            8,
+            0);
+    given(walletService.makeDeposit(depositDto)).willReturn(response);
+
+    TransactionResponseDto result = dispatcher.makeDeposit(depositDto);
+
+    assertFalse(dispatcher.isSharded());
+    assertEquals(response, result);
+    then(walletService).should(never()).applyBatch(anyList());
+  }
+
+  @Test
+  void makeDeposit_WithJournalEnabled_ShouldAppendToJournal() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            2,
+            16,
+            8,
+            0);
+    given(walletJournal.isEnabled()).willReturn(true);
+    given(walletJournal.append(depositDto)).willReturn(response);
+
+    TransactionResponseDto result = dispatcher.makeDeposit(depositDto);
+
+    assertEquals(response, result);
+    then(walletService).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void makeDeposit_WhenSharded_ShouldApplyThroughShard() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            2,
+            16,
+            8,
+            0);
+    given(walletService.applyBatch(anyList()))
+        .willReturn(List.of(WalletCommandResult.success(response)));
+
+    TransactionResponseDto result = dispatcher.makeDeposit(depositDto);
+
+    assertEquals(response, result);
+    then(walletService).should(never()).makeDeposit(any());
+  }
+
+  @Test
+  void makeDeposit_WhenShardReportsFailure_ShouldRethrowToCaller() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            2,
+            16,
+            8,
+            0);
+    given(walletService.applyBatch(anyList()))
+        .willReturn(
+            List.of(
+                WalletCommandResult.failure(
+                    new CustomConflictException("Usable balance is not sufficient!"))));
+
+    CustomConflictException exception =
+        assertThrows(CustomConflictException.class, () -> dispatcher.makeDeposit(depositDto));
+
+    assertEquals("Usable balance is not sufficient!", exception.getReason());
+  }
+
+  @Test
+  void applyBatch_WhenNotSharded_ShouldGroupByWalletAndKeepRequestOrder() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.OPTIMISTIC,
+            2,
+            16,
+            8,
+            0);
+    DepositDto otherWalletDeposit =
+        new DepositDto(
+            Money.ofMajor(100), "wallet-456", OppositePartyType.IBAN, "Bank Account 123");
+    WithdrawDto withdrawDto =
+        new WithdrawDto(
+            Money.ofMajor(50), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+    TransactionResponseDto otherResponse =
+        TransactionResponseDto.builder().transactionId("transaction-456").build();
+    given(walletService.applyBatch(anyList()))
+        .willReturn(
+            List.of(
+                WalletCommandResult.success(response),
+                WalletCommandResult.failure(
+                    new CustomConflictException("Usable balance is not sufficient!")),
+                WalletCommandResult.success(otherResponse)));
+
+    WalletBatchResponseDto result =
+        dispatcher.applyBatch(
+            new WalletBatchDto(List.of(otherWalletDeposit, depositDto), List.of(withdrawDto)));
+
+    ArgumentCaptor<List<WalletCommand>> captor = ArgumentCaptor.captor();
+    then(walletService).should().applyBatch(captor.capture());
+    assertEquals(
+        List.of("wallet-123", "wallet-123", "wallet-456"),
+        captor.getValue().stream().map(WalletCommand::walletId).toList());
+    assertEquals(List.of(otherResponse, response), result.deposits());
+    assertNull(result.withdraws().get(0).transactionId());
+    assertEquals("Usable balance is not sufficient!", result.withdraws().get(0).message());
+  }
+
+  @Test
+  void applyBatch_WhenSharded_ShouldReportFailuresPerItem() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            1,
+            16,
+            8,
+            0);
+    WithdrawDto withdrawDto =
+        new WithdrawDto(
+            Money.ofMajor(50), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+    given(walletService.applyBatch(anyList()))
+        .willAnswer(
+            invocation ->
+                invocation.<List<WalletCommand>>getArgument(0).stream()
+                    .map(
+                        command ->
+                            command instanceof WalletCommand.Deposit
+                                ? WalletCommandResult.success(response)
+                                : WalletCommandResult.failure(
+                                    new CustomConflictException("Wallet is not active!")))
+                    .toList());
+
+    WalletBatchResponseDto result =
+        dispatcher.applyBatch(new WalletBatchDto(List.of(depositDto), List.of(withdrawDto)));
+
+    assertEquals(List.of(response), result.deposits());
+    assertEquals("Wallet is not active!", result.withdraws().get(0).message());
+  }
+
+  @Test
+  void approve_WhenSharded_ShouldRouteByOwningWallet() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            2,
+            16,
+            8,
+            0);
+    given(transactionRepository.findWalletIdsById("transaction-123"))
+        .willReturn(List.of("wallet-123"));
+    given(walletService.applyBatch(anyList()))
+        .willReturn(List.of(WalletCommandResult.success(response)));
+
+    TransactionResponseDto result =
+        dispatcher.approve("transaction-123", TransactionStatus.APPROVED);
+
+    assertEquals(response, result);
+    then(transactionRepository).should().findWalletIdsById("transaction-123");
+  }
+
+  @Test
+  void approve_WhenShardedAndTransactionIsTransferLeg_ShouldBypassShards() {
+
+    dispatcher =
+        new WalletCommandDispatcher(
+            walletService,
+            transactionRepository,
+            walletJournal,
+            ConcurrencyMode.SHARDED,
+            2,
+            16,
+            8,
+            0);
+    given(transactionRepository.findWalletIdsById("transaction-123"))
+        .willReturn(List.of("wallet-123", "wallet-456"));
+    given(walletService.approve("transaction-123", TransactionStatus.APPROVED))
+        .willReturn(response);
+
+    TransactionResponseDto result =
+        dispatcher.approve("transaction-123", TransactionStatus.APPROVED);
+
+    assertEquals(response, result);
+    then(walletService).should(never()).applyBatch(anyList());
+  }
+}
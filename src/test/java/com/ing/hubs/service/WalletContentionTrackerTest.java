@@ -0,0 +1,161 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WalletContentionTrackerTest {
+
+  private static final long HALF_LIFE_MILLIS = 1000;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicLong clock = new AtomicLong();
+  private WalletContentionTracker walletContentionTracker;
+
+  @BeforeEach
+  void setUp() {
+
+    walletContentionTracker =
+        new WalletContentionTracker(meterRegistry, HALF_LIFE_MILLIS, 3, 4, 1, 2, clock::get);
+  }
+
+  @Test
+  void recordConflict_AboveThreshold_ShouldMarkWalletHot() {
+
+    walletContentionTracker.recordConflict("wallet-123");
+    walletContentionTracker.recordConflict("wallet-123");
+
+    assertFalse(walletContentionTracker.isHot("wallet-123"));
+
+    walletContentionTracker.recordConflict("wallet-123");
+
+    assertTrue(walletContentionTracker.isHot("wallet-123"));
+    assertTrue(walletContentionTracker.hasHotWallets());
+    assertFalse(walletContentionTracker.isHot("wallet-456"));
+    assertEquals(
+        List.of("wallet-123"),
+        walletContentionTracker.hotWallets(List.of("wallet-456", "wallet-123", "wallet-123")));
+    assertEquals(1, meterRegistry.get("wallet.contention.escalations").counter().count());
+  }
+
+  @Test
+  void conflictScore_ShouldHalveEveryHalfLife() {
+
+    for (int i = 0; i < 4; i++) {
+      walletContentionTracker.recordConflict("wallet-123");
+    }
+
+    advance(HALF_LIFE_MILLIS);
+
+    assertEquals(2, walletContentionTracker.conflictScore("wallet-123"), 1e-9);
+    assertFalse(walletContentionTracker.isHot("wallet-123"));
+    assertEquals(
+        2,
+        meterRegistry
+            .get("wallet.contention.conflict_score")
+            .tag("wallet", "wallet-123")
+            .gauge()
+            .value(),
+        1e-9);
+  }
+
+  @Test
+  void sweep_ShouldDropCooledDownWalletsAndTheirGauges() {
+
+    walletContentionTracker.recordConflict("wallet-123");
+    walletContentionTracker.recordConflict("wallet-456");
+    advance(10 * HALF_LIFE_MILLIS);
+    walletContentionTracker.recordConflict("wallet-456");
+
+    walletContentionTracker.sweep();
+
+    assertEquals(0, walletContentionTracker.conflictScore("wallet-123"));
+    assertNull(
+        meterRegistry.find("wallet.contention.conflict_score").tag("wallet", "wallet-123").gauge());
+    assertNotNull(
+        meterRegistry.find("wallet.contention.conflict_score").tag("wallet", "wallet-456").gauge());
+  }
+
+  @Test
+  void retryInterceptor_ShouldRetryAndRecordWalletConflicts() {
+
+    AtomicInteger calls = new AtomicInteger();
+    WalletWrite write =
+        proxy(
+            () -> {
+              if (calls.incrementAndGet() < 3) {
+
+                throw new ObjectOptimisticLockingFailureException(Wallet.class, "wallet-123");
+              }
+
+              return "done";
+            });
+
+    assertEquals("done", write.run());
+    assertEquals(3, calls.get());
+    assertEquals(2, walletContentionTracker.conflictScore("wallet-123"), 1e-9);
+    assertEquals(2, meterRegistry.get("wallet.contention.conflicts").counter().count());
+  }
+
+  @Test
+  void retryInterceptor_WhenAttemptsRunOut_ShouldRethrow() {
+
+    AtomicInteger calls = new AtomicInteger();
+    WalletWrite write =
+        proxy(
+            () -> {
+              calls.incrementAndGet();
+
+              throw new ObjectOptimisticLockingFailureException(Transaction.class, "tx-123");
+            });
+
+    assertThrows(ObjectOptimisticLockingFailureException.class, write::run);
+    assertEquals(4, calls.get());
+    assertFalse(walletContentionTracker.hasHotWallets());
+    assertEquals(1, meterRegistry.get("wallet.contention.retries_exhausted").counter().count());
+  }
+
+  @Test
+  void constructor_WithInvalidSettings_ShouldThrowException() {
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WalletContentionTracker(meterRegistry, 0, 3, 4, 1, 2, clock::get));
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new WalletContentionTracker(meterRegistry, HALF_LIFE_MILLIS, 3, 4, 10, 2, clock::get));
+  }
+
+  private void advance(long millis) {
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private WalletWrite proxy(WalletWrite target) {
+
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addInterface(WalletWrite.class);
+    proxyFactory.addAdvice(walletContentionTracker.retryInterceptor());
+
+    return (WalletWrite) proxyFactory.getProxy();
+  }
+
+  interface WalletWrite {
+
+    String run();
+  }
+}
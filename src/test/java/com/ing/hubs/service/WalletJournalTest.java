@@ -0,0 +1,314 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransactionResponseDto;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletJournalCheckpoint;
+import com.ing.hubs.entity.WalletJournalDeadLetter;
+import com.ing.hubs.exception.CustomUnauthorizedException;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.TransactionRepository;
+import com.ing.hubs.repository.WalletJournalCheckpointRepository;
+import com.ing.hubs.repository.WalletJournalDeadLetterRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletJournalTest {
+
+  private static final int HEADER_SIZE = Long.BYTES;
+
+  @Mock private TransactionRepository transactionRepository;
+
+  @Mock private WalletRepository walletRepository;
+
+  @Mock private WalletJournalCheckpointRepository checkpointRepository;
+
+  @Mock private WalletJournalDeadLetterRepository deadLetterRepository;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  @Mock private WalletLedger walletLedger;
+
+  @Mock private WalletSubBalances walletSubBalances;
+
+  @Mock private WalletReadCache walletReadCache;
+
+  @Mock private CustomerPortfolios customerPortfolios;
+
+  @TempDir private Path directory;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private WalletJournalCheckpoint checkpoint;
+  private WalletJournal walletJournal;
+
+  @BeforeEach
+  void setUp() {
+
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new UsernamePasswordAuthenticationToken(
+                "12345678901", null, List.of(new SimpleGrantedAuthority("ROLE_CUSTOMER"))));
+
+    given(transactionTemplate.execute(any()))
+        .willAnswer(
+            invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    willAnswer(
+            invocation -> {
+              invocation
+                  .<Consumer<org.springframework.transaction.TransactionStatus>>getArgument(0)
+                  .accept(null);
+              return null;
+            })
+        .given(transactionTemplate)
+        .executeWithoutResult(any());
+    // the checkpoint row lives in this field, so a second journal instance sees what was committed
+    given(checkpointRepository.findById(WalletJournal.CHECKPOINT_ID))
+        .willAnswer(invocation -> Optional.ofNullable(checkpoint));
+    given(checkpointRepository.save(any()))
+        .willAnswer(invocation -> checkpoint = invocation.getArgument(0));
+    given(checkpointRepository.updateAppliedOffset(anyString(), anyLong(), anyLong()))
+        .willAnswer(
+            invocation -> {
+              checkpoint =
+                  new WalletJournalCheckpoint(
+                      invocation.getArgument(0),
+                      invocation.getArgument(1),
+                      invocation.getArgument(2));
+              return 1;
+            });
+    given(walletRepository.findCustomerTcknById("wallet-123"))
+        .willReturn(Optional.of("12345678901"));
+    given(walletRepository.findCustomerTcknById("wallet-456"))
+        .willReturn(Optional.of("10987654321"));
+    given(walletRepository.getReferenceById(anyString()))
+        .willAnswer(invocation -> Wallet.builder().id(invocation.getArgument(0)).build());
+    given(walletRepository.adjustBalances(anyString(), any(), any())).willReturn(1);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+
+    SecurityContextHolder.clearContext();
+
+    if (walletJournal != null) {
+      walletJournal.close();
+    }
+  }
+
+  @Test
+  void append_ShouldBeAppliedOnceByFlush() throws IOException {
+
+    walletJournal = openJournal(4096);
+
+    TransactionResponseDto small = walletJournal.append(deposit("wallet-123", 500));
+    TransactionResponseDto large = walletJournal.append(deposit("wallet-123", 2000));
+
+    assertEquals(TransactionStatus.APPROVED, small.status());
+    assertEquals(TransactionStatus.PENDING, large.status());
+    then(walletRepository).should(never()).adjustBalances(anyString(), any(), any());
+
+    walletJournal.flush();
+    walletJournal.flush();
+
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(2500), Money.ofMajor(500));
+    then(walletRepository).should(times(1)).adjustBalances(anyString(), any(), any());
+    then(customerPortfolios)
+        .should()
+        .adjust("wallet-123", Money.ofMajor(2500), Money.ofMajor(500), 1);
+    then(transactionRepository).should().saveAll(anyList());
+  }
+
+  @Test
+  void open_ShouldReplayEntriesPastTheCheckpoint() throws IOException {
+
+    walletJournal = openJournal(4096);
+    walletJournal.append(deposit("wallet-123", 100));
+    walletJournal.flush();
+    walletJournal.append(deposit("wallet-123", 200));
+    // crash: the second entry is on disk but was never applied
+    walletJournal = null;
+
+    walletJournal = openJournal(4096);
+
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(100), Money.ofMajor(100));
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(200), Money.ofMajor(200));
+    then(transactionRepository).should(times(2)).saveAll(anyList());
+  }
+
+  @Test
+  void open_ShouldIgnoreTornTail() throws IOException {
+
+    walletJournal = openJournal(4096);
+    walletJournal.append(deposit("wallet-123", 100));
+    walletJournal.append(deposit("wallet-123", 200));
+    walletJournal = null;
+
+    // flip a byte in the payload of the second entry
+    try (FileChannel channel =
+        FileChannel.open(directory.resolve("wallet.journal"), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {42}), frameSize() + 20);
+    }
+
+    walletJournal = openJournal(4096);
+
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(100), Money.ofMajor(100));
+    then(walletRepository)
+        .should(never())
+        .adjustBalances("wallet-123", Money.ofMajor(200), Money.ofMajor(200));
+  }
+
+  @Test
+  void append_WhenFileIsFull_ShouldStartNewGenerationOnceApplied() throws IOException {
+
+    walletJournal = openJournal(HEADER_SIZE + 2 * frameSize());
+    long generation = checkpoint.getGeneration();
+
+    for (int i = 1; i <= 5; i++) {
+      walletJournal.append(deposit("wallet-123", i));
+    }
+
+    walletJournal.flush();
+
+    ArgumentCaptor<Money> balanceDeltas = ArgumentCaptor.forClass(Money.class);
+    then(walletRepository)
+        .should(atLeastOnce())
+        .adjustBalances(eq("wallet-123"), balanceDeltas.capture(), any());
+    assertEquals(
+        Money.ofMajor(15), balanceDeltas.getAllValues().stream().reduce(Money.ZERO, Money::plus));
+    assertEquals(generation + 2, checkpoint.getGeneration());
+  }
+
+  @Test
+  void flush_WhenAnEntryCannotBeApplied_ShouldDeadLetterItAndApplyTheRest() throws IOException {
+
+    given(walletRepository.findCustomerTcknById("wallet-789"))
+        .willReturn(Optional.of("12345678901"));
+    given(walletRepository.adjustBalances(eq("wallet-789"), any(), any())).willReturn(0);
+    walletJournal = openJournal(4096);
+
+    walletJournal.append(deposit("wallet-123", 100));
+    TransactionResponseDto bad = walletJournal.append(deposit("wallet-789", 300));
+    walletJournal.append(deposit("wallet-123", 200));
+    walletJournal.flush();
+
+    ArgumentCaptor<WalletJournalDeadLetter> deadLetter =
+        ArgumentCaptor.forClass(WalletJournalDeadLetter.class);
+    then(deadLetterRepository).should().save(deadLetter.capture());
+    assertEquals(bad.transactionId(), deadLetter.getValue().getId());
+    assertEquals("wallet-789", deadLetter.getValue().getWalletId());
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(100), Money.ofMajor(100));
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(200), Money.ofMajor(200));
+    assertEquals(HEADER_SIZE + 3 * frameSize(), checkpoint.getAppliedOffset());
+    assertEquals(1, meterRegistry.get("wallet.journal.dead_letters").counter().count());
+
+    walletJournal.append(deposit("wallet-123", 400));
+    walletJournal.flush();
+
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(400), Money.ofMajor(400));
+  }
+
+  @Test
+  void append_WhenDepositingToOtherCustomersWallet_ShouldThrowException() throws IOException {
+
+    walletJournal = openJournal(4096);
+
+    assertThrows(
+        CustomUnauthorizedException.class, () -> walletJournal.append(deposit("wallet-456", 100)));
+    then(transactionRepository).shouldHaveNoInteractions();
+  }
+
+  private WalletJournal openJournal(int capacity) throws IOException {
+
+    WalletJournal journal =
+        new WalletJournal(
+            transactionRepository,
+            walletRepository,
+            checkpointRepository,
+            deadLetterRepository,
+            transactionTemplate,
+            walletLedger,
+            walletSubBalances,
+            walletReadCache,
+            customerPortfolios,
+            meterRegistry,
+            true,
+            directory.resolve("wallet.journal"),
+            capacity,
+            100);
+    journal.open();
+
+    return journal;
+  }
+
+  /** Size of one journal frame for the deposits used here, which all encode to the same length. */
+  private static int frameSize() {
+
+    // length + crc, then generation, three UTF strings and the fixed-size fields
+    return 2 * Integer.BYTES
+        + Long.BYTES
+        + (2 + 36)
+        + (2 + "wallet-123".length())
+        + Long.BYTES
+        + 2
+        + (2 + "Bank Account 123".length());
+  }
+
+  private static DepositDto deposit(String walletId, long amount) {
+
+    return new DepositDto(
+        Money.ofMajor(amount), walletId, OppositePartyType.IBAN, "Bank Account 123");
+  }
+}
@@ -0,0 +1,97 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.dto.CreateWalletDto;
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.WalletDto;
+import com.ing.hubs.dto.WithdrawDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.repository.CustomerRepository;
+
+@SpringBootTest(
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:wallet-ledger-batch;DB_CLOSE_DELAY=-1",
+      "spring.jpa.show-sql=false",
+      "wallet.ledger.enabled=true"
+    })
+class WalletLedgerBatchTest {
+
+  @Autowired private WalletService walletService;
+  @Autowired private CustomerRepository customerRepository;
+
+  private Customer customer;
+  private String walletId;
+
+  @BeforeEach
+  void setUp() {
+
+    customer =
+        customerRepository.save(
+            Customer.builder()
+                .id(UUID.randomUUID().toString())
+                .name("John")
+                .surname("Doe")
+                .tckn(UUID.randomUUID().toString().substring(0, 11))
+                .password("customerPass123")
+                .build());
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new TestingAuthenticationToken(customer.getTckn(), null, "ROLE_CUSTOMER"));
+    walletId =
+        walletService
+            .createWallet(new CreateWalletDto(customer.getId(), "Wallet", Currency.TRY, true, true))
+            .getId();
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void applyBatch_WithSeveralCommandsOnOneWallet_ShouldApplyThemAll() {
+
+    SecurityContext context = SecurityContextHolder.getContext();
+
+    List<WalletCommandResult> results =
+        walletService.applyBatch(
+            List.of(
+                new WalletCommand.Deposit(deposit(100), context),
+                new WalletCommand.Withdraw(
+                    new WithdrawDto(Money.ofMajor(30), walletId, OppositePartyType.IBAN, "TR1"),
+                    context),
+                new WalletCommand.Deposit(deposit(50), context),
+                new WalletCommand.Withdraw(
+                    new WithdrawDto(Money.ofMajor(20), walletId, OppositePartyType.IBAN, "TR1"),
+                    context)));
+
+    assertTrue(results.stream().allMatch(WalletCommandResult::isSuccess));
+
+    WalletDto wallet = walletService.listWallets(customer.getId()).wallets().getFirst();
+
+    assertEquals(Money.ofMajor(100), wallet.balance());
+    assertEquals(Money.ofMajor(100), wallet.usableBalance());
+  }
+
+  private DepositDto deposit(long amount) {
+
+    return new DepositDto(Money.ofMajor(amount), walletId, OppositePartyType.IBAN, "TR1");
+  }
+}
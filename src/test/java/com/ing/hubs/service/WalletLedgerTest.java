@@ -0,0 +1,149 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.*;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Transaction;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletPosting;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.model.TransactionType;
+import com.ing.hubs.repository.WalletPostingRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+@ExtendWith(MockitoExtension.class)
+class WalletLedgerTest {
+
+  @Mock private WalletPostingRepository walletPostingRepository;
+
+  @Mock private WalletRepository walletRepository;
+
+  @Mock private EntityManager entityManager;
+
+  @Mock private TransactionTemplate transactionTemplate;
+
+  private WalletLedger walletLedger;
+  private Wallet wallet;
+
+  @BeforeEach
+  void setUp() {
+
+    walletLedger =
+        new WalletLedger(
+            walletPostingRepository,
+            walletRepository,
+            entityManager,
+            transactionTemplate,
+            true,
+            100);
+
+    wallet =
+        Wallet.builder()
+            .id("wallet-123")
+            .version(3L)
+            .walletName("My Wallet")
+            .currency(Currency.USD)
+            .activeForShopping(true)
+            .activeForWithdraw(true)
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(800))
+            .build();
+  }
+
+  @Test
+  void open_ShouldDetachWalletAndLoadCurrentBalances() {
+
+    given(walletPostingRepository.findCurrentBalances(List.of("wallet-123")))
+        .willReturn(
+            List.of(new WalletBalanceDto("wallet-123", Money.ofMajor(1500), Money.ofMajor(1300))));
+
+    WalletLedger.Checkpoint checkpoint = walletLedger.open(wallet);
+
+    then(entityManager).should().detach(wallet);
+    assertEquals(3L, checkpoint.version());
+    assertEquals(Money.ofMajor(1500), wallet.getBalance());
+    assertEquals(Money.ofMajor(1300), checkpoint.usableBalance());
+  }
+
+  @Test
+  void append_WhenNewDeposit_ShouldOnlyInsertPosting() {
+
+    WalletLedger.Checkpoint checkpoint =
+        new WalletLedger.Checkpoint(3L, Money.ofMajor(1000), Money.ofMajor(800));
+    wallet.increaseBalance(Money.ofMajor(500));
+    wallet.increaseUsableBalance(Money.ofMajor(500));
+
+    walletLedger.append(wallet, checkpoint, transaction(TransactionType.DEPOSIT));
+
+    ArgumentCaptor<WalletPosting> posting = ArgumentCaptor.forClass(WalletPosting.class);
+    then(walletPostingRepository).should().save(posting.capture());
+    then(walletRepository).should(never()).incrementVersion(anyString(), anyLong());
+    assertEquals(3L, wallet.getVersion());
+    assertEquals(Money.ofMajor(500), posting.getValue().getBalanceDelta());
+    assertEquals(Money.ofMajor(500), posting.getValue().getUsableBalanceDelta());
+  }
+
+  @Test
+  void append_WhenWithdraw_ShouldBumpWalletVersion() {
+
+    WalletLedger.Checkpoint checkpoint =
+        new WalletLedger.Checkpoint(3L, Money.ofMajor(1000), Money.ofMajor(800));
+    wallet.decreaseUsableBalance(Money.ofMajor(200));
+    wallet.decreaseBalance(Money.ofMajor(200));
+    given(walletRepository.incrementVersion("wallet-123", 3L)).willReturn(1);
+
+    walletLedger.append(wallet, checkpoint, transaction(TransactionType.WITHDRAW));
+
+    then(walletRepository).should().incrementVersion("wallet-123", 3L);
+    then(walletPostingRepository).should().save(any(WalletPosting.class));
+    assertEquals(4L, wallet.getVersion());
+  }
+
+  @Test
+  void append_WhenVersionChangedConcurrently_ShouldThrowOptimisticLockingFailure() {
+
+    WalletLedger.Checkpoint checkpoint =
+        new WalletLedger.Checkpoint(3L, Money.ofMajor(1000), Money.ofMajor(800));
+    wallet.decreaseUsableBalance(Money.ofMajor(200));
+    given(walletRepository.incrementVersion("wallet-123", 3L)).willReturn(0);
+
+    assertThrows(
+        ObjectOptimisticLockingFailureException.class,
+        () -> walletLedger.append(wallet, checkpoint, transaction(TransactionType.WITHDRAW)));
+
+    then(walletPostingRepository).should(never()).save(any(WalletPosting.class));
+  }
+
+  private Transaction transaction(TransactionType type) {
+
+    return Transaction.builder()
+        .id("transaction-123")
+        .amount(Money.ofMajor(200))
+        .type(type)
+        .oppositePartyType(OppositePartyType.IBAN)
+        .oppositeParty("Bank Account 123")
+        .status(TransactionStatus.APPROVED)
+        .wallet(wallet)
+        .build();
+  }
+}
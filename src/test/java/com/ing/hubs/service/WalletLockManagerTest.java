@@ -0,0 +1,102 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ing.hubs.exception.CustomConflictException;
+import com.ing.hubs.model.ConcurrencyMode;
+
+class WalletLockManagerTest {
+
+  @AfterEach
+  void tearDown() {
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void lock_WhenOptimisticMode_ShouldDoNothing() {
+
+    WalletLockManager lockManager = new WalletLockManager(ConcurrencyMode.OPTIMISTIC, 4, 100);
+
+    lockManager.lock("wallet-123");
+
+    assertFalse(lockManager.isEnabled());
+    assertFalse(lockManager.stripeFor("wallet-123").isLocked());
+  }
+
+  @Test
+  void lock_WhenStripedMode_ShouldHoldLockUntilTransactionCompletes() {
+
+    WalletLockManager lockManager = new WalletLockManager(ConcurrencyMode.STRIPED_LOCK, 4, 100);
+    TransactionSynchronizationManager.initSynchronization();
+
+    lockManager.lock("wallet-123");
+
+    ReentrantLock lock = lockManager.stripeFor("wallet-123");
+    assertTrue(lock.isHeldByCurrentThread());
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+    assertFalse(lock.isLocked());
+  }
+
+  @Test
+  void lock_WhenStripeHeldByAnotherWriter_ShouldThrowConflictAfterTimeout() {
+
+    WalletLockManager lockManager = new WalletLockManager(ConcurrencyMode.STRIPED_LOCK, 4, 50);
+    TransactionSynchronizationManager.initSynchronization();
+    lockManager.lock("wallet-123");
+
+    CompletableFuture<Void> otherWriter =
+        CompletableFuture.runAsync(
+            () -> {
+              TransactionSynchronizationManager.initSynchronization();
+              try {
+                lockManager.lock("wallet-123");
+              } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+              }
+            });
+
+    Exception exception = assertThrows(Exception.class, otherWriter::join);
+    assertInstanceOf(CustomConflictException.class, exception.getCause());
+  }
+
+  @Test
+  void lockAll_WhenStripedMode_ShouldLockEachStripeOnce() {
+
+    WalletLockManager lockManager = new WalletLockManager(ConcurrencyMode.STRIPED_LOCK, 4, 100);
+    TransactionSynchronizationManager.initSynchronization();
+
+    lockManager.lockAll(List.of("wallet-123", "wallet-456", "wallet-123"));
+
+    assertEquals(1, lockManager.stripeFor("wallet-123").getHoldCount());
+    assertTrue(lockManager.stripeFor("wallet-456").isHeldByCurrentThread());
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+    assertFalse(lockManager.stripeFor("wallet-123").isLocked());
+    assertFalse(lockManager.stripeFor("wallet-456").isLocked());
+  }
+
+  @Test
+  void lock_WhenNoTransaction_ShouldThrowException() {
+
+    WalletLockManager lockManager = new WalletLockManager(ConcurrencyMode.STRIPED_LOCK, 4, 100);
+
+    assertThrows(IllegalStateException.class, () -> lockManager.lock("wallet-123"));
+  }
+}
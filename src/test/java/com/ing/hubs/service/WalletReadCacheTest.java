@@ -0,0 +1,166 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.ing.hubs.dto.WalletDto;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class WalletReadCacheTest {
+
+  private static final String TCKN = "12345678901";
+  private static final String VERSION = "1.1";
+
+  private SimpleMeterRegistry meterRegistry;
+  private WalletReadCache walletReadCache;
+
+  @BeforeEach
+  void setUp() {
+
+    meterRegistry = new SimpleMeterRegistry();
+    walletReadCache = new WalletReadCache(meterRegistry, true, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void get_AfterPut_ShouldServeTheWalletsOnlyToTheirOwnerAndAdmins() {
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 0, 100)), walletReadCache.begin());
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION))
+        .contains(List.of(wallet("wallet-1", 0, 100)));
+    assertThat(walletReadCache.get("customer-1", null, VERSION))
+        .hasValueSatisfying(wallets -> assertThat(wallets).hasSize(1));
+    assertThat(walletReadCache.get("customer-1", "10987654321", VERSION)).isEmpty();
+    assertThat(walletReadCache.get("customer-2", null, VERSION)).isEmpty();
+    assertThat(requests("hit")).isEqualTo(2);
+    assertThat(requests("miss")).isEqualTo(2);
+  }
+
+  @Test
+  void get_AtAnotherListingVersion_ShouldMiss() {
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 0, 100)), walletReadCache.begin());
+
+    // written elsewhere since, e.g. through another instance
+    assertThat(walletReadCache.get("customer-1", TCKN, "2.2")).isEmpty();
+    assertThat(requests("miss")).isEqualTo(1);
+  }
+
+  @Test
+  void evictAfterCommit_ShouldOnlyDropTheWalletOnceTheTransactionCommits() {
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 0, 100)), walletReadCache.begin());
+    TransactionSynchronizationManager.initSynchronization();
+
+    walletReadCache.evictAfterCommit(List.of("wallet-1"));
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION)).isPresent();
+
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION)).isEmpty();
+  }
+
+  @Test
+  void put_OfRowsReadBeforeAnEviction_ShouldNotStoreThem() {
+
+    long begin = walletReadCache.begin();
+    walletReadCache.evictAfterCommit(List.of("wallet-1"));
+
+    walletReadCache.put("customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 0, 100)), begin);
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION)).isEmpty();
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 1, 150)), walletReadCache.begin());
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION))
+        .contains(List.of(wallet("wallet-1", 1, 150)));
+  }
+
+  @Test
+  void put_WithOlderVersion_ShouldKeepTheNewerWallet() {
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 3, 300)), walletReadCache.begin());
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 2, 200)), walletReadCache.begin());
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION))
+        .contains(List.of(wallet("wallet-1", 3, 300)));
+  }
+
+  @Test
+  void put_BeyondMaxSize_ShouldEvictTheLeastRecentlyUsedWallet() {
+
+    walletReadCache.put(
+        "customer-1",
+        TCKN,
+        VERSION,
+        List.of(wallet("wallet-1", 0, 100), wallet("wallet-2", 0, 100)),
+        walletReadCache.begin());
+    walletReadCache.put(
+        "customer-2",
+        "10987654321",
+        VERSION,
+        List.of(wallet("wallet-3", 0, 100)),
+        walletReadCache.begin());
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION)).isEmpty();
+    assertThat(walletReadCache.get("customer-2", "10987654321", VERSION))
+        .hasValueSatisfying(wallets -> assertThat(wallets).hasSize(1));
+    assertThat(meterRegistry.get("wallet.read_cache.evictions").counter().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("wallet.read_cache.size").gauge().value()).isEqualTo(2);
+  }
+
+  @Test
+  void evictCustomerAfterCommit_ShouldForgetTheCustomersWallets() {
+
+    walletReadCache.put(
+        "customer-1", TCKN, VERSION, List.of(wallet("wallet-1", 0, 100)), walletReadCache.begin());
+
+    walletReadCache.evictCustomerAfterCommit("customer-1");
+
+    assertThat(walletReadCache.get("customer-1", TCKN, VERSION)).isEmpty();
+  }
+
+  private double requests(String result) {
+
+    return meterRegistry.get("wallet.read_cache.requests").tag("result", result).counter().count();
+  }
+
+  private static WalletDto wallet(String id, long version, long balance) {
+
+    return new WalletDto(
+        id,
+        version,
+        "Main Wallet",
+        Currency.TRY,
+        true,
+        true,
+        Money.ofMajor(balance),
+        Money.ofMajor(balance));
+  }
+}
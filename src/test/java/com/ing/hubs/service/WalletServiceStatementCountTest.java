@@ -0,0 +1,247 @@
+package com.ing.hubs.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.ing.hubs.dto.CreateAdminUserDto;
+import com.ing.hubs.dto.CreateCustomerDto;
+import com.ing.hubs.dto.CreateWalletDto;
+import com.ing.hubs.dto.DepositDto;
+import com.ing.hubs.dto.TransferDto;
+import com.ing.hubs.dto.WithdrawDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.model.OppositePartyType;
+import com.ing.hubs.model.TransactionStatus;
+import com.ing.hubs.repository.CustomerRepository;
+import com.ing.hubs.repository.WalletRepository;
+
+/**
+ * Pins the number of SQL statements each {@link WalletService} method costs, so a lazy association
+ * touched in a loop or a dropped fetch plan shows up as a failing count instead of as a slow
+ * endpoint. Counts cover the whole call, including the commit.
+ */
+@SpringBootTest(
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:wallet-statements;DB_CLOSE_DELAY=-1",
+      "spring.jpa.show-sql=false",
+      "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+          + "com.ing.hubs.service.SqlStatementCounter"
+    })
+class WalletServiceStatementCountTest {
+
+  @Autowired private WalletService walletService;
+  @Autowired private CustomerRepository customerRepository;
+  @Autowired private WalletRepository walletRepository;
+  @Autowired private CustomerPortfolios customerPortfolios;
+
+  private Customer customer;
+  private Wallet wallet;
+  private Wallet otherWallet;
+
+  @BeforeEach
+  void setUp() {
+
+    customer =
+        customerRepository.save(
+            Customer.builder()
+                .id(UUID.randomUUID().toString())
+                .name("John")
+                .surname("Doe")
+                .tckn(UUID.randomUUID().toString().substring(0, 11))
+                .password("customerPass123")
+                .build());
+    wallet = walletRepository.save(wallet(customer));
+    otherWallet = walletRepository.save(wallet(customer));
+    customerPortfolios.reconcile(customer.getId());
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new TestingAuthenticationToken(customer.getTckn(), null, "ROLE_CUSTOMER"));
+  }
+
+  @AfterEach
+  void tearDown() {
+
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void createWallet() {
+
+    assertStatements(
+        3,
+        () ->
+            walletService.createWallet(
+                new CreateWalletDto(customer.getId(), "Savings", Currency.TRY, true, true)));
+  }
+
+  @Test
+  void listWallets() {
+
+    assertStatements(2, () -> walletService.listWallets(customer.getId()));
+    // a cache hit still reads the listing's version
+    assertStatements(1, () -> walletService.listWallets(customer.getId()));
+  }
+
+  @Test
+  void listTransactions() {
+
+    deposit(100);
+
+    assertStatements(
+        1, () -> walletService.listTransactions(wallet.getId(), null, 50, Sort.Direction.ASC));
+  }
+
+  @Test
+  void makeDeposit() {
+
+    assertStatements(4, () -> deposit(100));
+  }
+
+  @Test
+  void makeWithdraw() {
+
+    deposit(100);
+
+    assertStatements(
+        4,
+        () ->
+            walletService.makeWithdraw(
+                new WithdrawDto(Money.ofMajor(40), wallet.getId(), OppositePartyType.IBAN, "TR1")));
+  }
+
+  @Test
+  void makeTransfer() {
+
+    deposit(100);
+
+    assertStatements(
+        6,
+        () ->
+            walletService.makeTransfer(
+                new TransferDto(Money.ofMajor(40), wallet.getId(), otherWallet.getId())));
+  }
+
+  @Test
+  void approve() {
+
+    String transactionId = deposit(5000);
+    asAdmin();
+
+    assertStatements(5, () -> walletService.approve(transactionId, TransactionStatus.APPROVED));
+  }
+
+  @Test
+  void approveTransfer() {
+
+    deposit(1000);
+    deposit(1000);
+    String transactionId =
+        walletService
+            .makeTransfer(new TransferDto(Money.ofMajor(1500), wallet.getId(), otherWallet.getId()))
+            .transactionId();
+    asAdmin();
+
+    assertStatements(9, () -> walletService.approve(transactionId, TransactionStatus.APPROVED));
+  }
+
+  @Test
+  void applyBatch() {
+
+    SecurityContext securityContext = SecurityContextHolder.getContext();
+
+    assertStatements(
+        7,
+        () ->
+            walletService.applyBatch(
+                List.of(
+                    new WalletCommand.Deposit(depositDto(wallet, 100), securityContext),
+                    new WalletCommand.Deposit(depositDto(wallet, 200), securityContext),
+                    new WalletCommand.Deposit(depositDto(otherWallet, 300), securityContext))));
+  }
+
+  @Test
+  void setSubBalances() {
+
+    asAdmin();
+
+    assertStatements(9, () -> walletService.setSubBalances(wallet.getId(), 4));
+  }
+
+  @Test
+  void createCustomer() {
+
+    asAdmin();
+
+    assertStatements(
+        2,
+        () ->
+            walletService.createCustomer(
+                new CreateCustomerDto(
+                    "Jane", "Doe", UUID.randomUUID().toString().substring(0, 11), "secret123")));
+  }
+
+  @Test
+  void createAdminUser() {
+
+    asAdmin();
+
+    assertStatements(
+        2,
+        () ->
+            walletService.createAdminUser(
+                new CreateAdminUserDto(UUID.randomUUID().toString(), "secret123")));
+  }
+
+  private void assertStatements(int expected, Supplier<?> call) {
+
+    List<String> statements = SqlStatementCounter.record(call);
+
+    assertEquals(expected, statements.size(), () -> String.join("\n", statements));
+  }
+
+  private String deposit(long amount) {
+
+    return walletService.makeDeposit(depositDto(wallet, amount)).transactionId();
+  }
+
+  private static DepositDto depositDto(Wallet wallet, long amount) {
+
+    return new DepositDto(Money.ofMajor(amount), wallet.getId(), OppositePartyType.IBAN, "TR1");
+  }
+
+  private static void asAdmin() {
+
+    SecurityContextHolder.getContext()
+        .setAuthentication(new TestingAuthenticationToken("admin", null, "ROLE_ADMIN"));
+  }
+
+  private static Wallet wallet(Customer customer) {
+
+    return Wallet.builder()
+        .id(UUID.randomUUID().toString())
+        .customer(customer)
+        .walletName("Main Wallet")
+        .currency(Currency.TRY)
+        .activeForShopping(true)
+        .activeForWithdraw(true)
+        .balance(Money.ZERO)
+        .usableBalance(Money.ZERO)
+        .build();
+  }
+}
@@ -4,7 +4,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.*;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -12,11 +12,15 @@ import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.security.core.Authentication;
@@ -29,6 +33,7 @@ import com.ing.hubs.dto.*;
 import com.ing.hubs.entity.*;
 import com.ing.hubs.exception.*;
 import com.ing.hubs.model.*;
+import com.ing.hubs.model.Money;
 import com.ing.hubs.repository.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,6 +41,8 @@ import com.ing.hubs.repository.*;
 @EnableRetry
 class WalletServiceTest {
 
+  private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 3, 1, 12, 0);
+
   @Mock private WalletRepository walletRepository;
 
   @Mock private TransactionRepository transactionRepository;
@@ -46,6 +53,22 @@ class WalletServiceTest {
 
   @Mock private PasswordEncoder passwordEncoder;
 
+  @Mock private WalletLockManager walletLockManager;
+
+  @Mock private WalletLedger walletLedger;
+
+  @Mock private WalletContentionTracker walletContentionTracker;
+
+  @Mock private WalletSubBalances walletSubBalances;
+
+  @Mock private WalletReadCache walletReadCache;
+
+  @Mock private CustomerPortfolioRepository customerPortfolioRepository;
+
+  @Mock private CustomerPortfolios customerPortfolios;
+
+  @Mock private IdempotencyStore idempotencyStore;
+
   @Mock private SecurityContext securityContext;
 
   @Mock private Authentication authentication;
@@ -82,14 +105,14 @@ class WalletServiceTest {
             .currency(Currency.USD)
             .activeForShopping(true)
             .activeForWithdraw(true)
-            .balance(BigDecimal.valueOf(1000))
-            .usableBalance(BigDecimal.valueOf(800))
+            .balance(Money.ofMajor(1000))
+            .usableBalance(Money.ofMajor(800))
             .build();
 
     transaction =
         Transaction.builder()
             .id("transaction-123")
-            .amount(BigDecimal.valueOf(500))
+            .amount(Money.ofMajor(500))
             .type(TransactionType.DEPOSIT)
             .oppositePartyType(OppositePartyType.IBAN)
             .oppositeParty("Bank Account 123")
@@ -101,11 +124,11 @@ class WalletServiceTest {
 
     depositDto =
         new DepositDto(
-            BigDecimal.valueOf(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+            Money.ofMajor(500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
 
     withdrawDto =
         new WithdrawDto(
-            BigDecimal.valueOf(200), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+            Money.ofMajor(200), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
 
     createCustomerDto = new CreateCustomerDto("John", "Doe", "12345678901", "password123");
 
@@ -118,7 +141,7 @@ class WalletServiceTest {
   @Test
   void createWallet_WithValidData_ShouldReturnWallet() {
 
-    given(customerRepository.findById("customer-123")).willReturn(Optional.of(customer));
+    given(customerRepository.findForUpdateById("customer-123")).willReturn(Optional.of(customer));
     given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -131,12 +154,13 @@ class WalletServiceTest {
     assertEquals("wallet-123", result.getId());
 
     then(walletRepository).should().save(any(Wallet.class));
+    then(customerPortfolios).should().addWallet(wallet);
   }
 
   @Test
   void createWallet_WhenCustomerNotFound_ShouldThrowException() {
 
-    given(customerRepository.findById("customer-123")).willReturn(Optional.empty());
+    given(customerRepository.findForUpdateById("customer-123")).willReturn(Optional.empty());
 
     assertThrows(
         CustomNotFoundException.class,
@@ -148,7 +172,7 @@ class WalletServiceTest {
   @Test
   void createWallet_WhenCustomerTriesToCreateForOtherCustomer_ShouldThrowException() {
 
-    given(customerRepository.findById("customer-123")).willReturn(Optional.of(customer));
+    given(customerRepository.findForUpdateById("customer-123")).willReturn(Optional.of(customer));
     given(authentication.getName()).willReturn("different-tckn");
     given(authentication.getAuthorities())
         .willAnswer(
@@ -164,25 +188,238 @@ class WalletServiceTest {
   @Test
   void listWallets_WithValidCustomerId_ShouldReturnWallets() {
 
-    given(customerRepository.findById("customer-123")).willReturn(Optional.of(customer));
-    given(walletRepository.findAllByCustomerId("customer-123")).willReturn(List.of(wallet));
+    given(customerRepository.findWalletsVersionById("customer-123", "12345678901"))
+        .willReturn(Optional.of("3.7"));
+    given(walletRepository.findDtosByCustomerId("customer-123", "12345678901"))
+        .willReturn(List.of(walletDto()));
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
         .willAnswer(
             invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
 
+    given(walletReadCache.begin()).willReturn(7L);
+
     ListWalletDto result = walletService.listWallets("customer-123");
 
     assertNotNull(result);
     assertEquals("customer-123", result.customerId());
     assertEquals(1, result.wallets().size());
+    then(customerRepository).should(never()).findTcknById(any());
+    then(walletReadCache)
+        .should()
+        .put("customer-123", "12345678901", "3.7", List.of(walletDto()), 7L);
+  }
+
+  @Test
+  void listWallets_WhenCachedAtTheCurrentVersion_ShouldNotReadTheWallets() {
+
+    given(customerRepository.findWalletsVersionById("customer-123", "12345678901"))
+        .willReturn(Optional.of("3.7"));
+    given(walletReadCache.get("customer-123", "12345678901", "3.7"))
+        .willReturn(Optional.of(List.of(walletDto())));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    ListWalletDto result = walletService.listWallets("customer-123");
+
+    assertEquals(List.of(walletDto()), result.wallets());
+    then(walletRepository).shouldHaveNoInteractions();
+    then(walletReadCache).should(never()).put(any(), any(), any(), any(), anyLong());
+  }
+
+  @Test
+  void listWallets_WithCurrentETag_ShouldNotReadTheWallets() {
+
+    given(customerRepository.findWalletsVersionById("customer-123", "12345678901"))
+        .willReturn(Optional.of("3.7"));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    ConditionalRead<ListWalletDto> result =
+        walletService.listWallets("customer-123", "\"1.1\", W/\"3.7\"");
+
+    assertFalse(result.isModified());
+    assertEquals("\"3.7\"", result.eTag());
+    then(walletRepository).shouldHaveNoInteractions();
+    then(walletReadCache).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void makeWithdraw_WithStaleIfMatch_ShouldThrowPreconditionFailed() {
+
+    given(walletRepository.findTransactionsVersionById("wallet-123", null))
+        .willReturn(Optional.of("4.2"));
+    givenAdmin();
+
+    assertThrows(
+        CustomPreconditionFailedException.class,
+        () ->
+            walletService.makeWithdraw(
+                new WithdrawDto(Money.ofMajor(10), "wallet-123", OppositePartyType.IBAN, "TR1"),
+                "\"4.1\""));
+    then(walletRepository).should().findForUpdateById("wallet-123");
+    then(transactionRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void listWallets_ForOtherCustomer_ShouldThrowUnauthorized() {
+
+    given(walletRepository.findDtosByCustomerId("customer-123", "10987654321"))
+        .willReturn(List.of());
+    given(customerRepository.findTcknById("customer-123")).willReturn(Optional.of("12345678901"));
+    given(authentication.getName()).willReturn("10987654321");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    assertThrows(
+        CustomUnauthorizedException.class, () -> walletService.listWallets("customer-123"));
+  }
+
+  @Test
+  void listWallets_WhenCustomerNotFound_ShouldThrowException() {
+
+    given(walletRepository.findDtosByCustomerId("missing", null)).willReturn(List.of());
+    given(customerRepository.findTcknById("missing")).willReturn(Optional.empty());
+    givenAdmin();
+
+    assertThrows(CustomNotFoundException.class, () -> walletService.listWallets("missing"));
+  }
+
+  @Test
+  void getPortfolio_ShouldSumTheCurrencyTotals() {
+
+    given(customerPortfolioRepository.findTotalsByCustomerId("customer-123", "12345678901"))
+        .willReturn(
+            List.of(
+                new CurrencyTotalDto(Currency.TRY, 2, Money.ofMajor(300), Money.ofMajor(100), 1),
+                new CurrencyTotalDto(Currency.USD, 1, Money.ofMajor(50), Money.ofMajor(50), 2)));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    CustomerPortfolioDto result = walletService.getPortfolio("customer-123");
+
+    assertEquals(3, result.walletCount());
+    assertEquals(3, result.pendingTransactionCount());
+    assertEquals(2, result.currencies().size());
+    then(walletRepository).shouldHaveNoInteractions();
+    then(customerRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void getPortfolio_ForOtherCustomer_ShouldThrowUnauthorized() {
+
+    given(customerPortfolioRepository.findTotalsByCustomerId("customer-123", "10987654321"))
+        .willReturn(List.of());
+    given(customerRepository.findTcknById("customer-123")).willReturn(Optional.of("12345678901"));
+    given(authentication.getName()).willReturn("10987654321");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    assertThrows(
+        CustomUnauthorizedException.class, () -> walletService.getPortfolio("customer-123"));
+  }
+
+  @Test
+  void listTransactions_WithMoreRowsThanLimit_ShouldReturnPageAndNextCursor() {
+
+    TransactionDto first = transactionDto("transaction-123");
+    TransactionDto second = transactionDto("transaction-456");
+    TransactionDto third = transactionDto("transaction-789");
+    given(
+            transactionRepository.findPageByWalletIdBefore(
+                "wallet-123", "12345678901", CREATED_AT, "transaction-999", Limit.of(3)))
+        .willReturn(List.of(third, second, first));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    ListTransactionDto result =
+        walletService.listTransactions(
+            "wallet-123", "2024-03-01T12:00_transaction-999", 2, Sort.Direction.DESC);
+
+    assertEquals(List.of(third, second), result.transactions());
+    assertEquals("2024-03-01T12:00_transaction-456", result.nextCursor());
+    then(walletRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void listTransactions_WithoutCursor_ShouldReadFirstPageWithoutNextCursor() {
+
+    TransactionDto only = transactionDto("transaction-123");
+    given(
+            transactionRepository.findPageByWalletId(
+                "wallet-123", null, WalletService.pageOrder(Sort.Direction.ASC), Limit.of(51)))
+        .willReturn(List.of(only));
+    givenAdmin();
+
+    ListTransactionDto result =
+        walletService.listTransactions("wallet-123", null, 50, Sort.Direction.ASC);
+
+    assertEquals(List.of(only), result.transactions());
+    assertNull(result.nextCursor());
+  }
+
+  @Test
+  void listTransactions_OfOtherCustomersWallet_ShouldThrowUnauthorized() {
+
+    given(
+            transactionRepository.findPageByWalletId(
+                "wallet-123",
+                "10987654321",
+                WalletService.pageOrder(Sort.Direction.ASC),
+                Limit.of(51)))
+        .willReturn(List.of());
+    given(walletRepository.findCustomerTcknById("wallet-123"))
+        .willReturn(Optional.of("12345678901"));
+    given(authentication.getName()).willReturn("10987654321");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    assertThrows(
+        CustomUnauthorizedException.class,
+        () -> walletService.listTransactions("wallet-123", null, 50, Sort.Direction.ASC));
+  }
+
+  @Test
+  void listTransactions_WhenWalletNotFound_ShouldThrowException() {
+
+    given(walletRepository.findCustomerTcknById("missing")).willReturn(Optional.empty());
+    givenAdmin();
+
+    assertThrows(
+        CustomNotFoundException.class,
+        () -> walletService.listTransactions("missing", null, 50, Sort.Direction.ASC));
+  }
+
+  @Test
+  void listTransactions_WithLimitAboveMaximum_ShouldThrowBadRequest() {
+
+    assertThrows(
+        CustomBadRequestException.class,
+        () ->
+            walletService.listTransactions(
+                "wallet-123",
+                null,
+                WalletService.MAX_TRANSACTION_PAGE_SIZE + 1,
+                Sort.Direction.ASC));
+    then(transactionRepository).shouldHaveNoInteractions();
   }
 
   @Test
   void makeDeposit_WithValidData_ShouldCreateTransaction() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -192,7 +429,13 @@ class WalletServiceTest {
     TransactionResponseDto result = walletService.makeDeposit(depositDto);
 
     then(transactionRepository).should().save(any(Transaction.class));
-    then(walletRepository).should().save(any(Wallet.class));
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(500), Money.ofMajor(500));
+    then(walletRepository).should(never()).save(any(Wallet.class));
+    then(walletReadCache).should().evictAfterCommit(List.of("wallet-123"));
+    then(customerPortfolios).should().adjust(wallet, Money.ofMajor(500), Money.ofMajor(500), 0);
+    then(idempotencyStore).should().completeInTransaction(result);
 
     assertNotNull(result);
   }
@@ -200,7 +443,7 @@ class WalletServiceTest {
   @Test
   void makeDeposit_WhenWalletNotFound_ShouldThrowException() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.empty());
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.empty());
 
     assertThrows(
         CustomNotFoundException.class,
@@ -214,10 +457,10 @@ class WalletServiceTest {
 
     DepositDto largeDeposit =
         new DepositDto(
-            BigDecimal.valueOf(1500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+            Money.ofMajor(1500), "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -227,6 +470,9 @@ class WalletServiceTest {
     TransactionResponseDto result = walletService.makeDeposit(largeDeposit);
 
     then(transactionRepository).should().save(any(Transaction.class));
+    then(walletRepository).should().adjustBalances("wallet-123", Money.ofMajor(1500), Money.ZERO);
+    then(customerPortfolios).should().adjust(wallet, Money.ofMajor(1500), Money.ZERO, 1);
+    assertEquals(TransactionStatus.PENDING, result.status());
 
     assertNotNull(result);
   }
@@ -235,9 +481,9 @@ class WalletServiceTest {
   void makeDeposit_WithZeroAmount_ShouldThrowException() {
 
     DepositDto zeroDeposit =
-        new DepositDto(BigDecimal.ZERO, "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
+        new DepositDto(Money.ZERO, "wallet-123", OppositePartyType.IBAN, "Bank Account 123");
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
         .willAnswer(
@@ -253,8 +499,8 @@ class WalletServiceTest {
   @Test
   void makeDeposit_WhenOptimisticLockingFailure_ShouldThrowException() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class)))
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any()))
         .willThrow(ObjectOptimisticLockingFailureException.class);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -271,8 +517,8 @@ class WalletServiceTest {
   @Test
   void makeDeposit_WhenTransactionSaveFails_ShouldRollback() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class)))
         .willThrow(new RuntimeException("Database error"));
     given(authentication.getName()).willReturn("12345678901");
@@ -286,15 +532,122 @@ class WalletServiceTest {
           walletService.makeDeposit(depositDto);
         });
 
-    verify(walletRepository).save(any(Wallet.class));
+    verify(walletRepository).adjustBalances(eq("wallet-123"), any(), any());
     verify(transactionRepository).save(any(Transaction.class));
   }
 
+  @Test
+  void makeDeposit_WithStripedLocking_ShouldLockWalletBeforeLoading() {
+
+    given(walletLockManager.isEnabled()).willReturn(true);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
+    given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    TransactionResponseDto result = walletService.makeDeposit(depositDto);
+
+    InOrder inOrder = inOrder(walletLockManager, walletRepository);
+    inOrder.verify(walletLockManager).lockAll(List.of("wallet-123"));
+    inOrder.verify(walletRepository).findWithCustomerById("wallet-123");
+    then(walletRepository).should(never()).findWithLockingById(any());
+
+    assertNotNull(result);
+  }
+
+  @Test
+  void makeDeposit_OnHotWallet_ShouldLockWalletRowBeforeLoading() {
+
+    given(walletContentionTracker.hotWallets(List.of("wallet-123")))
+        .willReturn(List.of("wallet-123"));
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
+    given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    walletService.makeDeposit(depositDto);
+
+    InOrder inOrder = inOrder(walletRepository);
+    inOrder.verify(walletRepository).findForUpdateById("wallet-123");
+    inOrder.verify(walletRepository).findWithCustomerById("wallet-123");
+  }
+
+  @Test
+  void makeDeposit_ToSplitWallet_ShouldUpdateSubBalanceInsteadOfWalletRow() {
+
+    wallet.setSubBalances(4);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletSubBalances.adjust(eq("wallet-123"), any(), any(), any())).willReturn(true);
+    given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    walletService.makeDeposit(depositDto);
+
+    then(walletSubBalances)
+        .should()
+        .adjust(eq("wallet-123"), any(), eq(Money.ofMajor(500)), eq(Money.ofMajor(500)));
+    then(walletRepository).should(never()).adjustBalances(any(), any(), any());
+  }
+
+  @Test
+  void makeWithdraw_FromSplitWallet_WhenSlotsCannotCover_ShouldThrowException() {
+
+    wallet.setSubBalances(4);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    CustomConflictException exception =
+        assertThrows(CustomConflictException.class, () -> walletService.makeWithdraw(withdrawDto));
+
+    assertEquals("Usable balance is not sufficient!", exception.getReason());
+    then(transactionRepository).should(never()).save(any(Transaction.class));
+  }
+
+  @Test
+  void setSubBalances_WithLedgerEnabled_ShouldThrowException() {
+
+    given(walletLedger.isEnabled()).willReturn(true);
+
+    assertThrows(
+        CustomConflictException.class, () -> walletService.setSubBalances("wallet-123", 4));
+    then(walletSubBalances).should(never()).resize(any(), anyInt());
+  }
+
+  @Test
+  void makeDeposit_WithLedgerEnabled_ShouldAppendPostingInsteadOfUpdatingWallet() {
+
+    given(walletLedger.isEnabled()).willReturn(true);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    walletService.makeDeposit(depositDto);
+
+    then(walletLedger).should().openForDeposit(wallet);
+    then(walletLedger).should().append(eq(wallet), any(), any(Transaction.class));
+    then(walletRepository).should(never()).save(any(Wallet.class));
+  }
+
   @Test
   void makeWithdraw_WithValidData_ShouldCreateTransaction() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -304,7 +657,10 @@ class WalletServiceTest {
     TransactionResponseDto result = walletService.makeWithdraw(withdrawDto);
 
     then(transactionRepository).should().save(any(Transaction.class));
-    then(walletRepository).should().save(any(Wallet.class));
+    then(walletRepository)
+        .should()
+        .adjustBalances("wallet-123", Money.ofMajor(-200), Money.ofMajor(-200));
+    then(walletRepository).should(never()).save(any(Wallet.class));
 
     assertNotNull(result);
   }
@@ -314,28 +670,32 @@ class WalletServiceTest {
 
     WithdrawDto largeWithdraw =
         new WithdrawDto(
-            BigDecimal.valueOf(1000), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+            Money.ofMajor(1000), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
         .willAnswer(
             invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
 
-    assertThrows(
-        CustomConflictException.class,
-        () -> {
-          walletService.makeWithdraw(largeWithdraw);
-        });
+    CustomConflictException exception =
+        assertThrows(
+            CustomConflictException.class,
+            () -> {
+              walletService.makeWithdraw(largeWithdraw);
+            });
+
+    assertEquals("Usable balance is not sufficient!", exception.getReason());
+    then(transactionRepository).should(never()).save(any(Transaction.class));
   }
 
   @Test
   void makeWithdraw_WithZeroAmount_ShouldThrowException() {
 
     WithdrawDto zeroWithdraw =
-        new WithdrawDto(BigDecimal.ZERO, "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+        new WithdrawDto(Money.ZERO, "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
         .willAnswer(
@@ -351,8 +711,8 @@ class WalletServiceTest {
   @Test
   void makeWithdraw_WhenOptimisticLockingFailure_ShouldThrowException() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class)))
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any()))
         .willThrow(ObjectOptimisticLockingFailureException.class);
     given(authentication.getName()).willReturn("12345678901");
     given(authentication.getAuthorities())
@@ -369,8 +729,8 @@ class WalletServiceTest {
   @Test
   void makeWithdraw_WhenTransactionSaveFails_ShouldRollback() {
 
-    given(walletRepository.findWithLockingById("wallet-123")).willReturn(Optional.of(wallet));
-    given(walletRepository.save(any(Wallet.class))).willReturn(wallet);
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class)))
         .willThrow(new RuntimeException("Database error"));
     given(authentication.getName()).willReturn("12345678901");
@@ -384,28 +744,108 @@ class WalletServiceTest {
           walletService.makeWithdraw(withdrawDto);
         });
 
-    verify(walletRepository).save(any(Wallet.class));
+    verify(walletRepository).adjustBalances(eq("wallet-123"), any(), any());
     verify(transactionRepository).save(any(Transaction.class));
   }
 
   @Test
   void approve_WithValidApproval_ShouldUpdateTransaction() {
 
-    given(transactionRepository.findById("transaction-123")).willReturn(Optional.of(transaction));
+    given(transactionRepository.findWithWalletById("transaction-123"))
+        .willReturn(Optional.of(transaction));
+    given(
+            transactionRepository.updateStatus(
+                eq("transaction-123"),
+                eq(TransactionStatus.PENDING),
+                eq(TransactionStatus.APPROVED),
+                any()))
+        .willReturn(1);
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
 
     TransactionResponseDto result =
         walletService.approve("transaction-123", TransactionStatus.APPROVED);
 
     then(transactionRepository).should().save(any(Transaction.class));
+    then(walletRepository).should().adjustBalances("wallet-123", Money.ZERO, Money.ofMajor(500));
+    then(customerPortfolios).should().adjust(wallet, Money.ZERO, Money.ofMajor(500), -1);
 
     assertNotNull(result);
+    assertEquals(TransactionStatus.APPROVED, result.status());
+  }
+
+  @Test
+  void approve_WhenProcessedConcurrently_ShouldThrowConflictWithoutChangingBalances() {
+
+    given(transactionRepository.findWithWalletById("transaction-123"))
+        .willReturn(Optional.of(transaction));
+
+    CustomConflictException exception =
+        assertThrows(
+            CustomConflictException.class,
+            () -> walletService.approve("transaction-123", TransactionStatus.DENIED));
+
+    assertEquals("Transaction processed already!", exception.getReason());
+    then(walletRepository).should(never()).adjustBalances(any(), any(), any());
+  }
+
+  @Test
+  void approve_WithStripedLocking_ShouldLockOwningWallet() {
+
+    given(walletLockManager.isEnabled()).willReturn(true);
+    given(transactionRepository.findWalletIdsById("transaction-123"))
+        .willReturn(List.of("wallet-123"));
+    given(transactionRepository.findWithWalletById("transaction-123"))
+        .willReturn(Optional.of(transaction));
+    given(transactionRepository.updateStatus(any(), any(), any(), any())).willReturn(1);
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
+    given(transactionRepository.save(any(Transaction.class))).willReturn(transaction);
+
+    walletService.approve("transaction-123", TransactionStatus.APPROVED);
+
+    InOrder inOrder = inOrder(walletLockManager, transactionRepository);
+    inOrder.verify(walletLockManager).lockAll(List.of("wallet-123"));
+    inOrder.verify(transactionRepository).findWithWalletById("transaction-123");
+  }
+
+  @Test
+  void applyBatch_WhenOneCommandFails_ShouldReportPerItemResults() {
+
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.adjustBalances("wallet-123", Money.ofMajor(500), Money.ofMajor(500)))
+        .willReturn(1);
+    given(walletRepository.adjustBalances("wallet-123", Money.ofMajor(-200), Money.ofMajor(-200)))
+        .willReturn(1);
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    WithdrawDto tooLarge =
+        new WithdrawDto(
+            Money.ofMajor(5000), "wallet-123", OppositePartyType.IBAN, "Bank Account 456");
+
+    List<WalletCommandResult> results =
+        walletService.applyBatch(
+            List.of(
+                new WalletCommand.Deposit(depositDto, securityContext),
+                new WalletCommand.Withdraw(tooLarge, securityContext),
+                new WalletCommand.Withdraw(withdrawDto, securityContext)));
+
+    assertEquals(3, results.size());
+    assertTrue(results.get(0).isSuccess());
+    assertInstanceOf(CustomConflictException.class, results.get(1).error());
+    assertTrue(results.get(2).isSuccess());
+    assertEquals("Usable balance is not sufficient!", results.get(1).error().getReason());
+
+    then(walletRepository).should(never()).findWithLockingById(any());
+    then(transactionRepository).should(times(2)).save(any(Transaction.class));
   }
 
   @Test
   void approve_WhenTransactionNotFound_ShouldThrowException() {
 
-    given(transactionRepository.findById("transaction-123")).willReturn(Optional.empty());
+    given(transactionRepository.findWithWalletById("transaction-123")).willReturn(Optional.empty());
 
     assertThrows(
         CustomNotFoundException.class,
@@ -417,7 +857,10 @@ class WalletServiceTest {
   @Test
   void approve_WhenOptimisticLockingFailure_ShouldThrowException() {
 
-    given(transactionRepository.findById("transaction-123")).willReturn(Optional.of(transaction));
+    given(transactionRepository.findWithWalletById("transaction-123"))
+        .willReturn(Optional.of(transaction));
+    given(transactionRepository.updateStatus(any(), any(), any(), any())).willReturn(1);
+    given(walletRepository.adjustBalances(eq("wallet-123"), any(), any())).willReturn(1);
     given(transactionRepository.save(any(Transaction.class)))
         .willThrow(ObjectOptimisticLockingFailureException.class);
 
@@ -428,6 +871,156 @@ class WalletServiceTest {
         });
   }
 
+  @Test
+  void makeTransfer_WithValidData_ShouldWriteLinkedLegsInWalletIdOrder() {
+
+    Wallet target = otherWallet("wallet-001", customer, Currency.USD);
+    givenAdmin();
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-001")).willReturn(Optional.of(target));
+    given(walletRepository.adjustBalances(any(), any(), any())).willReturn(1);
+
+    TransactionResponseDto result =
+        walletService.makeTransfer(new TransferDto(Money.ofMajor(300), "wallet-123", "wallet-001"));
+
+    InOrder inOrder = inOrder(walletRepository);
+    inOrder
+        .verify(walletRepository)
+        .adjustBalances("wallet-001", Money.ofMajor(300), Money.ofMajor(300));
+    inOrder
+        .verify(walletRepository)
+        .adjustBalances("wallet-123", Money.ofMajor(-300), Money.ofMajor(-300));
+
+    ArgumentCaptor<List<Transaction>> legs = ArgumentCaptor.captor();
+    then(transactionRepository).should().saveAll(legs.capture());
+    Transaction withdrawal = legs.getValue().get(0);
+    Transaction deposit = legs.getValue().get(1);
+
+    assertEquals(TransactionStatus.APPROVED, result.status());
+    assertEquals(withdrawal.getId(), result.transactionId());
+    assertEquals(TransactionType.WITHDRAW, withdrawal.getType());
+    assertEquals(TransactionType.DEPOSIT, deposit.getType());
+    assertEquals(deposit.getId(), withdrawal.getLinkedTransactionId());
+    assertEquals(withdrawal.getId(), deposit.getLinkedTransactionId());
+    assertEquals(OppositePartyType.WALLET, withdrawal.getOppositePartyType());
+    assertEquals("wallet-001", withdrawal.getOppositeParty());
+  }
+
+  @Test
+  void makeTransfer_WithLargeAmount_ShouldHoldAmountUntilApproved() {
+
+    Wallet target = otherWallet("wallet-456", customer, Currency.USD);
+    givenAdmin();
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-456")).willReturn(Optional.of(target));
+    given(walletRepository.adjustBalances(any(), any(), any())).willReturn(1);
+
+    TransactionResponseDto result =
+        walletService.makeTransfer(
+            new TransferDto(Money.ofMajor(1500), "wallet-123", "wallet-456"));
+
+    assertEquals(TransactionStatus.PENDING, result.status());
+    InOrder inOrder = inOrder(walletRepository);
+    inOrder.verify(walletRepository).adjustBalances("wallet-123", Money.ZERO, Money.ofMajor(-1500));
+    inOrder.verify(walletRepository).adjustBalances("wallet-456", Money.ofMajor(1500), Money.ZERO);
+  }
+
+  @Test
+  void makeTransfer_ToSameWallet_ShouldThrowException() {
+
+    CustomBadRequestException exception =
+        assertThrows(
+            CustomBadRequestException.class,
+            () ->
+                walletService.makeTransfer(
+                    new TransferDto(Money.ofMajor(100), "wallet-123", "wallet-123")));
+
+    assertEquals("Source and target wallets must be different!", exception.getReason());
+    then(walletRepository).shouldHaveNoInteractions();
+  }
+
+  @Test
+  void makeTransfer_WithDifferentCurrencies_ShouldThrowException() {
+
+    givenAdmin();
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-456"))
+        .willReturn(Optional.of(otherWallet("wallet-456", customer, Currency.EUR)));
+
+    CustomBadRequestException exception =
+        assertThrows(
+            CustomBadRequestException.class,
+            () ->
+                walletService.makeTransfer(
+                    new TransferDto(Money.ofMajor(100), "wallet-123", "wallet-456")));
+
+    assertEquals("Wallets must have the same currency!", exception.getReason());
+    then(walletRepository).should(never()).adjustBalances(any(), any(), any());
+  }
+
+  @Test
+  void makeTransfer_ToOtherCustomersWallet_ShouldThrowException() {
+
+    Customer otherCustomer = Customer.builder().id("customer-456").tckn("10987654321").build();
+    given(walletRepository.findWithCustomerById("wallet-123")).willReturn(Optional.of(wallet));
+    given(walletRepository.findWithCustomerById("wallet-456"))
+        .willReturn(Optional.of(otherWallet("wallet-456", otherCustomer, Currency.USD)));
+    given(authentication.getName()).willReturn("12345678901");
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+
+    assertThrows(
+        CustomUnauthorizedException.class,
+        () ->
+            walletService.makeTransfer(
+                new TransferDto(Money.ofMajor(100), "wallet-123", "wallet-456")));
+
+    then(transactionRepository).should(never()).saveAll(any());
+  }
+
+  @Test
+  void approve_WithTransferLeg_ShouldProcessBothLegs() {
+
+    Wallet target = otherWallet("wallet-001", customer, Currency.USD);
+    Transaction withdrawal =
+        Transaction.builder()
+            .id("transfer-out")
+            .amount(Money.ofMajor(1500))
+            .type(TransactionType.WITHDRAW)
+            .oppositePartyType(OppositePartyType.WALLET)
+            .oppositeParty("wallet-001")
+            .linkedTransactionId("transfer-in")
+            .status(TransactionStatus.PENDING)
+            .wallet(wallet)
+            .build();
+    Transaction deposit =
+        Transaction.builder()
+            .id("transfer-in")
+            .amount(Money.ofMajor(1500))
+            .type(TransactionType.DEPOSIT)
+            .oppositePartyType(OppositePartyType.WALLET)
+            .oppositeParty("wallet-123")
+            .linkedTransactionId("transfer-out")
+            .status(TransactionStatus.PENDING)
+            .wallet(target)
+            .build();
+    given(transactionRepository.findWithWalletById("transfer-out"))
+        .willReturn(Optional.of(withdrawal));
+    given(transactionRepository.findWithWalletById("transfer-in")).willReturn(Optional.of(deposit));
+    given(transactionRepository.updateStatus(any(), any(), any(), any())).willReturn(1);
+    given(walletRepository.adjustBalances(any(), any(), any())).willReturn(1);
+
+    TransactionResponseDto result =
+        walletService.approve("transfer-out", TransactionStatus.APPROVED);
+
+    assertEquals(TransactionStatus.APPROVED, result.status());
+    assertEquals(TransactionStatus.APPROVED, deposit.getStatus());
+    InOrder inOrder = inOrder(walletRepository);
+    inOrder.verify(walletRepository).adjustBalances("wallet-001", Money.ZERO, Money.ofMajor(1500));
+    inOrder.verify(walletRepository).adjustBalances("wallet-123", Money.ofMajor(-1500), Money.ZERO);
+  }
+
   @Test
   void createCustomer_WithValidData_ShouldReturnCustomer() {
 
@@ -494,4 +1087,54 @@ class WalletServiceTest {
           walletService.createAdminUser(createAdminUserDto);
         });
   }
+
+  private void givenAdmin() {
+
+    given(authentication.getAuthorities())
+        .willAnswer(
+            invocation -> Collections.singletonList(new SimpleGrantedAuthority("ROLE_ADMIN")));
+  }
+
+  private WalletDto walletDto() {
+
+    return new WalletDto(
+        wallet.getId(),
+        wallet.getVersion(),
+        wallet.getWalletName(),
+        wallet.getCurrency(),
+        wallet.isActiveForShopping(),
+        wallet.isActiveForWithdraw(),
+        wallet.getBalance(),
+        wallet.getUsableBalance());
+  }
+
+  private static TransactionDto transactionDto(String id) {
+
+    return new TransactionDto(
+        id,
+        "wallet-123",
+        Money.ofMajor(500),
+        TransactionType.DEPOSIT,
+        OppositePartyType.IBAN,
+        "Bank Account 123",
+        null,
+        TransactionStatus.APPROVED,
+        CREATED_AT,
+        null);
+  }
+
+  private static Wallet otherWallet(String id, Customer owner, Currency currency) {
+
+    return Wallet.builder()
+        .id(id)
+        .version(0L)
+        .customer(owner)
+        .walletName("Other Wallet")
+        .currency(currency)
+        .activeForShopping(true)
+        .activeForWithdraw(true)
+        .balance(Money.ZERO)
+        .usableBalance(Money.ZERO)
+        .build();
+  }
 }
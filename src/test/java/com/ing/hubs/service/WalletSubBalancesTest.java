@@ -0,0 +1,186 @@
+package com.ing.hubs.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.ing.hubs.dto.WalletBalanceDto;
+import com.ing.hubs.entity.Customer;
+import com.ing.hubs.entity.Wallet;
+import com.ing.hubs.entity.WalletSubBalance;
+import com.ing.hubs.exception.CustomBadRequestException;
+import com.ing.hubs.model.Currency;
+import com.ing.hubs.model.Money;
+import com.ing.hubs.repository.WalletRepository;
+import com.ing.hubs.repository.WalletSubBalanceRepository;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(WalletSubBalances.class)
+class WalletSubBalancesTest {
+
+  @Autowired private WalletSubBalances walletSubBalances;
+
+  @Autowired private WalletRepository walletRepository;
+
+  @Autowired private WalletSubBalanceRepository walletSubBalanceRepository;
+
+  @Autowired private TestEntityManager entityManager;
+
+  @BeforeEach
+  void setUp() {
+
+    Customer customer =
+        Customer.builder()
+            .id("cust-123")
+            .tckn("12345678901")
+            .name("John")
+            .surname("Doe")
+            .password("customerPass123")
+            .wallets(new ArrayList<>())
+            .build();
+
+    entityManager.persist(customer);
+    entityManager.persist(
+        Wallet.builder()
+            .id("wallet-1")
+            .customer(customer)
+            .walletName("Merchant Wallet")
+            .currency(Currency.TRY)
+            .activeForShopping(true)
+            .activeForWithdraw(true)
+            .balance(Money.ofMajor(1001))
+            .usableBalance(Money.ofMajor(801))
+            .transactions(new ArrayList<>())
+            .build());
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  @Test
+  void resize_ShouldSpreadBalancesEvenlyOverSlots() {
+
+    walletSubBalances.resize("wallet-1", 4);
+
+    assertThat(slots())
+        .extracting(WalletSubBalance::getBalance)
+        .containsExactly(
+            Money.of(new BigDecimal("250.25")),
+            Money.of(new BigDecimal("250.25")),
+            Money.of(new BigDecimal("250.25")),
+            Money.of(new BigDecimal("250.25")));
+    assertThat(total()).isEqualTo(balances(1001, 801));
+    assertThat(walletRepository.findSubBalancesById("wallet-1")).contains(4);
+  }
+
+  @Test
+  void adjust_ShouldOnlyTouchOneSlot() {
+
+    walletSubBalances.resize("wallet-1", 4);
+
+    assertThat(walletSubBalances.adjust("wallet-1", "tx-1", Money.ofMajor(100), Money.ofMajor(100)))
+        .isTrue();
+
+    assertThat(slots())
+        .filteredOn(slot -> slot.getSlot() == WalletSubBalances.slot("tx-1", 4))
+        .singleElement()
+        .satisfies(
+            slot ->
+                assertThat(slot.getUsableBalance()).isEqualTo(Money.of(new BigDecimal("300.25"))));
+    assertThat(total()).isEqualTo(balances(1101, 901));
+    // the wallet row is a copy that only catches up lazily
+    assertThat(walletRepository.findBalancesById("wallet-1")).contains(balances(1001, 801));
+  }
+
+  @Test
+  void adjust_WhenSlotCannotCoverDebit_ShouldRebalanceAndApply() {
+
+    walletSubBalances.resize("wallet-1", 4);
+
+    assertThat(
+            walletSubBalances.adjust("wallet-1", "tx-1", Money.ofMajor(-600), Money.ofMajor(-600)))
+        .isTrue();
+
+    assertThat(total()).isEqualTo(balances(401, 201));
+    assertThat(slots())
+        .allSatisfy(slot -> assertThat(slot.getUsableBalance().signum()).isPositive());
+    assertThat(walletRepository.findBalancesById("wallet-1")).contains(balances(401, 201));
+  }
+
+  @Test
+  void adjust_WhenWalletCannotCoverDebit_ShouldChangeNothing() {
+
+    walletSubBalances.resize("wallet-1", 4);
+
+    assertThat(
+            walletSubBalances.adjust("wallet-1", "tx-1", Money.ofMajor(-900), Money.ofMajor(-900)))
+        .isFalse();
+
+    assertThat(total()).isEqualTo(balances(1001, 801));
+  }
+
+  @Test
+  void resize_BackToOne_ShouldMoveBalancesOntoWalletRow() {
+
+    walletSubBalances.resize("wallet-1", 4);
+    walletSubBalances.adjust("wallet-1", "tx-1", Money.ofMajor(100), Money.ZERO);
+
+    walletSubBalances.resize("wallet-1", 1);
+
+    assertThat(slots()).isEmpty();
+    assertThat(walletRepository.findBalancesById("wallet-1")).contains(balances(1101, 801));
+    assertThat(walletRepository.adjustBalances("wallet-1", Money.ofMajor(1), Money.ofMajor(1)))
+        .isEqualTo(1);
+  }
+
+  @Test
+  void materialize_ShouldReplaceBalancesOfSplitWallets() {
+
+    walletSubBalances.resize("wallet-1", 4);
+    walletSubBalances.adjust("wallet-1", "tx-1", Money.ofMajor(100), Money.ofMajor(100));
+    Wallet wallet = walletRepository.findById("wallet-1").orElseThrow();
+
+    walletSubBalances.materialize(List.of(wallet));
+
+    assertThat(wallet.getBalance()).isEqualTo(Money.ofMajor(1101));
+    assertThat(wallet.getUsableBalance()).isEqualTo(Money.ofMajor(901));
+  }
+
+  @Test
+  void resize_WithInvalidCount_ShouldThrowException() {
+
+    assertThrows(CustomBadRequestException.class, () -> walletSubBalances.resize("wallet-1", 0));
+    assertThrows(CustomBadRequestException.class, () -> walletSubBalances.resize("wallet-1", 1000));
+  }
+
+  private List<WalletSubBalance> slots() {
+
+    entityManager.clear();
+
+    return walletSubBalanceRepository.findAll().stream()
+        .sorted(Comparator.comparingInt(WalletSubBalance::getSlot))
+        .toList();
+  }
+
+  private WalletBalanceDto total() {
+
+    return walletSubBalanceRepository.findTotals(List.of("wallet-1")).getFirst();
+  }
+
+  private static WalletBalanceDto balances(long balance, long usableBalance) {
+
+    return new WalletBalanceDto("wallet-1", Money.ofMajor(balance), Money.ofMajor(usableBalance));
+  }
+}